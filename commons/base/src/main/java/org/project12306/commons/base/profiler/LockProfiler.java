@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.commons.base.profiler;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * 锁竞争分析器，统计加锁等待时间、持有时间以及等待线程数量
+ * <p>
+ * 未开启时使用 {@link #NOOP}，只直接加锁，不产生额外开销
+ */
+public interface LockProfiler {
+
+    /**
+     * 不做任何统计的锁竞争分析器
+     */
+    LockProfiler NOOP = (lockName, trainId) -> LockSample.NOOP;
+
+    /**
+     * 开始等待锁，调用方在获得锁后调用 {@link LockSample#acquired()}，释放锁后调用 {@link LockSample#released()}
+     *
+     * @param lockName 逻辑锁名称，同类锁使用相同名称
+     * @param trainId  列车 ID，与列车无关的锁传 null
+     * @return 本次加锁采样
+     */
+    LockSample start(String lockName, String trainId);
+
+    /**
+     * 阻塞加锁并统计等待时间，释放锁后需调用返回值的 {@link LockSample#released()}
+     *
+     * @param lockName 逻辑锁名称
+     * @param trainId  列车 ID，与列车无关的锁传 null
+     * @param lock     需要加锁的锁
+     * @return 本次加锁采样
+     */
+    default LockSample lock(String lockName, String trainId, Lock lock) {
+        LockSample lockSample = start(lockName, trainId);
+        try {
+            lock.lock();
+        } catch (Throwable ex) {
+            lockSample.abandon();
+            throw ex;
+        }
+        lockSample.acquired();
+        return lockSample;
+    }
+}
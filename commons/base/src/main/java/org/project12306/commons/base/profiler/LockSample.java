@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.commons.base.profiler;
+
+/**
+ * 单次加锁采样，同一次加锁的方法调用需按 开始等待、获得锁（或放弃）、释放锁 的顺序执行
+ */
+public interface LockSample {
+
+    /**
+     * 不做任何统计的加锁采样
+     */
+    LockSample NOOP = new LockSample() {
+
+        @Override
+        public void acquired() {
+        }
+
+        @Override
+        public void abandon() {
+        }
+
+        @Override
+        public void released() {
+        }
+    };
+
+    /**
+     * 已获得锁
+     */
+    void acquired();
+
+    /**
+     * 加锁失败或放弃等待
+     */
+    void abandon();
+
+    /**
+     * 已释放锁
+     */
+    void released();
+}
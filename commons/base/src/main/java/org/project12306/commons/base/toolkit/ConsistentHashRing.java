@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.commons.base.toolkit;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * 一致性哈希环，节点按虚拟节点均匀分布在环上，节点增减时只有相邻区间的 Key 迁移
+ * <p>
+ * 网关与服务实例使用同一实现，相同节点集合计算出的 Key 归属一致
+ *
+ * @param <T> 节点类型
+ */
+public final class ConsistentHashRing<T> {
+
+    /**
+     * 默认单个节点虚拟节点数量
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final TreeMap<Long, T> ring = new TreeMap<>();
+
+    /**
+     * 构建一致性哈希环
+     *
+     * @param nodes        节点集合
+     * @param nodeKey      节点标识，同一节点在不同进程中须一致，如 host:port
+     * @param virtualNodes 单个节点虚拟节点数量
+     */
+    public ConsistentHashRing(Collection<T> nodes, Function<T, String> nodeKey, int virtualNodes) {
+        for (T node : nodes) {
+            String key = nodeKey.apply(node);
+            // 每次摘要产生 4 个虚拟节点
+            for (int i = 0; i < virtualNodes / 4; i++) {
+                byte[] digest = md5(key + "#" + i);
+                for (int j = 0; j < 4; j++) {
+                    ring.put(hash(digest, j), node);
+                }
+            }
+        }
+    }
+
+    public ConsistentHashRing(Collection<T> nodes, Function<T, String> nodeKey) {
+        this(nodes, nodeKey, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * 服务实例在哈希环上的标识，网关路由与服务计算分片归属共用
+     *
+     * @param host 实例地址
+     * @param port 实例端口
+     * @return host:port
+     */
+    public static String nodeKey(String host, int port) {
+        return host + ":" + port;
+    }
+
+    /**
+     * 获取 Key 归属节点
+     *
+     * @param key 路由 Key
+     * @return 归属节点，环为空时返回 null
+     */
+    public T route(String key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        SortedMap<Long, T> tailMap = ring.tailMap(hash(md5(key), 0));
+        return tailMap.isEmpty() ? ring.firstEntry().getValue() : tailMap.get(tailMap.firstKey());
+    }
+
+    public boolean isEmpty() {
+        return ring.isEmpty();
+    }
+
+    private static long hash(byte[] digest, int index) {
+        return ((long) (digest[3 + index * 4] & 0xFF) << 24)
+                | ((long) (digest[2 + index * 4] & 0xFF) << 16)
+                | ((long) (digest[1 + index * 4] & 0xFF) << 8)
+                | (digest[index * 4] & 0xFF);
+    }
+
+    private static byte[] md5(String key) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -23,6 +23,8 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import org.project12306.commons.base.Singleton;
+import org.project12306.commons.base.profiler.LockProfiler;
+import org.project12306.commons.base.profiler.LockSample;
 import org.project12306.commons.cache.config.RedisDistributedProperties;
 import org.project12306.commons.cache.core.CacheGetFilter;
 import org.project12306.commons.cache.core.CacheGetIfAbsent;
@@ -51,9 +53,11 @@ public class StringRedisTemplateProxy implements DistributedCache {
     private final StringRedisTemplate stringRedisTemplate;
     private final RedisDistributedProperties redisProperties;
     private final RedissonClient redissonClient;
+    private final LockProfiler lockProfiler;
 
     private static final String LUA_PUT_IF_ALL_ABSENT_SCRIPT_PATH = "lua/putIfAllAbsent.lua";
     private static final String SAFE_GET_DISTRIBUTED_LOCK_KEY_PREFIX = "safe_get_distributed_lock_get:";
+    private static final String SAFE_GET_LOCK_NAME = "cache_safe_get";
 
     /**
      * 最基本的get方法
@@ -201,7 +205,7 @@ public class StringRedisTemplateProxy implements DistributedCache {
 
         //使用互斥锁
         RLock lock = redissonClient.getLock(SAFE_GET_DISTRIBUTED_LOCK_KEY_PREFIX + key);
-        lock.lock();
+        LockSample lockSample = lockProfiler.lock(SAFE_GET_LOCK_NAME, null, lock);
         try {
             // 双重判定锁，减轻获得分布式锁后线程访问数据库压力
             if (CacheUtil.isNullOrBlank(result = get(key, clazz))) {
@@ -212,6 +216,7 @@ public class StringRedisTemplateProxy implements DistributedCache {
             }
         } finally {
             lock.unlock();
+            lockSample.released();
         }
         return result;
     }
@@ -18,10 +18,12 @@
 package org.project12306.commons.cache.config;
 
 import lombok.AllArgsConstructor;
+import org.project12306.commons.base.profiler.LockProfiler;
 import org.project12306.commons.cache.RedisKeySerializer;
 import org.project12306.commons.cache.StringRedisTemplateProxy;
 import org.redisson.api.RBloomFilter;
 import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -61,8 +63,9 @@ public class CacheAutoConfiguration {
     // 静态代理模式: Redis 客户端代理类增强
     public StringRedisTemplateProxy stringRedisTemplateProxy(RedisKeySerializer redisKeySerializer,
                                                              StringRedisTemplate stringRedisTemplate,
-                                                             RedissonClient redissonClient) {
+                                                             RedissonClient redissonClient,
+                                                             ObjectProvider<LockProfiler> lockProfiler) {
         stringRedisTemplate.setKeySerializer(redisKeySerializer);
-        return new StringRedisTemplateProxy(stringRedisTemplate, redisDistributedProperties, redissonClient);
+        return new StringRedisTemplateProxy(stringRedisTemplate, redisDistributedProperties, redissonClient, lockProfiler.getIfAvailable(() -> LockProfiler.NOOP));
     }
 }
@@ -17,13 +17,16 @@
 
 package org.project12306.services.gatewayservice;
 
+import org.project12306.services.gatewayservice.config.TrainShardLoadBalancerConfiguration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClients;
 
 /**
  * 网关服务应用启动器
  */
 @SpringBootApplication
+@LoadBalancerClients(defaultConfiguration = TrainShardLoadBalancerConfiguration.class)
 public class GatewayServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(GatewayServiceApplication.class, args);
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.gatewayservice.filter;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.alibaba.nacos.client.naming.utils.CollectionUtils;
+import org.project12306.commons.base.constant.RouteConstant;
+import org.project12306.services.gatewayservice.config.ShardConfig;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * SpringCloud Gateway 列车分片路由过滤器
+ * <p>
+ * 从购票请求体或排队号中解析列车 ID 写入请求头，由 {@link org.project12306.services.gatewayservice.loadbalancer.TrainConsistentHashLoadBalancer}
+ * 按列车 ID 一致性哈希选择实例，同一列车的购票请求集中到同一购票服务实例
+ */
+@Component
+public class TrainShardGatewayFilterFactory extends AbstractGatewayFilterFactory<ShardConfig> {
+
+    /**
+     * 排队号参数，排队号以列车 ID 开头
+     */
+    public static final String QUEUE_SN_PARAM = "queueSn";
+
+    public TrainShardGatewayFilterFactory() {
+        super(ShardConfig.class);
+    }
+
+    @Override
+    public GatewayFilter apply(ShardConfig config) {
+        return (exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            String requestPath = request.getPath().toString();
+            if (!isPathInShardPreList(requestPath, config.getShardPathPre())) {
+                return chain.filter(exchange);
+            }
+            String queueSn = request.getQueryParams().getFirst(QUEUE_SN_PARAM);
+            if (StringUtils.hasText(queueSn)) {
+                int index = queueSn.indexOf('-');
+                return chain.filter(withTrainId(exchange, request, index > 0 ? queueSn.substring(0, index) : null));
+            }
+            if (!HttpMethod.POST.equals(request.getMethod())) {
+                return chain.filter(exchange);
+            }
+            // 缓存请求体，解析列车 ID 后转发时重放
+            return ServerWebExchangeUtils.cacheRequestBodyAndRequest(exchange, cachedRequest -> {
+                DataBuffer body = exchange.getAttribute(ServerWebExchangeUtils.CACHED_REQUEST_BODY_ATTR);
+                String trainId = body == null ? null : parseTrainId(body.toString(StandardCharsets.UTF_8));
+                return chain.filter(withTrainId(exchange, cachedRequest, trainId));
+            });
+        };
+    }
+
+    private ServerWebExchange withTrainId(ServerWebExchange exchange, ServerHttpRequest request, String trainId) {
+        if (!StringUtils.hasText(trainId)) {
+            return exchange.mutate().request(request).build();
+        }
+        ServerHttpRequest shardRequest = request.mutate()
+                .headers(httpHeaders -> httpHeaders.set(RouteConstant.TRAIN_ID_KEY, trainId))
+                .build();
+        return exchange.mutate().request(shardRequest).build();
+    }
+
+    private String parseTrainId(String body) {
+        try {
+            JSONObject jsonObject = JSON.parseObject(body);
+            return jsonObject == null ? null : jsonObject.getString(RouteConstant.TRAIN_ID_KEY);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    private boolean isPathInShardPreList(String requestPath, List<String> shardPathPre) {
+        if (CollectionUtils.isEmpty(shardPathPre)) {
+            return false;
+        }
+        return shardPathPre.stream().anyMatch(requestPath::startsWith);
+    }
+}
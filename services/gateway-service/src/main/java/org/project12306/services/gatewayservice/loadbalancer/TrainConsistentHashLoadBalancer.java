@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.gatewayservice.loadbalancer;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.commons.base.constant.RouteConstant;
+import org.project12306.commons.base.toolkit.ConsistentHashRing;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 列车一致性哈希负载均衡器
+ * <p>
+ * 请求头携带列车 ID 时按一致性哈希选择实例，否则轮询；实例列表随 Nacos 注册信息变化时重建哈希环，只有相邻区间的列车迁移
+ */
+@Slf4j
+public class TrainConsistentHashLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    private final ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider;
+    private final String serviceId;
+    private final AtomicInteger position = new AtomicInteger(ThreadLocalRandom.current().nextInt(1000));
+    private volatile RingSnapshot ringSnapshot = new RingSnapshot("", new ConsistentHashRing<>(List.of(), TrainConsistentHashLoadBalancer::nodeKey));
+
+    public TrainConsistentHashLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider, String serviceId) {
+        this.serviceInstanceListSupplierProvider = serviceInstanceListSupplierProvider;
+        this.serviceId = serviceId;
+    }
+
+    /**
+     * 实例在哈希环上的标识，与购票服务计算列车归属时保持一致
+     */
+    public static String nodeKey(ServiceInstance instance) {
+        return ConsistentHashRing.nodeKey(instance.getHost(), instance.getPort());
+    }
+
+    @Override
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = serviceInstanceListSupplierProvider.getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return supplier.get(request).next().map(instances -> getInstanceResponse(instances, request));
+    }
+
+    private Response<ServiceInstance> getInstanceResponse(List<ServiceInstance> instances, Request request) {
+        if (instances.isEmpty()) {
+            log.warn("No servers available for service: {}", serviceId);
+            return new EmptyResponse();
+        }
+        String trainId = getTrainId(request);
+        if (!StringUtils.hasText(trainId)) {
+            int pos = position.incrementAndGet() & Integer.MAX_VALUE;
+            return new DefaultResponse(instances.get(pos % instances.size()));
+        }
+        return new DefaultResponse(getRing(instances).route(trainId));
+    }
+
+    private ConsistentHashRing<ServiceInstance> getRing(List<ServiceInstance> instances) {
+        String nodes = instances.stream()
+                .map(TrainConsistentHashLoadBalancer::nodeKey)
+                .sorted()
+                .collect(Collectors.joining(","));
+        RingSnapshot snapshot = ringSnapshot;
+        if (!snapshot.nodes.equals(nodes)) {
+            snapshot = new RingSnapshot(nodes, new ConsistentHashRing<>(instances, TrainConsistentHashLoadBalancer::nodeKey));
+            ringSnapshot = snapshot;
+            log.info("[列车分片路由] 服务 {} 实例变更，重建哈希环：{}", serviceId, nodes);
+        }
+        return snapshot.ring;
+    }
+
+    private String getTrainId(Request request) {
+        if (request.getContext() instanceof RequestDataContext context && context.getClientRequest() != null) {
+            return context.getClientRequest().getHeaders().getFirst(RouteConstant.TRAIN_ID_KEY);
+        }
+        return null;
+    }
+
+    /**
+     * 实例集合与对应哈希环，整体替换保证读取一致
+     */
+    @AllArgsConstructor
+    private static final class RingSnapshot {
+
+        private final String nodes;
+        private final ConsistentHashRing<ServiceInstance> ring;
+    }
+}
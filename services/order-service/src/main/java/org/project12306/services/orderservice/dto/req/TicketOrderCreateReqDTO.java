@@ -28,6 +28,11 @@ import java.util.List;
 @Data
 public class TicketOrderCreateReqDTO {
 
+    /**
+     * 订单号，购票服务经订单发件箱异步创建订单时传入，为空时由订单服务生成
+     */
+    private String orderSn;
+
     /**
      * 用户 ID
      */
@@ -3,6 +3,7 @@ package org.project12306.services.orderservice.service.impl;
 import cn.crane4j.annotation.AutoOperate;
 import cn.hutool.core.collection.ListUtil;
 import cn.hutool.core.text.StrBuilder;
+import cn.hutool.core.util.StrUtil;
 import com.alibaba.fastjson2.JSON;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
@@ -13,6 +14,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.client.producer.SendResult;
 import org.apache.rocketmq.client.producer.SendStatus;
+import org.project12306.commons.cache.DistributedCache;
 import org.project12306.commons.common.toolkit.BeanUtil;
 import org.project12306.commons.database.toolkit.PageUtil;
 import org.project12306.commons.user.core.UserContext;
@@ -44,12 +46,16 @@ import org.project12306.services.orderservice.service.OrderService;
 import org.project12306.services.orderservice.service.orderid.OrderIdGeneratorManager;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 订单服务接口层实现
@@ -66,12 +72,49 @@ public class OrderServiceImpl implements OrderService {
     private final DelayCloseOrderSendProduce delayCloseOrderSendProduce;
     private final RedissonClient redissonClient;
     private final UserRemoteService userRemoteService;
+    private final DistributedCache distributedCache;
+
+    private static final String ORDER_CREATE_CLAIM_KEY = "order:create:order_sn_";
 
     @Transactional(rollbackFor = Exception.class)
     @Override
     public String createTicketOrder(TicketOrderCreateReqDTO requestParam) {
-        // 通过基因法将用户 ID 融入到订单号
-        String orderSn = OrderIdGeneratorManager.generateId(requestParam.getUserId());
+        String orderSn;
+        if (StrUtil.isNotBlank(requestParam.getOrderSn())) {
+            orderSn = requestParam.getOrderSn();
+            // 购票服务订单发件箱至少投递一次，重复投递可能并发到达，按订单号认领创建，认领成功的请求才写入订单
+            StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+            String claimKey = ORDER_CREATE_CLAIM_KEY + orderSn;
+            boolean claimed = Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(claimKey, "1", 10, TimeUnit.MINUTES));
+            LambdaQueryWrapper<OrderDO> queryWrapper = Wrappers.lambdaQuery(OrderDO.class)
+                    .eq(OrderDO::getUserId, String.valueOf(requestParam.getUserId()))
+                    .eq(OrderDO::getOrderSn, orderSn);
+            if (!claimed) {
+                // 订单已创建时直接返回，不再重复发送延迟关闭消息；正在创建时返回失败，由发件箱稍后重试
+                if (orderMapper.selectCount(queryWrapper) > 0) {
+                    log.info("订单已创建，订单号：{}", orderSn);
+                    return orderSn;
+                }
+                throw new ServiceException("订单正在创建中，订单号：" + orderSn);
+            }
+            // 事务回滚时释放认领，允许重试
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        stringRedisTemplate.delete(claimKey);
+                    }
+                }
+            });
+            // 认领过期后的重复投递
+            if (orderMapper.selectCount(queryWrapper) > 0) {
+                log.info("订单已创建，订单号：{}", orderSn);
+                return orderSn;
+            }
+        } else {
+            // 通过基因法将用户 ID 融入到订单号
+            orderSn = OrderIdGeneratorManager.generateId(requestParam.getUserId());
+        }
         //插入数据
         OrderDO orderDO = OrderDO.builder().orderSn(orderSn)
                 .orderTime(requestParam.getOrderTime())
@@ -265,6 +308,9 @@ public class OrderServiceImpl implements OrderService {
         LambdaQueryWrapper<OrderDO> queryWrapper = Wrappers.lambdaQuery(OrderDO.class)
                 .eq(OrderDO::getOrderSn, orderSn);
         OrderDO orderDO = orderMapper.selectOne(queryWrapper);
+        if (orderDO == null) {
+            return null;
+        }
         TicketOrderDetailRespDTO result = BeanUtil.convert(orderDO, TicketOrderDetailRespDTO.class);
         LambdaQueryWrapper<OrderItemDO> orderItemQueryWrapper = Wrappers.lambdaQuery(OrderItemDO.class)
                 .eq(OrderItemDO::getOrderSn, orderSn);
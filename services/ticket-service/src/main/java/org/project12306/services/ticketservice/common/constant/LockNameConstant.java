@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.common.constant;
+
+/**
+ * 锁竞争分析逻辑锁名称，作为监控指标 lock 标签
+ */
+public final class LockNameConstant {
+
+    /**
+     * v1 购票列车分布式锁
+     */
+    public static final String PURCHASE_TICKETS = "purchase_tickets";
+
+    /**
+     * v2 购票列车座位类型本地锁
+     */
+    public static final String PURCHASE_TICKETS_LOCAL = "purchase_tickets_local";
+
+    /**
+     * v2 购票列车座位类型分布式公平锁
+     */
+    public static final String PURCHASE_TICKETS_DISTRIBUTED = "purchase_tickets_distributed";
+
+    /**
+     * 购票流水线列车座位类型分布式公平锁，列车归属本节点时持有时间包含批次间持续持有时间
+     */
+    public static final String PURCHASE_PIPELINE = "purchase_pipeline";
+
+    /**
+     * 列车区段余票加载分布式锁
+     */
+    public static final String SEAT_MARGIN_LOAD = "seat_margin_load";
+
+    /**
+     * 列车余量令牌桶初始化分布式锁
+     */
+    public static final String TOKEN_BUCKET_INIT = "token_bucket_init";
+}
@@ -42,6 +42,11 @@ public final class RedisKeyConstant {
      */
     public static final String REGION_TRAIN_STATION = "index12306-ticket-service:region_train_station:%s_%s";
 
+    /**
+     * 站点查询本地缓存失效广播 Channel
+     */
+    public static final String REGION_TRAIN_STATION_INVALIDATE_CHANNEL = "index12306-ticket-service:region_train_station_invalidate";
+
     /**
      * 站点查询分布式锁 Key
      */
@@ -58,9 +63,19 @@ public final class RedisKeyConstant {
     public static final String REGION_STATION = "index12306-ticket-service:region-station:";
 
     /**
-     * 站点余票查询，Key Prefix + 列车ID_起始站点_终点
+     * 列车区段余票查询，Key Prefix + 列车ID，Hash Field 为 座位类型_区段下标
+     */
+    public static final String TRAIN_LEG_REMAINING_TICKET = "index12306-ticket-service:train_leg_remaining_ticket:";
+
+    /**
+     * 列车站间余票快照，Key Prefix + 列车ID，Hash Field 为 座位类型_出发站下标_到达站下标
      */
-    public static final String TRAIN_STATION_REMAINING_TICKET = "index12306-ticket-service:train_station_remaining_ticket:";
+    public static final String TRAIN_ROUTE_REMAINING_TICKET = "index12306-ticket-service:train_route_remaining_ticket:";
+
+    /**
+     * 列车站间余票快照版本，Key Prefix + 列车ID，区段余票每次变化时递增
+     */
+    public static final String TRAIN_ROUTE_REMAINING_TICKET_VERSION = "index12306-ticket-service:train_route_remaining_ticket_version:";
 
     /**
      * 列车车厢查询，Key Prefix + 列车ID
@@ -108,9 +123,24 @@ public final class RedisKeyConstant {
     public static final String QUERY_ALL_REGION_LIST = "index12306-ticket-service:query_all_region_list";
 
     /**
-     * 列车购买令牌桶，Key Prefix + 列车ID
+     * 列车购买令牌桶，Key Prefix + 列车ID，Hash Field 为 "出发站下标_到达站下标_座位类型"
      */
-    public static final String TICKET_AVAILABILITY_TOKEN_BUCKET = "index12306-ticket-service:ticket_availability_token_bucket:";
+    public static final String TICKET_AVAILABILITY_TOKEN_BUCKET = "index12306-ticket-service:ticket_availability_index_token_bucket:";
+
+    /**
+     * 列车购买令牌桶纪元，Key Prefix + 列车ID，令牌桶每次删除或重建时递增
+     */
+    public static final String TICKET_AVAILABILITY_TOKEN_BUCKET_EPOCH = "index12306-ticket-service:ticket_availability_token_bucket_epoch:";
+
+    /**
+     * 列车购买令牌桶纪元变更广播 Channel
+     */
+    public static final String TICKET_AVAILABILITY_TOKEN_BUCKET_EPOCH_CHANNEL = "index12306-ticket-service:ticket_availability_token_bucket_epoch";
+
+    /**
+     * 排队购票结果，Key Prefix + 用户名 + 排队号
+     */
+    public static final String PURCHASE_QUEUE_RESULT = "index12306-ticket-service:purchase_queue_result:%s:%s";
 
     /**
      * 获取全部地点集合分布式锁 Key
@@ -141,4 +171,45 @@ public final class RedisKeyConstant {
      * 令牌获取失败分布式锁 Key
      */
     public static final String LOCK_TOKEN_BUCKET_ISNULL = "index12306-ticket-service:lock:token-bucket-isnull:%s";
+
+    /**
+     * 座位库存位图迁移分布式锁 Key
+     */
+    public static final String LOCK_SEAT_INVENTORY_MIGRATE = "index12306-ticket-service:lock:seat_inventory_migrate_%s";
+
+    /**
+     * 候补队列 Key，按列车、座位类型与出发站所在区段下标建立索引，Value 为按登记时间排序的候补单号
+     * 释放座位区间内各区段的候补队列合并后按登记先后匹配乘车区间被释放区间包含的候补单
+     */
+    public static final String TICKET_WAITLIST = "index12306-ticket-service:ticket_waitlist:%s:%s:%s";
+
+    /**
+     * 候补单详情 Key，按列车存储，Field 为候补单号
+     */
+    public static final String TICKET_WAITLIST_DETAIL = "index12306-ticket-service:ticket_waitlist_detail:%s";
+
+    /**
+     * 订单发件箱补偿投递分布式锁 Key
+     */
+    public static final String LOCK_ORDER_OUTBOX_RELAY = "index12306-ticket-service:lock:order_outbox_relay";
+
+    /**
+     * 库存对账分布式锁 Key
+     */
+    public static final String LOCK_SEAT_INVENTORY_RECONCILE = "index12306-ticket-service:lock:seat_inventory_reconcile";
+
+    /**
+     * 库存对账游标，记录上一轮对账的最大列车 ID
+     */
+    public static final String SEAT_INVENTORY_RECONCILE_CURSOR = "index12306-ticket-service:seat_inventory_reconcile_cursor";
+
+    /**
+     * Binlog 座位变更已同步标记，Key Prefix + Canal 消息标识 + 列车 ID
+     */
+    public static final String TICKET_BINLOG_SYNC_APPLIED = "index12306-ticket-service:ticket_binlog_sync_applied:%s:%s";
+
+    /**
+     * Binlog 座位释放已交由候补处理的乘车区间，Key Prefix + Canal 消息标识 + 列车 ID
+     */
+    public static final String TICKET_BINLOG_SYNC_RELEASED = "index12306-ticket-service:ticket_binlog_sync_released:%s:%s";
 }
@@ -36,6 +36,16 @@ public enum CanalExecuteStrategyMarkEnum {
      */
     T_SEAT("t_seat", null),
 
+    /**
+     * 座位区段位图库存表
+     */
+    T_SEAT_INVENTORY("t_seat_inventory", null),
+
+    /**
+     * 列车站点关系表
+     */
+    T_TRAIN_STATION_RELATION("t_train_station_relation", null),
+
     /**
      * 订单表
      */
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.common.enums;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 订单发件箱投递状态枚举
+ */
+@RequiredArgsConstructor
+public enum OrderOutboxStatusEnum {
+
+    /**
+     * 待投递
+     */
+    PENDING(0),
+
+    /**
+     * 已投递
+     */
+    SENT(1),
+
+    /**
+     * 超过最大重试次数且订单未创建，已解锁座位并回滚余票
+     */
+    FAILED(2);
+
+    @Getter
+    private final Integer code;
+}
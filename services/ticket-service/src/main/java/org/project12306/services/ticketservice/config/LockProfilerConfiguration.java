@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.project12306.commons.base.profiler.LockProfiler;
+import org.project12306.services.ticketservice.service.profiler.MicrometerLockProfiler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 锁竞争分析配置，未开启时购票与缓存加锁直接使用 {@link LockProfiler#NOOP}
+ */
+@Configuration
+public class LockProfilerConfiguration {
+
+    /**
+     * 开启锁竞争分析时按逻辑锁名称与列车统计加锁等待、持有时间以及等待线程数量
+     */
+    @Bean
+    @ConditionalOnProperty(name = "ticket.lock-profiler.enable", havingValue = "true")
+    public LockProfiler micrometerLockProfiler(MeterRegistry meterRegistry,
+                                               @Value("${ticket.lock-profiler.sample-rate:0.01}") double sampleRate,
+                                               @Value("${ticket.lock-profiler.caller-depth:3}") int callerDepth,
+                                               @Value("${ticket.lock-profiler.max-train-tags:200}") int maxTrainTags,
+                                               @Value("${ticket.lock-profiler.max-callers:64}") int maxCallers,
+                                               @Value("${ticket.lock-profiler.report-size:5}") int reportSize) {
+        return new MicrometerLockProfiler(meterRegistry, sampleRate, callerDepth, maxTrainTags, maxCallers, reportSize);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "ticket.lock-profiler.enable", havingValue = "false", matchIfMissing = true)
+    public LockProfiler noopLockProfiler() {
+        return LockProfiler.NOOP;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.config;
+
+import org.project12306.services.ticketservice.service.cache.RegionTrainStationNearCache;
+import org.project12306.services.ticketservice.service.handler.ticket.tokenbucket.TicketAvailabilityTokenBucket;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.REGION_TRAIN_STATION_INVALIDATE_CHANNEL;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.TICKET_AVAILABILITY_TOKEN_BUCKET_EPOCH_CHANNEL;
+
+/**
+ * Redis 发布订阅监听配置
+ */
+@Configuration
+public class RedisMessageListenerConfiguration {
+
+    /**
+     * 订阅地区车次本地缓存失效广播与令牌桶纪元变更广播
+     */
+    @Bean
+    public RedisMessageListenerContainer ticketRedisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                             RegionTrainStationNearCache regionTrainStationNearCache,
+                                                                             TicketAvailabilityTokenBucket ticketAvailabilityTokenBucket) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(regionTrainStationNearCache, new ChannelTopic(REGION_TRAIN_STATION_INVALIDATE_CHANNEL));
+        container.addMessageListener(ticketAvailabilityTokenBucket, new ChannelTopic(TICKET_AVAILABILITY_TOKEN_BUCKET_EPOCH_CHANNEL));
+        return container;
+    }
+}
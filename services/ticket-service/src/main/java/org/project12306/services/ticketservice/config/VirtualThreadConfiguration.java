@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.services.ticketservice.toolkit.VirtualThreadUtil;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 虚拟线程执行模式配置，开启后 Tomcat 请求处理以及选座并行任务运行在虚拟线程上
+ * <p>
+ * 购票链路阻塞在远程调用、数据库以及 Redis 上，虚拟线程阻塞时让出载体线程，并发请求数不再受平台线程数量限制；
+ * 当前 JDK 不支持虚拟线程时保持平台线程池
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "ticket.virtual-thread.enable", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+    /**
+     * Tomcat 请求处理线程替换为虚拟线程
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> {
+            if (!VirtualThreadUtil.isSupported()) {
+                log.warn("已开启虚拟线程执行模式，但当前 JDK 不支持虚拟线程，Tomcat 继续使用平台线程池");
+                return;
+            }
+            protocolHandler.setExecutor(VirtualThreadUtil.executor());
+        };
+    }
+}
@@ -7,25 +7,50 @@ import org.project12306.services.ticketservice.dto.req.CancelTicketOrderReqDTO;
 import org.project12306.services.ticketservice.dto.req.PurchaseTicketReqDTO;
 import org.project12306.services.ticketservice.dto.req.RefundTicketReqDTO;
 import org.project12306.services.ticketservice.dto.req.TicketPageQueryReqDTO;
+import org.project12306.services.ticketservice.dto.req.TransferTicketQueryReqDTO;
 import org.project12306.services.ticketservice.dto.resp.RefundTicketRespDTO;
 import org.project12306.services.ticketservice.dto.resp.TicketPageQueryRespDTO;
+import org.project12306.services.ticketservice.dto.resp.TicketPurchaseQueueRespDTO;
 import org.project12306.services.ticketservice.dto.resp.TicketPurchaseRespDTO;
+import org.project12306.services.ticketservice.dto.resp.TransferTicketQueryRespDTO;
 import org.project12306.services.ticketservice.remote.dto.PayInfoRespDTO;
 import org.project12306.services.ticketservice.service.TicketService;
+import org.project12306.services.ticketservice.service.TransferTicketService;
+import org.project12306.services.ticketservice.service.cache.TicketPageQueryCoalescer;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 
 @RequiredArgsConstructor
 @RestController
 public class TicketController {
 
     private final TicketService ticketService;
+    private final TransferTicketService transferTicketService;
+    private final TicketPageQueryCoalescer ticketPageQueryCoalescer;
     /**
      * 根据条件查询车票
      */
     @GetMapping("/api/ticket-service/ticket/query")
     public Result<TicketPageQueryRespDTO> pageListTicketQuery(TicketPageQueryReqDTO requestParam) {
-        return Results.success(ticketService.pageListTicketQueryV1(requestParam));
+        return Results.success(ticketPageQueryCoalescer.execute(requestParam, () -> ticketService.pageListTicketQueryV1(requestParam)));
+    }
+
+    /**
+     * 根据条件查询车票v3
+     */
+    @GetMapping("/api/ticket-service/ticket/query/v3")
+    public Result<TicketPageQueryRespDTO> pageListTicketQueryV3(TicketPageQueryReqDTO requestParam) {
+        return Results.success(ticketService.pageListTicketQueryV3(requestParam));
+    }
+
+    /**
+     * 查询一次换乘中转车票
+     */
+    @GetMapping("/api/ticket-service/ticket/transfer/query")
+    public Result<TransferTicketQueryRespDTO> listTransferTicketQuery(TransferTicketQueryReqDTO requestParam) {
+        return Results.success(transferTicketService.listTransferTicketQuery(requestParam));
     }
 
     /**
@@ -44,6 +69,31 @@ public class TicketController {
         return Results.success(ticketService.purchaseTicketsV2(requestParam));
     }
 
+    /**
+     * 排队购买车票，立即返回排队号
+     */
+    @PostMapping("/api/ticket-service/ticket/purchase/queue")
+    public Result<TicketPurchaseQueueRespDTO> purchaseTicketsQueued(@RequestBody PurchaseTicketReqDTO requestParam) {
+        return Results.success(ticketService.purchaseTicketsQueued(requestParam));
+    }
+
+    /**
+     * 候补购买车票，无余票时登记候补，出票结果通过排队购票结果查询
+     */
+    @PostMapping("/api/ticket-service/ticket/purchase/waitlist")
+    public Result<TicketPurchaseQueueRespDTO> purchaseTicketsWaitlist(@RequestBody PurchaseTicketReqDTO requestParam) {
+        return Results.success(ticketService.purchaseTicketsWaitlist(requestParam));
+    }
+
+    /**
+     * 查询排队购票结果，waitMillis 大于 0 时长轮询等待出票
+     */
+    @GetMapping("/api/ticket-service/ticket/purchase/queue/result")
+    public CompletableFuture<Result<TicketPurchaseQueueRespDTO>> queryPurchaseQueueResult(@RequestParam(value = "queueSn") String queueSn,
+                                                                                          @RequestParam(value = "waitMillis", required = false) Long waitMillis) {
+        return ticketService.queryPurchaseQueueResult(queueSn, waitMillis).thenApply(Results::success);
+    }
+
     /**
      * 取消车票订单
      */
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.dao.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+import org.project12306.services.ticketservice.dao.entity.SeatInventoryDO;
+import org.project12306.services.ticketservice.dto.domain.LegSeatTypeCountDTO;
+import org.project12306.services.ticketservice.dto.domain.SeatTypeCountDTO;
+
+import java.util.List;
+
+/**
+ * 座位库存持久层
+ */
+public interface SeatInventoryMapper extends BaseMapper<SeatInventoryDO> {
+
+    /**
+     * 占用座位区段，仅当区段全部空闲时更新成功
+     */
+    int occupySeat(@Param("trainId") Long trainId, @Param("carriageNumber") String carriageNumber, @Param("seatNumber") String seatNumber, @Param("legMask") Long legMask);
+
+    /**
+     * 释放座位区段
+     */
+    int releaseSeat(@Param("trainId") Long trainId, @Param("carriageNumber") String carriageNumber, @Param("seatNumber") String seatNumber, @Param("legMask") Long legMask);
+
+    /**
+     * 获取列车车厢中区段空闲的座位号集合
+     */
+    List<String> listAvailableSeat(@Param("trainId") Long trainId, @Param("carriageNumber") String carriageNumber, @Param("seatType") Integer seatType, @Param("legMask") Long legMask);
+
+    /**
+     * 获取列车区段指定座位类型所有空闲座位的车厢号、座位号，按车厢号排序
+     */
+    List<SeatInventoryDO> listAvailableCarriageSeat(@Param("trainId") Long trainId, @Param("seatType") Integer seatType, @Param("legMask") Long legMask);
+
+    /**
+     * 获取列车区段有余票的车厢号集合
+     */
+    List<String> listUsableCarriageNumber(@Param("trainId") Long trainId, @Param("seatType") Integer seatType, @Param("legMask") Long legMask);
+
+    /**
+     * 获取列车车厢余票集合
+     */
+    List<Integer> listSeatRemainingTicket(@Param("trainId") Long trainId, @Param("legMask") Long legMask, @Param("trainCarriageList") List<String> trainCarriageList);
+
+    /**
+     * 获取列车区段可用座位数量
+     */
+    List<SeatTypeCountDTO> listSeatTypeCount(@Param("trainId") Long trainId, @Param("legMask") Long legMask, @Param("seatTypes") List<Integer> seatTypes);
+
+    /**
+     * 按座位类型、区段位图分组获取列车座位数量
+     */
+    List<LegSeatTypeCountDTO> listLegMaskSeatTypeCount(@Param("trainId") Long trainId, @Param("seatTypes") List<Integer> seatTypes);
+
+    /**
+     * 批量新增座位库存
+     */
+    int insertBatch(@Param("seatInventoryList") List<SeatInventoryDO> seatInventoryList);
+}
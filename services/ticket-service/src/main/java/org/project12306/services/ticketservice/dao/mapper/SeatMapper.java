@@ -20,6 +20,7 @@ package org.project12306.services.ticketservice.dao.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Param;
 import org.project12306.services.ticketservice.dao.entity.SeatDO;
+import org.project12306.services.ticketservice.dto.domain.LegSeatTypeCountDTO;
 import org.project12306.services.ticketservice.dto.domain.SeatTypeCountDTO;
 
 import java.util.List;
@@ -38,4 +39,9 @@ public interface SeatMapper extends BaseMapper<SeatDO> {
      * 获取列车 startStation 到 endStation 区间可用座位数量
      */
     List<SeatTypeCountDTO> listSeatTypeCount(@Param("trainId") Long trainId, @Param("startStation") String startStation, @Param("endStation") String endStation, @Param("seatTypes") List<Integer> seatTypes);
+
+    /**
+     * 按区段、座位类型分组获取列车全部区段可用座位数量
+     */
+    List<LegSeatTypeCountDTO> listLegSeatTypeCount(@Param("trainId") Long trainId, @Param("seatTypes") List<Integer> seatTypes);
 }
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.dto.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 区段座位类型和座位数量实体
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LegSeatTypeCountDTO {
+
+    /**
+     * 区段出发站，座位区段位图模式下为空
+     */
+    private String startStation;
+
+    /**
+     * 区段到达站，座位区段位图模式下为空
+     */
+    private String endStation;
+
+    /**
+     * 座位已占用区段位图，按区段拆分座位记录模式下为空
+     */
+    private Long legMask;
+
+    /**
+     * 座位类型
+     */
+    private Integer seatType;
+
+    /**
+     * 座位类型 - 对应数量
+     */
+    private Integer seatCount;
+}
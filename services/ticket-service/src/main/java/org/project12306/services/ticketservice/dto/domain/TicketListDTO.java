@@ -17,7 +17,11 @@
 
 package org.project12306.services.ticketservice.dto.domain;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.util.List;
 
@@ -25,6 +29,9 @@ import java.util.List;
  * 车次集合实体
  */
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
 public class TicketListDTO {
 
     /**
@@ -42,6 +49,12 @@ public class TicketListDTO {
      */
     private String departureTime;
 
+    /**
+     * 出发时间距零点分钟数，用于车次排序，不返回前端
+     */
+    @JsonIgnore
+    private Integer departureMinute;
+
     /**
      * 到达时间
      */
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.dto.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 中转车次实体
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferTicketDTO {
+
+    /**
+     * 第一程车次
+     */
+    private TicketListDTO firstTrain;
+
+    /**
+     * 第二程车次
+     */
+    private TicketListDTO secondTrain;
+
+    /**
+     * 换乘地区
+     */
+    private String transferRegion;
+
+    /**
+     * 是否同站换乘
+     */
+    private Boolean sameStation;
+
+    /**
+     * 换乘等待时间 HH:mm
+     */
+    private String waitDuration;
+
+    /**
+     * 全程历时 HH:mm
+     */
+    private String totalDuration;
+
+    /**
+     * 全程到达天数
+     */
+    private Integer daysArrived;
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.dto.req;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.util.Date;
+
+/**
+ * 中转车票查询请求参数
+ */
+@Data
+public class TransferTicketQueryReqDTO {
+
+    /**
+     * 出发地 Code
+     */
+    private String fromStation;
+
+    /**
+     * 目的地 Code
+     */
+    private String toStation;
+
+    /**
+     * 出发日期
+     */
+    @DateTimeFormat(pattern = "yyyy-MM-dd")
+    private Date departureDate;
+
+    /**
+     * 是否仅同站换乘
+     */
+    private Boolean sameStation;
+}
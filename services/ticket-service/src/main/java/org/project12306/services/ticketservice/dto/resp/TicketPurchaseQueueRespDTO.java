@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.dto.resp;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 排队购票返回参数
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class TicketPurchaseQueueRespDTO {
+
+    /**
+     * 排队号，用于查询排队结果
+     */
+    private String queueSn;
+
+    /**
+     * 排队状态 0：排队中 1：出票成功 2：出票失败
+     */
+    private Integer status;
+
+    /**
+     * 预计排队位置
+     */
+    private Integer position;
+
+    /**
+     * 预计等待时间（毫秒）
+     */
+    private Long estimatedWaitMillis;
+
+    /**
+     * 订单号
+     */
+    private String orderSn;
+
+    /**
+     * 乘车人订单详情
+     */
+    private List<TicketOrderDetailRespDTO> ticketOrderDetails;
+
+    /**
+     * 出票失败原因
+     */
+    private String message;
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.mq.consumer;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
+import org.apache.rocketmq.spring.core.RocketMQListener;
+import org.project12306.services.ticketservice.common.constant.TicketRocketMQConstant;
+import org.project12306.services.ticketservice.mq.event.CanalBinlogEvent;
+import org.project12306.services.ticketservice.service.handler.ticket.binlog.RegionTrainStationBinlogSyncHandler;
+import org.project12306.services.ticketservice.service.handler.ticket.binlog.SeatBinlogSyncHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+/**
+ * Canal 变更消费者，ticket.availability.cache-update.type 为 binlog 时由座位变更同步余票与令牌，
+ * 由列车站点关系变更失效地区间车次缓存
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnExpression("'${ticket.availability.cache-update.type:}' == 'binlog' && '${ticket.binlog.source:rocketmq}' == 'rocketmq'")
+@RocketMQMessageListener(
+        topic = TicketRocketMQConstant.CANAL_COMMON_SYNC_TOPIC_KEY,
+        consumerGroup = TicketRocketMQConstant.CANAL_COMMON_SYNC_CG_KEY
+)
+public class CanalCommonSyncBinlogConsumer implements RocketMQListener<CanalBinlogEvent> {
+
+    private final SeatBinlogSyncHandler seatBinlogSyncHandler;
+    private final RegionTrainStationBinlogSyncHandler regionTrainStationBinlogSyncHandler;
+
+    @Override
+    public void onMessage(CanalBinlogEvent message) {
+        try {
+            if (regionTrainStationBinlogSyncHandler.supports(message)) {
+                regionTrainStationBinlogSyncHandler.handle(message);
+                return;
+            }
+            seatBinlogSyncHandler.handle(message);
+        } catch (Throwable ex) {
+            log.error("[Binlog 同步] 表 {} 变更事件 {} 同步失败", message.getTable(), message.getId(), ex);
+            throw ex;
+        }
+    }
+}
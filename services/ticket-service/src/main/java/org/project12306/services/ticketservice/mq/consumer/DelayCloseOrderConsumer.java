@@ -23,35 +23,26 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
 import org.apache.rocketmq.spring.core.RocketMQListener;
-import org.project12306.commons.cache.DistributedCache;
-import org.project12306.commons.common.toolkit.BeanUtil;
 import org.project12306.commons.idempotent.annotation.Idempotent;
 import org.project12306.commons.idempotent.enums.IdempotentSceneEnum;
 import org.project12306.commons.idempotent.enums.IdempotentTypeEnum;
 import org.project12306.convention.result.Result;
 import org.project12306.services.ticketservice.common.constant.TicketRocketMQConstant;
-import org.project12306.services.ticketservice.dto.domain.RouteDTO;
 import org.project12306.services.ticketservice.dto.req.CancelTicketOrderReqDTO;
 import org.project12306.services.ticketservice.mq.domain.MessageWrapper;
 import org.project12306.services.ticketservice.mq.event.DelayCloseOrderEvent;
 import org.project12306.services.ticketservice.remote.TicketOrderRemoteService;
-import org.project12306.services.ticketservice.remote.dto.TicketOrderDetailRespDTO;
-import org.project12306.services.ticketservice.remote.dto.TicketOrderPassengerDetailRespDTO;
 import org.project12306.services.ticketservice.service.SeatService;
-import org.project12306.services.ticketservice.service.TrainStationService;
+import org.project12306.services.ticketservice.service.cache.TrainLegRemainingTicketCache;
 import org.project12306.services.ticketservice.service.handler.ticket.dto.TrainPurchaseTicketRespDTO;
-import org.project12306.services.ticketservice.service.handler.ticket.tokenbucket.TicketAvailabilityTokenBucket;
+import org.project12306.services.ticketservice.service.handler.ticket.waitlist.TicketWaitlist;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
-import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.TRAIN_STATION_REMAINING_TICKET;
-
-
 /**
  * 延迟关闭订单消费者
  */
@@ -67,9 +58,8 @@ public class DelayCloseOrderConsumer implements RocketMQListener<MessageWrapper<
 
     private final SeatService seatService;
     private final TicketOrderRemoteService ticketOrderRemoteService;
-    private final TrainStationService trainStationService;
-    private final DistributedCache distributedCache;
-    private final TicketAvailabilityTokenBucket ticketAvailabilityTokenBucket;
+    private final TrainLegRemainingTicketCache trainLegRemainingTicketCache;
+    private final TicketWaitlist ticketWaitlist;
 
     @Value("${ticket.availability.cache-update.type:}")
     private String ticketAvailabilityCacheUpdateType;
@@ -96,7 +86,7 @@ public class DelayCloseOrderConsumer implements RocketMQListener<MessageWrapper<
         }
 
         //订单关闭成功
-        if (closedTickOrder.isSuccess() && !StrUtil.equals(ticketAvailabilityCacheUpdateType, "binlog")) {
+        if (closedTickOrder.isSuccess()) {
             //由于固定为success方式返回，并且只会在报错时被标记为successs
             if (!closedTickOrder.getData()) {
                 //这里再次检测响应数据为false的话则订单异常，也就是数据提前被删除，用户已支付
@@ -107,6 +97,8 @@ public class DelayCloseOrderConsumer implements RocketMQListener<MessageWrapper<
             String departure = delayCloseOrderEvent.getDeparture();
             String arrival = delayCloseOrderEvent.getArrival();
             List<TrainPurchaseTicketRespDTO> trainPurchaseTicketResults = delayCloseOrderEvent.getTrainPurchaseTicketResults();
+            //解锁座位前读取令牌桶纪元，解锁后令牌桶按数据库重建时已计入这些座位，不再回滚令牌
+            long tokenEpoch = ticketWaitlist.currentEpoch(trainId);
             try {
                 //解锁座位
                 seatService.unlock(trainId, departure, arrival, trainPurchaseTicketResults);
@@ -114,23 +106,19 @@ public class DelayCloseOrderConsumer implements RocketMQListener<MessageWrapper<
                 log.error("[延迟关闭订单] 订单号：{} 回滚列车DB座位状态失败", orderSn, ex);
                 throw ex;
             }
+            //Binlog 同步模式下余票与令牌由座位变更事件回滚
+            if (StrUtil.equals(ticketAvailabilityCacheUpdateType, "binlog")) {
+                return;
+            }
             try {
-                StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
-                Map<Integer, List<TrainPurchaseTicketRespDTO>> seatTypeMap = trainPurchaseTicketResults.stream()
-                        .collect(Collectors.groupingBy(TrainPurchaseTicketRespDTO::getSeatType));
-                List<RouteDTO> routeDTOList = trainStationService.listTakeoutTrainStationRoute(trainId, departure, arrival);
-                routeDTOList.forEach(each -> {
-                    String keySuffix = StrUtil.join("_", trainId, each.getStartStation(), each.getEndStation());
-                    //遍历对应路段的座位缓存增加对应的值，回滚数据
-                    seatTypeMap.forEach((seatType, trainPurchaseTicketRespDTOList) -> {
-                        stringRedisTemplate.opsForHash()
-                                .increment(TRAIN_STATION_REMAINING_TICKET + keySuffix, String.valueOf(seatType), trainPurchaseTicketRespDTOList.size());
-                    });
-                });
-                TicketOrderDetailRespDTO ticketOrderDetail = BeanUtil.convert(delayCloseOrderEvent, TicketOrderDetailRespDTO.class);
-                ticketOrderDetail.setPassengerDetails(BeanUtil.convert(delayCloseOrderEvent.getTrainPurchaseTicketResults(), TicketOrderPassengerDetailRespDTO.class));
-                //回滚令牌桶
-                ticketAvailabilityTokenBucket.rollbackInBucket(ticketOrderDetail);
+                //按区段区间回滚对应座位类型的余票
+                Map<Integer, Integer> seatTypeCountMap = trainPurchaseTicketResults.stream()
+                        .collect(Collectors.groupingBy(TrainPurchaseTicketRespDTO::getSeatType, Collectors.summingInt(each -> 1)));
+                trainLegRemainingTicketCache.update(trainId, departure, arrival, seatTypeCountMap);
+                //回滚令牌，存在候补需求时暂扣令牌优先分配给候补用户
+                Map<Integer, Long> releaseSeatTypeCountMap = trainPurchaseTicketResults.stream()
+                        .collect(Collectors.groupingBy(TrainPurchaseTicketRespDTO::getSeatType, Collectors.counting()));
+                ticketWaitlist.release(trainId, departure, arrival, releaseSeatTypeCountMap, tokenEpoch);
             } catch (Throwable ex) {
                 log.error("[延迟关闭订单] 订单号：{} 回滚列车Cache余票失败", orderSn, ex);
                 throw ex;
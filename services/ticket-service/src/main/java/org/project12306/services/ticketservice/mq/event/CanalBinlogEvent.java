@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.mq.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Canal Binlog 监听触发事件（Flat Message 格式）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CanalBinlogEvent {
+
+    /**
+     * 变更数据，每个元素为一行变更后的完整数据
+     */
+    private List<Map<String, Object>> data;
+
+    /**
+     * 数据库名称
+     */
+    private String database;
+
+    /**
+     * Binlog 执行时间
+     */
+    private Long es;
+
+    /**
+     * Canal 批次 ID
+     */
+    private Long id;
+
+    /**
+     * 是否 DDL 语句
+     */
+    private Boolean isDdl;
+
+    /**
+     * 变更前数据，与 data 按下标对应，只包含发生变化的列
+     */
+    private List<Map<String, Object>> old;
+
+    /**
+     * 主键名称
+     */
+    private List<String> pkNames;
+
+    /**
+     * 执行 SQL 语句
+     */
+    private String sql;
+
+    /**
+     * 表名称
+     */
+    private String table;
+
+    /**
+     * Canal 处理时间
+     */
+    private Long ts;
+
+    /**
+     * 变更类型：INSERT、UPDATE、DELETE
+     */
+    private String type;
+}
@@ -34,6 +34,11 @@ import java.util.List;
 @Builder
 public class TicketOrderCreateRemoteReqDTO {
 
+    /**
+     * 订单号，经订单发件箱异步创建订单时由购票服务以雪花算法加用户 ID 基因生成，订单服务按订单号幂等创建
+     */
+    private String orderSn;
+
     /**
      * 用户 ID
      */
@@ -4,8 +4,10 @@ import com.baomidou.mybatisplus.extension.service.IService;
 import org.project12306.services.ticketservice.dao.entity.SeatDO;
 import org.project12306.services.ticketservice.dto.domain.SeatTypeCountDTO;
 import org.project12306.services.ticketservice.service.handler.ticket.dto.TrainPurchaseTicketRespDTO;
+import org.project12306.services.ticketservice.service.handler.ticket.layout.CarriageLayout;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 座位接口层
@@ -22,6 +24,26 @@ public interface SeatService extends IService<SeatDO> {
      */
     List<SeatTypeCountDTO> listSeatTypeCount(Long trainId, String startStation, String endStation, List<Integer> seatTypes);
 
+    /**
+     * 一次性获取列车每个区段（相邻站点之间）各座位类型可用座位数量
+     *
+     * @param trainId   列车 ID
+     * @param stations  列车全部站点，按站序排列
+     * @param seatTypes 座位类型集合
+     * @return 座位类型 -> 各区段可用座位数量，数组下标为区段序号
+     */
+    Map<Integer, int[]> listLegSeatTypeCount(String trainId, List<String> stations, List<Integer> seatTypes);
+
+    /**
+     * 一次性获取列车任意两站之间（出发站在前）各座位类型可用座位数量
+     *
+     * @param trainId   列车 ID
+     * @param stations  列车全部站点，按站序排列
+     * @param seatTypes 座位类型集合
+     * @return 座位类型 -> 站间可用座位数量，数组下标 [出发站序号][到达站序号]，出发站不早于到达站的元素恒为 0
+     */
+    Map<Integer, int[][]> listRouteSeatTypeCount(String trainId, List<String> stations, List<Integer> seatTypes);
+
     /**
      * 锁定选中以及沿途车票状态
      *
@@ -67,6 +89,18 @@ public interface SeatService extends IService<SeatDO> {
      */
     List<String> listAvailableSeat(String trainId, String carriageNumber, Integer seatType, String departure, String arrival);
 
+    /**
+     * 一次性获取列车区段指定座位类型所有有余票车厢的座位位图快照
+     *
+     * @param trainId        列车 ID
+     * @param seatType       座位类型
+     * @param departure      出发站
+     * @param arrival        到达站
+     * @param carriageLayout 车厢布局
+     * @return 车厢号 -> 每排座位位图，按车厢号排序，仅包含有空余座位的车厢
+     */
+    Map<String, int[]> listAvailableSeatMask(String trainId, Integer seatType, String departure, String arrival, CarriageLayout carriageLayout);
+
     /**
      * 解锁选中以及沿途车票状态
      *
@@ -25,10 +25,13 @@ import org.project12306.services.ticketservice.dto.req.RefundTicketReqDTO;
 import org.project12306.services.ticketservice.dto.req.TicketPageQueryReqDTO;
 import org.project12306.services.ticketservice.dto.resp.RefundTicketRespDTO;
 import org.project12306.services.ticketservice.dto.resp.TicketPageQueryRespDTO;
+import org.project12306.services.ticketservice.dto.resp.TicketPurchaseQueueRespDTO;
 import org.project12306.services.ticketservice.dto.resp.TicketPurchaseRespDTO;
 import org.project12306.services.ticketservice.remote.dto.PayInfoRespDTO;
 import org.springframework.web.bind.annotation.RequestBody;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 车票接口
  */
@@ -43,6 +46,14 @@ public interface TicketService extends IService<TicketDO> {
     TicketPageQueryRespDTO pageListTicketQueryV2(TicketPageQueryReqDTO requestParam);
     TicketPageQueryRespDTO pageListTicketQueryV1(TicketPageQueryReqDTO requestParam);
 
+    /**
+     * 根据条件分页查询车票V3版本，车次、价格以及余票通过一次 Lua 脚本调用获取
+     *
+     * @param requestParam 分页查询车票请求参数
+     * @return 查询车票返回结果
+     */
+    TicketPageQueryRespDTO pageListTicketQueryV3(TicketPageQueryReqDTO requestParam);
+
     /**
      * 购买车票
      *
@@ -68,6 +79,31 @@ public interface TicketService extends IService<TicketDO> {
      */
     TicketPurchaseRespDTO executePurchaseTickets(@RequestBody PurchaseTicketReqDTO requestParam);
 
+    /**
+     * 排队购买车票，获取余量令牌后进入列车购票流水线，立即返回排队号
+     *
+     * @param requestParam 车票购买请求参数
+     * @return 排队号及预计排队位置
+     */
+    TicketPurchaseQueueRespDTO purchaseTicketsQueued(@RequestBody PurchaseTicketReqDTO requestParam);
+
+    /**
+     * 候补购买车票，仍有余量时直接排队出票，否则登记候补，释放座位后按登记先后自动出票
+     *
+     * @param requestParam 车票购买请求参数
+     * @return 排队号或候补单号
+     */
+    TicketPurchaseQueueRespDTO purchaseTicketsWaitlist(@RequestBody PurchaseTicketReqDTO requestParam);
+
+    /**
+     * 查询排队购票结果
+     *
+     * @param queueSn    排队号
+     * @param waitMillis 长轮询等待时间（毫秒），为空或 0 表示立即返回
+     * @return 排队购票结果
+     */
+    CompletableFuture<TicketPurchaseQueueRespDTO> queryPurchaseQueueResult(String queueSn, Long waitMillis);
+
     /**
      * 取消车票订单
      *
@@ -38,4 +38,12 @@ public interface TrainStationService {
      */
     List<TrainStationQueryRespDTO> listTrainStationQuery(String trainId);
 
+    /**
+     * 根据列车 ID 查询按顺序排列的全部经停站名称
+     *
+     * @param trainId 列车 ID
+     * @return 列车经停站名称集合
+     */
+    List<String> listTrainStationAll(String trainId);
+
 }
@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service;
+
+import org.project12306.services.ticketservice.dto.req.TransferTicketQueryReqDTO;
+import org.project12306.services.ticketservice.dto.resp.TransferTicketQueryRespDTO;
+
+/**
+ * 中转车票接口
+ */
+public interface TransferTicketService {
+
+    /**
+     * 查询出发地与目的地间一次换乘的中转方案，按全程历时升序
+     *
+     * @param requestParam 中转车票查询请求参数
+     * @return 中转车票查询返回结果
+     */
+    TransferTicketQueryRespDTO listTransferTicketQuery(TransferTicketQueryReqDTO requestParam);
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.cache;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.commons.common.enums.FlagEnum;
+import org.project12306.commons.common.toolkit.BeanUtil;
+import org.project12306.services.ticketservice.common.enums.RegionStationQueryTypeEnum;
+import org.project12306.services.ticketservice.dao.entity.RegionDO;
+import org.project12306.services.ticketservice.dao.entity.StationDO;
+import org.project12306.services.ticketservice.dao.mapper.RegionMapper;
+import org.project12306.services.ticketservice.dao.mapper.StationMapper;
+import org.project12306.services.ticketservice.dto.resp.RegionStationQueryRespDTO;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * 地区&站点内存索引
+ * 站点名称与拼音构建为有序数组，前缀查询通过二分定位；地区按查询方式预先分组，查询不再访问 Redis 与数据库
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RegionStationIndex {
+
+    private final StationMapper stationMapper;
+    private final RegionMapper regionMapper;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * 索引是否已加载
+     */
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    /**
+     * 根据名称或拼音前缀查询站点，按站点记录顺序返回
+     *
+     * @param prefix 名称或拼音前缀
+     * @return 站点集合，索引未加载时返回 null
+     */
+    public List<RegionStationQueryRespDTO> listStationByPrefix(String prefix) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        String actualPrefix = prefix.toLowerCase(Locale.ROOT);
+        String[] keys = current.prefixKeys;
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(actualPrefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        // 同一站点名称与拼音可能同时命中，按站点下标去重并保持原有顺序
+        BitSet matchedStations = new BitSet(current.stations.length);
+        for (int i = low; i < keys.length && keys[i].startsWith(actualPrefix); i++) {
+            matchedStations.set(current.prefixStations[i]);
+        }
+        List<RegionStationQueryRespDTO> result = new ArrayList<>(matchedStations.cardinality());
+        for (int i = matchedStations.nextSetBit(0); i >= 0; i = matchedStations.nextSetBit(i + 1)) {
+            result.add(current.stations[i]);
+        }
+        return result;
+    }
+
+    /**
+     * 根据查询方式获取地区集合
+     *
+     * @param queryType 查询方式
+     * @return 地区集合，索引未加载时返回 null
+     */
+    public List<RegionStationQueryRespDTO> listRegionByQueryType(int queryType) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        return queryType >= 0 && queryType < current.queryTypeRegions.size() ? current.queryTypeRegions.get(queryType) : null;
+    }
+
+    /**
+     * 重建地区&站点索引，站点与地区数据量较小，直接全量构建后整体替换
+     */
+    @Scheduled(initialDelayString = "${ticket.region-station.refresh-initial-delay:0}", fixedDelayString = "${ticket.region-station.refresh-interval:300000}")
+    public void refresh() {
+        try {
+            List<StationDO> stationDOList = stationMapper.selectList(Wrappers.emptyWrapper());
+            List<RegionDO> regionDOList = regionMapper.selectList(Wrappers.emptyWrapper());
+            snapshot = buildSnapshot(stationDOList, regionDOList);
+        } catch (Throwable ex) {
+            log.error("[地区站点索引] 刷新失败", ex);
+        }
+    }
+
+    private Snapshot buildSnapshot(List<StationDO> stationDOList, List<RegionDO> regionDOList) {
+        RegionStationQueryRespDTO[] stations = BeanUtil.convert(stationDOList, RegionStationQueryRespDTO.class)
+                .toArray(new RegionStationQueryRespDTO[0]);
+        List<String> keyList = new ArrayList<>(stations.length << 1);
+        List<Integer> stationList = new ArrayList<>(stations.length << 1);
+        for (int i = 0; i < stations.length; i++) {
+            if (stations[i].getName() != null) {
+                keyList.add(stations[i].getName().toLowerCase(Locale.ROOT));
+                stationList.add(i);
+            }
+            if (stations[i].getSpell() != null) {
+                keyList.add(stations[i].getSpell().toLowerCase(Locale.ROOT));
+                stationList.add(i);
+            }
+        }
+        Integer[] order = new Integer[keyList.size()];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.comparing(keyList::get));
+        String[] prefixKeys = new String[order.length];
+        int[] prefixStations = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            prefixKeys[i] = keyList.get(order[i]);
+            prefixStations[i] = stationList.get(order[i]);
+        }
+        List<List<RegionStationQueryRespDTO>> queryTypeRegions = new ArrayList<>();
+        for (RegionStationQueryTypeEnum each : RegionStationQueryTypeEnum.values()) {
+            List<RegionDO> regionList = regionDOList.stream()
+                    .filter(region -> each == RegionStationQueryTypeEnum.HOT
+                            ? Objects.equals(region.getPopularFlag(), FlagEnum.TRUE.code())
+                            : each.getSpells().contains(region.getInitial()))
+                    .toList();
+            queryTypeRegions.add(Collections.unmodifiableList(BeanUtil.convert(regionList, RegionStationQueryRespDTO.class)));
+        }
+        return new Snapshot(prefixKeys, prefixStations, stations, queryTypeRegions);
+    }
+
+    /**
+     * 索引快照
+     *
+     * @param prefixKeys       有序的小写名称及拼音
+     * @param prefixStations   与 prefixKeys 对应的站点下标
+     * @param stations         站点
+     * @param queryTypeRegions 按查询方式下标分组的地区
+     */
+    private record Snapshot(String[] prefixKeys, int[] prefixStations, RegionStationQueryRespDTO[] stations,
+                            List<List<RegionStationQueryRespDTO>> queryTypeRegions) {
+    }
+}
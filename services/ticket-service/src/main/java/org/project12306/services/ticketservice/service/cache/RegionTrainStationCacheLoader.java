@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.cache;
+
+import cn.hutool.core.map.MapUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSON;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import lombok.RequiredArgsConstructor;
+import org.project12306.commons.cache.DistributedCache;
+import org.project12306.commons.cache.toolkit.CacheUtil;
+import org.project12306.services.ticketservice.dao.entity.TrainDO;
+import org.project12306.services.ticketservice.dao.entity.TrainStationRelationDO;
+import org.project12306.services.ticketservice.dao.mapper.TrainMapper;
+import org.project12306.services.ticketservice.dao.mapper.TrainStationRelationMapper;
+import org.project12306.services.ticketservice.dto.domain.TicketListDTO;
+import org.project12306.services.ticketservice.toolkit.DateUtil;
+import org.project12306.services.ticketservice.toolkit.TimeStringComparator;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.project12306.services.ticketservice.common.constant.Index12306Constant.ADVANCE_TICKET_DAY;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.LOCK_REGION_TRAIN_STATION;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.REGION_TRAIN_STATION;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.TRAIN_INFO;
+import static org.project12306.services.ticketservice.service.impl.DateUtil.convertDateToLocalTime;
+
+/**
+ * 地区间车次缓存加载
+ * 地区间车次 Hash 不存在时查询数据库重建，重建后广播各节点 {@link RegionTrainStationNearCache} 失效
+ */
+@Component
+@RequiredArgsConstructor
+public class RegionTrainStationCacheLoader {
+
+    private final TrainMapper trainMapper;
+    private final TrainStationRelationMapper trainStationRelationMapper;
+    private final DistributedCache distributedCache;
+    private final RedissonClient redissonClient;
+    private final RegionTrainStationNearCache regionTrainStationNearCache;
+
+    /**
+     * 加载地区间车次缓存
+     *
+     * @param startRegion 出发地区
+     * @param endRegion   到达地区
+     * @return 地区间车次，Key 为 列车ID_出发站_到达站，Value 为车次 JSON
+     */
+    public Map<Object, Object> load(Object startRegion, Object endRegion) {
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        String regionTrainStationHashKey = String.format(REGION_TRAIN_STATION, startRegion, endRegion);
+        Map<Object, Object> regionTrainStationAllMap = stringRedisTemplate.opsForHash().entries(regionTrainStationHashKey);
+        if (MapUtil.isNotEmpty(regionTrainStationAllMap)) {
+            return regionTrainStationAllMap;
+        }
+        RLock lock = redissonClient.getLock(LOCK_REGION_TRAIN_STATION);
+        lock.lock();
+        try {
+            regionTrainStationAllMap = stringRedisTemplate.opsForHash().entries(regionTrainStationHashKey);
+            //依然是创建锁之后再次判断是否有其他线程已经做完了
+            if (MapUtil.isEmpty(regionTrainStationAllMap)) {
+                LambdaQueryWrapper<TrainStationRelationDO> queryWrapper = Wrappers.lambdaQuery(TrainStationRelationDO.class)
+                        .eq(TrainStationRelationDO::getStartRegion, startRegion)
+                        .eq(TrainStationRelationDO::getEndRegion, endRegion);
+                //查询起始点和终点都和目标地区相同的列车
+                List<TrainStationRelationDO> trainStationRelationList = trainStationRelationMapper.selectList(queryWrapper);
+                for (TrainStationRelationDO each : trainStationRelationList) {
+                    TrainDO trainDO = distributedCache.safeGet(
+                            TRAIN_INFO + each.getTrainId(),
+                            TrainDO.class,
+                            () -> trainMapper.selectById(each.getTrainId()),
+                            ADVANCE_TICKET_DAY,
+                            TimeUnit.DAYS);
+                    TicketListDTO result = buildTicketList(each, trainDO);
+                    regionTrainStationAllMap.put(CacheUtil.buildKey(String.valueOf(each.getTrainId()), each.getDeparture(), each.getArrival()), JSON.toJSONString(result));
+                }
+                if (MapUtil.isNotEmpty(regionTrainStationAllMap)) {
+                    //将站点对应的所有列车存入缓存，并通知各节点本地缓存失效
+                    stringRedisTemplate.opsForHash().putAll(regionTrainStationHashKey, regionTrainStationAllMap);
+                    regionTrainStationNearCache.publishInvalidate(startRegion, endRegion);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return regionTrainStationAllMap;
+    }
+
+    private TicketListDTO buildTicketList(TrainStationRelationDO trainStationRelationDO, TrainDO trainDO) {
+        TicketListDTO result = new TicketListDTO();
+        result.setTrainId(String.valueOf(trainDO.getId()));
+        result.setTrainNumber(trainDO.getTrainNumber());
+        result.setDepartureTime(convertDateToLocalTime(trainStationRelationDO.getDepartureTime(), "HH:mm"));
+        result.setDepartureMinute(TimeStringComparator.toMinute(result.getDepartureTime()));
+        result.setArrivalTime(convertDateToLocalTime(trainStationRelationDO.getArrivalTime(), "HH:mm"));
+        result.setDuration(DateUtil.calculateHourDifference(trainStationRelationDO.getDepartureTime(), trainStationRelationDO.getArrivalTime()));
+        result.setDeparture(trainStationRelationDO.getDeparture());
+        result.setArrival(trainStationRelationDO.getArrival());
+        //是否已经发车、是否到达
+        result.setDepartureFlag(trainStationRelationDO.getDepartureFlag());
+        result.setArrivalFlag(trainStationRelationDO.getArrivalFlag());
+        result.setTrainType(trainDO.getTrainType());
+        result.setTrainBrand(trainDO.getTrainBrand());
+        if (StrUtil.isNotBlank(trainDO.getTrainTag())) {
+            result.setTrainTags(StrUtil.split(trainDO.getTrainTag(), ","));
+        }
+        long betweenDay = cn.hutool.core.date.DateUtil.betweenDay(trainStationRelationDO.getDepartureTime(), trainStationRelationDO.getArrivalTime(), false);
+        result.setDaysArrived((int) betweenDay);
+        result.setSaleStatus(new Date().after(trainDO.getSaleTime()) ? 0 : 1);
+        result.setSaleTime(convertDateToLocalTime(trainDO.getSaleTime(), "MM-dd HH:mm"));
+        return result;
+    }
+}
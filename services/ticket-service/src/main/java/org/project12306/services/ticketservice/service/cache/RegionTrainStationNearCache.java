@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.cache;
+
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.commons.cache.DistributedCache;
+import org.project12306.services.ticketservice.dto.domain.TicketListDTO;
+import org.project12306.services.ticketservice.toolkit.TimeStringComparator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.REGION_TRAIN_STATION;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.REGION_TRAIN_STATION_INVALIDATE_CHANNEL;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.REGION_TRAIN_STATION_MAPPING;
+
+/**
+ * 地区间车次本地缓存
+ * 缓存已反序列化并按出发时间排序的车次集合，热门地区查询无需访问 Redis，列车时刻表变更时通过 Redis 发布订阅广播失效
+ */
+@Slf4j
+@Component
+public class RegionTrainStationNearCache implements MessageListener {
+
+    /**
+     * 全部失效标识
+     */
+    private static final String INVALIDATE_ALL = "*";
+
+    private final DistributedCache distributedCache;
+    private final Cache<String, RegionTrainStationEntry> regionTrainStationCache;
+    private final Cache<String, String> stationRegionCache;
+    private final Timer invalidateLagTimer;
+
+    public RegionTrainStationNearCache(DistributedCache distributedCache,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${ticket.query.near-cache.maximum-size:2000}") long maximumSize,
+                                       @Value("${ticket.query.near-cache.expire-after-write-seconds:600}") long expireAfterWriteSeconds) {
+        this.distributedCache = distributedCache;
+        this.regionTrainStationCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        this.stationRegionCache = Caffeine.newBuilder()
+                .maximumSize(20000)
+                .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, regionTrainStationCache, "ticket.region_train_station.near_cache");
+        Gauge.builder("ticket.region_train_station.near_cache.staleness", this, RegionTrainStationNearCache::maxEntryAgeSeconds)
+                .description("本地缓存中最旧车次集合的存活时长")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.invalidateLagTimer = Timer.builder("ticket.region_train_station.near_cache.invalidate.lag")
+                .description("失效广播从发布到本节点生效的延迟")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 根据出发站与到达站编码获取所属地区
+     *
+     * @param fromStation 出发站编码
+     * @param toStation   到达站编码
+     * @return 出发地区与到达地区
+     */
+    public List<Object> listRegion(String fromStation, String toStation) {
+        String fromRegion = stationRegionCache.getIfPresent(fromStation);
+        String toRegion = stationRegionCache.getIfPresent(toStation);
+        if (fromRegion == null || toRegion == null) {
+            StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+            List<Object> stationDetails = stringRedisTemplate.opsForHash()
+                    .multiGet(REGION_TRAIN_STATION_MAPPING, Lists.newArrayList(fromStation, toStation));
+            if (stationDetails.get(0) != null && stationDetails.get(1) != null) {
+                stationRegionCache.put(fromStation, stationDetails.get(0).toString());
+                stationRegionCache.put(toStation, stationDetails.get(1).toString());
+            }
+            return stationDetails;
+        }
+        return Lists.newArrayList(fromRegion, toRegion);
+    }
+
+    /**
+     * 获取地区间车次集合，已按出发时间排序
+     * 返回的车次为缓存副本，调用方可直接填充席别信息；Redis 中车次缓存不存在时返回空集合且不缓存
+     *
+     * @param startRegion 出发地区
+     * @param endRegion   到达地区
+     * @return 车次集合
+     */
+    public List<TicketListDTO> listTicket(Object startRegion, Object endRegion) {
+        String regionTrainStationHashKey = String.format(REGION_TRAIN_STATION, startRegion, endRegion);
+        RegionTrainStationEntry entry = regionTrainStationCache.get(regionTrainStationHashKey, this::loadRegionTrainStation);
+        if (entry == null) {
+            return new ArrayList<>();
+        }
+        List<TicketListDTO> result = new ArrayList<>(entry.ticketList().size());
+        entry.ticketList().forEach(each -> result.add(each.toBuilder().build()));
+        return result;
+    }
+
+    /**
+     * 广播地区间车次缓存失效，一般在列车时刻表或 t_train_station_relation 变更后触发
+     *
+     * @param startRegion 出发地区，为空时全部失效
+     * @param endRegion   到达地区
+     */
+    public void publishInvalidate(Object startRegion, Object endRegion) {
+        String regionTrainStationHashKey = startRegion == null || endRegion == null
+                ? INVALIDATE_ALL
+                : String.format(REGION_TRAIN_STATION, startRegion, endRegion);
+        JSONObject invalidateMessage = new JSONObject();
+        invalidateMessage.put("key", regionTrainStationHashKey);
+        invalidateMessage.put("publishTime", System.currentTimeMillis());
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        stringRedisTemplate.convertAndSend(REGION_TRAIN_STATION_INVALIDATE_CHANNEL, invalidateMessage.toJSONString());
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        JSONObject invalidateMessage = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8));
+        String regionTrainStationHashKey = invalidateMessage.getString("key");
+        if (StrUtil.equals(regionTrainStationHashKey, INVALIDATE_ALL)) {
+            regionTrainStationCache.invalidateAll();
+            stationRegionCache.invalidateAll();
+        } else {
+            regionTrainStationCache.invalidate(regionTrainStationHashKey);
+        }
+        Long publishTime = invalidateMessage.getLong("publishTime");
+        if (publishTime != null) {
+            invalidateLagTimer.record(Math.max(System.currentTimeMillis() - publishTime, 0L), TimeUnit.MILLISECONDS);
+        }
+        log.info("[地区车次本地缓存] 失效：{}", regionTrainStationHashKey);
+    }
+
+    private RegionTrainStationEntry loadRegionTrainStation(String regionTrainStationHashKey) {
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        Map<Object, Object> regionTrainStationAllMap = stringRedisTemplate.opsForHash().entries(regionTrainStationHashKey);
+        // Redis 中车次缓存尚未构建时不缓存空结果，避免重建后本节点仍在过期前返回空集合
+        if (regionTrainStationAllMap.isEmpty()) {
+            return null;
+        }
+        // 加载时一次性计算排序键并排序，查询时不再排序
+        List<TicketListDTO> ticketList = regionTrainStationAllMap.values().stream()
+                .map(each -> {
+                    TicketListDTO ticketListDTO = JSON.parseObject(each.toString(), TicketListDTO.class);
+                    ticketListDTO.setDepartureMinute(TimeStringComparator.departureMinute(ticketListDTO));
+                    return ticketListDTO;
+                })
+                .sorted(new TimeStringComparator())
+                .toList();
+        return new RegionTrainStationEntry(ticketList, System.currentTimeMillis());
+    }
+
+    private double maxEntryAgeSeconds() {
+        long now = System.currentTimeMillis();
+        return regionTrainStationCache.asMap().values().stream()
+                .mapToLong(each -> now - each.loadTime())
+                .max()
+                .orElse(0L) / 1000D;
+    }
+
+    /**
+     * 地区间车次缓存项
+     *
+     * @param ticketList 按出发时间排序的车次集合
+     * @param loadTime   加载时间
+     */
+    private record RegionTrainStationEntry(List<TicketListDTO> ticketList, long loadTime) {
+    }
+}
@@ -17,140 +17,111 @@
 
 package org.project12306.services.ticketservice.service.cache;
 
-import cn.hutool.core.collection.CollUtil;
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import lombok.RequiredArgsConstructor;
+import org.project12306.commons.base.profiler.LockProfiler;
+import org.project12306.commons.base.profiler.LockSample;
 import org.project12306.commons.cache.DistributedCache;
-import org.project12306.commons.cache.toolkit.CacheUtil;
-import org.project12306.services.ticketservice.common.enums.*;
-import org.project12306.services.ticketservice.dao.entity.SeatDO;
+import org.project12306.services.ticketservice.common.enums.VehicleTypeEnum;
 import org.project12306.services.ticketservice.dao.entity.TrainDO;
-import org.project12306.services.ticketservice.dao.mapper.SeatMapper;
 import org.project12306.services.ticketservice.dao.mapper.TrainMapper;
-import org.project12306.services.ticketservice.dto.domain.RouteDTO;
+import org.project12306.services.ticketservice.service.SeatService;
 import org.project12306.services.ticketservice.service.TrainStationService;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
 import static org.project12306.services.ticketservice.common.constant.Index12306Constant.ADVANCE_TICKET_DAY;
+import static org.project12306.services.ticketservice.common.constant.LockNameConstant.SEAT_MARGIN_LOAD;
 import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.*;
 
 
 /**
  * 座位余量缓存加载
+ * 加载列车区段余票用于记账与失效，出发站到到达站的余票按数据库站间精确统计重建为站间余票快照
  */
 @Component
 @RequiredArgsConstructor
 public class SeatMarginCacheLoader {
 
     private final TrainMapper trainMapper;
-    private final SeatMapper seatMapper;
+    private final SeatService seatService;
     private final DistributedCache distributedCache;
     private final RedissonClient redissonClient;
+    private final LockProfiler lockProfiler;
     private final TrainStationService trainStationService;
+    private final TrainLegRemainingTicketCache trainLegRemainingTicketCache;
 
-    public Map<String, String> load(String trainId, String seatType, String departure, String arrival) {
-        Map<String, Map<String, String>> trainStationRemainingTicketMaps = new LinkedHashMap<>();
-        String keySuffix = CacheUtil.buildKey(trainId, departure, arrival);
-        //上分布式锁获取余票量
-        RLock lock = redissonClient.getLock(String.format(LOCK_SAFE_LOAD_SEAT_MARGIN_GET, keySuffix));
-        lock.lock();
+    /**
+     * 加载列车区段余票缓存与站间余票快照，并返回出发站到到达站各座位类型余票
+     *
+     * @param trainId   列车 ID
+     * @param departure 出发站
+     * @param arrival   到达站
+     * @return 座位类型与余票
+     */
+    public Map<String, String> load(String trainId, String departure, String arrival) {
+        TrainDO trainDO = distributedCache.safeGet(
+                TRAIN_INFO + trainId,
+                TrainDO.class,
+                () -> trainMapper.selectById(trainId),
+                ADVANCE_TICKET_DAY,
+                TimeUnit.DAYS
+        );
+        List<Integer> seatTypes = VehicleTypeEnum.findSeatTypesByCode(trainDO.getTrainType());
+        Map<String, String> result = new LinkedHashMap<>();
+        //上分布式锁加载整列车的区段余票与站间余票快照
+        RLock lock = redissonClient.getLock(String.format(LOCK_SAFE_LOAD_SEAT_MARGIN_GET, trainId));
+        LockSample lockSample = lockProfiler.lock(SEAT_MARGIN_LOAD, trainId, lock);
         try {
-            StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
-            Object quantityObj = stringRedisTemplate.opsForHash().get(TRAIN_STATION_REMAINING_TICKET + keySuffix, seatType);
-            //如果缓存中没有这个余票就重建缓存
-            if (CacheUtil.isNullOrBlank(quantityObj)) {
-                //先获取对应的列车信息
-                TrainDO trainDO = distributedCache.safeGet(
-                        TRAIN_INFO + trainId,
-                        TrainDO.class,
-                        () -> trainMapper.selectById(trainId),
-                        ADVANCE_TICKET_DAY,
-                        TimeUnit.DAYS
-                );
-
-                //枚举并返回所有的路线，
-                //A->D途径B,C
-                //这个方法将会返回A->B,A->C,B->C,B->D,C->D,A->D的路线
-                List<RouteDTO> routeDTOList = trainStationService.listTrainStationRoute(trainId, trainDO.getStartStation(), trainDO.getEndStation());
-                if (CollUtil.isNotEmpty(routeDTOList)) {
-                    switch (trainDO.getTrainType()) {
-                        // TODO 通过已有列车类型座位枚举重构
-                        //高速列车
-                        case 0 -> {
-                            for (RouteDTO each : routeDTOList) {
-                                Map<String, String> trainStationRemainingTicket = new LinkedHashMap<>();
-                                trainStationRemainingTicket.put("0", selectSeatMargin(trainId, 0, each.getStartStation(), each.getEndStation()));
-                                trainStationRemainingTicket.put("1", selectSeatMargin(trainId, 1, each.getStartStation(), each.getEndStation()));
-                                trainStationRemainingTicket.put("2", selectSeatMargin(trainId, 2, each.getStartStation(), each.getEndStation()));
-                                String actualKeySuffix = CacheUtil.buildKey(trainId, each.getStartStation(), each.getEndStation());
-                                trainStationRemainingTicketMaps.put(TRAIN_STATION_REMAINING_TICKET + actualKeySuffix, trainStationRemainingTicket);
-                            }
-                        }
-                        //普速列车
-                        case 1 -> {
-                            for (RouteDTO each : routeDTOList) {
-                                Map<String, String> trainStationRemainingTicket = new LinkedHashMap<>();
-                                trainStationRemainingTicket.put("3", selectSeatMargin(trainId, 3, each.getStartStation(), each.getEndStation()));
-                                trainStationRemainingTicket.put("4", selectSeatMargin(trainId, 4, each.getStartStation(), each.getEndStation()));
-                                trainStationRemainingTicket.put("5", selectSeatMargin(trainId, 5, each.getStartStation(), each.getEndStation()));
-                                trainStationRemainingTicket.put("13", selectSeatMargin(trainId, 13, each.getStartStation(), each.getEndStation()));
-                                String actualKeySuffix = CacheUtil.buildKey(trainId, each.getStartStation(), each.getEndStation());
-                                trainStationRemainingTicketMaps.put(TRAIN_STATION_REMAINING_TICKET + actualKeySuffix, trainStationRemainingTicket);
-                            }
-                        }
-                        //快车
-                        case 2 -> {
-                            for (RouteDTO each : routeDTOList) {
-                                Map<String, String> trainStationRemainingTicket = new LinkedHashMap<>();
-                                trainStationRemainingTicket.put("6", selectSeatMargin(trainId, 6, each.getStartStation(), each.getEndStation()));
-                                trainStationRemainingTicket.put("7", selectSeatMargin(trainId, 7, each.getStartStation(), each.getEndStation()));
-                                trainStationRemainingTicket.put("8", selectSeatMargin(trainId, 8, each.getStartStation(), each.getEndStation()));
-                                trainStationRemainingTicket.put("13", selectSeatMargin(trainId, 13, each.getStartStation(), each.getEndStation()));
-                                String actualKeySuffix = CacheUtil.buildKey(trainId, each.getStartStation(), each.getEndStation());
-                                trainStationRemainingTicketMaps.put(TRAIN_STATION_REMAINING_TICKET + actualKeySuffix, trainStationRemainingTicket);
-                            }
-                        }
+            List<String> stations = trainStationService.listTrainStationAll(trainId);
+            if (!distributedCache.hasKey(TRAIN_LEG_REMAINING_TICKET + trainId)) {
+                //一次分组查询得到全部区段各座位类型余票，相邻站点之间即一个区段，没有余票的座位类型为 0
+                Map<Integer, int[]> legSeatTypeCountMap = seatService.listLegSeatTypeCount(trainId, stations, seatTypes);
+                Map<String, String> trainLegRemainingTicketMap = new HashMap<>();
+                legSeatTypeCountMap.forEach((seatType, legSeatCounts) -> {
+                    for (int i = 0; i < legSeatCounts.length; i++) {
+                        trainLegRemainingTicketMap.put(TrainLegRemainingTicketCache.buildField(seatType, i), String.valueOf(legSeatCounts[i]));
                     }
-                } else {
-                    //什么情况下才会出现没有路线啊…怎么说都至少有可能是出发点到终点啊
-                    Map<String, String> trainStationRemainingTicket = new LinkedHashMap<>();
-                    //获取座位类型之后给每个座位类型都赋值0
-                    VehicleTypeEnum.findSeatTypesByCode(trainDO.getTrainType())
-                            .forEach(each -> trainStationRemainingTicket.put(String.valueOf(each), "0"));
-                    //余票也赋值0
-                    trainStationRemainingTicketMaps.put(TRAIN_STATION_REMAINING_TICKET + keySuffix, trainStationRemainingTicket);
+                });
+                if (!trainLegRemainingTicketMap.isEmpty()) {
+                    StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+                    stringRedisTemplate.opsForHash().putAll(TRAIN_LEG_REMAINING_TICKET + trainId, trainLegRemainingTicketMap);
                 }
-                // TODO LUA 脚本执行
-                //将所有的列车余票放入缓存中
-                trainStationRemainingTicketMaps.forEach((cacheKey, cacheMap) -> stringRedisTemplate.opsForHash().putAll(cacheKey, cacheMap));
             }
+            //获取锁后二次判断，其他线程已重建快照时直接读取
+            Map<Integer, Integer> remainingTicketMap = trainLegRemainingTicketCache.listRemainingTicket(trainId, departure, arrival, seatTypes);
+            if (remainingTicketMap != null) {
+                remainingTicketMap.forEach((key, value) -> result.put(String.valueOf(key), String.valueOf(value)));
+                return result;
+            }
+            int startIndex = stations.indexOf(departure);
+            int endIndex = stations.indexOf(arrival);
+            //先读版本再查数据库，查询期间区段余票发生变化时快照不写入，本次仍返回查询结果
+            String version = trainLegRemainingTicketCache.getRouteVersion(trainId);
+            Map<Integer, int[][]> routeSeatTypeCountMap = seatService.listRouteSeatTypeCount(trainId, stations, seatTypes);
+            Map<String, String> trainRouteRemainingTicketMap = new HashMap<>();
+            routeSeatTypeCountMap.forEach((seatType, routeSeatCounts) -> {
+                for (int i = 0; i < stations.size() - 1; i++) {
+                    for (int j = i + 1; j < stations.size(); j++) {
+                        trainRouteRemainingTicketMap.put(TrainLegRemainingTicketCache.buildRouteField(seatType, i, j), String.valueOf(routeSeatCounts[i][j]));
+                    }
+                }
+                if (startIndex >= 0 && endIndex > startIndex) {
+                    result.put(String.valueOf(seatType), String.valueOf(routeSeatCounts[startIndex][endIndex]));
+                }
+            });
+            trainLegRemainingTicketCache.saveRoute(trainId, version, trainRouteRemainingTicketMap);
         } finally {
             lock.unlock();
+            lockSample.released();
         }
-        //返回map表示列车的每种座位的余票分别多少
-        return Optional.ofNullable(trainStationRemainingTicketMaps.get(TRAIN_STATION_REMAINING_TICKET + keySuffix))
-                .orElse(new LinkedHashMap<>());
-    }
-
-    private String selectSeatMargin(String trainId, Integer type, String departure, String arrival) {
-        LambdaQueryWrapper<SeatDO> queryWrapper = Wrappers.lambdaQuery(SeatDO.class)
-                .eq(SeatDO::getTrainId, trainId)
-                .eq(SeatDO::getSeatType, type)
-                .eq(SeatDO::getSeatStatus, SeatStatusEnum.AVAILABLE.getCode())
-                .eq(SeatDO::getStartStation, departure)
-                .eq(SeatDO::getEndStation, arrival);
-        return Optional.ofNullable(seatMapper.selectCount(queryWrapper))
-                .map(String::valueOf)
-                .orElse("0");
+        return result;
     }
 }
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.cache;
+
+import cn.hutool.core.date.DateUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.project12306.services.ticketservice.dto.req.TicketPageQueryReqDTO;
+import org.project12306.services.ticketservice.dto.resp.TicketPageQueryRespDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 车票查询请求合并
+ * 相同条件的并发查询只有首个请求真正执行，其余请求等待并共享其结果；结果在短时间窗口内继续复用
+ */
+@Component
+public class TicketPageQueryCoalescer {
+
+    private final boolean enable;
+    private final ConcurrentHashMap<String, CompletableFuture<TicketPageQueryRespDTO>> inFlightMap = new ConcurrentHashMap<>();
+    private final Cache<String, TicketPageQueryRespDTO> recentResultCache;
+    private final Counter leaderCounter;
+    private final Counter followerCounter;
+    private final Counter windowHitCounter;
+
+    public TicketPageQueryCoalescer(MeterRegistry meterRegistry,
+                                    @Value("${ticket.query.coalesce.enable:true}") boolean enable,
+                                    @Value("${ticket.query.coalesce.window-millis:300}") long windowMillis) {
+        this.enable = enable;
+        this.recentResultCache = windowMillis > 0
+                ? Caffeine.newBuilder().maximumSize(10000).expireAfterWrite(windowMillis, TimeUnit.MILLISECONDS).build()
+                : null;
+        this.leaderCounter = Counter.builder("ticket.query.coalesce")
+                .description("车票查询合并结果，leader 为实际执行，follower 为共享执行中结果，window 为复用窗口内结果")
+                .tag("result", "leader")
+                .register(meterRegistry);
+        this.followerCounter = Counter.builder("ticket.query.coalesce")
+                .tag("result", "follower")
+                .register(meterRegistry);
+        this.windowHitCounter = Counter.builder("ticket.query.coalesce")
+                .tag("result", "window")
+                .register(meterRegistry);
+        Gauge.builder("ticket.query.coalesce.in_flight", inFlightMap, ConcurrentHashMap::size)
+                .description("执行中的车票查询数量")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 合并执行车票查询
+     *
+     * @param requestParam 车票查询请求参数
+     * @param loader       实际查询逻辑
+     * @return 车票查询结果，合并请求间共享同一对象，调用方不可修改
+     */
+    public TicketPageQueryRespDTO execute(TicketPageQueryReqDTO requestParam, Supplier<TicketPageQueryRespDTO> loader) {
+        if (!enable) {
+            return loader.get();
+        }
+        String coalesceKey = buildCoalesceKey(requestParam);
+        if (recentResultCache != null) {
+            TicketPageQueryRespDTO recentResult = recentResultCache.getIfPresent(coalesceKey);
+            if (recentResult != null) {
+                windowHitCounter.increment();
+                return recentResult;
+            }
+        }
+        CompletableFuture<TicketPageQueryRespDTO> future = new CompletableFuture<>();
+        CompletableFuture<TicketPageQueryRespDTO> inFlightFuture = inFlightMap.putIfAbsent(coalesceKey, future);
+        if (inFlightFuture != null) {
+            followerCounter.increment();
+            try {
+                return inFlightFuture.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw ex;
+            }
+        }
+        leaderCounter.increment();
+        try {
+            TicketPageQueryRespDTO result = loader.get();
+            if (recentResultCache != null && result != null) {
+                recentResultCache.put(coalesceKey, result);
+            }
+            future.complete(result);
+            return result;
+        } catch (Throwable ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlightMap.remove(coalesceKey, future);
+        }
+    }
+
+    private String buildCoalesceKey(TicketPageQueryReqDTO requestParam) {
+        return String.join("|",
+                requestParam.getFromStation(),
+                requestParam.getToStation(),
+                requestParam.getDepartureDate() == null ? "" : DateUtil.formatDate(requestParam.getDepartureDate()),
+                requestParam.getDeparture(),
+                requestParam.getArrival(),
+                String.valueOf(requestParam.getCurrent()),
+                String.valueOf(requestParam.getSize()));
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.project12306.commons.base.Singleton;
+import org.project12306.commons.cache.DistributedCache;
+import org.project12306.commons.common.toolkit.Assert;
+import org.project12306.services.ticketservice.service.TrainStationService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.TRAIN_LEG_REMAINING_TICKET;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.TRAIN_ROUTE_REMAINING_TICKET;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.TRAIN_ROUTE_REMAINING_TICKET_VERSION;
+
+/**
+ * 列车区段余票缓存
+ * 列车第 i 站到第 i + 1 站为第 i 个区段，每列车一个 Hash，Field 为 座位类型_区段下标，Value 为区段余票
+ * 购票与回滚对区间内区段整体加减，一次脚本调用完成
+ * <p>
+ * 区段余票只记录每个区段各自的空闲座位数，区间内各区段余票的最小值只是区间余票的上界。
+ * 例如座位 A 只在区段 0 空闲、座位 B 只在区段 1 空闲，[0, 2) 的最小值为 1，实际可售为 0。
+ * 因此展示与库存校验读取站间余票快照：快照由数据库按站间精确统计重建，区段余票每次变化时递增版本并删除快照，
+ * 重建期间版本发生变化的快照不写入，区段余票只负责记账与触发失效
+ */
+@Component
+@RequiredArgsConstructor
+public class TrainLegRemainingTicketCache {
+
+    private static final String LUA_TRAIN_LEG_REMAINING_TICKET_UPDATE_PATH = "lua/train_leg_remaining_ticket_update.lua";
+    private static final String LUA_TRAIN_ROUTE_REMAINING_TICKET_LOAD_PATH = "lua/train_route_remaining_ticket_load.lua";
+
+    private final DistributedCache distributedCache;
+    private final TrainStationService trainStationService;
+
+    /**
+     * 站间余票快照过期时间，兜底事务提交前重建导致的短暂不一致
+     */
+    @Value("${ticket.query.route-remaining.ttl-seconds:30}")
+    private long routeRemainingTtlSeconds;
+
+    /**
+     * 构建区段余票 Hash Field
+     *
+     * @param seatType 座位类型
+     * @param legIndex 区段下标
+     * @return Hash Field
+     */
+    public static String buildField(Object seatType, int legIndex) {
+        return seatType + "_" + legIndex;
+    }
+
+    /**
+     * 构建站间余票快照 Hash Field
+     *
+     * @param seatType   座位类型
+     * @param startIndex 出发站下标
+     * @param endIndex   到达站下标
+     * @return Hash Field
+     */
+    public static String buildRouteField(Object seatType, int startIndex, int endIndex) {
+        return seatType + "_" + startIndex + "_" + endIndex;
+    }
+
+    /**
+     * 计算出发站到到达站的区段下标区间 [start, end)，即出发站与到达站下标
+     *
+     * @param trainId   列车 ID
+     * @param departure 出发站
+     * @param arrival   到达站
+     * @return 区段下标区间，站点不合法时返回 null
+     */
+    public int[] legRange(String trainId, String departure, String arrival) {
+        List<String> stations = trainStationService.listTrainStationAll(trainId);
+        int startIndex = stations.indexOf(departure);
+        int endIndex = stations.indexOf(arrival);
+        if (startIndex < 0 || endIndex <= startIndex) {
+            return null;
+        }
+        return new int[]{startIndex, endIndex};
+    }
+
+    /**
+     * 构建出发站到到达站各座位类型站间余票 Field，与座位类型一一对应
+     *
+     * @param trainId   列车 ID
+     * @param departure 出发站
+     * @param arrival   到达站
+     * @param seatTypes 座位类型集合
+     * @return 站间余票 Field 集合，站点不合法时返回空集合
+     */
+    public List<String> buildRouteFields(String trainId, String departure, String arrival, List<Integer> seatTypes) {
+        int[] legRange = legRange(trainId, departure, arrival);
+        if (legRange == null) {
+            return Collections.emptyList();
+        }
+        List<String> routeFields = new ArrayList<>(seatTypes.size());
+        for (Integer seatType : seatTypes) {
+            routeFields.add(buildRouteField(seatType, legRange[0], legRange[1]));
+        }
+        return routeFields;
+    }
+
+    /**
+     * 解析 {@link #buildRouteFields} 查询结果
+     *
+     * @param routeValues 站间余票集合，与座位类型一一对应
+     * @return 各座位类型余票，存在未加载的 Field 时返回 null
+     */
+    public static List<Integer> parseRemaining(List<?> routeValues) {
+        if (routeValues == null || routeValues.isEmpty()) {
+            return null;
+        }
+        List<Integer> result = new ArrayList<>(routeValues.size());
+        for (Object routeValue : routeValues) {
+            if (routeValue == null) {
+                return null;
+            }
+            result.add(Math.max(Integer.parseInt(routeValue.toString()), 0));
+        }
+        return result;
+    }
+
+    /**
+     * 查询出发站到到达站各座位类型站间余票
+     *
+     * @param trainId   列车 ID
+     * @param departure 出发站
+     * @param arrival   到达站
+     * @param seatTypes 座位类型集合
+     * @return 座位类型与余票，快照未加载时返回 null
+     */
+    public Map<Integer, Integer> listRemainingTicket(String trainId, String departure, String arrival, List<Integer> seatTypes) {
+        List<String> routeFields = buildRouteFields(trainId, departure, arrival, seatTypes);
+        if (routeFields.isEmpty()) {
+            return null;
+        }
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        List<Object> routeValues = stringRedisTemplate.opsForHash().multiGet(TRAIN_ROUTE_REMAINING_TICKET + trainId, new ArrayList<>(routeFields));
+        List<Integer> remainingList = parseRemaining(routeValues);
+        if (remainingList == null) {
+            return null;
+        }
+        Map<Integer, Integer> result = new LinkedHashMap<>();
+        for (int i = 0; i < seatTypes.size(); i++) {
+            result.put(seatTypes.get(i), remainingList.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * 读取站间余票快照版本，重建快照前调用
+     *
+     * @param trainId 列车 ID
+     * @return 快照版本，从未变化时为 0
+     */
+    public String getRouteVersion(String trainId) {
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        String version = stringRedisTemplate.opsForValue().get(TRAIN_ROUTE_REMAINING_TICKET_VERSION + trainId);
+        return version == null ? "0" : version;
+    }
+
+    /**
+     * 写入站间余票快照，版本与重建前读取的版本不一致时放弃写入
+     *
+     * @param trainId             列车 ID
+     * @param version             重建前读取的快照版本
+     * @param routeRemainingMap 快照 Field 与站间余票
+     * @return 是否写入成功
+     */
+    public boolean saveRoute(String trainId, String version, Map<String, String> routeRemainingMap) {
+        if (routeRemainingMap.isEmpty()) {
+            return false;
+        }
+        DefaultRedisScript<Long> actual = Singleton.get(LUA_TRAIN_ROUTE_REMAINING_TICKET_LOAD_PATH, () -> {
+            DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+            redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource(LUA_TRAIN_ROUTE_REMAINING_TICKET_LOAD_PATH)));
+            redisScript.setResultType(Long.class);
+            return redisScript;
+        });
+        Assert.notNull(actual);
+        List<String> args = new ArrayList<>(2 + routeRemainingMap.size() * 2);
+        args.add(String.valueOf(routeRemainingTtlSeconds));
+        args.add(version);
+        routeRemainingMap.forEach((field, remaining) -> {
+            args.add(field);
+            args.add(remaining);
+        });
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        Long result = stringRedisTemplate.execute(actual,
+                List.of(TRAIN_ROUTE_REMAINING_TICKET + trainId, TRAIN_ROUTE_REMAINING_TICKET_VERSION + trainId), args.toArray());
+        return result != null && result == 1L;
+    }
+
+    /**
+     * 失效站间余票快照，先递增版本再删除，保证正在重建的旧快照不会写入
+     *
+     * @param trainId 列车 ID
+     */
+    public void invalidateRoute(String trainId) {
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        stringRedisTemplate.opsForValue().increment(TRAIN_ROUTE_REMAINING_TICKET_VERSION + trainId);
+        stringRedisTemplate.delete(TRAIN_ROUTE_REMAINING_TICKET + trainId);
+    }
+
+    /**
+     * 按区段区间更新余票并失效站间余票快照，扣减传入负数，回滚传入正数，区段余票未加载时不做处理
+     *
+     * @param trainId          列车 ID
+     * @param departure        出发站
+     * @param arrival          到达站
+     * @param seatTypeDeltaMap 座位类型与余票变化量
+     */
+    public void update(String trainId, String departure, String arrival, Map<Integer, Integer> seatTypeDeltaMap) {
+        int[] legRange = legRange(trainId, departure, arrival);
+        if (legRange == null || seatTypeDeltaMap.isEmpty()) {
+            return;
+        }
+        DefaultRedisScript<Long> actual = Singleton.get(LUA_TRAIN_LEG_REMAINING_TICKET_UPDATE_PATH, () -> {
+            DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+            redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource(LUA_TRAIN_LEG_REMAINING_TICKET_UPDATE_PATH)));
+            redisScript.setResultType(Long.class);
+            return redisScript;
+        });
+        Assert.notNull(actual);
+        List<String> args = new ArrayList<>(2 + seatTypeDeltaMap.size() * 2);
+        args.add(String.valueOf(legRange[0]));
+        args.add(String.valueOf(legRange[1]));
+        seatTypeDeltaMap.forEach((seatType, delta) -> {
+            args.add(String.valueOf(seatType));
+            args.add(String.valueOf(delta));
+        });
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        stringRedisTemplate.execute(actual,
+                List.of(TRAIN_LEG_REMAINING_TICKET + trainId, TRAIN_ROUTE_REMAINING_TICKET + trainId, TRAIN_ROUTE_REMAINING_TICKET_VERSION + trainId),
+                args.toArray());
+    }
+}
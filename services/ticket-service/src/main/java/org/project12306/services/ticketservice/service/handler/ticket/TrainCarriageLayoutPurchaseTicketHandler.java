@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.lang.Pair;
+import lombok.RequiredArgsConstructor;
+import org.project12306.convention.exception.ClientException;
+import org.project12306.convention.exception.ServiceException;
+import org.project12306.services.ticketservice.dto.domain.TrainSeatBaseDTO;
+import org.project12306.services.ticketservice.dto.req.PurchaseTicketPassengerDetailDTO;
+import org.project12306.services.ticketservice.service.SeatService;
+import org.project12306.services.ticketservice.service.handler.ticket.base.AbstractTrainPurchaseTicketTemplate;
+import org.project12306.services.ticketservice.service.handler.ticket.dto.SelectSeatDTO;
+import org.project12306.services.ticketservice.service.handler.ticket.dto.TrainPurchaseTicketRespDTO;
+import org.project12306.services.ticketservice.service.handler.ticket.layout.CarriageLayout;
+import org.project12306.services.ticketservice.service.handler.ticket.layout.CarriageLayoutRegistry;
+import org.project12306.services.ticketservice.service.handler.ticket.pipeline.TrainPurchaseBatch;
+import org.project12306.services.ticketservice.service.handler.ticket.pipeline.TrainPurchasePipeline;
+import org.project12306.services.ticketservice.service.handler.ticket.select.SeatBitmapSelection;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按车厢布局购票策略
+ * <p>
+ * 所有已注册 {@link CarriageLayoutRegistry} 的车型、座位类型共用该策略：车厢座位按排构建位图，
+ * 邻座、不邻座以及用户选座均由 {@link SeatBitmapSelection} 完成；包厢、卧铺以同排（同包厢）作为邻座
+ */
+@Component
+@RequiredArgsConstructor
+public class TrainCarriageLayoutPurchaseTicketHandler extends AbstractTrainPurchaseTicketTemplate {
+
+    /**
+     * 策略标识
+     */
+    public static final String MARK = "TRAIN_CARRIAGE_LAYOUT";
+
+    private final SeatService seatService;
+
+    @Override
+    public String mark() {
+        return MARK;
+    }
+
+    @Override
+    protected List<TrainPurchaseTicketRespDTO> selectSeats(SelectSeatDTO requestParam) {
+        CarriageLayout layout = CarriageLayoutRegistry.find(requestParam.getVehicleType(), requestParam.getSeatType());
+        if (layout == null) {
+            throw new ServiceException("当前车次列车类型暂未适配");
+        }
+        String trainId = requestParam.getRequestParam().getTrainId();
+        String departure = requestParam.getRequestParam().getDeparture();
+        String arrival = requestParam.getRequestParam().getArrival();
+        List<PurchaseTicketPassengerDetailDTO> passengerSeatDetails = requestParam.getPassengerSeatDetails();
+        // 一次查询获取所有有余票车厢的座位位图快照，后续选座均在内存中完成，缩短购票锁持有时间
+        // 购票流水线批次内同一座位类型、乘车区间只查询一次，后续请求使用扣除前序请求已锁定座位的内存快照
+        TrainPurchaseBatch purchaseBatch = TrainPurchasePipeline.currentBatch();
+        Map<String, int[]> carriageSeatMaskMap = purchaseBatch != null
+                ? purchaseBatch.listAvailableSeatMask(requestParam.getSeatType(), departure, arrival, layout,
+                () -> seatService.listAvailableSeatMask(trainId, requestParam.getSeatType(), departure, arrival, layout))
+                : seatService.listAvailableSeatMask(trainId, requestParam.getSeatType(), departure, arrival, layout);
+        carriageSeatMaskMap.values().removeIf(each -> SeatBitmapSelection.countFree(each) == 0);
+        List<String> trainCarriageList = new ArrayList<>(carriageSeatMaskMap.keySet());
+        int remainingTicketSum = 0;
+        for (int[] each : carriageSeatMaskMap.values()) {
+            remainingTicketSum += SeatBitmapSelection.countFree(each);
+        }
+        if (remainingTicketSum < passengerSeatDetails.size()) {
+            throw new ServiceException("站点余票不足，请尝试更换座位类型或选择其它站点");
+        }
+        if (layout.supportChooseSeat() && CollUtil.isNotEmpty(requestParam.getRequestParam().getChooseSeats())) {
+            return findMatchSeats(layout, requestParam, trainCarriageList, carriageSeatMaskMap).getKey();
+        }
+        if (passengerSeatDetails.size() < layout.getComplexPassengerThreshold()) {
+            return selectSeats(layout, requestParam, trainCarriageList, carriageSeatMaskMap);
+        }
+        return selectComplexSeats(layout, requestParam, trainCarriageList, carriageSeatMaskMap);
+    }
+
+    /**
+     * 邻座选择：座席为同排连续座位，包厢、卧铺为同一包厢内任意铺位
+     */
+    private boolean selectAdjacent(CarriageLayout layout, int[] rowMasks, int count, int[] out, int offset) {
+        return layout.isCompartment()
+                ? SeatBitmapSelection.sameRow(rowMasks, count, out, offset)
+                : SeatBitmapSelection.adjacent(rowMasks, count, out, offset);
+    }
+
+    private Pair<List<TrainPurchaseTicketRespDTO>, Boolean> findMatchSeats(CarriageLayout layout, SelectSeatDTO requestParam, List<String> trainCarriageList, Map<String, int[]> carriageSeatMaskMap) {
+        TrainSeatBaseDTO trainSeatBaseDTO = buildTrainSeatBaseDTO(requestParam);
+        List<PurchaseTicketPassengerDetailDTO> passengerSeatDetails = trainSeatBaseDTO.getPassengerSeatDetails();
+        int passengersNumber = passengerSeatDetails.size();
+        List<String> chooseSeatList = trainSeatBaseDTO.getChooseSeatList();
+        int[] chooseSeats = new int[chooseSeatList.size()];
+        for (int i = 0; i < chooseSeats.length; i++) {
+            chooseSeats[i] = layout.parseChooseSeat(chooseSeatList.get(i));
+            if (chooseSeats[i] < 0) {
+                throw new ClientException("选座座位号不合法：" + chooseSeatList.get(i));
+            }
+        }
+        List<TrainPurchaseTicketRespDTO> actualResult = new ArrayList<>(passengersNumber);
+        Map<String, int[]> carriagesSeatMap = new HashMap<>(16);
+        int[] sureSeats = new int[Math.max(passengersNumber, chooseSeats.length)];
+        for (int i = 0; i < trainCarriageList.size(); i++) {
+            String carriagesNumber = trainCarriageList.get(i);
+            int[] rowMasks = carriageSeatMaskMap.get(carriagesNumber);
+            int vacantSeatCount = SeatBitmapSelection.countFree(rowMasks);
+            int sureSeatCount = SeatBitmapSelection.chooseSeats(rowMasks, chooseSeats, sureSeats);
+            if (sureSeatCount > 0 && vacantSeatCount >= passengersNumber) {
+                if (sureSeatCount < passengersNumber) {
+                    // 选座人数少于乘车人数，剩余乘车人按顺序补足同车厢空座
+                    int[] remainingRowMasks = rowMasks.clone();
+                    for (int k = 0; k < sureSeatCount; k++) {
+                        SeatBitmapSelection.occupy(remainingRowMasks, sureSeats[k]);
+                    }
+                    sureSeatCount += SeatBitmapSelection.nonAdjacent(remainingRowMasks, passengersNumber - sureSeatCount, sureSeats, sureSeatCount);
+                }
+                appendSeatResult(layout, actualResult, passengerSeatDetails, 0, carriagesNumber, sureSeats, Math.min(sureSeatCount, passengersNumber));
+                return new Pair<>(actualResult, Boolean.TRUE);
+            }
+            if (vacantSeatCount > 0) {
+                int[] vacantSeats = new int[vacantSeatCount];
+                SeatBitmapSelection.nonAdjacent(rowMasks, vacantSeatCount, vacantSeats);
+                carriagesSeatMap.put(carriagesNumber, vacantSeats);
+                if (i == trainCarriageList.size() - 1) {
+                    // 选座无法满足，优先分配在同一车厢，否则跨车厢拼凑
+                    for (Map.Entry<String, int[]> entry : carriagesSeatMap.entrySet()) {
+                        if (entry.getValue().length >= passengersNumber) {
+                            appendSeatResult(layout, actualResult, passengerSeatDetails, 0, entry.getKey(), entry.getValue(), passengersNumber);
+                            return new Pair<>(actualResult, Boolean.TRUE);
+                        }
+                    }
+                    int passengerIndex = 0;
+                    for (Map.Entry<String, int[]> entry : carriagesSeatMap.entrySet()) {
+                        if (passengerIndex >= passengersNumber) {
+                            break;
+                        }
+                        int seatCount = Math.min(entry.getValue().length, passengersNumber - passengerIndex);
+                        passengerIndex = appendSeatResult(layout, actualResult, passengerSeatDetails, passengerIndex, entry.getKey(), entry.getValue(), seatCount);
+                    }
+                    return new Pair<>(actualResult, Boolean.TRUE);
+                }
+            }
+        }
+        return new Pair<>(null, Boolean.FALSE);
+    }
+
+    private List<TrainPurchaseTicketRespDTO> selectSeats(CarriageLayout layout, SelectSeatDTO requestParam, List<String> trainCarriageList, Map<String, int[]> carriageSeatMaskMap) {
+        List<PurchaseTicketPassengerDetailDTO> passengerSeatDetails = requestParam.getPassengerSeatDetails();
+        int passengersNumber = passengerSeatDetails.size();
+        Map<String, Integer> demotionStockNumMap = new LinkedHashMap<>();
+        Map<String, int[]> actualSeatsMap = new HashMap<>();
+        Map<String, int[]> carriagesNumberSeatsMap = new HashMap<>();
+        for (int i = 0; i < trainCarriageList.size(); i++) {
+            String carriagesNumber = trainCarriageList.get(i);
+            int[] rowMasks = carriageSeatMaskMap.get(carriagesNumber);
+            int[] select = new int[passengersNumber];
+            if (selectAdjacent(layout, rowMasks, passengersNumber, select, 0)) {
+                carriagesNumberSeatsMap.put(carriagesNumber, select);
+                break;
+            }
+            demotionStockNumMap.putIfAbsent(carriagesNumber, SeatBitmapSelection.countFree(rowMasks));
+            actualSeatsMap.putIfAbsent(carriagesNumber, rowMasks);
+            if (i < trainCarriageList.size() - 1) {
+                continue;
+            }
+            demoteSeats(demotionStockNumMap, actualSeatsMap, carriagesNumberSeatsMap, passengersNumber);
+        }
+        return buildSeatResult(layout, carriagesNumberSeatsMap, passengerSeatDetails);
+    }
+
+    private List<TrainPurchaseTicketRespDTO> selectComplexSeats(CarriageLayout layout, SelectSeatDTO requestParam, List<String> trainCarriageList, Map<String, int[]> carriageSeatMaskMap) {
+        List<PurchaseTicketPassengerDetailDTO> passengerSeatDetails = requestParam.getPassengerSeatDetails();
+        int passengersNumber = passengerSeatDetails.size();
+        Map<String, Integer> demotionStockNumMap = new LinkedHashMap<>();
+        Map<String, int[]> actualSeatsMap = new HashMap<>();
+        Map<String, int[]> carriagesNumberSeatsMap = new HashMap<>();
+        // 多人分配同一车厢邻座：按组依次选择邻座，所有组均满足才算成功
+        for (int i = 0; i < trainCarriageList.size(); i++) {
+            String carriagesNumber = trainCarriageList.get(i);
+            int[] rowMasks = carriageSeatMaskMap.get(carriagesNumber);
+            int[] rowMasksTranscript = rowMasks.clone();
+            int[] actualSelect = new int[passengersNumber];
+            int selected = 0;
+            for (int start = 0; start < passengersNumber; start += layout.getAdjacentGroupSize()) {
+                int groupSize = Math.min(layout.getAdjacentGroupSize(), passengersNumber - start);
+                if (selectAdjacent(layout, rowMasksTranscript, groupSize, actualSelect, selected)) {
+                    selected += groupSize;
+                }
+            }
+            if (selected == passengersNumber) {
+                carriagesNumberSeatsMap.put(carriagesNumber, actualSelect);
+                break;
+            }
+            demotionStockNumMap.putIfAbsent(carriagesNumber, SeatBitmapSelection.countFree(rowMasks));
+            actualSeatsMap.putIfAbsent(carriagesNumber, rowMasks);
+        }
+        if (CollUtil.isEmpty(carriagesNumberSeatsMap)) {
+            demoteSeats(demotionStockNumMap, actualSeatsMap, carriagesNumberSeatsMap, passengersNumber);
+        }
+        return buildSeatResult(layout, carriagesNumberSeatsMap, passengerSeatDetails);
+    }
+
+    /**
+     * 邻座无法匹配时的降级分配
+     */
+    private void demoteSeats(Map<String, Integer> demotionStockNumMap, Map<String, int[]> actualSeatsMap, Map<String, int[]> carriagesNumberSeatsMap, int passengersNumber) {
+        // 如果邻座算法无法匹配，尝试对用户进行降级分配：同车厢不邻座
+        for (Map.Entry<String, Integer> entry : demotionStockNumMap.entrySet()) {
+            if (entry.getValue() > passengersNumber) {
+                int[] nonAdjacentSeats = new int[passengersNumber];
+                SeatBitmapSelection.nonAdjacent(actualSeatsMap.get(entry.getKey()), passengersNumber, nonAdjacentSeats);
+                carriagesNumberSeatsMap.put(entry.getKey(), nonAdjacentSeats);
+                return;
+            }
+        }
+        // 如果同车厢也已无法匹配，则对用户座位再次降级：不同车厢不邻座
+        int undistributedPassengerSize = passengersNumber;
+        for (Map.Entry<String, Integer> entry : demotionStockNumMap.entrySet()) {
+            int seatCount = Math.min(undistributedPassengerSize, entry.getValue());
+            if (seatCount <= 0) {
+                break;
+            }
+            int[] nonAdjacentSeats = new int[seatCount];
+            SeatBitmapSelection.nonAdjacent(actualSeatsMap.get(entry.getKey()), seatCount, nonAdjacentSeats);
+            carriagesNumberSeatsMap.put(entry.getKey(), nonAdjacentSeats);
+            undistributedPassengerSize -= seatCount;
+        }
+    }
+
+    /**
+     * 乘车人员在单一车厢座位不满足时，乘车人分布在不同车厢；座位总数与乘车人数不一致视为选座失败
+     */
+    private List<TrainPurchaseTicketRespDTO> buildSeatResult(CarriageLayout layout, Map<String, int[]> carriagesNumberSeatsMap, List<PurchaseTicketPassengerDetailDTO> passengerSeatDetails) {
+        List<TrainPurchaseTicketRespDTO> actualResult = new ArrayList<>(passengerSeatDetails.size());
+        int count = 0;
+        for (int[] each : carriagesNumberSeatsMap.values()) {
+            count += each.length;
+        }
+        if (CollUtil.isNotEmpty(carriagesNumberSeatsMap) && passengerSeatDetails.size() == count) {
+            int passengerIndex = 0;
+            for (Map.Entry<String, int[]> entry : carriagesNumberSeatsMap.entrySet()) {
+                passengerIndex = appendSeatResult(layout, actualResult, passengerSeatDetails, passengerIndex, entry.getKey(), entry.getValue(), entry.getValue().length);
+            }
+        }
+        return actualResult;
+    }
+
+    /**
+     * 将座位编码转换为乘车人座位
+     *
+     * @return 下一个待分配乘车人下标
+     */
+    private int appendSeatResult(CarriageLayout layout, List<TrainPurchaseTicketRespDTO> actualResult, List<PurchaseTicketPassengerDetailDTO> passengerSeatDetails,
+                                 int passengerIndex, String carriageNumber, int[] seats, int seatCount) {
+        for (int i = 0; i < seatCount; i++) {
+            PurchaseTicketPassengerDetailDTO currentTicketPassenger = passengerSeatDetails.get(passengerIndex++);
+            TrainPurchaseTicketRespDTO result = new TrainPurchaseTicketRespDTO();
+            result.setSeatNumber(layout.toSeatNumber(seats[i]));
+            result.setSeatType(currentTicketPassenger.getSeatType());
+            result.setCarriageNumber(carriageNumber);
+            result.setPassengerId(currentTicketPassenger.getPassengerId());
+            actualResult.add(result);
+        }
+        return passengerIndex;
+    }
+}
@@ -20,29 +20,25 @@ package org.project12306.services.ticketservice.service.handler.ticket.base;
 import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.util.StrUtil;
 import org.project12306.commons.base.ApplicationContextHolder;
-import org.project12306.commons.cache.DistributedCache;
 import org.project12306.commons.desingnpattern.strategy.AbstractExecuteStrategy;
-import org.project12306.services.ticketservice.dto.domain.RouteDTO;
 import org.project12306.services.ticketservice.dto.domain.TrainSeatBaseDTO;
-import org.project12306.services.ticketservice.service.TrainStationService;
+import org.project12306.services.ticketservice.service.cache.TrainLegRemainingTicketCache;
 import org.project12306.services.ticketservice.service.handler.ticket.dto.SelectSeatDTO;
 import org.project12306.services.ticketservice.service.handler.ticket.dto.TrainPurchaseTicketRespDTO;
+import org.project12306.services.ticketservice.service.handler.ticket.pipeline.TrainPurchasePipeline;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.core.env.ConfigurableEnvironment;
-import org.springframework.data.redis.core.StringRedisTemplate;
 
 import java.util.List;
-
-import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.TRAIN_STATION_REMAINING_TICKET;
+import java.util.Map;
 
 /**
  * 抽象高铁购票模板基础服务
  */
 public abstract class AbstractTrainPurchaseTicketTemplate implements IPurchaseTicket, CommandLineRunner, AbstractExecuteStrategy<SelectSeatDTO, List<TrainPurchaseTicketRespDTO>> {
 
-    private DistributedCache distributedCache;
     private String ticketAvailabilityCacheUpdateType;
-    private TrainStationService trainStationService;
+    private TrainLegRemainingTicketCache trainLegRemainingTicketCache;
 
     /**
      * 选择座位
@@ -79,14 +75,9 @@ public abstract class AbstractTrainPurchaseTicketTemplate implements IPurchaseTi
             String departure = requestParam.getRequestParam().getDeparture();
             String arrival = requestParam.getRequestParam().getArrival();
 
-            //根据参数的列车信息从缓存中获取对应车次的卖票信息
-            StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
-            List<RouteDTO> routeDTOList = trainStationService.listTakeoutTrainStationRoute(trainId, departure, arrival);
-
-            routeDTOList.forEach(each -> {
-                String keySuffix = StrUtil.join("_", trainId, each.getStartStation(), each.getEndStation());
-                stringRedisTemplate.opsForHash().increment(TRAIN_STATION_REMAINING_TICKET + keySuffix, String.valueOf(requestParam.getSeatType()), -actualResult.size());
-            });
+            //按区段区间一次性扣减对应座位类型的余票，事务提交后执行，购票流水线保存点回滚的请求不扣减
+            Map<Integer, Integer> seatTypeCountMap = Map.of(requestParam.getSeatType(), -actualResult.size());
+            TrainPurchasePipeline.afterCommit(() -> trainLegRemainingTicketCache.update(trainId, departure, arrival, seatTypeCountMap));
         }
         return actualResult;
     }
@@ -94,8 +85,7 @@ public abstract class AbstractTrainPurchaseTicketTemplate implements IPurchaseTi
     @Override
     public void run(String... args) throws Exception {
         //从容器中提前填充bean
-        distributedCache = ApplicationContextHolder.getBean(DistributedCache.class);
-        trainStationService = ApplicationContextHolder.getBean(TrainStationService.class);
+        trainLegRemainingTicketCache = ApplicationContextHolder.getBean(TrainLegRemainingTicketCache.class);
         //获取环境变量
         ConfigurableEnvironment configurableEnvironment = ApplicationContextHolder.getBean(ConfigurableEnvironment.class);
 
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.binlog;
+
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSON;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.services.ticketservice.mq.event.CanalBinlogEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 本地 Binlog 事件源，按行读取文件中的 Canal Flat Message JSON 交由 {@link SeatBinlogSyncHandler}
+ * 或 {@link RegionTrainStationBinlogSyncHandler} 处理
+ * <p>
+ * 用于本地联调与验证，无需部署 Canal 与 RocketMQ，向文件追加事件行即可模拟座位变更
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnExpression("'${ticket.availability.cache-update.type:}' == 'binlog' && '${ticket.binlog.source:rocketmq}' == 'local'")
+public class LocalBinlogEventSource {
+
+    private final SeatBinlogSyncHandler seatBinlogSyncHandler;
+    private final RegionTrainStationBinlogSyncHandler regionTrainStationBinlogSyncHandler;
+
+    @Value("${ticket.binlog.local.path:}")
+    private String path;
+
+    /**
+     * 已读取的文件偏移量，只处理完整的行
+     */
+    private long offset;
+
+    @Scheduled(initialDelayString = "${ticket.binlog.local.poll-interval:1000}", fixedDelayString = "${ticket.binlog.local.poll-interval:1000}")
+    public void poll() {
+        if (StrUtil.isBlank(path) || !Files.exists(Path.of(path))) {
+            return;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            if (file.length() < offset) {
+                // 文件被截断或替换，从头读取
+                offset = 0L;
+            }
+            file.seek(offset);
+            byte[] bytes = new byte[(int) (file.length() - offset)];
+            file.readFully(bytes);
+            String content = new String(bytes, StandardCharsets.UTF_8);
+            int lastLineEnd = content.lastIndexOf('\n');
+            if (lastLineEnd < 0) {
+                return;
+            }
+            for (String line : content.substring(0, lastLineEnd).split("\n")) {
+                if (StrUtil.isNotBlank(line)) {
+                    CanalBinlogEvent event = JSON.parseObject(line.trim(), CanalBinlogEvent.class);
+                    if (regionTrainStationBinlogSyncHandler.supports(event)) {
+                        regionTrainStationBinlogSyncHandler.handle(event);
+                    } else {
+                        seatBinlogSyncHandler.handle(event);
+                    }
+                }
+            }
+            offset += content.substring(0, lastLineEnd + 1).getBytes(StandardCharsets.UTF_8).length;
+        } catch (IOException ex) {
+            log.error("[Binlog 同步] 读取本地事件文件 {} 失败", path, ex);
+        }
+    }
+}
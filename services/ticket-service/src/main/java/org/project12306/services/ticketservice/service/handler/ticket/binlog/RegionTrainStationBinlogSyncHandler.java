@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.binlog;
+
+import cn.hutool.core.collection.CollUtil;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.commons.cache.DistributedCache;
+import org.project12306.services.ticketservice.common.enums.CanalExecuteStrategyMarkEnum;
+import org.project12306.services.ticketservice.mq.event.CanalBinlogEvent;
+import org.project12306.services.ticketservice.service.cache.RegionTrainStationNearCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.REGION_TRAIN_STATION;
+
+/**
+ * 列车站点关系 Binlog 同步，t_train_station_relation 变更时删除受影响地区间的车次缓存并广播各节点本地缓存失效
+ * <p>
+ * UPDATE 同时失效变更前后的地区，变更了出发或到达地区的车次从原地区查询结果中移除；
+ * 事件缺少地区字段（如 DDL）时无法确定受影响的 Key，广播全部失效
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RegionTrainStationBinlogSyncHandler {
+
+    private static final String START_REGION = "start_region";
+    private static final String END_REGION = "end_region";
+
+    private final DistributedCache distributedCache;
+    private final RegionTrainStationNearCache regionTrainStationNearCache;
+
+    /**
+     * 是否为列车站点关系表变更事件
+     *
+     * @param event Canal 变更事件
+     * @return 是否由本处理器处理
+     */
+    public boolean supports(CanalBinlogEvent event) {
+        return Objects.equals(event.getTable(), CanalExecuteStrategyMarkEnum.T_TRAIN_STATION_RELATION.getActualTable());
+    }
+
+    /**
+     * 处理一条列车站点关系变更事件，重复投递只会重复删除与广播，结果一致
+     *
+     * @param event Canal 变更事件
+     */
+    public void handle(CanalBinlogEvent event) {
+        if (Boolean.TRUE.equals(event.getIsDdl()) || CollUtil.isEmpty(event.getData())) {
+            regionTrainStationNearCache.publishInvalidate(null, null);
+            return;
+        }
+        Set<List<Object>> regionPairs = new LinkedHashSet<>();
+        List<Map<String, Object>> data = event.getData();
+        for (int i = 0; i < data.size(); i++) {
+            Map<String, Object> row = data.get(i);
+            Map<String, Object> oldRow = event.getOld() != null && i < event.getOld().size() && event.getOld().get(i) != null
+                    ? event.getOld().get(i)
+                    : Map.of();
+            Object startRegion = row.get(START_REGION);
+            Object endRegion = row.get(END_REGION);
+            if (startRegion == null || endRegion == null) {
+                regionTrainStationNearCache.publishInvalidate(null, null);
+                return;
+            }
+            regionPairs.add(List.of(startRegion, endRegion));
+            if (oldRow.containsKey(START_REGION) || oldRow.containsKey(END_REGION)) {
+                // Canal old 只包含变更过的字段，未变更的地区取当前值
+                Map<String, Object> beforeRow = new HashMap<>(row);
+                beforeRow.putAll(oldRow);
+                if (beforeRow.get(START_REGION) != null && beforeRow.get(END_REGION) != null) {
+                    regionPairs.add(List.of(beforeRow.get(START_REGION), beforeRow.get(END_REGION)));
+                }
+            }
+        }
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        for (List<Object> each : regionPairs) {
+            stringRedisTemplate.delete(String.format(REGION_TRAIN_STATION, each.get(0), each.get(1)));
+            regionTrainStationNearCache.publishInvalidate(each.get(0), each.get(1));
+        }
+        log.info("[Binlog 同步] 列车站点关系变更事件 {} 失效地区间车次缓存 {}", event.getId(), regionPairs);
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.binlog;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.crypto.SecureUtil;
+import com.alibaba.fastjson2.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.commons.cache.DistributedCache;
+import org.project12306.services.ticketservice.common.enums.CanalExecuteStrategyMarkEnum;
+import org.project12306.services.ticketservice.common.enums.SeatStatusEnum;
+import org.project12306.services.ticketservice.mq.event.CanalBinlogEvent;
+import org.project12306.services.ticketservice.service.TrainStationService;
+import org.project12306.services.ticketservice.service.cache.TrainLegRemainingTicketCache;
+import org.project12306.services.ticketservice.service.handler.ticket.waitlist.TicketWaitlist;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.*;
+
+/**
+ * 座位库存 Binlog 同步，将 Canal 座位变更事件按列车汇总为区段余票与令牌的净变化量，每列车一次脚本调用写入 Redis
+ * <p>
+ * 支持按区段拆分的 t_seat（seat_status 变更）与区段位图 t_seat_inventory（leg_mask 变更）两种库存模式；
+ * 座位占用只扣减区段余票，令牌已在购票入口扣减；座位释放同时回滚区段余票与令牌。
+ * INSERT、DELETE 为库存初始化或迁移，不改变可售数量，不做处理
+ * <p>
+ * 令牌按车票回滚：t_seat_inventory 每条变更记录为一张车票释放的区段，t_seat 一张车票的区段记录在同一条语句内解锁，
+ * 同一事件内同一座位释放的连续区段即一张车票；相邻车票不合并，避免与两张车票均重叠的站间只回滚一次
+ */
+@Slf4j
+@Component
+public class SeatBinlogSyncHandler {
+
+    private static final String LUA_TICKET_BINLOG_SYNC_PATH = "lua/ticket_binlog_sync.lua";
+    private static final String UPDATE = "UPDATE";
+
+    private final TrainStationService trainStationService;
+    private final DistributedCache distributedCache;
+    private final TicketWaitlist ticketWaitlist;
+    private final DefaultRedisScript<Long> syncScript;
+
+    @Value("${ticket.binlog.applied-ttl-seconds:86400}")
+    private long appliedTtlSeconds;
+
+    public SeatBinlogSyncHandler(TrainStationService trainStationService,
+                                 DistributedCache distributedCache,
+                                 TicketWaitlist ticketWaitlist) {
+        this.trainStationService = trainStationService;
+        this.distributedCache = distributedCache;
+        this.ticketWaitlist = ticketWaitlist;
+        this.syncScript = new DefaultRedisScript<>();
+        this.syncScript.setScriptSource(new ResourceScriptSource(new ClassPathResource(LUA_TICKET_BINLOG_SYNC_PATH)));
+        this.syncScript.setResultType(Long.class);
+    }
+
+    /**
+     * 处理一条 Canal 变更事件，同一事件重复投递时不会重复写入
+     *
+     * @param event Canal 变更事件
+     */
+    public void handle(CanalBinlogEvent event) {
+        boolean seatTable = Objects.equals(event.getTable(), CanalExecuteStrategyMarkEnum.T_SEAT.getActualTable());
+        boolean seatInventoryTable = Objects.equals(event.getTable(), CanalExecuteStrategyMarkEnum.T_SEAT_INVENTORY.getActualTable());
+        if ((!seatTable && !seatInventoryTable) || Boolean.TRUE.equals(event.getIsDdl())
+                || !UPDATE.equalsIgnoreCase(event.getType()) || CollUtil.isEmpty(event.getData())) {
+            return;
+        }
+        // 按列车、座位汇总本事件内各区段的可售变化，同一座位先占用后释放的区段净变化为 0
+        Map<String, TrainSeatChange> trainSeatChangeMap = new LinkedHashMap<>();
+        List<Map<String, Object>> data = event.getData();
+        for (int i = 0; i < data.size(); i++) {
+            Map<String, Object> row = data.get(i);
+            Map<String, Object> oldRow = event.getOld() != null && i < event.getOld().size() && event.getOld().get(i) != null
+                    ? event.getOld().get(i)
+                    : Map.of();
+            String trainId = stringValue(row.get("train_id"));
+            if (trainId == null) {
+                continue;
+            }
+            TrainSeatChange trainSeatChange = trainSeatChangeMap.computeIfAbsent(trainId, key -> new TrainSeatChange(trainStationService.listTrainStationAll(key)));
+            if (trainSeatChange.legSize() <= 0) {
+                continue;
+            }
+            SeatChange seatChange = trainSeatChange.seatChange(row.get("carriage_number") + "_" + row.get("seat_number"), Integer.parseInt(stringValue(row.get("seat_type"))));
+            if (seatTable) {
+                applySeatRow(trainSeatChange, seatChange, row, oldRow);
+            } else {
+                applySeatInventoryRow(trainSeatChange, seatChange, row, oldRow);
+            }
+        }
+        if (seatTable) {
+            trainSeatChangeMap.values().forEach(trainSeatChange -> trainSeatChange.seatChangeMap.values()
+                    .forEach(seatChange -> trainSeatChange.addReleases(seatChange.seatType(), seatChange.releasedLegs())));
+        }
+        String eventId = SecureUtil.md5(JSON.toJSONString(event));
+        trainSeatChangeMap.forEach((trainId, trainSeatChange) -> sync(eventId, trainId, trainSeatChange));
+    }
+
+    /**
+     * t_seat 每条记录为座位的一个区段，seat_status 在可售与不可售之间变化时对应区段加减 1
+     */
+    private void applySeatRow(TrainSeatChange trainSeatChange, SeatChange seatChange, Map<String, Object> row, Map<String, Object> oldRow) {
+        if (!oldRow.containsKey("seat_status")) {
+            return;
+        }
+        int startIndex = trainSeatChange.stations.indexOf(stringValue(row.get("start_station")));
+        int endIndex = trainSeatChange.stations.indexOf(stringValue(row.get("end_station")));
+        if (startIndex < 0 || endIndex != startIndex + 1) {
+            return;
+        }
+        boolean availableBefore = isAvailable(oldRow.get("seat_status"));
+        boolean availableAfter = isAvailable(row.get("seat_status"));
+        if (availableBefore != availableAfter) {
+            seatChange.legDelta()[startIndex] += availableAfter ? 1 : -1;
+        }
+        if (availableAfter && !availableBefore) {
+            seatChange.releasedLegs()[startIndex] = true;
+        }
+    }
+
+    /**
+     * t_seat_inventory 每条记录为一个座位，leg_mask 置位的区段已占用
+     */
+    private void applySeatInventoryRow(TrainSeatChange trainSeatChange, SeatChange seatChange, Map<String, Object> row, Map<String, Object> oldRow) {
+        if (!oldRow.containsKey("leg_mask")) {
+            return;
+        }
+        long legMaskBefore = Long.parseLong(stringValue(oldRow.get("leg_mask")));
+        long legMaskAfter = Long.parseLong(stringValue(row.get("leg_mask")));
+        int[] legDelta = seatChange.legDelta();
+        boolean[] releasedLegs = new boolean[legDelta.length];
+        for (int leg = 0; leg < legDelta.length; leg++) {
+            long bit = 1L << leg;
+            if ((legMaskBefore & bit) != (legMaskAfter & bit)) {
+                legDelta[leg] += (legMaskAfter & bit) == 0 ? 1 : -1;
+                releasedLegs[leg] = (legMaskAfter & bit) == 0;
+            }
+        }
+        // 每条记录单独计算释放区间，同一事件内同一座位的多张车票不合并
+        trainSeatChange.addReleases(seatChange.seatType(), releasedLegs);
+    }
+
+    private void sync(String eventId, String trainId, TrainSeatChange trainSeatChange) {
+        Map<String, Integer> legFieldDeltaMap = new LinkedHashMap<>();
+        trainSeatChange.seatChangeMap.values().forEach(seatChange -> {
+            int[] legDelta = seatChange.legDelta();
+            for (int leg = 0; leg < legDelta.length; leg++) {
+                if (legDelta[leg] != 0) {
+                    legFieldDeltaMap.merge(TrainLegRemainingTicketCache.buildField(seatChange.seatType(), leg), legDelta[leg], Integer::sum);
+                }
+            }
+        });
+        // 出发站下标_到达站下标 -> 座位类型 -> 释放车票数量
+        Map<String, Map<Integer, Long>> releaseRouteMap = new LinkedHashMap<>();
+        trainSeatChange.releaseList.forEach(release -> releaseRouteMap
+                .computeIfAbsent(release[0] + "_" + release[1], key -> new HashMap<>())
+                .merge(release[2], 1L, Long::sum));
+        legFieldDeltaMap.values().removeIf(each -> each == 0);
+        if (legFieldDeltaMap.isEmpty() && releaseRouteMap.isEmpty()) {
+            return;
+        }
+        // 开启候补时释放的令牌交由候补处理，存在候补需求的座位类型暂扣令牌优先分配给候补用户
+        boolean waitlistRelease = ticketWaitlist.isEnable();
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(appliedTtlSeconds));
+        args.add(String.valueOf(trainSeatChange.stations.size()));
+        args.add(String.valueOf(legFieldDeltaMap.size()));
+        legFieldDeltaMap.forEach((field, delta) -> {
+            args.add(field);
+            args.add(String.valueOf(delta));
+        });
+        if (!waitlistRelease) {
+            releaseRouteMap.forEach((route, seatTypeCountMap) -> seatTypeCountMap.forEach((seatType, count) -> {
+                String[] split = route.split("_");
+                args.add(split[0]);
+                args.add(split[1]);
+                args.add(String.valueOf(seatType));
+                args.add(String.valueOf(count));
+            }));
+        }
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        Long applied = stringRedisTemplate.execute(
+                syncScript,
+                List.of(TRAIN_LEG_REMAINING_TICKET + trainId, TICKET_AVAILABILITY_TOKEN_BUCKET + trainId, String.format(TICKET_BINLOG_SYNC_APPLIED, eventId, trainId),
+                        TRAIN_ROUTE_REMAINING_TICKET + trainId, TRAIN_ROUTE_REMAINING_TICKET_VERSION + trainId),
+                args.toArray());
+        boolean duplicate = applied == null || applied == 0L;
+        if (duplicate) {
+            log.info("[Binlog 同步] 列车 {} 事件 {} 区段余票已同步，忽略重复投递", trainId, eventId);
+        }
+        if (waitlistRelease) {
+            // 已同步标记在释放前设置，释放失败抛出异常由重复投递补齐，已释放的区间单独标记避免重复回滚
+            String releasedKey = String.format(TICKET_BINLOG_SYNC_RELEASED, eventId, trainId);
+            HashOperations<String, String, String> hashOperations = stringRedisTemplate.opsForHash();
+            releaseRouteMap.forEach((route, seatTypeCountMap) -> {
+                if (duplicate && hashOperations.hasKey(releasedKey, route)) {
+                    return;
+                }
+                String[] split = route.split("_");
+                ticketWaitlist.release(trainId, trainSeatChange.stations.get(Integer.parseInt(split[0])), trainSeatChange.stations.get(Integer.parseInt(split[1])), seatTypeCountMap);
+                hashOperations.put(releasedKey, route, "1");
+                stringRedisTemplate.expire(releasedKey, appliedTtlSeconds, TimeUnit.SECONDS);
+            });
+        }
+    }
+
+    private static boolean isAvailable(Object seatStatus) {
+        return Objects.equals(stringValue(seatStatus), String.valueOf(SeatStatusEnum.AVAILABLE.getCode()));
+    }
+
+    private static String stringValue(Object value) {
+        return value == null ? null : value.toString();
+    }
+
+    private static final class TrainSeatChange {
+
+        private final List<String> stations;
+        private final Map<String, SeatChange> seatChangeMap = new LinkedHashMap<>();
+
+        /**
+         * 释放的车票，每项依次为出发站下标、到达站下标、座位类型
+         */
+        private final List<int[]> releaseList = new ArrayList<>();
+
+        private TrainSeatChange(List<String> stations) {
+            this.stations = stations;
+        }
+
+        private int legSize() {
+            return stations.size() - 1;
+        }
+
+        private SeatChange seatChange(String seatKey, int seatType) {
+            return seatChangeMap.computeIfAbsent(seatKey, key -> new SeatChange(seatType, new int[legSize()], new boolean[legSize()]));
+        }
+
+        /**
+         * 连续释放的区段即一张车票的乘车区间
+         */
+        private void addReleases(int seatType, boolean[] releasedLegs) {
+            int runStart = -1;
+            for (int leg = 0; leg <= releasedLegs.length; leg++) {
+                boolean released = leg < releasedLegs.length && releasedLegs[leg];
+                if (released && runStart < 0) {
+                    runStart = leg;
+                } else if (!released && runStart >= 0) {
+                    releaseList.add(new int[]{runStart, leg, seatType});
+                    runStart = -1;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param legDelta     各区段可售数量净变化
+     * @param releasedLegs t_seat 记录由不可售变为可售的区段
+     */
+    private record SeatChange(int seatType, int[] legDelta, boolean[] releasedLegs) {
+    }
+}
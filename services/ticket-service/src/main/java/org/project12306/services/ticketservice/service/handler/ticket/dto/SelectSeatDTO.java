@@ -35,6 +35,11 @@ import java.util.List;
 @Builder
 public final class SelectSeatDTO {
 
+    /**
+     * 列车类型
+     */
+    private Integer vehicleType;
+
     /**
      * 座位类型
      */
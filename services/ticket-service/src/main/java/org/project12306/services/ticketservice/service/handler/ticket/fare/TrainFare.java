@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.fare;
+
+import org.project12306.services.ticketservice.dao.entity.TrainStationPriceDO;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 单列车不可变票价表
+ * 区间按站序编号为上三角下标，票价按 区间下标 * 席别数 + 席别下标 存放在 int 数组中，-1 表示无该席别票价
+ */
+public final class TrainFare {
+
+    /**
+     * 空票价表
+     */
+    public static final TrainFare EMPTY = new TrainFare(new String[0], new int[0], new int[0]);
+
+    private final String[] stations;
+    private final int[] seatTypes;
+    private final int[] prices;
+
+    private TrainFare(String[] stations, int[] seatTypes, int[] prices) {
+        this.stations = stations;
+        this.seatTypes = seatTypes;
+        this.prices = prices;
+    }
+
+    /**
+     * 构建票价表
+     *
+     * @param stations      按顺序排列的经停站
+     * @param trainPriceList 列车全部区间票价
+     * @return 票价表
+     */
+    public static TrainFare of(List<String> stations, List<TrainStationPriceDO> trainPriceList) {
+        if (stations == null || stations.size() < 2 || trainPriceList == null || trainPriceList.isEmpty()) {
+            return EMPTY;
+        }
+        String[] stationArray = stations.toArray(new String[0]);
+        int[] seatTypes = trainPriceList.stream()
+                .map(TrainStationPriceDO::getSeatType)
+                .filter(Objects::nonNull)
+                .mapToInt(Integer::intValue)
+                .distinct()
+                .sorted()
+                .toArray();
+        int stationSize = stationArray.length;
+        int[] prices = new int[stationSize * (stationSize - 1) / 2 * seatTypes.length];
+        Arrays.fill(prices, -1);
+        for (TrainStationPriceDO each : trainPriceList) {
+            int startIndex = indexOf(stationArray, each.getDeparture());
+            int endIndex = indexOf(stationArray, each.getArrival());
+            if (startIndex < 0 || endIndex <= startIndex || each.getSeatType() == null || each.getPrice() == null) {
+                continue;
+            }
+            int seatTypeIndex = Arrays.binarySearch(seatTypes, each.getSeatType());
+            prices[pairIndex(stationSize, startIndex, endIndex) * seatTypes.length + seatTypeIndex] = each.getPrice();
+        }
+        return new TrainFare(stationArray, seatTypes, prices);
+    }
+
+    /**
+     * 查询区间指定席别票价
+     *
+     * @param departure 出发站
+     * @param arrival   到达站
+     * @param seatType  席别
+     * @return 票价，单位分，不存在返回 -1
+     */
+    public int price(String departure, String arrival, int seatType) {
+        int startIndex = indexOf(stations, departure);
+        int endIndex = indexOf(stations, arrival);
+        int seatTypeIndex = Arrays.binarySearch(seatTypes, seatType);
+        if (startIndex < 0 || endIndex <= startIndex || seatTypeIndex < 0) {
+            return -1;
+        }
+        return prices[pairIndex(stations.length, startIndex, endIndex) * seatTypes.length + seatTypeIndex];
+    }
+
+    /**
+     * 查询区间全部席别票价，按席别升序
+     *
+     * @param trainId   列车 ID
+     * @param departure 出发站
+     * @param arrival   到达站
+     * @return 区间票价集合
+     */
+    public List<TrainStationPriceDO> listPrice(Long trainId, String departure, String arrival) {
+        int startIndex = indexOf(stations, departure);
+        int endIndex = indexOf(stations, arrival);
+        if (startIndex < 0 || endIndex <= startIndex) {
+            return Collections.emptyList();
+        }
+        int offset = pairIndex(stations.length, startIndex, endIndex) * seatTypes.length;
+        List<TrainStationPriceDO> result = new ArrayList<>(seatTypes.length);
+        for (int i = 0; i < seatTypes.length; i++) {
+            if (prices[offset + i] < 0) {
+                continue;
+            }
+            TrainStationPriceDO trainStationPriceDO = new TrainStationPriceDO();
+            trainStationPriceDO.setTrainId(trainId);
+            trainStationPriceDO.setDeparture(departure);
+            trainStationPriceDO.setArrival(arrival);
+            trainStationPriceDO.setSeatType(seatTypes[i]);
+            trainStationPriceDO.setPrice(prices[offset + i]);
+            result.add(trainStationPriceDO);
+        }
+        return result;
+    }
+
+    private static int pairIndex(int stationSize, int startIndex, int endIndex) {
+        return startIndex * (2 * stationSize - startIndex - 1) / 2 + (endIndex - startIndex - 1);
+    }
+
+    private static int indexOf(String[] stations, String station) {
+        for (int i = 0; i < stations.length; i++) {
+            if (stations[i].equals(station)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
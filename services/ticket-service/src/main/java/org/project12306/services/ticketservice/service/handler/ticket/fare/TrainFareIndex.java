@@ -0,0 +1,216 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.fare;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.google.common.collect.Lists;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.services.ticketservice.dao.entity.TrainStationDO;
+import org.project12306.services.ticketservice.dao.entity.TrainStationPriceDO;
+import org.project12306.services.ticketservice.dao.mapper.TrainStationMapper;
+import org.project12306.services.ticketservice.dao.mapper.TrainStationPriceMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 列车票价索引
+ * 启动后全量加载 t_train_station_price，按更新时间增量刷新变更列车；购票与查询链路直接读取内存票价，不再访问数据库或 Redis
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TrainFareIndex {
+
+    private static final int LOAD_BATCH_SIZE = 5000;
+
+    private final TrainStationPriceMapper trainStationPriceMapper;
+    private final TrainStationMapper trainStationMapper;
+
+    @Value("${ticket.fare.full-rebuild-interval-minutes:60}")
+    private long fullRebuildIntervalMinutes;
+
+    private final Map<Long, TrainFare> trainFareMap = new ConcurrentHashMap<>();
+    private Date lastUpdateTime;
+    private long lastFullRebuildTime;
+
+    /**
+     * 查询区间指定席别票价
+     *
+     * @param trainId   列车 ID
+     * @param departure 出发站
+     * @param arrival   到达站
+     * @param seatType  席别
+     * @return 票价，单位分，不存在返回 null
+     */
+    public Integer getPrice(String trainId, String departure, String arrival, Integer seatType) {
+        int price = getTrainFare(Long.parseLong(trainId)).price(departure, arrival, seatType);
+        return price < 0 ? null : price;
+    }
+
+    /**
+     * 查询区间全部席别票价，按席别升序
+     *
+     * @param trainId   列车 ID
+     * @param departure 出发站
+     * @param arrival   到达站
+     * @return 区间票价集合
+     */
+    public List<TrainStationPriceDO> listTrainStationPrice(String trainId, String departure, String arrival) {
+        Long actualTrainId = Long.parseLong(trainId);
+        return getTrainFare(actualTrainId).listPrice(actualTrainId, departure, arrival);
+    }
+
+    /**
+     * 刷新票价索引
+     */
+    @Scheduled(initialDelayString = "${ticket.fare.refresh-initial-delay:0}", fixedDelayString = "${ticket.fare.refresh-interval:60000}")
+    public synchronized void refresh() {
+        try {
+            if (lastUpdateTime == null || System.currentTimeMillis() - lastFullRebuildTime >= TimeUnit.MINUTES.toMillis(fullRebuildIntervalMinutes)) {
+                rebuildAll();
+            } else {
+                rebuildIncrement();
+            }
+        } catch (Throwable ex) {
+            log.error("[票价索引] 刷新失败", ex);
+        }
+    }
+
+    private TrainFare getTrainFare(Long trainId) {
+        TrainFare trainFare = trainFareMap.get(trainId);
+        if (trainFare == null) {
+            // 索引尚未加载或新增列车时按列车回源，无票价列车以空票价表占位直至下次刷新
+            trainFare = trainFareMap.computeIfAbsent(trainId, key -> buildTrainFare(List.of(key)).getOrDefault(key, TrainFare.EMPTY));
+        }
+        return trainFare;
+    }
+
+    private void rebuildAll() {
+        long startTime = System.currentTimeMillis();
+        Map<Long, List<TrainStationPriceDO>> trainPriceMap = new HashMap<>();
+        Date maxUpdateTime = null;
+        long lastId = 0L;
+        List<TrainStationPriceDO> trainPriceList;
+        do {
+            trainPriceList = trainStationPriceMapper.selectList(Wrappers.lambdaQuery(TrainStationPriceDO.class)
+                    .gt(TrainStationPriceDO::getId, lastId)
+                    .orderByAsc(TrainStationPriceDO::getId)
+                    .last("limit " + LOAD_BATCH_SIZE));
+            for (TrainStationPriceDO each : trainPriceList) {
+                trainPriceMap.computeIfAbsent(each.getTrainId(), key -> new ArrayList<>()).add(each);
+                maxUpdateTime = later(maxUpdateTime, each.getUpdateTime());
+                lastId = each.getId();
+            }
+        } while (trainPriceList.size() == LOAD_BATCH_SIZE);
+        Map<Long, List<String>> trainStationMap = listTrainStation(null);
+        Map<Long, TrainFare> newTrainFareMap = new HashMap<>(trainPriceMap.size() << 1);
+        trainPriceMap.forEach((trainId, priceList) -> newTrainFareMap.put(trainId, TrainFare.of(trainStationMap.get(trainId), priceList)));
+        trainFareMap.putAll(newTrainFareMap);
+        trainFareMap.keySet().retainAll(newTrainFareMap.keySet());
+        lastUpdateTime = later(maxUpdateTime, lastUpdateTime == null ? new Date(0L) : lastUpdateTime);
+        lastFullRebuildTime = startTime;
+        log.info("[票价索引] 全量构建完成，列车数：{}，耗时：{} ms", newTrainFareMap.size(), System.currentTimeMillis() - startTime);
+    }
+
+    private void rebuildIncrement() {
+        List<TrainStationPriceDO> changedTrainPriceList = trainStationPriceMapper.selectList(Wrappers.lambdaQuery(TrainStationPriceDO.class)
+                .gt(TrainStationPriceDO::getUpdateTime, lastUpdateTime)
+                .select(TrainStationPriceDO::getTrainId, TrainStationPriceDO::getUpdateTime));
+        List<TrainStationDO> changedTrainStationList = trainStationMapper.selectList(Wrappers.lambdaQuery(TrainStationDO.class)
+                .gt(TrainStationDO::getUpdateTime, lastUpdateTime)
+                .select(TrainStationDO::getTrainId, TrainStationDO::getUpdateTime));
+        Set<Long> changedTrainIds = new HashSet<>();
+        Date maxUpdateTime = lastUpdateTime;
+        for (TrainStationPriceDO each : changedTrainPriceList) {
+            changedTrainIds.add(each.getTrainId());
+            maxUpdateTime = later(maxUpdateTime, each.getUpdateTime());
+        }
+        for (TrainStationDO each : changedTrainStationList) {
+            changedTrainIds.add(each.getTrainId());
+            maxUpdateTime = later(maxUpdateTime, each.getUpdateTime());
+        }
+        if (changedTrainIds.isEmpty()) {
+            return;
+        }
+        Map<Long, TrainFare> changedTrainFareMap = buildTrainFare(changedTrainIds);
+        changedTrainIds.forEach(each -> trainFareMap.put(each, changedTrainFareMap.getOrDefault(each, TrainFare.EMPTY)));
+        lastUpdateTime = maxUpdateTime;
+        log.info("[票价索引] 增量更新列车数：{}", changedTrainIds.size());
+    }
+
+    private Map<Long, TrainFare> buildTrainFare(Collection<Long> trainIds) {
+        Map<Long, TrainFare> result = new HashMap<>(trainIds.size() << 1);
+        for (List<Long> each : Lists.partition(new ArrayList<>(trainIds), 500)) {
+            Map<Long, List<TrainStationPriceDO>> trainPriceMap = trainStationPriceMapper.selectList(Wrappers.lambdaQuery(TrainStationPriceDO.class)
+                            .in(TrainStationPriceDO::getTrainId, each))
+                    .stream()
+                    .collect(Collectors.groupingBy(TrainStationPriceDO::getTrainId));
+            Map<Long, List<String>> trainStationMap = listTrainStation(each);
+            trainPriceMap.forEach((trainId, priceList) -> result.put(trainId, TrainFare.of(trainStationMap.get(trainId), priceList)));
+        }
+        return result;
+    }
+
+    /**
+     * 查询列车按站序排列的经停站
+     *
+     * @param trainIds 列车 ID 集合，为空时查询全部列车
+     */
+    private Map<Long, List<String>> listTrainStation(List<Long> trainIds) {
+        List<TrainStationDO> trainStationList = trainStationMapper.selectList(Wrappers.lambdaQuery(TrainStationDO.class)
+                .in(trainIds != null, TrainStationDO::getTrainId, trainIds)
+                .select(TrainStationDO::getId, TrainStationDO::getTrainId, TrainStationDO::getSequence, TrainStationDO::getDeparture));
+        return trainStationList.stream()
+                .collect(Collectors.groupingBy(
+                        TrainStationDO::getTrainId,
+                        Collectors.collectingAndThen(Collectors.toList(), list -> list.stream()
+                                .sorted(Comparator.comparingInt(TrainFareIndex::sequence).thenComparing(TrainStationDO::getId))
+                                .map(TrainStationDO::getDeparture)
+                                .toList())));
+    }
+
+    private static int sequence(TrainStationDO trainStationDO) {
+        try {
+            return Integer.parseInt(trainStationDO.getSequence());
+        } catch (NumberFormatException | NullPointerException ex) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    private Date later(Date time1, Date time2) {
+        if (time1 == null) {
+            return time2;
+        }
+        return time2 != null && time2.after(time1) ? time2 : time1;
+    }
+}
@@ -17,23 +17,20 @@
 
 package org.project12306.services.ticketservice.service.handler.ticket.filter.purchase;
 
-import cn.hutool.core.util.StrUtil;
 import lombok.RequiredArgsConstructor;
-import org.project12306.commons.cache.DistributedCache;
 import org.project12306.convention.exception.ClientException;
 import org.project12306.services.ticketservice.dto.req.PurchaseTicketPassengerDetailDTO;
 import org.project12306.services.ticketservice.dto.req.PurchaseTicketReqDTO;
 import org.project12306.services.ticketservice.service.cache.SeatMarginCacheLoader;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.project12306.services.ticketservice.service.cache.TrainLegRemainingTicketCache;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
-import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.TRAIN_STATION_REMAINING_TICKET;
-
 /**
  * 购票流程过滤器之验证列车站点库存是否充足
  */
@@ -42,13 +39,11 @@ import static org.project12306.services.ticketservice.common.constant.RedisKeyCo
 public class TrainPurchaseTicketParamStockChainHandler implements TrainPurchaseTicketChainFilter<PurchaseTicketReqDTO> {
 
     private final SeatMarginCacheLoader seatMarginCacheLoader;
-    private final DistributedCache distributedCache;
+    private final TrainLegRemainingTicketCache trainLegRemainingTicketCache;
 
     @Override
     public void handler(PurchaseTicketReqDTO requestParam) {
         // 车次站点是否还有余票。如果用户提交多个乘车人非同一座位类型，拆分验证
-        String keySuffix = StrUtil.join("_", requestParam.getTrainId(), requestParam.getDeparture(), requestParam.getArrival());
-        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
         //从请求参数中获取购票的所有乘车人信息
         List<PurchaseTicketPassengerDetailDTO> passengerDetails = requestParam.getPassengers();
 
@@ -56,11 +51,12 @@ public class TrainPurchaseTicketParamStockChainHandler implements TrainPurchaseT
         Map<Integer, List<PurchaseTicketPassengerDetailDTO>> seatTypeMap = passengerDetails.stream()
                 .collect(Collectors.groupingBy(PurchaseTicketPassengerDetailDTO::getSeatType));
 
-        //验证是否所有的座位类型都还有余票
+        //读取站间余票快照，快照未加载时由数据库按站间精确统计重建
+        Map<Integer, Integer> remainingTicketMap = trainLegRemainingTicketCache.listRemainingTicket(
+                requestParam.getTrainId(), requestParam.getDeparture(), requestParam.getArrival(), new ArrayList<>(seatTypeMap.keySet()));
         seatTypeMap.forEach((seatType, passengerSeatDetails) -> {
-            Object stockObj = stringRedisTemplate.opsForHash().get(TRAIN_STATION_REMAINING_TICKET + keySuffix, String.valueOf(seatType));
-            int stock = Optional.ofNullable(stockObj).map(each -> Integer.parseInt(each.toString())).orElseGet(() -> {
-                Map<String, String> seatMarginMap = seatMarginCacheLoader.load(String.valueOf(requestParam.getTrainId()), String.valueOf(seatType), requestParam.getDeparture(), requestParam.getArrival());
+            int stock = Optional.ofNullable(remainingTicketMap).map(each -> each.get(seatType)).orElseGet(() -> {
+                Map<String, String> seatMarginMap = seatMarginCacheLoader.load(String.valueOf(requestParam.getTrainId()), requestParam.getDeparture(), requestParam.getArrival());
                 return Optional.ofNullable(seatMarginMap.get(String.valueOf(seatType))).map(Integer::parseInt).orElse(0);
             });
             if (stock >= passengerSeatDetails.size()) {
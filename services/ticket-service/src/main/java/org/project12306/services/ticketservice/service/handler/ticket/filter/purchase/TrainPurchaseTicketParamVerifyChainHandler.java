@@ -33,6 +33,8 @@ import org.project12306.services.ticketservice.dao.mapper.TrainStationMapper;
 import org.project12306.services.ticketservice.dto.req.PurchaseTicketReqDTO;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
@@ -86,8 +88,11 @@ public class TrainPurchaseTicketParamVerifyChainHandler implements TrainPurchase
                 () -> {
                     LambdaQueryWrapper<TrainStationDO> queryWrapper = Wrappers.lambdaQuery(TrainStationDO.class)
                             .eq(TrainStationDO::getTrainId, requestParam.getTrainId())
-                            .select(TrainStationDO::getDeparture);
-                    List<TrainStationDO> actualTrainStationList = trainStationMapper.selectList(queryWrapper);
+                            .orderByAsc(TrainStationDO::getSequence)
+                            .select(TrainStationDO::getSequence, TrainStationDO::getDeparture);
+                    List<TrainStationDO> actualTrainStationList = new ArrayList<>(trainStationMapper.selectList(queryWrapper));
+                    // 与 TrainStationService#listTrainStationAll 共用缓存，按站序数值排序
+                    actualTrainStationList.sort(Comparator.comparingInt(each -> Integer.parseInt(each.getSequence())));
                     return CollUtil.isNotEmpty(actualTrainStationList) ? JSON.toJSONString(actualTrainStationList) : null;
                 },
                 Index12306Constant.ADVANCE_TICKET_DAY,
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.inventory;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.google.common.collect.Lists;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.convention.exception.ServiceException;
+import org.project12306.services.ticketservice.common.enums.SeatStatusEnum;
+import org.project12306.services.ticketservice.dao.entity.SeatDO;
+import org.project12306.services.ticketservice.dao.entity.SeatInventoryDO;
+import org.project12306.services.ticketservice.dao.mapper.SeatInventoryMapper;
+import org.project12306.services.ticketservice.dao.mapper.SeatMapper;
+import org.project12306.services.ticketservice.service.TrainStationService;
+import org.project12306.services.ticketservice.toolkit.SeatLegMaskUtil;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 座位库存迁移
+ * 将按区段拆分的 t_seat 座位记录合并为每个座位一条的区段位图记录
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SeatInventoryMigrator {
+
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    private final SeatMapper seatMapper;
+    private final SeatInventoryMapper seatInventoryMapper;
+    private final TrainStationService trainStationService;
+
+    /**
+     * 迁移列车座位库存，独立事务提交，避免购票事务回滚时丢失迁移结果
+     *
+     * @param trainId 列车 ID
+     * @return 迁移座位数量
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW, rollbackFor = Throwable.class)
+    public int migrate(String trainId) {
+        List<String> stations = trainStationService.listTrainStationAll(trainId);
+        if (stations.size() < 2) {
+            return 0;
+        }
+        if (stations.size() - 1 > SeatLegMaskUtil.MAX_LEG_SIZE) {
+            throw new ServiceException(String.format("列车 [%s] 经停站数量超出座位区段位图上限", trainId));
+        }
+        Map<String, Integer> stationIndexMap = new HashMap<>();
+        for (int i = 0; i < stations.size(); i++) {
+            stationIndexMap.put(stations.get(i), i);
+        }
+        // 每个座位在首个区段都有一条记录，以此获取列车全部座位
+        LambdaQueryWrapper<SeatDO> seatQueryWrapper = Wrappers.lambdaQuery(SeatDO.class)
+                .eq(SeatDO::getTrainId, trainId)
+                .eq(SeatDO::getStartStation, stations.get(0))
+                .eq(SeatDO::getEndStation, stations.get(1))
+                .select(SeatDO::getCarriageNumber, SeatDO::getSeatNumber, SeatDO::getSeatType);
+        List<SeatDO> seatDOList = seatMapper.selectList(seatQueryWrapper);
+        // 锁定座位时沿途相邻站点记录同样会被锁定，相邻站点记录的状态即对应区段的占用状态
+        LambdaQueryWrapper<SeatDO> occupiedQueryWrapper = Wrappers.lambdaQuery(SeatDO.class)
+                .eq(SeatDO::getTrainId, trainId)
+                .ne(SeatDO::getSeatStatus, SeatStatusEnum.AVAILABLE.getCode())
+                .select(SeatDO::getCarriageNumber, SeatDO::getSeatNumber, SeatDO::getStartStation, SeatDO::getEndStation);
+        Map<String, Long> legMaskMap = new HashMap<>();
+        for (SeatDO each : seatMapper.selectList(occupiedQueryWrapper)) {
+            Integer startIndex = stationIndexMap.get(each.getStartStation());
+            Integer endIndex = stationIndexMap.get(each.getEndStation());
+            if (startIndex != null && endIndex != null && endIndex == startIndex + 1) {
+                legMaskMap.merge(each.getCarriageNumber() + "_" + each.getSeatNumber(), 1L << startIndex, (a, b) -> a | b);
+            }
+        }
+        List<SeatInventoryDO> seatInventoryDOList = seatDOList.stream()
+                .map(each -> SeatInventoryDO.builder()
+                        .trainId(Long.parseLong(trainId))
+                        .carriageNumber(each.getCarriageNumber())
+                        .seatNumber(each.getSeatNumber())
+                        .seatType(each.getSeatType())
+                        .legMask(legMaskMap.getOrDefault(each.getCarriageNumber() + "_" + each.getSeatNumber(), 0L))
+                        .build())
+                .toList();
+        Lists.partition(seatInventoryDOList, INSERT_BATCH_SIZE).forEach(seatInventoryMapper::insertBatch);
+        log.info("列车 [{}] 座位库存迁移完成，座位数量：{}", trainId, seatInventoryDOList.size());
+        return seatInventoryDOList.size();
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.inventory;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.commons.cache.DistributedCache;
+import org.project12306.services.ticketservice.common.enums.VehicleTypeEnum;
+import org.project12306.services.ticketservice.dao.entity.TrainDO;
+import org.project12306.services.ticketservice.dao.mapper.TrainMapper;
+import org.project12306.services.ticketservice.service.SeatService;
+import org.project12306.services.ticketservice.service.TrainStationService;
+import org.project12306.services.ticketservice.service.cache.TrainLegRemainingTicketCache;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.*;
+
+/**
+ * 库存对账，按列车增量比对 Redis 余量令牌桶、区段余票与数据库座位库存，发现偏差后以比较并设置方式修复
+ * <p>
+ * 购票先扣令牌后落库，回滚先解锁座位后归还令牌，进行中的请求会造成短暂偏差；
+ * 数据库查询前后 Redis 值发生变化的 Field 本轮跳过，同一 Field 连续两轮观测到相同的值与偏差才修复
+ */
+@Slf4j
+@Component
+public class SeatInventoryReconciler {
+
+    private static final String LUA_STOCK_RECONCILE_CAS_PATH = "lua/stock_reconcile_compare_and_set.lua";
+    private static final String TOKEN_BUCKET = "token_bucket";
+    private static final String LEG_REMAINING = "leg_remaining";
+
+    private final TrainMapper trainMapper;
+    private final TrainStationService trainStationService;
+    private final SeatService seatService;
+    private final DistributedCache distributedCache;
+    private final RedissonClient redissonClient;
+    private final TrainLegRemainingTicketCache trainLegRemainingTicketCache;
+    private final DefaultRedisScript<Long> compareAndSetScript;
+    private final Map<String, DistributionSummary> driftSummaryMap = new HashMap<>();
+    private final Map<String, Counter> repairCounterMap = new HashMap<>();
+    private final AtomicLong roundDrift = new AtomicLong();
+
+    /**
+     * 上一轮存在偏差的列车，Key 为列车 ID，Value 为 结构:Field -> 观测值_数据库值
+     */
+    private final ConcurrentHashMap<String, Map<String, String>> suspectMap = new ConcurrentHashMap<>();
+
+    @Value("${ticket.reconcile.enable:false}")
+    private boolean enable;
+
+    @Value("${ticket.reconcile.batch-size:20}")
+    private int batchSize;
+
+    public SeatInventoryReconciler(TrainMapper trainMapper,
+                                   TrainStationService trainStationService,
+                                   SeatService seatService,
+                                   DistributedCache distributedCache,
+                                   RedissonClient redissonClient,
+                                   TrainLegRemainingTicketCache trainLegRemainingTicketCache,
+                                   MeterRegistry meterRegistry) {
+        this.trainMapper = trainMapper;
+        this.trainStationService = trainStationService;
+        this.seatService = seatService;
+        this.distributedCache = distributedCache;
+        this.redissonClient = redissonClient;
+        this.trainLegRemainingTicketCache = trainLegRemainingTicketCache;
+        this.compareAndSetScript = new DefaultRedisScript<>();
+        this.compareAndSetScript.setScriptSource(new ResourceScriptSource(new ClassPathResource(LUA_STOCK_RECONCILE_CAS_PATH)));
+        this.compareAndSetScript.setResultType(Long.class);
+        for (String structure : List.of(TOKEN_BUCKET, LEG_REMAINING)) {
+            driftSummaryMap.put(structure, DistributionSummary.builder("ticket.reconcile.drift")
+                    .description("库存对账单个 Field 与数据库库存偏差绝对值")
+                    .tag("structure", structure)
+                    .register(meterRegistry));
+            repairCounterMap.put(structure, Counter.builder("ticket.reconcile.repaired")
+                    .description("库存对账修复 Field 数量")
+                    .tag("structure", structure)
+                    .register(meterRegistry));
+        }
+        Gauge.builder("ticket.reconcile.round_drift", roundDrift, AtomicLong::get)
+                .description("最近一轮库存对账偏差绝对值合计")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 每轮最多对账 batch-size 列车，优先复核上一轮存在偏差的列车，剩余额度按列车 ID 游标继续遍历已开售未发车列车
+     */
+    @Scheduled(initialDelayString = "${ticket.reconcile.interval:30000}", fixedDelayString = "${ticket.reconcile.interval:30000}")
+    public void reconcile() {
+        if (!enable) {
+            return;
+        }
+        RLock lock = redissonClient.getLock(LOCK_SEAT_INVENTORY_RECONCILE);
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            Map<Long, TrainDO> trainDOMap = new LinkedHashMap<>();
+            List<Long> suspectTrainIds = suspectMap.keySet().stream().limit(batchSize).map(Long::parseLong).toList();
+            if (!suspectTrainIds.isEmpty()) {
+                trainMapper.selectBatchIds(suspectTrainIds).forEach(each -> trainDOMap.put(each.getId(), each));
+                // 已下线的列车不再复核
+                suspectTrainIds.stream().filter(each -> !trainDOMap.containsKey(each)).forEach(each -> suspectMap.remove(String.valueOf(each)));
+            }
+            if (trainDOMap.size() < batchSize) {
+                nextTrains(batchSize - trainDOMap.size()).forEach(each -> trainDOMap.putIfAbsent(each.getId(), each));
+            }
+            long drift = 0L;
+            for (TrainDO each : trainDOMap.values()) {
+                try {
+                    drift += reconcile(each);
+                } catch (Throwable ex) {
+                    log.error("[库存对账] 列车 {} 对账异常", each.getId(), ex);
+                }
+            }
+            roundDrift.set(drift);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<TrainDO> nextTrains(int limit) {
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        String cursor = stringRedisTemplate.opsForValue().get(SEAT_INVENTORY_RECONCILE_CURSOR);
+        Date now = new Date();
+        List<TrainDO> trainDOList = trainMapper.selectList(Wrappers.lambdaQuery(TrainDO.class)
+                .le(TrainDO::getSaleTime, now)
+                .gt(TrainDO::getDepartureTime, now)
+                .gt(TrainDO::getId, StrUtil.isBlank(cursor) ? 0L : Long.parseLong(cursor))
+                .orderByAsc(TrainDO::getId)
+                .last("limit " + limit));
+        // 遍历到末尾后游标归零，下一轮从头开始
+        String nextCursor = trainDOList.size() < limit ? "0" : String.valueOf(trainDOList.get(trainDOList.size() - 1).getId());
+        stringRedisTemplate.opsForValue().set(SEAT_INVENTORY_RECONCILE_CURSOR, nextCursor);
+        return trainDOList;
+    }
+
+    /**
+     * 对账单列车，未加载的令牌桶或区段余票不做处理
+     *
+     * @param trainDO 列车信息
+     * @return 本次发现的偏差绝对值合计
+     */
+    private long reconcile(TrainDO trainDO) {
+        String trainId = String.valueOf(trainDO.getId());
+        List<String> stations = trainStationService.listTrainStationAll(trainId);
+        List<Integer> seatTypes = VehicleTypeEnum.findSeatTypesByCode(trainDO.getTrainType());
+        if (stations.size() < 2 || seatTypes.isEmpty()) {
+            suspectMap.remove(trainId);
+            return 0L;
+        }
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        String tokenBucketKey = TICKET_AVAILABILITY_TOKEN_BUCKET + trainId;
+        String legRemainingKey = TRAIN_LEG_REMAINING_TICKET + trainId;
+        Map<String, String> tokenBucketBefore = entries(stringRedisTemplate, tokenBucketKey);
+        Map<String, String> legRemainingBefore = entries(stringRedisTemplate, legRemainingKey);
+        if (tokenBucketBefore.isEmpty() && legRemainingBefore.isEmpty()) {
+            suspectMap.remove(trainId);
+            return 0L;
+        }
+        Map<String, String> tokenBucketExpected = new HashMap<>();
+        if (!tokenBucketBefore.isEmpty()) {
+            seatService.listRouteSeatTypeCount(trainId, stations, seatTypes).forEach((seatType, routeSeatCounts) -> {
+                for (int i = 0; i < stations.size() - 1; i++) {
+                    for (int j = i + 1; j < stations.size(); j++) {
+                        tokenBucketExpected.put(StrUtil.join("_", i, j, seatType), String.valueOf(routeSeatCounts[i][j]));
+                    }
+                }
+            });
+        }
+        Map<String, String> legRemainingExpected = new HashMap<>();
+        if (!legRemainingBefore.isEmpty()) {
+            seatService.listLegSeatTypeCount(trainId, stations, seatTypes).forEach((seatType, legSeatCounts) -> {
+                for (int i = 0; i < legSeatCounts.length; i++) {
+                    legRemainingExpected.put(TrainLegRemainingTicketCache.buildField(seatType, i), String.valueOf(legSeatCounts[i]));
+                }
+            });
+        }
+        // 数据库查询后再次读取，期间发生变化的 Field 存在进行中的购票或回滚
+        Map<String, String> tokenBucketAfter = tokenBucketBefore.isEmpty() ? Collections.emptyMap() : entries(stringRedisTemplate, tokenBucketKey);
+        Map<String, String> legRemainingAfter = legRemainingBefore.isEmpty() ? Collections.emptyMap() : entries(stringRedisTemplate, legRemainingKey);
+        Map<String, String> previousSuspects = suspectMap.getOrDefault(trainId, Collections.emptyMap());
+        Map<String, String> suspects = new HashMap<>();
+        long drift = reconcile(stringRedisTemplate, trainId, TOKEN_BUCKET, tokenBucketKey, tokenBucketBefore, tokenBucketAfter, tokenBucketExpected, previousSuspects, suspects)
+                + reconcile(stringRedisTemplate, trainId, LEG_REMAINING, legRemainingKey, legRemainingBefore, legRemainingAfter, legRemainingExpected, previousSuspects, suspects);
+        if (suspects.isEmpty()) {
+            suspectMap.remove(trainId);
+        } else {
+            suspectMap.put(trainId, suspects);
+        }
+        return drift;
+    }
+
+    private long reconcile(StringRedisTemplate stringRedisTemplate, String trainId, String structure, String key,
+                           Map<String, String> before, Map<String, String> after, Map<String, String> expected,
+                           Map<String, String> previousSuspects, Map<String, String> suspects) {
+        long drift = 0L;
+        List<String> args = new ArrayList<>();
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            String field = entry.getKey();
+            String observed = before.get(field);
+            if (observed == null || !observed.equals(after.get(field)) || observed.equals(entry.getValue())) {
+                continue;
+            }
+            long fieldDrift = Math.abs(Long.parseLong(observed) - Long.parseLong(entry.getValue()));
+            drift += fieldDrift;
+            driftSummaryMap.get(structure).record(fieldDrift);
+            String suspectKey = structure + ":" + field;
+            String suspectValue = observed + "_" + entry.getValue();
+            if (suspectValue.equals(previousSuspects.get(suspectKey))) {
+                args.add(field);
+                args.add(observed);
+                args.add(entry.getValue());
+            } else {
+                suspects.put(suspectKey, suspectValue);
+            }
+        }
+        if (!args.isEmpty()) {
+            Long repaired = stringRedisTemplate.execute(compareAndSetScript, List.of(key), args.toArray());
+            long repairedCount = repaired == null ? 0L : repaired;
+            repairCounterMap.get(structure).increment(repairedCount);
+            if (LEG_REMAINING.equals(structure) && repairedCount > 0) {
+                // 区段余票被修复说明站间余票快照可能基于偏差期间的数据，一并失效
+                trainLegRemainingTicketCache.invalidateRoute(trainId);
+            }
+            log.warn("[库存对账] 列车 {} {} 存在持续偏差 {} 个 Field，已修复 {} 个", trainId, structure, args.size() / 3, repairedCount);
+        }
+        return drift;
+    }
+
+    private Map<String, String> entries(StringRedisTemplate stringRedisTemplate, String key) {
+        Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(key);
+        Map<String, String> result = new HashMap<>(entries.size());
+        entries.forEach((field, value) -> result.put(field.toString(), value.toString()));
+        return result;
+    }
+}
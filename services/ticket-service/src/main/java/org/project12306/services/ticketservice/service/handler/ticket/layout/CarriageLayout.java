@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.layout;
+
+import lombok.Getter;
+import org.project12306.services.ticketservice.service.handler.ticket.select.SeatBitmapSelection;
+
+import java.util.Collection;
+
+/**
+ * 车厢布局描述
+ * <p>
+ * 车厢由若干排（卧铺为包厢）组成，每排最多 31 个座位/铺位，座位号格式由 {@link SeatNumberFormat} 决定。
+ * 座位在位图中的编码见 {@link SeatBitmapSelection}
+ */
+@Getter
+public final class CarriageLayout {
+
+    /**
+     * 座位号格式
+     */
+    public enum SeatNumberFormat {
+
+        /**
+         * 排号 + 列字母，如 01A、12F
+         */
+        ROW_COLUMN,
+
+        /**
+         * 铺位号 + 铺位，如 001下、006上，铺位号在车厢内按包厢顺序连续编号
+         */
+        BERTH,
+
+        /**
+         * 顺序号，如 001、108
+         */
+        SEQUENCE
+    }
+
+    /**
+     * 交通工具类型，见 {@link org.project12306.services.ticketservice.common.enums.VehicleTypeEnum}
+     */
+    private final Integer vehicleType;
+
+    /**
+     * 座位类型，见 {@link org.project12306.services.ticketservice.common.enums.VehicleSeatTypeEnum}
+     */
+    private final Integer seatType;
+
+    /**
+     * 排数（卧铺为包厢数）
+     */
+    private final int rows;
+
+    /**
+     * 每排列标识：座席为列字母，卧铺为铺位，顺序号格式不使用
+     */
+    private final String[] columnLabels;
+
+    private final SeatNumberFormat seatNumberFormat;
+
+    /**
+     * 是否按包厢分配：为 true 时同排任意空位即视为邻座
+     */
+    private final boolean compartment;
+
+    /**
+     * 多人购票时每组邻座人数
+     */
+    private final int adjacentGroupSize;
+
+    /**
+     * 乘车人数达到该值时按组分配邻座
+     */
+    private final int complexPassengerThreshold;
+
+    /**
+     * 列字母拼接，用于 ROW_COLUMN 格式解析
+     */
+    private final String columnLetters;
+
+    CarriageLayout(Integer vehicleType, Integer seatType, int rows, String[] columnLabels, SeatNumberFormat seatNumberFormat,
+                   boolean compartment, int adjacentGroupSize, int complexPassengerThreshold) {
+        if (columnLabels.length == 0 || columnLabels.length >= Integer.SIZE) {
+            throw new IllegalArgumentException("每排座位数需在 1 ~ 31 之间");
+        }
+        this.vehicleType = vehicleType;
+        this.seatType = seatType;
+        this.rows = rows;
+        this.columnLabels = columnLabels;
+        this.seatNumberFormat = seatNumberFormat;
+        this.compartment = compartment;
+        this.adjacentGroupSize = adjacentGroupSize;
+        this.complexPassengerThreshold = complexPassengerThreshold;
+        this.columnLetters = String.join("", columnLabels);
+    }
+
+    public int getColumns() {
+        return columnLabels.length;
+    }
+
+    /**
+     * 是否支持用户选座，仅排号 + 列字母格式支持
+     */
+    public boolean supportChooseSeat() {
+        return seatNumberFormat == SeatNumberFormat.ROW_COLUMN;
+    }
+
+    /**
+     * 将可用座位号构建为每排座位位图
+     */
+    public int[] buildRowMasks(Collection<String> availableSeats) {
+        int[] rowMasks = new int[rows];
+        for (String each : availableSeats) {
+            markAvailable(rowMasks, each);
+        }
+        return rowMasks;
+    }
+
+    /**
+     * 在座位位图中标记座位空闲，无法解析的座位号忽略
+     *
+     * @return 座位号是否符合车厢布局
+     */
+    public boolean markAvailable(int[] rowMasks, String seatNumber) {
+        int seat = parseSeatNumber(seatNumber);
+        if (seat < 0) {
+            return false;
+        }
+        rowMasks[SeatBitmapSelection.row(seat)] |= 1 << SeatBitmapSelection.column(seat);
+        return true;
+    }
+
+    /**
+     * 解析座位号
+     *
+     * @return 座位编码，无法解析或超出车厢范围返回 -1
+     */
+    public int parseSeatNumber(String seatNumber) {
+        if (seatNumberFormat == SeatNumberFormat.ROW_COLUMN) {
+            int seat = SeatBitmapSelection.parseSeatNumber(seatNumber, columnLetters);
+            return seat >= 0 && SeatBitmapSelection.row(seat) < rows ? seat : -1;
+        }
+        int length = seatNumber == null ? 0 : seatNumber.length();
+        int number = 0;
+        int i = 0;
+        for (; i < length; i++) {
+            char c = seatNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            number = number * 10 + (c - '0');
+        }
+        if (i == 0 || number < 1 || number > rows * columnLabels.length) {
+            return -1;
+        }
+        int row = (number - 1) / columnLabels.length;
+        int column = (number - 1) % columnLabels.length;
+        if (seatNumberFormat == SeatNumberFormat.BERTH && !seatNumber.startsWith(columnLabels[column], i)) {
+            return -1;
+        }
+        return SeatBitmapSelection.encode(row, column);
+    }
+
+    /**
+     * 座位编码转换为座位号
+     */
+    public String toSeatNumber(int seat) {
+        if (seatNumberFormat == SeatNumberFormat.ROW_COLUMN) {
+            return SeatBitmapSelection.toSeatNumber(seat, columnLetters);
+        }
+        int column = SeatBitmapSelection.column(seat);
+        int number = SeatBitmapSelection.row(seat) * columnLabels.length + column + 1;
+        String sequence = number < 10 ? "00" + number : number < 100 ? "0" + number : String.valueOf(number);
+        return seatNumberFormat == SeatNumberFormat.BERTH ? sequence + columnLabels[column] : sequence;
+    }
+
+    /**
+     * 解析用户选座，如 A1、F2
+     */
+    public int parseChooseSeat(String chooseSeat) {
+        return SeatBitmapSelection.parseChooseSeat(chooseSeat, columnLetters);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.layout;
+
+import org.project12306.services.ticketservice.toolkit.SeatNumberUtil;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.project12306.services.ticketservice.common.enums.VehicleSeatTypeEnum.*;
+import static org.project12306.services.ticketservice.common.enums.VehicleTypeEnum.BULLET;
+import static org.project12306.services.ticketservice.common.enums.VehicleTypeEnum.HIGH_SPEED_RAIN;
+import static org.project12306.services.ticketservice.common.enums.VehicleTypeEnum.REGULAR_TRAIN;
+import static org.project12306.services.ticketservice.service.handler.ticket.layout.CarriageLayout.SeatNumberFormat.BERTH;
+import static org.project12306.services.ticketservice.service.handler.ticket.layout.CarriageLayout.SeatNumberFormat.ROW_COLUMN;
+import static org.project12306.services.ticketservice.service.handler.ticket.layout.CarriageLayout.SeatNumberFormat.SEQUENCE;
+
+/**
+ * 车厢布局注册表，按交通工具类型 + 座位类型查找车厢布局
+ * <p>
+ * 高铁座席的列字母取自座位数据生成使用的 {@link SeatNumberUtil}，排数与原复兴号选座策略的座位矩阵一致；
+ * 其余车型的座位号格式需与座位数据保持一致，座位数据中无法按布局解析的座位号会在构建车厢位图时告警
+ */
+public final class CarriageLayoutRegistry {
+
+    private static final String[] SOFT_SLEEPER_BERTHS = {"下", "上", "下", "上"};
+
+    private static final String[] HARD_SLEEPER_BERTHS = {"下", "中", "上", "下", "中", "上"};
+
+    private static final String[] SEQUENCE_COLUMNS = {"", "", "", "", "", "", "", "", "", ""};
+
+    private static final Map<Integer, CarriageLayout> CARRIAGE_LAYOUT_MAP = new HashMap<>();
+
+    static {
+        // 高铁：商务座 2 排 2+1，一等座 7 排 2+2，二等座 18 排 3+2，座位号为 两位排号 + 列字母，如 01A、18F
+        register(new CarriageLayout(HIGH_SPEED_RAIN.getCode(), BUSINESS_CLASS.getCode(), 2, SeatNumberUtil.listColumn(BUSINESS_CLASS.getCode()), ROW_COLUMN, false, 2, 3));
+        register(new CarriageLayout(HIGH_SPEED_RAIN.getCode(), FIRST_CLASS.getCode(), 7, SeatNumberUtil.listColumn(FIRST_CLASS.getCode()), ROW_COLUMN, false, 2, 5));
+        register(new CarriageLayout(HIGH_SPEED_RAIN.getCode(), SECOND_CLASS.getCode(), 18, SeatNumberUtil.listColumn(SECOND_CLASS.getCode()), ROW_COLUMN, false, 3, 6));
+        // 动车：二等包座 6 个包厢每厢 4 座，一等卧 10 个 4 铺包厢，二等卧 10 个 6 铺包厢，无座 100 个
+        register(new CarriageLayout(BULLET.getCode(), SECOND_CLASS_CABIN_SEAT.getCode(), 6, new String[]{"A", "B", "C", "D"}, ROW_COLUMN, true, 4, 5));
+        register(new CarriageLayout(BULLET.getCode(), FIRST_SLEEPER.getCode(), 10, SOFT_SLEEPER_BERTHS, BERTH, true, 4, 5));
+        register(new CarriageLayout(BULLET.getCode(), SECOND_SLEEPER.getCode(), 10, HARD_SLEEPER_BERTHS, BERTH, true, 6, 7));
+        register(new CarriageLayout(BULLET.getCode(), NO_SEAT_SLEEPER.getCode(), 10, SEQUENCE_COLUMNS, SEQUENCE, false, 10, 11));
+        // 普通车：软卧 9 个 4 铺包厢，硬卧 11 个 6 铺包厢，硬座 24 排 3+2，无座 100 个
+        register(new CarriageLayout(REGULAR_TRAIN.getCode(), SOFT_SLEEPER.getCode(), 9, SOFT_SLEEPER_BERTHS, BERTH, true, 4, 5));
+        register(new CarriageLayout(REGULAR_TRAIN.getCode(), HARD_SLEEPER.getCode(), 11, HARD_SLEEPER_BERTHS, BERTH, true, 6, 7));
+        register(new CarriageLayout(REGULAR_TRAIN.getCode(), HARD_SEAT.getCode(), 24, SeatNumberUtil.listColumn(SECOND_CLASS.getCode()), ROW_COLUMN, false, 3, 6));
+        register(new CarriageLayout(REGULAR_TRAIN.getCode(), NO_SEAT_SLEEPER.getCode(), 10, SEQUENCE_COLUMNS, SEQUENCE, false, 10, 11));
+    }
+
+    private CarriageLayoutRegistry() {
+    }
+
+    private static int key(Integer vehicleType, Integer seatType) {
+        return vehicleType << 8 | seatType;
+    }
+
+    private static void register(CarriageLayout carriageLayout) {
+        CARRIAGE_LAYOUT_MAP.put(key(carriageLayout.getVehicleType(), carriageLayout.getSeatType()), carriageLayout);
+    }
+
+    /**
+     * 查找车厢布局
+     *
+     * @param vehicleType 交通工具类型
+     * @param seatType    座位类型
+     * @return 车厢布局，未适配返回 null
+     */
+    public static CarriageLayout find(Integer vehicleType, Integer seatType) {
+        if (vehicleType == null || seatType == null) {
+            return null;
+        }
+        return CARRIAGE_LAYOUT_MAP.get(key(vehicleType, seatType));
+    }
+
+    /**
+     * 全部车厢布局
+     */
+    public static Collection<CarriageLayout> listCarriageLayout() {
+        return Collections.unmodifiableCollection(CARRIAGE_LAYOUT_MAP.values());
+    }
+}
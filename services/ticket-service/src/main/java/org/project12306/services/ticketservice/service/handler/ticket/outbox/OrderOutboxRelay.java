@@ -0,0 +1,337 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.outbox;
+
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSON;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.convention.exception.ServiceException;
+import org.project12306.convention.result.Result;
+import org.project12306.services.ticketservice.common.enums.OrderOutboxStatusEnum;
+import org.project12306.services.ticketservice.common.enums.TicketStatusEnum;
+import org.project12306.services.ticketservice.dao.entity.OrderOutboxDO;
+import org.project12306.services.ticketservice.dao.entity.TicketDO;
+import org.project12306.services.ticketservice.dao.mapper.OrderOutboxMapper;
+import org.project12306.services.ticketservice.dao.mapper.TicketMapper;
+import org.project12306.services.ticketservice.remote.TicketOrderRemoteService;
+import org.project12306.services.ticketservice.remote.dto.TicketOrderCreateRemoteReqDTO;
+import org.project12306.services.ticketservice.remote.dto.TicketOrderDetailRespDTO;
+import org.project12306.services.ticketservice.service.SeatService;
+import org.project12306.services.ticketservice.service.cache.TrainLegRemainingTicketCache;
+import org.project12306.services.ticketservice.service.handler.ticket.dto.TrainPurchaseTicketRespDTO;
+import org.project12306.services.ticketservice.service.handler.ticket.waitlist.TicketWaitlist;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.LOCK_ORDER_OUTBOX_RELAY;
+
+/**
+ * 订单发件箱，购票事务内只写入本地发件箱记录，事务提交后异步调用订单服务创建订单
+ * <p>
+ * 至少投递一次：提交后立即投递，投递失败或节点宕机未投递的记录由定时任务按退避时间重试，订单服务按订单号幂等创建
+ * <p>
+ * 超过最大重试次数后向订单服务确认订单未创建，在同一事务内将发件箱记录置为失败、解锁座位并取消车票记录，
+ * 事务提交后回滚区段余票与令牌，补偿失败同样按退避时间重试；失败的订单号通过 {@link #isFailed(String)} 对外暴露
+ */
+@Slf4j
+@Component
+public class OrderOutboxRelay implements DisposableBean {
+
+    private final OrderOutboxMapper orderOutboxMapper;
+    private final TicketMapper ticketMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final TicketOrderRemoteService ticketOrderRemoteService;
+    private final RedissonClient redissonClient;
+    private final SeatService seatService;
+    private final TrainLegRemainingTicketCache trainLegRemainingTicketCache;
+    private final TicketWaitlist ticketWaitlist;
+    private final ThreadPoolExecutor relayExecutor;
+    private final long relayDelayMillis;
+    private final long maxBackoffMillis;
+    private final int maxRetry;
+    private final int batchSize;
+
+    @Value("${ticket.availability.cache-update.type:}")
+    private String ticketAvailabilityCacheUpdateType;
+
+    public OrderOutboxRelay(OrderOutboxMapper orderOutboxMapper,
+                            TicketMapper ticketMapper,
+                            PlatformTransactionManager transactionManager,
+                            TicketOrderRemoteService ticketOrderRemoteService,
+                            RedissonClient redissonClient,
+                            SeatService seatService,
+                            TrainLegRemainingTicketCache trainLegRemainingTicketCache,
+                            TicketWaitlist ticketWaitlist,
+                            @Value("${ticket.order.outbox.relay-threads:4}") int relayThreads,
+                            @Value("${ticket.order.outbox.relay-queue-size:2000}") int relayQueueSize,
+                            @Value("${ticket.order.outbox.relay-delay-millis:5000}") long relayDelayMillis,
+                            @Value("${ticket.order.outbox.max-backoff-millis:300000}") long maxBackoffMillis,
+                            @Value("${ticket.order.outbox.max-retry:16}") int maxRetry,
+                            @Value("${ticket.order.outbox.batch-size:100}") int batchSize) {
+        this.orderOutboxMapper = orderOutboxMapper;
+        this.ticketMapper = ticketMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ticketOrderRemoteService = ticketOrderRemoteService;
+        this.redissonClient = redissonClient;
+        this.seatService = seatService;
+        this.trainLegRemainingTicketCache = trainLegRemainingTicketCache;
+        this.ticketWaitlist = ticketWaitlist;
+        // 队列已满时丢弃立即投递任务，由定时任务补偿，避免阻塞购票事务提交
+        this.relayExecutor = new ThreadPoolExecutor(
+                relayThreads,
+                relayThreads,
+                60L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(relayQueueSize),
+                ThreadUtil.newNamedThreadFactory("order-outbox-relay-", true),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.relayDelayMillis = relayDelayMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.maxRetry = maxRetry;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 写入订单发件箱，须在车票记录所在事务中调用，事务提交后立即异步投递
+     *
+     * @param requestParam 订单创建请求参数，订单号已由购票服务生成
+     */
+    public void save(TicketOrderCreateRemoteReqDTO requestParam) {
+        OrderOutboxDO orderOutboxDO = OrderOutboxDO.builder()
+                .orderSn(requestParam.getOrderSn())
+                .trainId(requestParam.getTrainId())
+                .payload(JSON.toJSONString(requestParam))
+                .status(OrderOutboxStatusEnum.PENDING.getCode())
+                .retryCount(0)
+                // 定时任务只补偿超过立即投递等待时间的记录，减少与立即投递重复
+                .nextRetryTime(new Date(System.currentTimeMillis() + relayDelayMillis))
+                .build();
+        orderOutboxMapper.insert(orderOutboxDO);
+        Long id = orderOutboxDO.getId();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            submitRelay(id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                submitRelay(id);
+            }
+        });
+    }
+
+    /**
+     * 订单是否因超过最大重试次数未创建而失败，座位已释放
+     *
+     * @param orderSn 订单号
+     * @return 发件箱记录为失败状态返回 true，记录不存在或其它状态返回 false
+     */
+    public boolean isFailed(String orderSn) {
+        return orderOutboxMapper.selectCount(Wrappers.lambdaQuery(OrderOutboxDO.class)
+                .eq(OrderOutboxDO::getOrderSn, orderSn)
+                .eq(OrderOutboxDO::getStatus, OrderOutboxStatusEnum.FAILED.getCode())) > 0;
+    }
+
+    /**
+     * 补偿投递到期未成功的发件箱记录，多节点间通过分布式锁只由一个节点扫描
+     */
+    @Scheduled(initialDelayString = "${ticket.order.outbox.relay-interval:5000}", fixedDelayString = "${ticket.order.outbox.relay-interval:5000}")
+    public void relayPending() {
+        RLock lock = redissonClient.getLock(LOCK_ORDER_OUTBOX_RELAY);
+        if (!lock.tryLock()) {
+            return;
+        }
+        try {
+            List<OrderOutboxDO> orderOutboxDOList = orderOutboxMapper.selectList(Wrappers.lambdaQuery(OrderOutboxDO.class)
+                    .eq(OrderOutboxDO::getStatus, OrderOutboxStatusEnum.PENDING.getCode())
+                    .le(OrderOutboxDO::getNextRetryTime, new Date())
+                    .orderByAsc(OrderOutboxDO::getId)
+                    .last("limit " + batchSize));
+            orderOutboxDOList.forEach(this::relay);
+        } catch (Throwable ex) {
+            log.error("[订单发件箱] 补偿投递异常", ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void submitRelay(Long id) {
+        try {
+            relayExecutor.execute(() -> {
+                // 重新读取，所在保存点回滚或已被补偿投递的记录跳过
+                OrderOutboxDO orderOutboxDO = orderOutboxMapper.selectById(id);
+                if (orderOutboxDO != null && Objects.equals(orderOutboxDO.getStatus(), OrderOutboxStatusEnum.PENDING.getCode())) {
+                    relay(orderOutboxDO);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            log.warn("[订单发件箱] 立即投递队列已满，记录 {} 由定时任务补偿投递", id);
+        }
+    }
+
+    private void relay(OrderOutboxDO orderOutboxDO) {
+        TicketOrderCreateRemoteReqDTO requestParam = JSON.parseObject(orderOutboxDO.getPayload(), TicketOrderCreateRemoteReqDTO.class);
+        if (orderOutboxDO.getRetryCount() >= maxRetry) {
+            compensate(orderOutboxDO, requestParam);
+            return;
+        }
+        boolean success;
+        try {
+            Result<String> ticketOrderResult = ticketOrderRemoteService.createTicketOrder(requestParam);
+            success = ticketOrderResult.isSuccess();
+            if (!success) {
+                log.error("[订单发件箱] 订单号 {} 订单服务创建失败，返回结果：{}", orderOutboxDO.getOrderSn(), ticketOrderResult.getMessage());
+            }
+        } catch (Throwable ex) {
+            log.error("[订单发件箱] 订单号 {} 远程调用订单服务异常", orderOutboxDO.getOrderSn(), ex);
+            success = false;
+        }
+        if (success) {
+            updateStatus(orderOutboxDO, OrderOutboxStatusEnum.SENT);
+        } else {
+            retryLater(orderOutboxDO);
+        }
+    }
+
+    /**
+     * 补偿投递失败的订单，订单已创建时由订单延迟关闭负责回滚，未创建时在同一事务内抢占发件箱记录、解锁座位并取消车票记录，
+     * 提交后回滚区段余票与令牌
+     */
+    private void compensate(OrderOutboxDO orderOutboxDO, TicketOrderCreateRemoteReqDTO requestParam) {
+        String orderSn = orderOutboxDO.getOrderSn();
+        try {
+            Result<TicketOrderDetailRespDTO> ticketOrderResult = ticketOrderRemoteService.queryTicketOrderByOrderSn(orderSn);
+            if (!ticketOrderResult.isSuccess()) {
+                throw new ServiceException("订单服务查询订单失败：" + ticketOrderResult.getMessage());
+            }
+            if (ticketOrderResult.getData() != null) {
+                log.info("[订单发件箱] 订单号 {} 订单已创建，投递结果未返回", orderSn);
+                updateStatus(orderOutboxDO, OrderOutboxStatusEnum.SENT);
+                return;
+            }
+            String trainId = String.valueOf(requestParam.getTrainId());
+            String departure = requestParam.getDeparture();
+            String arrival = requestParam.getArrival();
+            List<TrainPurchaseTicketRespDTO> trainPurchaseTicketResults = requestParam.getTicketOrderItems().stream()
+                    .map(each -> {
+                        TrainPurchaseTicketRespDTO trainPurchaseTicketRespDTO = new TrainPurchaseTicketRespDTO();
+                        trainPurchaseTicketRespDTO.setSeatType(each.getSeatType());
+                        trainPurchaseTicketRespDTO.setCarriageNumber(each.getCarriageNumber());
+                        trainPurchaseTicketRespDTO.setSeatNumber(each.getSeatNumber());
+                        return trainPurchaseTicketRespDTO;
+                    })
+                    .toList();
+            //解锁座位前读取令牌桶纪元，解锁后令牌桶按数据库重建时已计入这些座位，不再回滚令牌
+            long tokenEpoch = ticketWaitlist.currentEpoch(trainId);
+            Boolean claimed = transactionTemplate.execute(status -> {
+                //发件箱记录由待投递置为失败，其它节点已补偿的记录不再重复解锁
+                OrderOutboxDO updateOrderOutboxDO = new OrderOutboxDO();
+                updateOrderOutboxDO.setStatus(OrderOutboxStatusEnum.FAILED.getCode());
+                if (update(orderOutboxDO, updateOrderOutboxDO) == 0) {
+                    return Boolean.FALSE;
+                }
+                seatService.unlock(trainId, departure, arrival, trainPurchaseTicketResults);
+                TicketDO updateTicketDO = TicketDO.builder()
+                        .ticketStatus(TicketStatusEnum.CLOSED.getCode())
+                        .build();
+                trainPurchaseTicketResults.forEach(each -> ticketMapper.update(updateTicketDO, Wrappers.lambdaUpdate(TicketDO.class)
+                        .eq(TicketDO::getUsername, requestParam.getUsername())
+                        .eq(TicketDO::getTrainId, requestParam.getTrainId())
+                        .eq(TicketDO::getCarriageNumber, each.getCarriageNumber())
+                        .eq(TicketDO::getSeatNumber, each.getSeatNumber())
+                        .eq(TicketDO::getTicketStatus, TicketStatusEnum.UNPAID.getCode())));
+                return Boolean.TRUE;
+            });
+            if (!Boolean.TRUE.equals(claimed)) {
+                log.info("[订单发件箱] 订单号 {} 已由其它节点补偿", orderSn);
+                return;
+            }
+            log.error("[订单发件箱] 订单号 {} 超过最大重试次数，已解锁座位并取消车票", orderSn);
+            //Binlog 同步模式下余票与令牌由座位变更事件回滚
+            if (!StrUtil.equals(ticketAvailabilityCacheUpdateType, "binlog")) {
+                rollbackAvailability(orderSn, trainId, departure, arrival, trainPurchaseTicketResults, tokenEpoch);
+            }
+        } catch (Throwable ex) {
+            log.error("[订单发件箱] 订单号 {} 补偿失败，稍后重试", orderSn, ex);
+            retryLater(orderOutboxDO);
+        }
+    }
+
+    /**
+     * 补偿事务提交后回滚区段余票并释放令牌，发件箱记录已置为失败不再重试，失败时由库存对账修复
+     */
+    private void rollbackAvailability(String orderSn, String trainId, String departure, String arrival,
+                                      List<TrainPurchaseTicketRespDTO> trainPurchaseTicketResults, long tokenEpoch) {
+        try {
+            Map<Integer, Integer> seatTypeCountMap = trainPurchaseTicketResults.stream()
+                    .collect(Collectors.groupingBy(TrainPurchaseTicketRespDTO::getSeatType, Collectors.summingInt(each -> 1)));
+            trainLegRemainingTicketCache.update(trainId, departure, arrival, seatTypeCountMap);
+            Map<Integer, Long> releaseSeatTypeCountMap = trainPurchaseTicketResults.stream()
+                    .collect(Collectors.groupingBy(TrainPurchaseTicketRespDTO::getSeatType, Collectors.counting()));
+            ticketWaitlist.release(trainId, departure, arrival, releaseSeatTypeCountMap, tokenEpoch);
+        } catch (Throwable ex) {
+            log.error("[订单发件箱] 订单号 {} 回滚区段余票与令牌失败，由库存对账修复", orderSn, ex);
+        }
+    }
+
+    private void retryLater(OrderOutboxDO orderOutboxDO) {
+        int retryCount = orderOutboxDO.getRetryCount() + 1;
+        long backoffMillis = Math.min(relayDelayMillis << Math.min(retryCount, 16), maxBackoffMillis);
+        OrderOutboxDO updateOrderOutboxDO = new OrderOutboxDO();
+        updateOrderOutboxDO.setRetryCount(retryCount);
+        updateOrderOutboxDO.setNextRetryTime(new Date(System.currentTimeMillis() + backoffMillis));
+        update(orderOutboxDO, updateOrderOutboxDO);
+    }
+
+    private void updateStatus(OrderOutboxDO orderOutboxDO, OrderOutboxStatusEnum status) {
+        OrderOutboxDO updateOrderOutboxDO = new OrderOutboxDO();
+        updateOrderOutboxDO.setStatus(status.getCode());
+        update(orderOutboxDO, updateOrderOutboxDO);
+    }
+
+    private int update(OrderOutboxDO orderOutboxDO, OrderOutboxDO updateOrderOutboxDO) {
+        return orderOutboxMapper.update(updateOrderOutboxDO, Wrappers.lambdaUpdate(OrderOutboxDO.class)
+                .eq(OrderOutboxDO::getId, orderOutboxDO.getId())
+                .eq(OrderOutboxDO::getStatus, OrderOutboxStatusEnum.PENDING.getCode()));
+    }
+
+    @Override
+    public void destroy() {
+        relayExecutor.shutdown();
+    }
+}
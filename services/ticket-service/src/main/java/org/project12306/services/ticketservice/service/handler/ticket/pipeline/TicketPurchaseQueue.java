@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.pipeline;
+
+import cn.hutool.core.util.IdUtil;
+import com.alibaba.fastjson2.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.commons.cache.DistributedCache;
+import org.project12306.commons.user.core.UserContext;
+import org.project12306.services.ticketservice.common.enums.PurchaseQueueStatusEnum;
+import org.project12306.services.ticketservice.dto.req.PurchaseTicketReqDTO;
+import org.project12306.services.ticketservice.dto.resp.TicketPurchaseQueueRespDTO;
+import org.project12306.services.ticketservice.dto.resp.TicketPurchaseRespDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.PURCHASE_QUEUE_RESULT;
+
+/**
+ * 排队购票，请求进入购票流水线后立即返回排队号，出票结果写入 Redis 供任意节点查询
+ * 本节点排队中的请求支持长轮询，出票完成或等待超时后返回
+ */
+@Slf4j
+@Component
+public class TicketPurchaseQueue {
+
+    private final TrainPurchasePipeline trainPurchasePipeline;
+    private final DistributedCache distributedCache;
+    private final ConcurrentHashMap<String, TrainPurchaseTask> queuingTaskMap = new ConcurrentHashMap<>();
+    private final long resultTtlSeconds;
+    private final long maxPollMillis;
+
+    public TicketPurchaseQueue(TrainPurchasePipeline trainPurchasePipeline,
+                               DistributedCache distributedCache,
+                               @Value("${ticket.purchase.queue.result-ttl-seconds:1800}") long resultTtlSeconds,
+                               @Value("${ticket.purchase.queue.max-poll-millis:5000}") long maxPollMillis) {
+        this.trainPurchasePipeline = trainPurchasePipeline;
+        this.distributedCache = distributedCache;
+        this.resultTtlSeconds = resultTtlSeconds;
+        this.maxPollMillis = maxPollMillis;
+    }
+
+    /**
+     * 购票请求排队
+     *
+     * @param requestParam     购票请求参数
+     * @param purchaseFunction 单个请求购票逻辑
+     * @return 排队号及预计排队位置
+     */
+    public TicketPurchaseQueueRespDTO enqueue(PurchaseTicketReqDTO requestParam, Function<PurchaseTicketReqDTO, TicketPurchaseRespDTO> purchaseFunction) {
+        String username = UserContext.getUsername();
+        // 排队号以列车 ID 开头，网关可按列车路由到排队节点
+        String queueSn = requestParam.getTrainId() + "-" + IdUtil.fastSimpleUUID();
+        // 先写入排队状态，避免出票较快时结果被排队状态覆盖
+        saveResult(username, TicketPurchaseQueueRespDTO.builder()
+                .queueSn(queueSn)
+                .status(PurchaseQueueStatusEnum.QUEUING.getCode())
+                .build());
+        TrainPurchaseTask task;
+        try {
+            task = trainPurchasePipeline.submitAsync(requestParam, purchaseFunction);
+        } catch (Throwable ex) {
+            // 未进入流水线，删除排队状态并归还已获取的令牌
+            distributedCache.delete(String.format(PURCHASE_QUEUE_RESULT, username, queueSn));
+            trainPurchasePipeline.rollbackToken(requestParam);
+            throw ex;
+        }
+        TicketPurchaseQueueRespDTO result = buildQueuing(queueSn, task);
+        track(username, queueSn, task);
+        return result;
+    }
+
+    /**
+     * 跟踪已进入购票流水线的请求，出票完成后写入结果，排队期间支持长轮询
+     *
+     * @param username 用户名
+     * @param queueSn  排队号
+     * @param task     排队中的购票请求
+     */
+    public void track(String username, String queueSn, TrainPurchaseTask task) {
+        queuingTaskMap.put(queueSn, task);
+        task.getFuture().whenComplete((purchaseResult, ex) -> {
+            try {
+                saveResult(username, buildCompleted(queueSn, purchaseResult, ex));
+            } catch (Throwable saveEx) {
+                log.error("[排队购票] 排队号 {} 出票结果保存失败", queueSn, saveEx);
+            } finally {
+                queuingTaskMap.remove(queueSn);
+            }
+        });
+    }
+
+    /**
+     * 查询排队结果，本节点排队中的请求最多等待 waitMillis 毫秒
+     *
+     * @param queueSn    排队号
+     * @param waitMillis 长轮询等待时间（毫秒），0 表示立即返回
+     * @return 排队结果，排队号不存在或不属于当前用户时返回 null
+     */
+    public CompletableFuture<TicketPurchaseQueueRespDTO> poll(String queueSn, long waitMillis) {
+        String username = UserContext.getUsername();
+        TrainPurchaseTask task = queuingTaskMap.get(queueSn);
+        if (task == null || waitMillis <= 0 || task.getFuture().isDone() || !isOwner(username, queueSn)) {
+            return CompletableFuture.completedFuture(current(username, queueSn));
+        }
+        return task.getFuture()
+                .handle((purchaseResult, ex) -> Boolean.TRUE)
+                .completeOnTimeout(Boolean.FALSE, Math.min(waitMillis, maxPollMillis), TimeUnit.MILLISECONDS)
+                .thenApply(done -> current(username, queueSn));
+    }
+
+    private TicketPurchaseQueueRespDTO current(String username, String queueSn) {
+        TrainPurchaseTask task = queuingTaskMap.get(queueSn);
+        if (task != null && !task.getFuture().isDone() && isOwner(username, queueSn)) {
+            return buildQueuing(queueSn, task);
+        }
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        String resultStr = stringRedisTemplate.opsForValue().get(String.format(PURCHASE_QUEUE_RESULT, username, queueSn));
+        return resultStr == null ? null : JSON.parseObject(resultStr, TicketPurchaseQueueRespDTO.class);
+    }
+
+    private boolean isOwner(String username, String queueSn) {
+        return distributedCache.hasKey(String.format(PURCHASE_QUEUE_RESULT, username, queueSn));
+    }
+
+    private TicketPurchaseQueueRespDTO buildQueuing(String queueSn, TrainPurchaseTask task) {
+        return TicketPurchaseQueueRespDTO.builder()
+                .queueSn(queueSn)
+                .status(PurchaseQueueStatusEnum.QUEUING.getCode())
+                .position(trainPurchasePipeline.estimatePosition(task))
+                .estimatedWaitMillis(trainPurchasePipeline.estimateWaitMillis(task))
+                .build();
+    }
+
+    private TicketPurchaseQueueRespDTO buildCompleted(String queueSn, TicketPurchaseRespDTO purchaseResult, Throwable ex) {
+        if (ex != null) {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            return TicketPurchaseQueueRespDTO.builder()
+                    .queueSn(queueSn)
+                    .status(PurchaseQueueStatusEnum.FAILED.getCode())
+                    .position(0)
+                    .message(cause.getMessage())
+                    .build();
+        }
+        return TicketPurchaseQueueRespDTO.builder()
+                .queueSn(queueSn)
+                .status(PurchaseQueueStatusEnum.SUCCESS.getCode())
+                .position(0)
+                .orderSn(purchaseResult.getOrderSn())
+                .ticketOrderDetails(purchaseResult.getTicketOrderDetails())
+                .build();
+    }
+
+    private void saveResult(String username, TicketPurchaseQueueRespDTO result) {
+        saveResult(username, result, resultTtlSeconds);
+    }
+
+    /**
+     * 保存排队结果
+     *
+     * @param username   用户名
+     * @param result     排队结果
+     * @param ttlSeconds 结果保留时间（秒）
+     */
+    public void saveResult(String username, TicketPurchaseQueueRespDTO result, long ttlSeconds) {
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        stringRedisTemplate.opsForValue().set(String.format(PURCHASE_QUEUE_RESULT, username, result.getQueueSn()), JSON.toJSONString(result), ttlSeconds, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.pipeline;
+
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.services.ticketservice.service.handler.ticket.dto.TrainPurchaseTicketRespDTO;
+import org.project12306.services.ticketservice.service.handler.ticket.layout.CarriageLayout;
+import org.project12306.services.ticketservice.service.handler.ticket.select.SeatBitmapSelection;
+import org.project12306.services.ticketservice.toolkit.SeatLegMaskUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * 购票流水线单批次的内存座位分配状态，仅在列车所在流水线线程内访问
+ * <p>
+ * 同一座位类型、乘车区间的可用座位位图在批次内只查询一次，后续请求在内存快照上选座；
+ * 请求保存点提交后才将其锁定的座位从所有区间重叠的快照中扣除，保存点回滚时丢弃，
+ * 区段余票缓存等事务外操作同样按请求暂存，整批事务提交后执行
+ */
+@Slf4j
+public final class TrainPurchaseBatch {
+
+    private final List<String> stations;
+    private final Map<String, SeatMaskSnapshot> snapshotMap = new HashMap<>();
+    private final List<TrainPurchaseTicketRespDTO> pendingSeats = new ArrayList<>();
+    private final List<Runnable> pendingActions = new ArrayList<>();
+    private final List<Runnable> afterCommitActions = new ArrayList<>();
+    private long pendingLegMask;
+
+    /**
+     * @param stations 列车全部站点，按停靠顺序排列
+     */
+    public TrainPurchaseBatch(List<String> stations) {
+        this.stations = stations;
+    }
+
+    /**
+     * 获取乘车区间内可用座位位图，批次内首次访问时通过 loader 查询，返回副本供调用方选座时修改
+     *
+     * @param seatType  座位类型
+     * @param departure 出发站
+     * @param arrival   到达站
+     * @param layout    车厢布局
+     * @param loader    可用座位位图查询
+     * @return 车厢号与每排座位位图
+     */
+    public Map<String, int[]> listAvailableSeatMask(Integer seatType, String departure, String arrival, CarriageLayout layout, Supplier<Map<String, int[]>> loader) {
+        String key = seatType + "_" + departure + "_" + arrival;
+        SeatMaskSnapshot snapshot = snapshotMap.get(key);
+        if (snapshot == null) {
+            snapshot = new SeatMaskSnapshot(seatType, SeatLegMaskUtil.legMask(stations, departure, arrival), layout, loader.get());
+            snapshotMap.put(key, snapshot);
+        }
+        Map<String, int[]> carriageSeatMaskMap = new LinkedHashMap<>(snapshot.carriageSeatMaskMap.size() * 2);
+        snapshot.carriageSeatMaskMap.forEach((carriageNumber, rowMasks) -> carriageSeatMaskMap.put(carriageNumber, rowMasks.clone()));
+        return carriageSeatMaskMap;
+    }
+
+    /**
+     * 记录当前请求锁定的座位，保存点提交后生效
+     */
+    public void occupy(String departure, String arrival, List<TrainPurchaseTicketRespDTO> seats) {
+        pendingLegMask = SeatLegMaskUtil.legMask(stations, departure, arrival);
+        pendingSeats.addAll(seats);
+    }
+
+    /**
+     * 记录整批事务提交后执行的操作，保存点回滚时丢弃
+     */
+    public void afterCommit(Runnable action) {
+        pendingActions.add(action);
+    }
+
+    /**
+     * 当前请求保存点已释放，将其锁定的座位从区间重叠的快照中扣除
+     */
+    public void commitRequest() {
+        if (!pendingSeats.isEmpty()) {
+            for (SeatMaskSnapshot each : snapshotMap.values()) {
+                if (SeatLegMaskUtil.isAvailable(each.legMask, pendingLegMask)) {
+                    continue;
+                }
+                for (TrainPurchaseTicketRespDTO seat : pendingSeats) {
+                    int[] rowMasks;
+                    int encoded;
+                    if (seat.getSeatType().equals(each.seatType)
+                            && (rowMasks = each.carriageSeatMaskMap.get(seat.getCarriageNumber())) != null
+                            && (encoded = each.layout.parseSeatNumber(seat.getSeatNumber())) >= 0) {
+                        SeatBitmapSelection.occupy(rowMasks, encoded);
+                    }
+                }
+            }
+        }
+        afterCommitActions.addAll(pendingActions);
+        rollbackRequest();
+    }
+
+    /**
+     * 当前请求保存点已回滚，丢弃其暂存的座位与操作
+     */
+    public void rollbackRequest() {
+        pendingSeats.clear();
+        pendingActions.clear();
+        pendingLegMask = 0L;
+    }
+
+    /**
+     * 整批事务提交后执行暂存的操作，单个操作失败只记录日志
+     */
+    public void runAfterCommit() {
+        for (Runnable each : afterCommitActions) {
+            try {
+                each.run();
+            } catch (Throwable ex) {
+                log.error("[购票流水线] 批次提交后操作执行失败", ex);
+            }
+        }
+        afterCommitActions.clear();
+    }
+
+    private record SeatMaskSnapshot(Integer seatType, long legMask, CarriageLayout layout, Map<String, int[]> carriageSeatMaskMap) {
+    }
+}
@@ -0,0 +1,585 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.pipeline;
+
+import cn.hutool.core.thread.ThreadUtil;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.commons.base.profiler.LockProfiler;
+import org.project12306.commons.base.profiler.LockSample;
+import org.project12306.commons.user.core.UserContext;
+import org.project12306.commons.user.core.UserInfoDTO;
+import org.project12306.convention.exception.ServiceException;
+import org.project12306.services.ticketservice.dto.req.PurchaseTicketPassengerDetailDTO;
+import org.project12306.services.ticketservice.dto.req.PurchaseTicketReqDTO;
+import org.project12306.services.ticketservice.dto.resp.TicketPurchaseRespDTO;
+import org.project12306.services.ticketservice.service.TrainStationService;
+import org.project12306.services.ticketservice.service.handler.ticket.tokenbucket.TicketAvailabilityTokenBucket;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.project12306.services.ticketservice.common.constant.LockNameConstant.PURCHASE_PIPELINE;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.LOCK_PURCHASE_TICKETS_V2;
+
+/**
+ * 列车购票流水线，同一列车的购票请求由固定线程串行批量处理
+ * 每批请求共用一次分布式锁与一个数据库事务，单个请求在各自的保存点内执行，失败只回滚自身，整批提交后再返回各请求结果
+ * 批次内选座基于 {@link TrainPurchaseBatch} 内存座位快照，区段余票缓存在整批提交后更新
+ * <p>
+ * 加锁等待不超过 lock-wait-millis，超时后批次重新排队并延迟重试，避免同一线程上其它列车被长时间阻塞
+ * <p>
+ * 请求进入流水线前已获取余量令牌，受理后出票失败或排队超时取消的请求由流水线回滚令牌，拒绝受理时由调用方回滚
+ */
+@Slf4j
+@Component
+public class TrainPurchasePipeline implements InitializingBean, DisposableBean {
+
+    private static final ThreadLocal<TrainPurchaseBatch> CURRENT_BATCH = new ThreadLocal<>();
+
+    private final RedissonClient redissonClient;
+    private final ConfigurableEnvironment environment;
+    private final TrainShardOwnership trainShardOwnership;
+    private final LockProfiler lockProfiler;
+    private final TicketAvailabilityTokenBucket ticketAvailabilityTokenBucket;
+    private final TrainStationService trainStationService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate nestedTransactionTemplate;
+    private final ExecutorService[] workers;
+    private final TrainShardScheduler trainShardScheduler;
+    private final ConcurrentHashMap<String, TrainPurchaseQueue> trainQueueMap = new ConcurrentHashMap<>();
+    private final int batchSize;
+    private final int maxQueueSize;
+    private final long timeoutMillis;
+    private final long lockWaitMillis;
+    private final long shardMaxHoldMillis;
+    private final long shardIdleReleaseMillis;
+    private final DistributionSummary batchSizeSummary;
+    private final Timer waitTimer;
+
+    public TrainPurchasePipeline(RedissonClient redissonClient,
+                                 ConfigurableEnvironment environment,
+                                 TrainShardOwnership trainShardOwnership,
+                                 TrainShardScheduler trainShardScheduler,
+                                 LockProfiler lockProfiler,
+                                 TicketAvailabilityTokenBucket ticketAvailabilityTokenBucket,
+                                 TrainStationService trainStationService,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${ticket.purchase.pipeline.threads:8}") int threads,
+                                 @Value("${ticket.purchase.pipeline.batch-size:32}") int batchSize,
+                                 @Value("${ticket.purchase.pipeline.max-queue-size:2000}") int maxQueueSize,
+                                 @Value("${ticket.purchase.pipeline.timeout-millis:10000}") long timeoutMillis,
+                                 @Value("${ticket.purchase.pipeline.lock-wait-millis:200}") long lockWaitMillis,
+                                 @Value("${ticket.purchase.shard.max-hold-millis:3000}") long shardMaxHoldMillis,
+                                 @Value("${ticket.purchase.shard.idle-release-millis:1000}") long shardIdleReleaseMillis) {
+        this.redissonClient = redissonClient;
+        this.environment = environment;
+        this.trainShardOwnership = trainShardOwnership;
+        this.trainShardScheduler = trainShardScheduler;
+        this.lockProfiler = lockProfiler;
+        this.ticketAvailabilityTokenBucket = ticketAvailabilityTokenBucket;
+        this.trainStationService = trainStationService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.nestedTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.nestedTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+        this.workers = new ExecutorService[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = Executors.newSingleThreadExecutor(ThreadUtil.newNamedThreadFactory("train-purchase-pipeline-" + i + "-", false));
+        }
+        this.batchSize = batchSize;
+        this.maxQueueSize = maxQueueSize;
+        this.timeoutMillis = timeoutMillis;
+        this.lockWaitMillis = lockWaitMillis;
+        this.shardMaxHoldMillis = shardMaxHoldMillis;
+        this.shardIdleReleaseMillis = shardIdleReleaseMillis;
+        this.batchSizeSummary = DistributionSummary.builder("ticket.purchase.pipeline.batch")
+                .description("购票流水线单批处理请求数量")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("ticket.purchase.pipeline.wait")
+                .description("购票请求排队等待时间")
+                .register(meterRegistry);
+        Gauge.builder("ticket.purchase.pipeline.queue_depth", trainQueueMap, map -> map.values().stream().mapToInt(each -> each.depth.get()).sum())
+                .description("购票流水线排队请求数量")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 当前线程是否在批量购票事务中，批量事务中前序请求锁定的座位尚未提交，选座需在当前线程内完成
+     */
+    public static boolean isBatching() {
+        return CURRENT_BATCH.get() != null;
+    }
+
+    /**
+     * 当前线程所在的购票批次，不在批量购票事务中返回 null
+     */
+    public static TrainPurchaseBatch currentBatch() {
+        return CURRENT_BATCH.get();
+    }
+
+    /**
+     * 事务提交后执行操作：批量购票事务中随请求保存点提交或丢弃，整批提交后执行；
+     * 其它事务中注册事务同步在提交后执行；不在事务中直接执行
+     *
+     * @param action 需要在事务提交后执行的操作
+     */
+    public static void afterCommit(Runnable action) {
+        TrainPurchaseBatch batch = CURRENT_BATCH.get();
+        if (batch != null) {
+            batch.afterCommit(action);
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    // 事务已提交，操作失败不影响购票结果
+                    try {
+                        action.run();
+                    } catch (Throwable ex) {
+                        log.error("[购票流水线] 事务提交后操作执行失败", ex);
+                    }
+                }
+            });
+            return;
+        }
+        action.run();
+    }
+
+    /**
+     * 提交购票请求并等待结果
+     *
+     * @param requestParam     购票请求参数
+     * @param purchaseFunction 单个请求购票逻辑，在流水线线程的保存点内执行
+     * @return 购票结果
+     */
+    public TicketPurchaseRespDTO submit(PurchaseTicketReqDTO requestParam, Function<PurchaseTicketReqDTO, TicketPurchaseRespDTO> purchaseFunction) {
+        TrainPurchaseTask task;
+        try {
+            task = submitAsync(requestParam, purchaseFunction);
+        } catch (Throwable ex) {
+            rollbackToken(requestParam);
+            throw ex;
+        }
+        try {
+            try {
+                return task.getFuture().get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException ex) {
+                if (task.state.compareAndSet(TrainPurchaseTask.PENDING, TrainPurchaseTask.CANCELLED)) {
+                    // 取消的请求不会再被处理，由此归还令牌
+                    rollbackToken(requestParam);
+                    throw new ServiceException("购票排队超时，请稍候再试");
+                }
+                // 已开始处理的请求等待处理完成，避免出票成功但返回失败
+                return task.getFuture().get();
+            }
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof RuntimeException runtimeException ? runtimeException : new ServiceException(cause.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ServiceException("购票被中断，请稍候再试");
+        }
+    }
+
+    /**
+     * 提交购票请求，不等待结果，排队人数过多拒绝受理时抛出异常，由调用方回滚已获取的令牌
+     *
+     * @param requestParam     购票请求参数
+     * @param purchaseFunction 单个请求购票逻辑，在流水线线程的保存点内执行
+     * @return 排队中的购票请求，通过 {@link TrainPurchaseTask#getFuture()} 获取结果
+     */
+    public TrainPurchaseTask submitAsync(PurchaseTicketReqDTO requestParam, Function<PurchaseTicketReqDTO, TicketPurchaseRespDTO> purchaseFunction) {
+        TrainPurchaseQueue trainPurchaseQueue = trainQueueMap.computeIfAbsent(requestParam.getTrainId(), TrainPurchaseQueue::new);
+        if (trainPurchaseQueue.depth.incrementAndGet() > maxQueueSize) {
+            trainPurchaseQueue.depth.decrementAndGet();
+            throw new ServiceException("当前列车购票排队人数过多，请稍候再试");
+        }
+        UserInfoDTO userInfo = UserInfoDTO.builder()
+                .userId(UserContext.getUserId())
+                .username(UserContext.getUsername())
+                .realName(UserContext.getRealName())
+                .token(UserContext.getToken())
+                .build();
+        TrainPurchaseTask task = new TrainPurchaseTask(requestParam, userInfo, purchaseFunction, trainPurchaseQueue.enqueueSequence.incrementAndGet());
+        trainPurchaseQueue.tasks.offer(task);
+        schedule(trainPurchaseQueue);
+        return task;
+    }
+
+    /**
+     * 估算排队位置，即同列车排在该请求之前（含自身）尚未处理完成的请求数量
+     *
+     * @param task 排队中的购票请求
+     * @return 排队位置，已处理完成返回 0
+     */
+    public int estimatePosition(TrainPurchaseTask task) {
+        TrainPurchaseQueue trainPurchaseQueue = trainQueueMap.get(task.getTrainId());
+        if (task.getFuture().isDone() || trainPurchaseQueue == null) {
+            return 0;
+        }
+        return (int) Math.max(task.getSequence() - trainPurchaseQueue.completedSequence, 1L);
+    }
+
+    /**
+     * 按列车单个请求平均处理耗时估算等待时间
+     *
+     * @param task 排队中的购票请求
+     * @return 预计等待时间（毫秒）
+     */
+    public long estimateWaitMillis(TrainPurchaseTask task) {
+        TrainPurchaseQueue trainPurchaseQueue = trainQueueMap.get(task.getTrainId());
+        if (trainPurchaseQueue == null) {
+            return 0L;
+        }
+        return (long) (estimatePosition(task) * trainPurchaseQueue.avgCostMillis);
+    }
+
+    private void schedule(TrainPurchaseQueue trainPurchaseQueue) {
+        if (trainPurchaseQueue.scheduled.compareAndSet(false, true)) {
+            worker(trainPurchaseQueue).execute(() -> drain(trainPurchaseQueue));
+        }
+    }
+
+    private ExecutorService worker(TrainPurchaseQueue trainPurchaseQueue) {
+        return workers[(trainPurchaseQueue.trainId.hashCode() & Integer.MAX_VALUE) % workers.length];
+    }
+
+    private void drain(TrainPurchaseQueue trainPurchaseQueue) {
+        boolean deferred = false;
+        try {
+            List<TrainPurchaseTask> batch = new ArrayList<>(batchSize);
+            TrainPurchaseTask task;
+            long maxSequence = 0L;
+            while (batch.size() < batchSize && (task = trainPurchaseQueue.poll()) != null) {
+                trainPurchaseQueue.depth.decrementAndGet();
+                maxSequence = Math.max(maxSequence, task.getSequence());
+                if (task.state.compareAndSet(TrainPurchaseTask.PENDING, TrainPurchaseTask.RUNNING)) {
+                    batch.add(task);
+                }
+            }
+            if (!batch.isEmpty()) {
+                long startTime = System.currentTimeMillis();
+                if (!executeBatch(trainPurchaseQueue, batch)) {
+                    // 加锁等待超时，批次放回队首延迟重试，重新排队期间的请求仍可超时取消
+                    batch.forEach(each -> each.state.compareAndSet(TrainPurchaseTask.RUNNING, TrainPurchaseTask.PENDING));
+                    trainPurchaseQueue.deferredTasks.addAll(0, batch);
+                    trainPurchaseQueue.depth.addAndGet(batch.size());
+                    deferred = true;
+                    return;
+                }
+                batchSizeSummary.record(batch.size());
+                batch.forEach(each -> waitTimer.record(startTime - each.enqueueTime, TimeUnit.MILLISECONDS));
+                double costMillis = (double) (System.currentTimeMillis() - startTime) / batch.size();
+                trainPurchaseQueue.avgCostMillis = trainPurchaseQueue.avgCostMillis == 0D
+                        ? costMillis
+                        : trainPurchaseQueue.avgCostMillis * 0.8D + costMillis * 0.2D;
+            }
+            trainPurchaseQueue.completedSequence = Math.max(trainPurchaseQueue.completedSequence, maxSequence);
+        } catch (Throwable ex) {
+            log.error("[购票流水线] 列车 {} 批量购票异常", trainPurchaseQueue.trainId, ex);
+        } finally {
+            if (deferred) {
+                scheduleRetry(trainPurchaseQueue);
+            } else {
+                trainPurchaseQueue.scheduled.set(false);
+                if (!trainPurchaseQueue.tasks.isEmpty()) {
+                    schedule(trainPurchaseQueue);
+                }
+            }
+        }
+    }
+
+    /**
+     * 延迟重新处理加锁超时的列车，期间列车保持已调度状态，新请求只入队不重复调度
+     */
+    private void scheduleRetry(TrainPurchaseQueue trainPurchaseQueue) {
+        try {
+            trainShardScheduler.schedule(() -> worker(trainPurchaseQueue).execute(() -> drain(trainPurchaseQueue)), lockWaitMillis);
+        } catch (RejectedExecutionException ex) {
+            log.warn("[购票流水线] 列车 {} 重试调度被拒绝，流水线正在关闭", trainPurchaseQueue.trainId);
+        }
+    }
+
+    /**
+     * 批量出票
+     *
+     * @return 加锁等待超时未执行返回 false，其余情况均已完成各请求结果
+     */
+    private boolean executeBatch(TrainPurchaseQueue trainPurchaseQueue, List<TrainPurchaseTask> batch) {
+        String trainId = trainPurchaseQueue.trainId;
+        Map<TrainPurchaseTask, TicketPurchaseRespDTO> successMap = new LinkedHashMap<>();
+        Map<TrainPurchaseTask, Throwable> failureMap = new LinkedHashMap<>();
+        // 座位类型排序后加锁，避免不同节点批次间交叉等待
+        TreeSet<Integer> seatTypes = new TreeSet<>();
+        batch.forEach(each -> each.requestParam.getPassengers().stream().map(PurchaseTicketPassengerDetailDTO::getSeatType).forEach(seatTypes::add));
+        // 列车归属本节点时批次间持续持有分布式锁，持有时间超过上限、归属变更或需要新的座位类型时释放后重新按序加锁
+        boolean shardOwner = trainShardOwnership.isOwner(trainId);
+        long now = System.currentTimeMillis();
+        trainPurchaseQueue.lastBatchTime = now;
+        if (!trainPurchaseQueue.heldLocks.isEmpty()
+                && (!shardOwner || now - trainPurchaseQueue.heldSince > shardMaxHoldMillis || !trainPurchaseQueue.heldLocks.keySet().containsAll(seatTypes))) {
+            releaseHeldLocks(trainPurchaseQueue);
+        }
+        List<RLock> lockedList = new ArrayList<>(seatTypes.size());
+        List<LockSample> lockSampleList = new ArrayList<>(seatTypes.size());
+        TrainPurchaseBatch purchaseBatch = null;
+        try {
+            if (trainPurchaseQueue.heldLocks.isEmpty()) {
+                for (Integer seatType : seatTypes) {
+                    RLock distributedLock = redissonClient.getFairLock(environment.resolvePlaceholders(String.format(LOCK_PURCHASE_TICKETS_V2, trainId, seatType)));
+                    LockSample lockSample = tryLock(trainId, distributedLock);
+                    if (lockSample == null) {
+                        // 已按序获取的锁全部释放，重试时重新按序加锁
+                        releaseHeldLocks(trainPurchaseQueue);
+                        return false;
+                    }
+                    if (shardOwner) {
+                        trainPurchaseQueue.hold(seatType, distributedLock, lockSample, now);
+                    } else {
+                        lockedList.add(distributedLock);
+                        lockSampleList.add(lockSample);
+                    }
+                }
+            }
+            purchaseBatch = new TrainPurchaseBatch(trainStationService.listTrainStationAll(trainId));
+            CURRENT_BATCH.set(purchaseBatch);
+            TrainPurchaseBatch currentBatch = purchaseBatch;
+            transactionTemplate.executeWithoutResult(status -> {
+                for (TrainPurchaseTask each : batch) {
+                    UserContext.setUser(each.userInfo);
+                    try {
+                        successMap.put(each, nestedTransactionTemplate.execute(nestedStatus -> each.purchaseFunction.apply(each.requestParam)));
+                        currentBatch.commitRequest();
+                    } catch (Throwable ex) {
+                        currentBatch.rollbackRequest();
+                        failureMap.put(each, ex);
+                    } finally {
+                        UserContext.removeUser();
+                    }
+                }
+            });
+        } catch (Throwable ex) {
+            // 加锁或整批提交失败，已执行成功的请求随事务回滚
+            log.error("[购票流水线] 列车 {} 批量提交失败，批次数量：{}", trainId, batch.size(), ex);
+            successMap.keySet().forEach(each -> failureMap.put(each, ex));
+            successMap.clear();
+            batch.stream().filter(each -> !failureMap.containsKey(each)).forEach(each -> failureMap.put(each, ex));
+            purchaseBatch = null;
+        } finally {
+            CURRENT_BATCH.remove();
+            trainPurchaseQueue.lastBatchTime = System.currentTimeMillis();
+            lockedList.forEach(each -> {
+                try {
+                    each.unlock();
+                } catch (Throwable ignored) {
+                }
+            });
+            lockSampleList.forEach(LockSample::released);
+        }
+        if (purchaseBatch != null) {
+            // 整批已提交，更新区段余票缓存等事务外状态
+            purchaseBatch.runAfterCommit();
+        }
+        successMap.forEach((task, result) -> task.getFuture().complete(result));
+        failureMap.forEach((task, ex) -> {
+            // 保存点或整批事务已回滚，先归还令牌再返回结果
+            rollbackToken(task.requestParam);
+            task.getFuture().completeExceptionally(ex);
+        });
+        return true;
+    }
+
+    /**
+     * 限时加锁，超时返回 null
+     */
+    private LockSample tryLock(String trainId, RLock distributedLock) throws InterruptedException {
+        LockSample lockSample = lockProfiler.start(PURCHASE_PIPELINE, trainId);
+        boolean locked;
+        try {
+            locked = distributedLock.tryLock(lockWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (Throwable ex) {
+            lockSample.abandon();
+            throw ex;
+        }
+        if (!locked) {
+            lockSample.abandon();
+            log.warn("[购票流水线] 列车 {} 加锁等待超过 {} 毫秒，批次延迟重试", trainId, lockWaitMillis);
+            return null;
+        }
+        lockSample.acquired();
+        return lockSample;
+    }
+
+    /**
+     * 回滚购票请求已获取的余量令牌，回滚失败只记录日志，由令牌桶无余票时的校准补偿
+     *
+     * @param requestParam 购票请求参数
+     */
+    public void rollbackToken(PurchaseTicketReqDTO requestParam) {
+        Map<Integer, Long> seatTypeCountMap = requestParam.getPassengers().stream()
+                .collect(Collectors.groupingBy(PurchaseTicketPassengerDetailDTO::getSeatType, Collectors.counting()));
+        try {
+            ticketAvailabilityTokenBucket.rollbackInBucket(requestParam.getTrainId(), requestParam.getDeparture(), requestParam.getArrival(), seatTypeCountMap);
+        } catch (Throwable ex) {
+            log.error("[购票流水线] 回滚令牌失败，列车：{}，区间：{}-{}，座位类型数量：{}",
+                    requestParam.getTrainId(), requestParam.getDeparture(), requestParam.getArrival(), seatTypeCountMap, ex);
+        }
+    }
+
+    /**
+     * 空闲分片锁释放由列车分片专用调度线程池按 idle-release-millis 间隔检查
+     */
+    @Override
+    public void afterPropertiesSet() {
+        trainShardScheduler.scheduleWithFixedDelay(this::releaseIdleShardLocks, shardIdleReleaseMillis);
+    }
+
+    /**
+     * 释放空闲或归属已变更列车持续持有的分布式锁，释放在持锁的流水线线程中执行
+     */
+    public void releaseIdleShardLocks() {
+        long now = System.currentTimeMillis();
+        trainQueueMap.values().forEach(each -> {
+            if (each.holding && (now - each.lastBatchTime > shardIdleReleaseMillis || !trainShardOwnership.isOwner(each.trainId))) {
+                worker(each).execute(() -> {
+                    if (System.currentTimeMillis() - each.lastBatchTime > shardIdleReleaseMillis || !trainShardOwnership.isOwner(each.trainId)) {
+                        releaseHeldLocks(each);
+                    }
+                });
+            }
+        });
+    }
+
+    private void releaseHeldLocks(TrainPurchaseQueue trainPurchaseQueue) {
+        trainPurchaseQueue.heldLocks.values().forEach(each -> {
+            try {
+                each.unlock();
+            } catch (Throwable ex) {
+                log.warn("[购票流水线] 列车 {} 释放分布式锁失败", trainPurchaseQueue.trainId, ex);
+            }
+        });
+        trainPurchaseQueue.heldLocks.clear();
+        trainPurchaseQueue.heldLockSamples.forEach(LockSample::released);
+        trainPurchaseQueue.heldLockSamples.clear();
+        trainPurchaseQueue.holding = false;
+    }
+
+    @Override
+    public void destroy() {
+        trainQueueMap.values().stream()
+                .filter(each -> each.holding)
+                .forEach(each -> worker(each).execute(() -> releaseHeldLocks(each)));
+        for (ExecutorService each : workers) {
+            each.shutdown();
+        }
+        for (ExecutorService each : workers) {
+            try {
+                if (!each.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    each.shutdownNow();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                each.shutdownNow();
+            }
+        }
+    }
+
+    private static final class TrainPurchaseQueue {
+
+        private final String trainId;
+        private final ConcurrentLinkedQueue<TrainPurchaseTask> tasks = new ConcurrentLinkedQueue<>();
+
+        /**
+         * 加锁超时放回的请求，优先于新请求处理，仅在列车所在流水线线程内访问
+         */
+        private final List<TrainPurchaseTask> deferredTasks = new ArrayList<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicInteger depth = new AtomicInteger();
+        private final AtomicLong enqueueSequence = new AtomicLong();
+
+        /**
+         * 已处理完成的最大请求序号
+         */
+        private volatile long completedSequence;
+
+        /**
+         * 单个请求平均处理耗时（毫秒），按批次指数加权平均
+         */
+        private volatile double avgCostMillis;
+
+        /**
+         * 列车归属本节点时持续持有的分布式锁，仅在列车所在流水线线程内访问
+         */
+        private final Map<Integer, RLock> heldLocks = new HashMap<>();
+        private final List<LockSample> heldLockSamples = new ArrayList<>();
+        private long heldSince;
+        private volatile boolean holding;
+        private volatile long lastBatchTime;
+
+        private TrainPurchaseQueue(String trainId) {
+            this.trainId = trainId;
+        }
+
+        private TrainPurchaseTask poll() {
+            return deferredTasks.isEmpty() ? tasks.poll() : deferredTasks.remove(0);
+        }
+
+        private void hold(Integer seatType, RLock distributedLock, LockSample lockSample, long now) {
+            if (heldLocks.isEmpty()) {
+                heldSince = now;
+            }
+            heldLocks.put(seatType, distributedLock);
+            heldLockSamples.add(lockSample);
+            holding = true;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.pipeline;
+
+import lombok.Getter;
+import org.project12306.commons.user.core.UserInfoDTO;
+import org.project12306.services.ticketservice.dto.req.PurchaseTicketReqDTO;
+import org.project12306.services.ticketservice.dto.resp.TicketPurchaseRespDTO;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 购票流水线中排队的购票请求
+ */
+public final class TrainPurchaseTask {
+
+    static final int PENDING = 0;
+    static final int RUNNING = 1;
+    static final int CANCELLED = 2;
+
+    final PurchaseTicketReqDTO requestParam;
+    final UserInfoDTO userInfo;
+    final Function<PurchaseTicketReqDTO, TicketPurchaseRespDTO> purchaseFunction;
+    final AtomicInteger state = new AtomicInteger(PENDING);
+    final long enqueueTime = System.currentTimeMillis();
+
+    /**
+     * 同列车内的排队序号
+     */
+    @Getter
+    private final long sequence;
+
+    /**
+     * 购票结果，整批事务提交后完成
+     */
+    @Getter
+    private final CompletableFuture<TicketPurchaseRespDTO> future = new CompletableFuture<>();
+
+    TrainPurchaseTask(PurchaseTicketReqDTO requestParam, UserInfoDTO userInfo, Function<PurchaseTicketReqDTO, TicketPurchaseRespDTO> purchaseFunction, long sequence) {
+        this.requestParam = requestParam;
+        this.userInfo = userInfo;
+        this.purchaseFunction = purchaseFunction;
+        this.sequence = sequence;
+    }
+
+    public String getTrainId() {
+        return requestParam.getTrainId();
+    }
+}
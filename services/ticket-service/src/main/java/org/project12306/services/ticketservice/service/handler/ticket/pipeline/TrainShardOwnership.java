@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.pipeline;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.commons.base.toolkit.ConsistentHashRing;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 列车分片归属，与网关使用同一一致性哈希环计算列车归属实例
+ * <p>
+ * 网关按列车 ID 一致性哈希路由购票请求，归属本节点的列车在购票流水线中持续持有分布式锁，批次间不再重复加锁；
+ * 归属仅影响加锁次数，互斥仍由分布式锁保证，实例上下线期间路由到非归属节点的请求按原流程加锁，等待原归属节点释放
+ * <p>
+ * 哈希环由 {@link TrainShardScheduler} 定时刷新，不与其它定时任务共用调度线程
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TrainShardOwnership implements InitializingBean {
+
+    private final DiscoveryClient discoveryClient;
+    private final ObjectProvider<Registration> registrationProvider;
+    private final TrainShardScheduler trainShardScheduler;
+
+    @Value("${ticket.purchase.shard.enable:false}")
+    private boolean shardEnable;
+
+    @Value("${ticket.purchase.shard.refresh-interval:5000}")
+    private long refreshInterval;
+
+    private volatile String ringNodes = "";
+    private volatile ConsistentHashRing<String> ring;
+    private volatile String localNode;
+
+    /**
+     * 列车是否归属本节点
+     *
+     * @param trainId 列车 ID
+     * @return 未开启分片或本节点未注册时返回 false
+     */
+    public boolean isOwner(String trainId) {
+        ConsistentHashRing<String> current = ring;
+        return shardEnable && current != null && Objects.equals(localNode, current.route(trainId));
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (shardEnable) {
+            trainShardScheduler.scheduleWithFixedDelay(this::refresh, refreshInterval);
+        }
+    }
+
+    /**
+     * 按注册中心实例列表刷新哈希环，实例标识与网关一致，见 {@link ConsistentHashRing#nodeKey(String, int)}
+     */
+    public void refresh() {
+        if (!shardEnable) {
+            return;
+        }
+        Registration registration = registrationProvider.getIfAvailable();
+        if (registration == null) {
+            return;
+        }
+        String local = ConsistentHashRing.nodeKey(registration.getHost(), registration.getPort());
+        List<String> nodes = discoveryClient.getInstances(registration.getServiceId()).stream()
+                .map(each -> ConsistentHashRing.nodeKey(each.getHost(), each.getPort()))
+                .sorted()
+                .toList();
+        if (!nodes.contains(local)) {
+            // 本节点未注册或已下线，不再持有任何列车分片
+            ring = null;
+            ringNodes = "";
+            return;
+        }
+        String joinedNodes = String.join(",", nodes);
+        if (!joinedNodes.equals(ringNodes) || ring == null) {
+            localNode = local;
+            ring = new ConsistentHashRing<>(nodes, Function.identity());
+            ringNodes = joinedNodes;
+            log.info("[列车分片] 实例变更，重建哈希环：{}，本节点：{}", joinedNodes, local);
+        }
+    }
+}
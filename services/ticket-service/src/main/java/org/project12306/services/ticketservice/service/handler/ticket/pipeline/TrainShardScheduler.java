@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.pipeline;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * 列车分片专用调度线程池，执行分片归属刷新、空闲分片锁释放以及加锁超时批次的延迟重试
+ * <p>
+ * 与 {@code @Scheduled} 默认的单线程调度器隔离，其它定时任务执行缓慢时不会推迟分片锁释放；
+ * 不注册为 TaskScheduler Bean，避免替换默认调度器
+ */
+@Component
+public class TrainShardScheduler implements DisposableBean {
+
+    private final ThreadPoolTaskScheduler taskScheduler;
+
+    public TrainShardScheduler(@Value("${ticket.purchase.shard.scheduler-threads:2}") int threads) {
+        this.taskScheduler = new ThreadPoolTaskScheduler();
+        this.taskScheduler.setPoolSize(threads);
+        this.taskScheduler.setThreadNamePrefix("train-shard-scheduler-");
+        this.taskScheduler.setDaemon(true);
+        this.taskScheduler.initialize();
+    }
+
+    /**
+     * 按固定间隔重复执行，首次在一个间隔后执行，单次执行异常只记录日志
+     *
+     * @param task        任务
+     * @param delayMillis 执行间隔（毫秒）
+     */
+    public void scheduleWithFixedDelay(Runnable task, long delayMillis) {
+        taskScheduler.scheduleWithFixedDelay(task, Instant.now().plusMillis(delayMillis), Duration.ofMillis(delayMillis));
+    }
+
+    /**
+     * 延迟执行一次
+     *
+     * @param task        任务
+     * @param delayMillis 延迟时间（毫秒）
+     */
+    public void schedule(Runnable task, long delayMillis) {
+        taskScheduler.schedule(task, Instant.now().plusMillis(delayMillis));
+    }
+
+    @Override
+    public void destroy() {
+        taskScheduler.shutdown();
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.select;
+
+import java.util.Collection;
+
+/**
+ * 位图座位选择器
+ * <p>
+ * 车厢每排座位用一个 int 位图表示，第 c 位为 1 代表该排第 c 列（从 0 开始）空闲；
+ * 选中的座位编码为 {@code 排 << 8 | 列}，排、列均从 0 开始。
+ * 除构建位图外所有方法均不分配对象，结果写入调用方提供的数组
+ */
+public final class SeatBitmapSelection {
+
+    /**
+     * 座位编码中列所占位数
+     */
+    private static final int COLUMN_BITS = 8;
+
+    private static final int COLUMN_MASK = (1 << COLUMN_BITS) - 1;
+
+    /**
+     * 座位编码中排号上限，超出后左移会溢出
+     */
+    private static final int MAX_ROW = Integer.MAX_VALUE >>> COLUMN_BITS;
+
+    private SeatBitmapSelection() {
+    }
+
+    public static int encode(int row, int column) {
+        return row << COLUMN_BITS | column;
+    }
+
+    public static int row(int seat) {
+        return seat >>> COLUMN_BITS;
+    }
+
+    public static int column(int seat) {
+        return seat & COLUMN_MASK;
+    }
+
+    /**
+     * 将可用座位号构建为每排座位位图
+     *
+     * @param availableSeats 可用座位号集合，格式为排号 + 列字母，如 01A、12F
+     * @param rows           车厢排数
+     * @param columns        车厢列字母，按列顺序排列，如 ABCDF
+     * @return 每排座位位图
+     */
+    public static int[] buildRowMasks(Collection<String> availableSeats, int rows, String columns) {
+        int[] rowMasks = new int[rows];
+        for (String each : availableSeats) {
+            int seat = parseSeatNumber(each, columns);
+            if (seat >= 0 && row(seat) < rows) {
+                rowMasks[row(seat)] |= 1 << column(seat);
+            }
+        }
+        return rowMasks;
+    }
+
+    /**
+     * 解析座位号，如 01A、12F
+     *
+     * @return 座位编码，无法解析返回 -1
+     */
+    public static int parseSeatNumber(String seatNumber, String columns) {
+        int length = seatNumber == null ? 0 : seatNumber.length();
+        if (length < 2) {
+            return -1;
+        }
+        int row = 0;
+        for (int i = 0; i < length - 1; i++) {
+            char c = seatNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            row = row * 10 + (c - '0');
+        }
+        int column = columns.indexOf(seatNumber.charAt(length - 1));
+        if (row < 1 || column < 0) {
+            return -1;
+        }
+        return encode(row - 1, column);
+    }
+
+    /**
+     * 解析用户选座，如 A1、F2，排号保持用户原值，仅用于计算相对位置
+     *
+     * @return 座位编码，列字母不在车厢列中或排号不合法返回 -1
+     */
+    public static int parseChooseSeat(String chooseSeat, String columns) {
+        int length = chooseSeat == null ? 0 : chooseSeat.length();
+        if (length < 2) {
+            return -1;
+        }
+        int column = columns.indexOf(chooseSeat.charAt(0));
+        if (column < 0) {
+            return -1;
+        }
+        int row = 0;
+        for (int i = 1; i < length; i++) {
+            char c = chooseSeat.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            row = row * 10 + (c - '0');
+            if (row > MAX_ROW) {
+                return -1;
+            }
+        }
+        return row < 1 ? -1 : encode(row, column);
+    }
+
+    /**
+     * 座位编码转换为座位号，排号不足两位补 0
+     */
+    public static String toSeatNumber(int seat, String columns) {
+        int row = row(seat) + 1;
+        char column = columns.charAt(column(seat));
+        return row <= 9 ? "0" + row + column : "" + row + column;
+    }
+
+    public static boolean isFree(int[] rowMasks, int row, int column) {
+        return row >= 0 && row < rowMasks.length && (rowMasks[row] >>> column & 1) == 1;
+    }
+
+    public static void occupy(int[] rowMasks, int seat) {
+        rowMasks[row(seat)] &= ~(1 << column(seat));
+    }
+
+    public static int countFree(int[] rowMasks) {
+        int count = 0;
+        for (int each : rowMasks) {
+            count += Integer.bitCount(each);
+        }
+        return count;
+    }
+
+    /**
+     * 相邻座位选择：从第一排开始，返回首个包含连续 count 个空座的排中最靠左的一组
+     *
+     * @return 最左侧座位编码，其余座位为同排后续列；无法满足返回 -1
+     */
+    public static int adjacent(int[] rowMasks, int count) {
+        if (count <= 0 || count > Integer.SIZE) {
+            return -1;
+        }
+        for (int i = 0; i < rowMasks.length; i++) {
+            int mask = rowMasks[i];
+            int runs = mask;
+            // 第 c 位保留表示 c ~ c + k 列均空闲
+            for (int k = 1; k < count && runs != 0; k++) {
+                runs &= mask >>> k;
+            }
+            if (runs != 0) {
+                return encode(i, Integer.numberOfTrailingZeros(runs));
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 相邻座位选择，选中座位写入 out 并从位图中占用
+     *
+     * @return 是否选座成功
+     */
+    public static boolean adjacent(int[] rowMasks, int count, int[] out, int offset) {
+        int first = adjacent(rowMasks, count);
+        if (first < 0) {
+            return false;
+        }
+        for (int k = 0; k < count; k++) {
+            out[offset + k] = first + k;
+        }
+        rowMasks[row(first)] &= ~(((1 << count) - 1) << column(first));
+        return true;
+    }
+
+    /**
+     * 同排座位选择：用于包厢、卧铺，返回首个空座数不少于 count 的排中靠前的 count 个座位，选中座位写入 out 并从位图中占用
+     *
+     * @return 是否选座成功
+     */
+    public static boolean sameRow(int[] rowMasks, int count, int[] out, int offset) {
+        if (count <= 0) {
+            return false;
+        }
+        for (int i = 0; i < rowMasks.length; i++) {
+            int mask = rowMasks[i];
+            if (Integer.bitCount(mask) < count) {
+                continue;
+            }
+            for (int k = 0; k < count; k++) {
+                out[offset + k] = encode(i, Integer.numberOfTrailingZeros(mask));
+                mask &= mask - 1;
+            }
+            rowMasks[i] = mask;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 不相邻座位选择：按排、列顺序选取前 count 个空座
+     *
+     * @return 实际选中座位数，可能小于 count
+     */
+    public static int nonAdjacent(int[] rowMasks, int count, int[] out) {
+        return nonAdjacent(rowMasks, count, out, 0);
+    }
+
+    /**
+     * 不相邻座位选择，选中座位从 out 的 offset 位置开始写入
+     *
+     * @return 实际选中座位数，可能小于 count
+     */
+    public static int nonAdjacent(int[] rowMasks, int count, int[] out, int offset) {
+        int selected = 0;
+        for (int i = 0; i < rowMasks.length && selected < count; i++) {
+            int mask = rowMasks[i];
+            while (mask != 0 && selected < count) {
+                out[offset + selected++] = encode(i, Integer.numberOfTrailingZeros(mask));
+                mask &= mask - 1;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 用户选座匹配：以首个选座的列为基准，保持各选座之间的相对排、列偏移，自上而下寻找首个全部空闲的位置
+     *
+     * @param chooseSeats 用户选座编码，见 {@link #parseChooseSeat(String, String)}
+     * @return 匹配成功返回选座数量，否则返回 0；存在无法解析的选座时返回 0
+     */
+    public static int chooseSeats(int[] rowMasks, int[] chooseSeats, int[] out) {
+        int size = chooseSeats.length;
+        if (size == 0) {
+            return 0;
+        }
+        for (int each : chooseSeats) {
+            if (each < 0) {
+                return 0;
+            }
+        }
+        int firstRow = row(chooseSeats[0]);
+        int firstColumn = column(chooseSeats[0]);
+        int minLevelX = 0;
+        for (int k = 1; k < size; k++) {
+            minLevelX = Math.min(minLevelX, row(chooseSeats[k]) - firstRow);
+        }
+        for (int i = -minLevelX; i < rowMasks.length; i++) {
+            if (!isFree(rowMasks, i, firstColumn)) {
+                continue;
+            }
+            out[0] = encode(i, firstColumn);
+            int matched = 1;
+            for (int k = 1; k < size; k++) {
+                int x = i + row(chooseSeats[k]) - firstRow;
+                if (x >= rowMasks.length) {
+                    return 0;
+                }
+                int y = column(chooseSeats[k]);
+                if (!isFree(rowMasks, x, y)) {
+                    break;
+                }
+                out[matched++] = encode(x, y);
+            }
+            if (matched == size) {
+                return size;
+            }
+        }
+        return 0;
+    }
+}
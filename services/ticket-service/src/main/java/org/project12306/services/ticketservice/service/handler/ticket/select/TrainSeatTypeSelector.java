@@ -22,6 +22,7 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.project12306.commons.desingnpattern.strategy.AbstractExecuteStrategy;
 import org.project12306.commons.desingnpattern.strategy.AbstractStrategyChoose;
 import org.project12306.commons.user.core.UserContext;
 import org.project12306.convention.exception.RemoteException;
@@ -36,11 +37,19 @@ import org.project12306.services.ticketservice.dto.req.PurchaseTicketReqDTO;
 import org.project12306.services.ticketservice.remote.UserRemoteService;
 import org.project12306.services.ticketservice.remote.dto.PassengerRespDTO;
 import org.project12306.services.ticketservice.service.SeatService;
+import org.project12306.services.ticketservice.service.handler.ticket.TrainCarriageLayoutPurchaseTicketHandler;
 import org.project12306.services.ticketservice.service.handler.ticket.dto.SelectSeatDTO;
 import org.project12306.services.ticketservice.service.handler.ticket.dto.TrainPurchaseTicketRespDTO;
+import org.project12306.services.ticketservice.service.handler.ticket.fare.TrainFareIndex;
+import org.project12306.services.ticketservice.service.handler.ticket.layout.CarriageLayoutRegistry;
+import org.project12306.services.ticketservice.service.handler.ticket.pipeline.TrainPurchaseBatch;
+import org.project12306.services.ticketservice.service.handler.ticket.pipeline.TrainPurchasePipeline;
+import org.project12306.services.ticketservice.toolkit.VirtualThreadUtil;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.stream.Collectors;
@@ -57,9 +66,12 @@ public final class TrainSeatTypeSelector {
     private final SeatService seatService;
     private final UserRemoteService userRemoteService;
     private final TrainStationPriceMapper trainStationPriceMapper;
+    private final TrainFareIndex trainFareIndex;
     private final AbstractStrategyChoose abstractStrategyChoose;
     private final ThreadPoolExecutor selectSeatThreadPoolExecutor;
 
+    @Value("${ticket.virtual-thread.enable:false}")
+    private boolean virtualThreadEnable;
 
     //出票方法
     public List<TrainPurchaseTicketRespDTO> select(Integer trainType, PurchaseTicketReqDTO requestParam) {
@@ -71,22 +83,31 @@ public final class TrainSeatTypeSelector {
 
         List<TrainPurchaseTicketRespDTO> actualResult = Collections.synchronizedList(new ArrayList<>(seatTypeMap.size()));
         //只要有多种类型的票就启用多线程进行处理，同时处理多种票进行出票
-        if (seatTypeMap.size() > 1) {
+        //购票流水线批量事务中前序请求锁定的座位未提交，其它线程读取不到，需在当前线程内选座
+        if (seatTypeMap.size() > 1 && !TrainPurchasePipeline.isBatching()) {
             List<Future<List<TrainPurchaseTicketRespDTO>>> futureResults = new ArrayList<>(seatTypeMap.size());
+            //开启虚拟线程执行模式时每个座位类型一个虚拟线程，否则使用平台线程池
+            ExecutorService selectSeatExecutor = virtualThreadEnable && VirtualThreadUtil.isSupported()
+                    ? VirtualThreadUtil.executor()
+                    : selectSeatThreadPoolExecutor;
             //并行处理多种类型的票封装提高效率
             //根据不同票种选择不同策略，执行策略进行出票，核心中的核心方法
             seatTypeMap.forEach((seatType, passengerSeatDetails) -> {
-                Future<List<TrainPurchaseTicketRespDTO>> completableFuture = selectSeatThreadPoolExecutor
+                Future<List<TrainPurchaseTicketRespDTO>> completableFuture = selectSeatExecutor
                         .submit(() -> distributeSeats(trainType, seatType, requestParam, passengerSeatDetails));
                 futureResults.add(completableFuture);
             });
-            futureResults.parallelStream().forEach(completableFuture -> {
+            //当前线程依次等待结果，避免在公共 ForkJoin 线程池中阻塞
+            for (Future<List<TrainPurchaseTicketRespDTO>> completableFuture : futureResults) {
                 try {
                     actualResult.addAll(completableFuture.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ServiceException("站点余票不足，请尝试更换座位类型或选择其它站点");
                 } catch (Exception e) {
                     throw new ServiceException("站点余票不足，请尝试更换座位类型或选择其它站点");
                 }
-            });
+            }
         } else {
             //反之使用单线程处理
             seatTypeMap.forEach((seatType, passengerSeatDetails) -> {
@@ -128,17 +149,27 @@ public final class TrainSeatTypeSelector {
                         each.setIdType(passenger.getIdType());
                         each.setRealName(passenger.getRealName());
                     });
-            LambdaQueryWrapper<TrainStationPriceDO> lambdaQueryWrapper = Wrappers.lambdaQuery(TrainStationPriceDO.class)
-                    .eq(TrainStationPriceDO::getTrainId, requestParam.getTrainId())
-                    .eq(TrainStationPriceDO::getDeparture, requestParam.getDeparture())
-                    .eq(TrainStationPriceDO::getArrival, requestParam.getArrival())
-                    .eq(TrainStationPriceDO::getSeatType, each.getSeatType())
-                    .select(TrainStationPriceDO::getPrice);
-            TrainStationPriceDO trainStationPriceDO = trainStationPriceMapper.selectOne(lambdaQueryWrapper);
-            each.setAmount(trainStationPriceDO.getPrice());
+            //票价优先读取内存票价索引，避免持有购票锁期间逐个乘车人查询数据库
+            Integer price = trainFareIndex.getPrice(requestParam.getTrainId(), requestParam.getDeparture(), requestParam.getArrival(), each.getSeatType());
+            if (price == null) {
+                LambdaQueryWrapper<TrainStationPriceDO> lambdaQueryWrapper = Wrappers.lambdaQuery(TrainStationPriceDO.class)
+                        .eq(TrainStationPriceDO::getTrainId, requestParam.getTrainId())
+                        .eq(TrainStationPriceDO::getDeparture, requestParam.getDeparture())
+                        .eq(TrainStationPriceDO::getArrival, requestParam.getArrival())
+                        .eq(TrainStationPriceDO::getSeatType, each.getSeatType())
+                        .select(TrainStationPriceDO::getPrice);
+                TrainStationPriceDO trainStationPriceDO = trainStationPriceMapper.selectOne(lambdaQueryWrapper);
+                price = trainStationPriceDO.getPrice();
+            }
+            each.setAmount(price);
         });
 
         seatService.lockSeat(requestParam.getTrainId(), requestParam.getDeparture(), requestParam.getArrival(), actualResult);
+        //购票流水线批次内记录已锁定座位，请求保存点提交后从批次座位快照中扣除
+        TrainPurchaseBatch purchaseBatch = TrainPurchasePipeline.currentBatch();
+        if (purchaseBatch != null) {
+            purchaseBatch.occupy(requestParam.getDeparture(), requestParam.getArrival(), actualResult);
+        }
         return actualResult;
     }
 
@@ -152,18 +183,23 @@ public final class TrainSeatTypeSelector {
      * @return
      */
     private List<TrainPurchaseTicketRespDTO> distributeSeats(Integer trainType, Integer seatType, PurchaseTicketReqDTO requestParam, List<PurchaseTicketPassengerDetailDTO> passengerSeatDetails) {
-        //根据车次和车类型生成对应key的mark用于决定策略
-        String buildStrategyKey = VehicleTypeEnum.findNameByCode(trainType) + VehicleSeatTypeEnum.findNameByCode(seatType);
+        //已注册车厢布局的车型、座位类型统一由车厢布局策略选座，其余按车类型和座位类型生成对应key的mark用于决定策略
+        String buildStrategyKey = CarriageLayoutRegistry.find(trainType, seatType) != null
+                ? TrainCarriageLayoutPurchaseTicketHandler.MARK
+                : VehicleTypeEnum.findNameByCode(trainType) + VehicleSeatTypeEnum.findNameByCode(seatType);
         SelectSeatDTO selectSeatDTO = SelectSeatDTO.builder()
+                .vehicleType(trainType)
                 .seatType(seatType)
                 .passengerSeatDetails(passengerSeatDetails)
                 .requestParam(requestParam)
                 .build();
+        AbstractExecuteStrategy<SelectSeatDTO, List<TrainPurchaseTicketRespDTO>> executeStrategy;
         try {
             //策略模式通过mark获取对应策略，这里是根据车类型和座位类型获取对应策略
-            return abstractStrategyChoose.chooseAndExecuteResp(buildStrategyKey, selectSeatDTO);
+            executeStrategy = abstractStrategyChoose.choose(buildStrategyKey, null);
         } catch (ServiceException ex) {
-            throw new ServiceException("当前车次列车类型暂未适配，请购买G35或G39车次");
+            throw new ServiceException("当前车次列车类型暂未适配");
         }
+        return executeStrategy.executeResp(selectSeatDTO);
     }
 }
@@ -19,20 +19,20 @@ package org.project12306.services.ticketservice.service.handler.ticket.tokenbuck
 
 import cn.hutool.core.util.StrUtil;
 import com.alibaba.fastjson2.JSON;
-import com.alibaba.fastjson2.JSONArray;
 import com.alibaba.fastjson2.JSONObject;
-import com.google.common.collect.Lists;
-import lombok.RequiredArgsConstructor;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.project12306.commons.base.Singleton;
+import org.project12306.commons.base.profiler.LockProfiler;
+import org.project12306.commons.base.profiler.LockSample;
 import org.project12306.commons.cache.DistributedCache;
-import org.project12306.commons.common.toolkit.Assert;
 import org.project12306.convention.exception.ServiceException;
 import org.project12306.services.ticketservice.common.enums.VehicleTypeEnum;
 import org.project12306.services.ticketservice.dao.entity.TrainDO;
 import org.project12306.services.ticketservice.dao.mapper.TrainMapper;
-import org.project12306.services.ticketservice.dto.domain.RouteDTO;
-import org.project12306.services.ticketservice.dto.domain.SeatTypeCountDTO;
 import org.project12306.services.ticketservice.dto.req.PurchaseTicketPassengerDetailDTO;
 import org.project12306.services.ticketservice.dto.req.PurchaseTicketReqDTO;
 import org.project12306.services.ticketservice.remote.dto.TicketOrderDetailRespDTO;
@@ -42,39 +42,128 @@ import org.project12306.services.ticketservice.service.TrainStationService;
 import org.project12306.services.ticketservice.service.handler.ticket.dto.TokenResultDTO;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.scripting.support.ResourceScriptSource;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static org.project12306.services.ticketservice.common.constant.Index12306Constant.ADVANCE_TICKET_DAY;
+import static org.project12306.services.ticketservice.common.constant.LockNameConstant.TOKEN_BUCKET_INIT;
 import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.*;
 
 
 /**
  * 列车车票余量令牌桶，应对海量并发场景下满足并行、限流以及防超卖等场景
+ * 令牌桶每次删除或重建时递增纪元并广播，本地租约按纪元丢弃旧令牌，旧纪元的令牌归还时被拒绝，避免重建后的令牌桶被重复计入
  */
 @Slf4j
 @Component
-@RequiredArgsConstructor
-public final class TicketAvailabilityTokenBucket {
+public final class TicketAvailabilityTokenBucket implements CommandLineRunner, DisposableBean, MessageListener {
+
+    private static final String LUA_TICKET_AVAILABILITY_TOKEN_BUCKET_PATH = "lua/ticket_availability_token_bucket.lua";
+    private static final String LUA_TICKET_AVAILABILITY_ROLLBACK_TOKEN_BUCKET_PATH = "lua/ticket_availability_rollback_token_bucket.lua";
 
     private final TrainStationService trainStationService;
     private final DistributedCache distributedCache;
     private final RedissonClient redissonClient;
     private final SeatService seatService;
     private final TrainMapper trainMapper;
+    private final LockProfiler lockProfiler;
+    private final DefaultRedisScript<List> takeTokenScript;
+    private final DefaultRedisScript<Long> rollbackTokenScript;
+    private final Timer takeTokenTimer;
+    private final Timer rollbackTokenTimer;
+    private final DistributionSummary takeTokenPayloadSummary;
+    private final DistributionSummary rollbackTokenPayloadSummary;
+    private final ConcurrentHashMap<String, TokenLease> tokenLeaseMap = new ConcurrentHashMap<>();
 
-    private static final String LUA_TICKET_AVAILABILITY_TOKEN_BUCKET_PATH = "lua/ticket_availability_token_bucket.lua";
-    private static final String LUA_TICKET_AVAILABILITY_ROLLBACK_TOKEN_BUCKET_PATH = "lua/ticket_availability_rollback_token_bucket.lua";
+    @Value("${ticket.token-bucket.initialize-ahead-minutes:30}")
+    private long initializeAheadMinutes;
+
+    @Value("${ticket.token-bucket.lease.enable:false}")
+    private boolean leaseEnable;
+
+    @Value("${ticket.token-bucket.lease.min-size:1}")
+    private int leaseMinSize;
+
+    @Value("${ticket.token-bucket.lease.max-size:32}")
+    private int leaseMaxSize;
+
+    @Value("${ticket.token-bucket.lease.ttl-millis:2000}")
+    private long leaseTtlMillis;
+
+    public TicketAvailabilityTokenBucket(TrainStationService trainStationService,
+                                         DistributedCache distributedCache,
+                                         RedissonClient redissonClient,
+                                         SeatService seatService,
+                                         TrainMapper trainMapper,
+                                         LockProfiler lockProfiler,
+                                         MeterRegistry meterRegistry) {
+        this.trainStationService = trainStationService;
+        this.distributedCache = distributedCache;
+        this.redissonClient = redissonClient;
+        this.seatService = seatService;
+        this.trainMapper = trainMapper;
+        this.lockProfiler = lockProfiler;
+        this.takeTokenScript = buildRedisScript(LUA_TICKET_AVAILABILITY_TOKEN_BUCKET_PATH, List.class);
+        this.rollbackTokenScript = buildRedisScript(LUA_TICKET_AVAILABILITY_ROLLBACK_TOKEN_BUCKET_PATH, Long.class);
+        // 客户端计时包含网络往返、连接池等待与 Redis 排队，脚本在 Redis 内的执行耗时以 INFO commandstats 的 cmdstat_evalsha 与 SLOWLOG 为准
+        this.takeTokenTimer = Timer.builder("ticket.token_bucket.round_trip")
+                .description("令牌桶 Lua 脚本调用往返耗时")
+                .tag("script", "take")
+                .register(meterRegistry);
+        this.rollbackTokenTimer = Timer.builder("ticket.token_bucket.round_trip")
+                .tag("script", "rollback")
+                .register(meterRegistry);
+        this.takeTokenPayloadSummary = DistributionSummary.builder("ticket.token_bucket.payload")
+                .description("令牌桶 Lua 脚本单次调用参数字节数")
+                .baseUnit("bytes")
+                .tag("script", "take")
+                .register(meterRegistry);
+        this.rollbackTokenPayloadSummary = DistributionSummary.builder("ticket.token_bucket.payload")
+                .baseUnit("bytes")
+                .tag("script", "rollback")
+                .register(meterRegistry);
+        Gauge.builder("ticket.token_bucket.lease.remaining", tokenLeaseMap, map -> map.values().stream().mapToInt(each -> each.getRemaining().get()).sum())
+                .description("本地令牌租约剩余令牌数量")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 启动时预加载令牌桶脚本，后续调用均通过 EVALSHA 执行，避免首次调用 NOSCRIPT 后回退 EVAL 传输脚本全文
+     */
+    @Override
+    public void run(String... args) {
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        for (DefaultRedisScript<?> each : List.of(takeTokenScript, rollbackTokenScript)) {
+            try {
+                byte[] script = each.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+                String sha1 = stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.scriptingCommands().scriptLoad(script));
+                log.info("[令牌桶] 预加载 Lua 脚本 {}", sha1);
+            } catch (Throwable ex) {
+                log.warn("[令牌桶] 预加载 Lua 脚本失败，首次调用时加载", ex);
+            }
+        }
+    }
 
     /**
      * 获取车站间令牌桶中的令牌访问
@@ -85,83 +174,211 @@ public final class TicketAvailabilityTokenBucket {
      * @return 是否获取列车车票余量令牌桶中的令牌返回结果
      */
     public TokenResultDTO takeTokenFromBucket(PurchaseTicketReqDTO requestParam) {
-        //查询列车和路段信息
+        Map<Integer, Long> seatTypeCountMap = requestParam.getPassengers().stream()
+                .collect(Collectors.groupingBy(PurchaseTicketPassengerDetailDTO::getSeatType, Collectors.counting()));
+        if (leaseEnable) {
+            return takeTokenFromLease(requestParam.getTrainId(), requestParam.getDeparture(), requestParam.getArrival(), seatTypeCountMap);
+        }
+        ensureTokenBucket(requestParam.getTrainId());
+        TakeTokenResult takeTokenResult = executeTakeToken(requestParam.getTrainId(), requestParam.getDeparture(), requestParam.getArrival(), seatTypeCountMap);
+        if (takeTokenResult == null) {
+            return TokenResultDTO.builder().tokenIsNull(Boolean.TRUE).build();
+        }
+        List<String> tokenIsNullSeatTypeCounts = takeTokenResult.tokenIsNullSeatTypeCounts();
+        return TokenResultDTO.builder()
+                .tokenIsNull(!tokenIsNullSeatTypeCounts.isEmpty())
+                .tokenIsNullSeatTypeCounts(tokenIsNullSeatTypeCounts.isEmpty() ? null : tokenIsNullSeatTypeCounts)
+                .build();
+    }
+
+    /**
+     * 令牌桶正常情况下已由 initializeTokens 在开售前预热，未命中时同步创建
+     */
+    private void ensureTokenBucket(String trainId) {
+        if (distributedCache.hasKey(TICKET_AVAILABILITY_TOKEN_BUCKET + trainId)) {
+            return;
+        }
         TrainDO trainDO = distributedCache.safeGet(
-                TRAIN_INFO + requestParam.getTrainId(),
+                TRAIN_INFO + trainId,
                 TrainDO.class,
-                () -> trainMapper.selectById(requestParam.getTrainId()),
+                () -> trainMapper.selectById(trainId),
                 ADVANCE_TICKET_DAY,
                 TimeUnit.DAYS);
-        List<RouteDTO> routeDTOList = trainStationService
-                .listTrainStationRoute(requestParam.getTrainId(), trainDO.getStartStation(), trainDO.getEndStation());
-        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        putTokenInBucket(trainDO);
+    }
 
-        //创建令牌桶
-        String tokenBucketHashKey = TICKET_AVAILABILITY_TOKEN_BUCKET + requestParam.getTrainId();
-        Boolean hasKey = distributedCache.hasKey(tokenBucketHashKey);
-        //令牌桶不存在就进行创建
-        if (!hasKey) {
-            RLock lock = redissonClient.getLock(String.format(LOCK_TICKET_AVAILABILITY_TOKEN_BUCKET, requestParam.getTrainId()));
-            if (!lock.tryLock()) {
-                throw new ServiceException("购票异常，请稍候再试");
+    /**
+     * 从本地令牌租约获取令牌，租约不足时向 Redis 令牌桶续租
+     * 多座位类型购票时任一座位类型令牌不足，已获取的令牌归还本地租约
+     */
+    private TokenResultDTO takeTokenFromLease(String trainId, String departure, String arrival, Map<Integer, Long> seatTypeCountMap) {
+        Map<TokenLease, Integer> acquiredMap = new HashMap<>();
+        for (Map.Entry<Integer, Long> entry : seatTypeCountMap.entrySet()) {
+            TokenLease tokenLease = tokenLeaseMap.computeIfAbsent(
+                    StrUtil.join("_", trainId, departure, arrival, entry.getKey()),
+                    key -> new TokenLease(trainId, departure, arrival, entry.getKey(), leaseMinSize));
+            int count = entry.getValue().intValue();
+            if (!tokenLease.tryAcquire(count) && !refillTokenLease(tokenLease, count)) {
+                acquiredMap.forEach(TokenLease::release);
+                return TokenResultDTO.builder()
+                        .tokenIsNull(Boolean.TRUE)
+                        .tokenIsNullSeatTypeCounts(List.of(entry.getKey() + "_" + count))
+                        .build();
             }
-            try {
-                Boolean hasKeyTwo = distributedCache.hasKey(tokenBucketHashKey);
-                // 双重检查避免重复初始化
-                if (!hasKeyTwo) {
-                    //获取目标列车中有几种座位类型
-                    List<Integer> seatTypes = VehicleTypeEnum.findSeatTypesByCode(trainDO.getTrainType());
-                    Map<String, String> ticketAvailabilityTokenMap = new HashMap<>();
-
-                    //查询各座位的余量
-                    for (RouteDTO each : routeDTOList) {
-                        List<SeatTypeCountDTO> seatTypeCountDTOList = seatService.listSeatTypeCount(Long.parseLong(requestParam.getTrainId()), each.getStartStation(), each.getEndStation(), seatTypes);
-                        for (SeatTypeCountDTO eachSeatTypeCountDTO : seatTypeCountDTOList) {
-                            String buildCacheKey = StrUtil.join("_", each.getStartStation(), each.getEndStation(), eachSeatTypeCountDTO.getSeatType());
-                            ticketAvailabilityTokenMap.put(buildCacheKey, String.valueOf(eachSeatTypeCountDTO.getSeatCount()));
-                        }
+            acquiredMap.put(tokenLease, count);
+        }
+        return TokenResultDTO.builder().tokenIsNull(Boolean.FALSE).build();
+    }
+
+    /**
+     * 向 Redis 令牌桶续租，续租数量为本次所需令牌加下次续租数量，余量不足整批续租时只获取本次所需令牌
+     * 租约已被清理或续租期间令牌桶已重建时，本次所需令牌直接交给请求，不放入租约
+     *
+     * @return 是否获取到本次所需令牌
+     */
+    private boolean refillTokenLease(TokenLease tokenLease, int count) {
+        tokenLease.getRefillLock().lock();
+        try {
+            if (tokenLease.tryAcquire(count)) {
+                return true;
+            }
+            ensureTokenBucket(tokenLease.getTrainId());
+            if (!tokenLease.isRetired()) {
+                long now = System.currentTimeMillis();
+                int leaseSize = tokenLease.nextLeaseSize(now, leaseTtlMillis, leaseMaxSize);
+                TakeTokenResult takeTokenResult = executeTakeToken(tokenLease.getTrainId(), tokenLease.getDeparture(), tokenLease.getArrival(), Map.of(tokenLease.getSeatType(), (long) count + leaseSize));
+                if (takeTokenResult != null && takeTokenResult.tokenIsNullSeatTypeCounts().isEmpty()) {
+                    if (!tokenLease.refill(leaseSize, now, leaseTtlMillis, takeTokenResult.epoch())) {
+                        log.info("[令牌租约] 续租期间令牌桶已重建，丢弃旧纪元令牌，列车：{}，数量：{}", tokenLease.getTrainId(), leaseSize);
+                    }
+                    return true;
+                }
+                tokenLease.shrink(leaseMinSize);
+            }
+            TakeTokenResult takeTokenResult = executeTakeToken(tokenLease.getTrainId(), tokenLease.getDeparture(), tokenLease.getArrival(), Map.of(tokenLease.getSeatType(), (long) count));
+            return takeTokenResult != null && takeTokenResult.tokenIsNullSeatTypeCounts().isEmpty();
+        } finally {
+            tokenLease.getRefillLock().unlock();
+        }
+    }
+
+    /**
+     * 归还过期租约的剩余令牌，并清理长时间未访问的租约
+     * 过期判断、取出剩余令牌与移除在 compute 中持续租锁完成，与并发续租互斥，续租后未过期的租约不会被取出或移除
+     */
+    @Scheduled(initialDelayString = "${ticket.token-bucket.lease.ttl-millis:2000}", fixedDelayString = "${ticket.token-bucket.lease.ttl-millis:2000}")
+    public void returnExpiredTokenLease() {
+        long now = System.currentTimeMillis();
+        List<LeaseReturn> leaseReturnList = new ArrayList<>();
+        for (String key : tokenLeaseMap.keySet()) {
+            tokenLeaseMap.compute(key, (k, tokenLease) -> {
+                if (tokenLease == null) {
+                    return null;
+                }
+                tokenLease.getRefillLock().lock();
+                try {
+                    if (!tokenLease.isExpired(now)) {
+                        return tokenLease;
                     }
+                    int left = tokenLease.drain(leaseMinSize);
+                    if (left > 0) {
+                        leaseReturnList.add(new LeaseReturn(tokenLease, left, tokenLease.getEpoch()));
+                    }
+                    if (now - tokenLease.getLastAccessTime() > leaseTtlMillis * 10) {
+                        tokenLease.retire();
+                        return null;
+                    }
+                    return tokenLease;
+                } finally {
+                    tokenLease.getRefillLock().unlock();
+                }
+            });
+        }
+        leaseReturnList.forEach(this::returnTokenLease);
+    }
 
-                    // 构建Redis Hash：Key令牌桶格式为"起点_终点_座位类型"，Value为余量
-                    stringRedisTemplate.opsForHash().putAll(TICKET_AVAILABILITY_TOKEN_BUCKET + requestParam.getTrainId(), ticketAvailabilityTokenMap);
+    /**
+     * 停机时归还全部租约剩余令牌，节点异常宕机未归还的令牌只会少卖，由余票不足时的令牌桶校准恢复
+     */
+    @Override
+    public void destroy() {
+        List<LeaseReturn> leaseReturnList = new ArrayList<>();
+        for (String key : tokenLeaseMap.keySet()) {
+            tokenLeaseMap.computeIfPresent(key, (k, tokenLease) -> {
+                tokenLease.getRefillLock().lock();
+                try {
+                    int left = tokenLease.drain(leaseMinSize);
+                    if (left > 0) {
+                        leaseReturnList.add(new LeaseReturn(tokenLease, left, tokenLease.getEpoch()));
+                    }
+                    tokenLease.retire();
+                    return null;
+                } finally {
+                    tokenLease.getRefillLock().unlock();
                 }
-            } finally {
-                lock.unlock();
+            });
+        }
+        leaseReturnList.forEach(this::returnTokenLease);
+    }
+
+    /**
+     * 按取出时的纪元归还租约令牌，令牌桶已重建时被拒绝
+     */
+    private void returnTokenLease(LeaseReturn leaseReturn) {
+        TokenLease tokenLease = leaseReturn.tokenLease();
+        try {
+            Long result = executeRollbackToken(tokenLease.getTrainId(), tokenLease.getDeparture(), tokenLease.getArrival(),
+                    Map.of(tokenLease.getSeatType(), (long) leaseReturn.count()), String.valueOf(leaseReturn.epoch()));
+            if (!Objects.equals(result, 0L)) {
+                log.info("[令牌租约] 令牌桶已重建，丢弃旧纪元令牌，列车：{}，纪元：{}，数量：{}", tokenLease.getTrainId(), leaseReturn.epoch(), leaseReturn.count());
             }
+        } catch (Throwable ex) {
+            log.error("[令牌租约] 归还令牌失败，列车：{}，区间：{}-{}，座位类型：{}，数量：{}",
+                    tokenLease.getTrainId(), tokenLease.getDeparture(), tokenLease.getArrival(), tokenLease.getSeatType(), leaseReturn.count(), ex);
         }
+    }
 
-        //加载lua脚本
-        DefaultRedisScript<String> actual = Singleton.get(LUA_TICKET_AVAILABILITY_TOKEN_BUCKET_PATH, () -> {
-            DefaultRedisScript<String> redisScript = new DefaultRedisScript<>();
-            redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource(LUA_TICKET_AVAILABILITY_TOKEN_BUCKET_PATH)));
-            redisScript.setResultType(String.class);
-            return redisScript;
-        });
-        Assert.notNull(actual);
+    /**
+     * 检查乘车区间各座位类型余量是否充足，充足时原子性扣减所有与乘车区间重叠的站间余量，否则返回余量不足的座位类型
+     */
+    private TakeTokenResult executeTakeToken(String trainId, String departure, String arrival, Map<Integer, Long> seatTypeCountMap) {
+        String[] args = buildScriptArgs(trainId, departure, arrival, seatTypeCountMap);
+        takeTokenPayloadSummary.record(payloadSize(args));
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        List<String> keys = List.of(TICKET_AVAILABILITY_TOKEN_BUCKET + trainId, TICKET_AVAILABILITY_TOKEN_BUCKET_EPOCH + trainId);
+        List<?> result = takeTokenTimer.record(() -> stringRedisTemplate.execute(takeTokenScript, keys, (Object[]) args));
+        if (result == null || result.isEmpty()) {
+            return null;
+        }
+        // 首个元素为令牌桶纪元，之后为余量不足的座位类型
+        List<String> tokenIsNullSeatTypeCounts = result.subList(1, result.size()).stream().map(String::valueOf).collect(Collectors.toList());
+        return new TakeTokenResult(Long.parseLong(String.valueOf(result.get(0))), tokenIsNullSeatTypeCounts);
+    }
 
-        Map<Integer, Long> seatTypeCountMap = requestParam.getPassengers().stream()
-                .collect(Collectors.groupingBy(PurchaseTicketPassengerDetailDTO::getSeatType, Collectors.counting()));
-        JSONArray seatTypeCountArray = seatTypeCountMap.entrySet().stream()
-                .map(entry -> {
-                    JSONObject jsonObject = new JSONObject();
-                    jsonObject.put("seatType", String.valueOf(entry.getKey()));
-                    jsonObject.put("count", String.valueOf(entry.getValue()));
-                    return jsonObject;
-                })
-                .collect(Collectors.toCollection(JSONArray::new));
-
-        List<RouteDTO> takeoutRouteDTOList = trainStationService
-                .listTakeoutTrainStationRoute(requestParam.getTrainId(), requestParam.getDeparture(), requestParam.getArrival());
-        String luaScriptKey = StrUtil.join("_", requestParam.getDeparture(), requestParam.getArrival());
-
-        //遍历购票请求的乘车区间（如北京→上海）和 座位类型（如一等座）。
-        //检查所有 覆盖区间（如北京→上海、上海→杭州）的余票是否充足。
-        //若充足，原子性扣减对应区间的余票；否则返回失败。
-        String resultStr = stringRedisTemplate.execute(actual, Lists.newArrayList(tokenBucketHashKey, luaScriptKey), JSON.toJSONString(seatTypeCountArray), JSON.toJSONString(takeoutRouteDTOList));
-        TokenResultDTO result = JSON.parseObject(resultStr, TokenResultDTO.class);
-        return result == null
-                ? TokenResultDTO.builder().tokenIsNull(Boolean.TRUE).build()
-                : result;
+    private Long executeRollbackToken(String trainId, String departure, String arrival, Map<Integer, Long> seatTypeCountMap, String epoch) {
+        return executeRollbackToken(trainId, departure, arrival, seatTypeCountMap, epoch, null, null);
+    }
+
+    /**
+     * 回滚令牌，epoch 为空时不校验纪元；指定排除区间时与排除区间重叠的站间不回滚
+     *
+     * @return 0 表示回滚成功，1 表示令牌桶已重建拒绝回滚
+     */
+    private Long executeRollbackToken(String trainId, String departure, String arrival, Map<Integer, Long> seatTypeCountMap,
+                                      String epoch, String excludeDeparture, String excludeArrival) {
+        int excludeDepartureIndex = -1;
+        int excludeArrivalIndex = -1;
+        if (excludeDeparture != null && excludeArrival != null) {
+            List<String> stations = trainStationService.listTrainStationAll(trainId);
+            excludeDepartureIndex = stations.indexOf(excludeDeparture);
+            excludeArrivalIndex = stations.indexOf(excludeArrival);
+        }
+        String[] args = buildScriptArgs(trainId, departure, arrival, seatTypeCountMap,
+                epoch == null ? "" : epoch, String.valueOf(excludeDepartureIndex), String.valueOf(excludeArrivalIndex));
+        rollbackTokenPayloadSummary.record(payloadSize(args));
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        List<String> keys = List.of(TICKET_AVAILABILITY_TOKEN_BUCKET + trainId, TICKET_AVAILABILITY_TOKEN_BUCKET_EPOCH + trainId);
+        return rollbackTokenTimer.record(() -> stringRedisTemplate.execute(rollbackTokenScript, keys, (Object[]) args));
     }
 
     /**
@@ -170,55 +387,280 @@ public final class TicketAvailabilityTokenBucket {
      * @param requestParam 回滚列车余量令牌入参
      */
     public void rollbackInBucket(TicketOrderDetailRespDTO requestParam) {
-        //加载lua脚本
-        DefaultRedisScript<Long> actual = Singleton.get(LUA_TICKET_AVAILABILITY_ROLLBACK_TOKEN_BUCKET_PATH, () -> {
-            DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
-            redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource(LUA_TICKET_AVAILABILITY_ROLLBACK_TOKEN_BUCKET_PATH)));
-            redisScript.setResultType(Long.class);
-            return redisScript;
-        });
-        Assert.notNull(actual);
-
-
         List<TicketOrderPassengerDetailRespDTO> passengerDetails = requestParam.getPassengerDetails();
         Map<Integer, Long> seatTypeCountMap = passengerDetails.stream()
                 .collect(Collectors.groupingBy(TicketOrderPassengerDetailRespDTO::getSeatType, Collectors.counting()));
-        JSONArray seatTypeCountArray = seatTypeCountMap.entrySet().stream()
-                .map(entry -> {
-                    JSONObject jsonObject = new JSONObject();
-                    jsonObject.put("seatType", String.valueOf(entry.getKey()));
-                    jsonObject.put("count", String.valueOf(entry.getValue()));
-                    return jsonObject;
-                })
-                .collect(Collectors.toCollection(JSONArray::new));
-        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
-        String actualHashKey = TICKET_AVAILABILITY_TOKEN_BUCKET + requestParam.getTrainId();
-        String luaScriptKey = StrUtil.join("_", requestParam.getDeparture(), requestParam.getArrival());
-        List<RouteDTO> takeoutRouteDTOList = trainStationService.listTakeoutTrainStationRoute(String.valueOf(requestParam.getTrainId()), requestParam.getDeparture(), requestParam.getArrival());
-
-        Long result = stringRedisTemplate.execute(actual, Lists.newArrayList(actualHashKey, luaScriptKey), JSON.toJSONString(seatTypeCountArray), JSON.toJSONString(takeoutRouteDTOList));
+        Long result = executeRollbackToken(String.valueOf(requestParam.getTrainId()), requestParam.getDeparture(), requestParam.getArrival(), seatTypeCountMap, null);
         if (result == null || !Objects.equals(result, 0L)) {
             log.error("回滚列车余票令牌失败，订单信息：{}", JSON.toJSONString(requestParam));
             throw new ServiceException("回滚列车余票令牌失败");
         }
     }
 
+    /**
+     * 按乘车区间回滚列车余量令牌，一般为候补匹配后剩余或候补出票失败的令牌
+     *
+     * @param trainId          列车 ID
+     * @param departure        出发站
+     * @param arrival          到达站
+     * @param seatTypeCountMap 座位类型与回滚数量
+     */
+    public void rollbackInBucket(String trainId, String departure, String arrival, Map<Integer, Long> seatTypeCountMap) {
+        Long result = executeRollbackToken(trainId, departure, arrival, seatTypeCountMap, null);
+        if (result == null || !Objects.equals(result, 0L)) {
+            log.error("回滚列车余票令牌失败，列车：{}，区间：{}-{}，座位类型数量：{}", trainId, departure, arrival, seatTypeCountMap);
+            throw new ServiceException("回滚列车余票令牌失败");
+        }
+    }
+
+    /**
+     * 按纪元回滚令牌，一般为候补暂扣的令牌，令牌桶已重建时拒绝回滚
+     *
+     * @param trainId          列车 ID
+     * @param departure        出发站
+     * @param arrival          到达站
+     * @param seatTypeCountMap 座位类型与回滚数量
+     * @param epoch            令牌所属纪元
+     * @return 令牌桶已重建拒绝回滚时返回 false
+     */
+    public boolean rollbackInBucket(String trainId, String departure, String arrival, Map<Integer, Long> seatTypeCountMap, long epoch) {
+        return returnInBucket(trainId, departure, arrival, seatTypeCountMap, epoch, null, null);
+    }
+
+    /**
+     * 按纪元归还乘车区间内未使用的令牌，与已使用区间重叠的站间不归还，一般为候补单使用了释放座位的部分区间
+     *
+     * @param trainId          列车 ID
+     * @param departure        释放座位出发站
+     * @param arrival          释放座位到达站
+     * @param usedDeparture    已使用区间出发站
+     * @param usedArrival      已使用区间到达站
+     * @param seatTypeCountMap 座位类型与归还数量
+     * @param epoch            令牌所属纪元
+     * @return 令牌桶已重建拒绝归还时返回 false
+     */
+    public boolean returnUnusedInBucket(String trainId, String departure, String arrival, String usedDeparture, String usedArrival,
+                                        Map<Integer, Long> seatTypeCountMap, long epoch) {
+        return returnInBucket(trainId, departure, arrival, seatTypeCountMap, epoch, usedDeparture, usedArrival);
+    }
+
+    private boolean returnInBucket(String trainId, String departure, String arrival, Map<Integer, Long> seatTypeCountMap,
+                                   long epoch, String excludeDeparture, String excludeArrival) {
+        Long result = executeRollbackToken(trainId, departure, arrival, seatTypeCountMap, String.valueOf(epoch), excludeDeparture, excludeArrival);
+        if (result == null) {
+            log.error("回滚列车余票令牌失败，列车：{}，区间：{}-{}，座位类型数量：{}", trainId, departure, arrival, seatTypeCountMap);
+            throw new ServiceException("回滚列车余票令牌失败");
+        }
+        return Objects.equals(result, 0L);
+    }
+
+    /**
+     * 直接从令牌桶获取令牌，不经过本地租约，一般为令牌桶重建后候补重新暂扣释放座位
+     *
+     * @param trainId          列车 ID
+     * @param departure        出发站
+     * @param arrival          到达站
+     * @param seatTypeCountMap 座位类型与数量
+     * @return 获取成功时返回令牌所属纪元，余量不足时返回 null
+     */
+    public Long takeTokenInBucket(String trainId, String departure, String arrival, Map<Integer, Long> seatTypeCountMap) {
+        TakeTokenResult takeTokenResult = executeTakeToken(trainId, departure, arrival, seatTypeCountMap);
+        if (takeTokenResult == null || !takeTokenResult.tokenIsNullSeatTypeCounts().isEmpty()) {
+            return null;
+        }
+        return takeTokenResult.epoch();
+    }
+
+    /**
+     * 查询令牌桶当前纪元，释放座位前读取，令牌桶在此之后重建时已按数据库余量计入释放的座位
+     *
+     * @param trainId 列车 ID
+     * @return 令牌桶纪元，从未创建时为 0
+     */
+    public long getEpoch(String trainId) {
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        String epoch = stringRedisTemplate.opsForValue().get(TICKET_AVAILABILITY_TOKEN_BUCKET_EPOCH + trainId);
+        return epoch == null ? 0L : Long.parseLong(epoch);
+    }
+
+    /**
+     * 构建令牌桶脚本参数：前置参数、站点数量、出发站下标、到达站下标，之后座位类型与数量成对出现
+     * 回滚脚本的前置参数为令牌所属纪元与排除区间
+     */
+    private String[] buildScriptArgs(String trainId, String departure, String arrival, Map<Integer, Long> seatTypeCountMap, String... prefixArgs) {
+        List<String> stations = trainStationService.listTrainStationAll(trainId);
+        int departureIndex = stations.indexOf(departure);
+        int arrivalIndex = stations.indexOf(arrival);
+        if (departureIndex < 0 || arrivalIndex <= departureIndex) {
+            throw new ServiceException("列车站点不存在或出发站不在到达站之前");
+        }
+        String[] args = new String[prefixArgs.length + 3 + (seatTypeCountMap.size() << 1)];
+        int i = 0;
+        for (String each : prefixArgs) {
+            args[i++] = each;
+        }
+        args[i++] = String.valueOf(stations.size());
+        args[i++] = String.valueOf(departureIndex);
+        args[i++] = String.valueOf(arrivalIndex);
+        for (Map.Entry<Integer, Long> entry : seatTypeCountMap.entrySet()) {
+            args[i++] = String.valueOf(entry.getKey());
+            args[i++] = String.valueOf(entry.getValue());
+        }
+        return args;
+    }
+
+    private static int payloadSize(String[] args) {
+        int size = 0;
+        for (String each : args) {
+            size += each.length();
+        }
+        return size;
+    }
+
+    private static <T> DefaultRedisScript<T> buildRedisScript(String path, Class<T> resultType) {
+        DefaultRedisScript<T> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource(path)));
+        redisScript.setResultType(resultType);
+        return redisScript;
+    }
+
     /**
      * 删除令牌，一般在令牌与数据库不一致情况下触发
+     * 先递增纪元再删除，删除前取出的令牌归还时被拒绝，并广播各节点丢弃旧纪元的租约令牌
      *
      * @param requestParam 删除令牌容器参数
      */
     public void delTokenInBucket(PurchaseTicketReqDTO requestParam) {
         StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
-        String tokenBucketHashKey = TICKET_AVAILABILITY_TOKEN_BUCKET + requestParam.getTrainId();
-        stringRedisTemplate.delete(tokenBucketHashKey);
+        String trainId = requestParam.getTrainId();
+        Long epoch = stringRedisTemplate.opsForValue().increment(TICKET_AVAILABILITY_TOKEN_BUCKET_EPOCH + trainId);
+        stringRedisTemplate.delete(TICKET_AVAILABILITY_TOKEN_BUCKET + trainId);
+        publishEpoch(trainId, epoch);
     }
 
-    public void putTokenInBucket() {
+    /**
+     * 广播令牌桶纪元变化，本节点同步丢弃，其余节点由订阅丢弃
+     */
+    private void publishEpoch(String trainId, Long epoch) {
+        if (epoch == null) {
+            return;
+        }
+        discardTokenLease(trainId, epoch);
+        JSONObject epochMessage = new JSONObject();
+        epochMessage.put("trainId", trainId);
+        epochMessage.put("epoch", epoch);
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        stringRedisTemplate.convertAndSend(TICKET_AVAILABILITY_TOKEN_BUCKET_EPOCH_CHANNEL, epochMessage.toJSONString());
+    }
 
+    /**
+     * 丢弃列车旧纪元的本地租约令牌，重建后的令牌桶已按数据库余量计入这些座位
+     */
+    private void discardTokenLease(String trainId, long epoch) {
+        tokenLeaseMap.values().forEach(each -> {
+            if (!Objects.equals(each.getTrainId(), trainId)) {
+                return;
+            }
+            each.getRefillLock().lock();
+            try {
+                int discarded = each.discard(epoch);
+                if (discarded > 0) {
+                    log.info("[令牌租约] 令牌桶纪元变更为 {}，丢弃列车 {} 租约令牌 {} 个", epoch, trainId, discarded);
+                }
+            } finally {
+                each.getRefillLock().unlock();
+            }
+        });
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        JSONObject epochMessage = JSON.parseObject(new String(message.getBody(), StandardCharsets.UTF_8));
+        discardTokenLease(epochMessage.getString("trainId"), epochMessage.getLongValue("epoch"));
+    }
+
+    /**
+     * 创建列车余量令牌桶，令牌桶已存在时直接返回
+     * 一次分组查询得到全部站间各座位类型余量，以 "出发站下标_到达站下标_座位类型" 为 Hash Key 一次写入，没有余量的站间写入 0
+     *
+     * @param trainDO 列车信息
+     */
+    public void putTokenInBucket(TrainDO trainDO) {
+        String trainId = String.valueOf(trainDO.getId());
+        String tokenBucketHashKey = TICKET_AVAILABILITY_TOKEN_BUCKET + trainId;
+        RLock lock = redissonClient.getLock(String.format(LOCK_TICKET_AVAILABILITY_TOKEN_BUCKET, trainId));
+        LockSample lockSample = lockProfiler.lock(TOKEN_BUCKET_INIT, trainId, lock);
+        try {
+            // 双重检查避免重复初始化
+            if (distributedCache.hasKey(tokenBucketHashKey)) {
+                return;
+            }
+            List<Integer> seatTypes = VehicleTypeEnum.findSeatTypesByCode(trainDO.getTrainType());
+            List<String> stations = trainStationService.listTrainStationAll(trainId);
+            Map<Integer, int[][]> routeSeatTypeCountMap = seatService.listRouteSeatTypeCount(trainId, stations, seatTypes);
+            Map<String, String> ticketAvailabilityTokenMap = new HashMap<>();
+            routeSeatTypeCountMap.forEach((seatType, routeSeatCounts) -> {
+                for (int i = 0; i < stations.size() - 1; i++) {
+                    for (int j = i + 1; j < stations.size(); j++) {
+                        String buildCacheKey = StrUtil.join("_", i, j, seatType);
+                        ticketAvailabilityTokenMap.put(buildCacheKey, String.valueOf(routeSeatCounts[i][j]));
+                    }
+                }
+            });
+            if (!ticketAvailabilityTokenMap.isEmpty()) {
+                StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+                // 写入前递增纪元，重建前取出的令牌归还时被拒绝
+                Long epoch = stringRedisTemplate.opsForValue().increment(TICKET_AVAILABILITY_TOKEN_BUCKET_EPOCH + trainId);
+                stringRedisTemplate.opsForHash().putAll(tokenBucketHashKey, ticketAvailabilityTokenMap);
+                publishEpoch(trainId, epoch);
+            }
+        } finally {
+            lock.unlock();
+            lockSample.released();
+        }
     }
 
+    /**
+     * 预热令牌桶，为即将开售以及已开售未发车且尚无令牌桶的列车创建令牌桶，避免开售后首批购票请求同步初始化
+     */
+    @Scheduled(initialDelayString = "${ticket.token-bucket.initialize-initial-delay:0}", fixedDelayString = "${ticket.token-bucket.initialize-interval:60000}")
     public void initializeTokens() {
+        long now = System.currentTimeMillis();
+        List<TrainDO> trainDOList = trainMapper.selectList(Wrappers.lambdaQuery(TrainDO.class)
+                .le(TrainDO::getSaleTime, new Date(now + TimeUnit.MINUTES.toMillis(initializeAheadMinutes)))
+                .gt(TrainDO::getDepartureTime, new Date(now)));
+        int initializedCount = 0;
+        for (TrainDO each : trainDOList) {
+            try {
+                if (!distributedCache.hasKey(TICKET_AVAILABILITY_TOKEN_BUCKET + each.getId())) {
+                    putTokenInBucket(each);
+                    initializedCount++;
+                }
+            } catch (Throwable ex) {
+                log.error("[令牌桶预热] 列车 {} 令牌桶创建失败", each.getId(), ex);
+            }
+        }
+        if (initializedCount > 0) {
+            log.info("[令牌桶预热] 创建令牌桶 {} 个，耗时 {} ms", initializedCount, System.currentTimeMillis() - now);
+        }
+    }
+
+    /**
+     * 令牌扣减结果
+     *
+     * @param epoch                     扣减时令牌桶纪元
+     * @param tokenIsNullSeatTypeCounts 余量不足的 "座位类型_购票数量" 集合，为空表示扣减成功
+     */
+    private record TakeTokenResult(long epoch, List<String> tokenIsNullSeatTypeCounts) {
+    }
 
+    /**
+     * 待归还的租约令牌
+     *
+     * @param tokenLease 租约
+     * @param count      归还数量
+     * @param epoch      令牌所属纪元
+     */
+    private record LeaseReturn(TokenLease tokenLease, int count, long epoch) {
     }
 }
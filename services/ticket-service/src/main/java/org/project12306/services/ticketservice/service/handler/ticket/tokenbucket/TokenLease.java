@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.tokenbucket;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 本地令牌租约，节点从 Redis 令牌桶预先扣减一批令牌后在本地无锁分发
+ * 租约按列车、出发站、到达站以及座位类型划分，令牌在 Redis 中已按乘车区间扣减，本地分发不会超出租约数量
+ * 租约记录令牌所属的令牌桶纪元，令牌桶重建后旧纪元的令牌不再分发也不再归还；租约过期后不再分发，需续租延长有效期
+ */
+@Getter
+public final class TokenLease {
+
+    private final String trainId;
+    private final String departure;
+    private final String arrival;
+    private final Integer seatType;
+    private final AtomicInteger remaining = new AtomicInteger();
+
+    /**
+     * 续租与归还互斥锁，续租期间访问 Redis，使用 ReentrantLock 避免虚拟线程固定载体线程
+     */
+    private final ReentrantLock refillLock = new ReentrantLock();
+
+    /**
+     * 下次续租数量，续租间隔小于租约有效期一半时翻倍，过期仍有剩余时减半
+     */
+    private volatile int leaseSize;
+    private volatile long expireTime;
+    private volatile long lastRefillTime;
+    private volatile long lastAccessTime;
+
+    /**
+     * 剩余令牌所属的令牌桶纪元
+     */
+    private volatile long epoch;
+
+    /**
+     * 租约已从本地租约集合移除，不再续租
+     */
+    private volatile boolean retired;
+
+    public TokenLease(String trainId, String departure, String arrival, Integer seatType, int leaseSize) {
+        this.trainId = trainId;
+        this.departure = departure;
+        this.arrival = arrival;
+        this.seatType = seatType;
+        this.leaseSize = leaseSize;
+        this.lastAccessTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 从本地租约获取令牌
+     *
+     * @param count 令牌数量
+     * @return 租约已过期或剩余令牌不足时返回 false 且不扣减
+     */
+    public boolean tryAcquire(int count) {
+        long now = System.currentTimeMillis();
+        lastAccessTime = now;
+        if (isExpired(now)) {
+            return false;
+        }
+        int current;
+        do {
+            current = remaining.get();
+            if (current < count) {
+                return false;
+            }
+        } while (!remaining.compareAndSet(current, current - count));
+        return true;
+    }
+
+    /**
+     * 归还令牌到本地租约，一般为多座位类型购票时部分座位类型令牌不足触发
+     */
+    public void release(int count) {
+        remaining.addAndGet(count);
+    }
+
+    /**
+     * 计算本次续租数量
+     *
+     * @param now      当前时间
+     * @param ttl      租约有效期（毫秒）
+     * @param maxSize  最大续租数量
+     * @return 续租数量
+     */
+    int nextLeaseSize(long now, long ttl, int maxSize) {
+        if (lastRefillTime > 0 && now - lastRefillTime < ttl >> 1) {
+            leaseSize = Math.min(leaseSize << 1, maxSize);
+        }
+        return leaseSize;
+    }
+
+    /**
+     * 续租成功后放入令牌并延长有效期，令牌桶纪元已变化时丢弃旧纪元的剩余令牌
+     *
+     * @param count 续租令牌数量
+     * @param now   当前时间
+     * @param ttl   租约有效期（毫秒）
+     * @param epoch 续租时令牌桶纪元
+     * @return 续租令牌所属纪元早于租约已知纪元（续租期间令牌桶已重建）时返回 false 且不放入
+     */
+    boolean refill(int count, long now, long ttl, long epoch) {
+        if (epoch < this.epoch) {
+            return false;
+        }
+        if (epoch > this.epoch) {
+            remaining.set(count);
+            this.epoch = epoch;
+        } else {
+            remaining.addAndGet(count);
+        }
+        lastRefillTime = now;
+        expireTime = now + ttl;
+        return true;
+    }
+
+    /**
+     * 令牌桶已重建为更新的纪元时丢弃剩余令牌，重建时已按数据库余量计入这些座位
+     *
+     * @param epoch 令牌桶最新纪元
+     * @return 丢弃的令牌数量
+     */
+    int discard(long epoch) {
+        if (this.epoch >= epoch) {
+            return 0;
+        }
+        this.epoch = epoch;
+        return remaining.getAndSet(0);
+    }
+
+    /**
+     * 标记租约已移除，持有该租约的续租请求需重新获取租约
+     */
+    void retire() {
+        retired = true;
+    }
+
+    /**
+     * 取出全部剩余令牌，用于过期或停机时归还 Redis
+     *
+     * @param minSize 最小续租数量
+     * @return 剩余令牌数量
+     */
+    int drain(int minSize) {
+        int left = remaining.getAndSet(0);
+        if (left > 0) {
+            leaseSize = Math.max(leaseSize >> 1, minSize);
+        }
+        return left;
+    }
+
+    /**
+     * Redis 余量不足以整批续租时回到最小续租数量
+     */
+    void shrink(int minSize) {
+        leaseSize = minSize;
+    }
+
+    boolean isExpired(long now) {
+        return expireTime <= now;
+    }
+}
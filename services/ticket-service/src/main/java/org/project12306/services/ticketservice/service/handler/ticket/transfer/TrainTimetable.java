@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.transfer;
+
+import lombok.Getter;
+import org.project12306.services.ticketservice.dao.entity.TrainDO;
+import org.project12306.services.ticketservice.dao.entity.TrainStationDO;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 单列车不可变时刻表
+ * 时间统一换算为距始发日零点的分钟数，跨天车次分钟数大于 1440
+ */
+@Getter
+public final class TrainTimetable {
+
+    /**
+     * 列车 ID
+     */
+    private final Long trainId;
+
+    /**
+     * 车次
+     */
+    private final String trainNumber;
+
+    /**
+     * 按顺序排列的经停站
+     */
+    private final String[] stations;
+
+    /**
+     * 经停站所属地区
+     */
+    private final String[] regions;
+
+    /**
+     * 到站分钟数
+     */
+    private final int[] arrivalMinutes;
+
+    /**
+     * 出站分钟数
+     */
+    private final int[] departureMinutes;
+
+    /**
+     * 始发日，距 1970-01-01 的天数
+     */
+    private final long serviceEpochDay;
+
+    private TrainTimetable(Long trainId, String trainNumber, String[] stations, String[] regions, int[] arrivalMinutes, int[] departureMinutes,
+                           long serviceEpochDay) {
+        this.trainId = trainId;
+        this.trainNumber = trainNumber;
+        this.stations = stations;
+        this.regions = regions;
+        this.arrivalMinutes = arrivalMinutes;
+        this.departureMinutes = departureMinutes;
+        this.serviceEpochDay = serviceEpochDay;
+    }
+
+    /**
+     * 根据列车及经停站记录构建时刻表
+     *
+     * @param trainDO          列车
+     * @param trainStationList 经停站记录
+     * @return 时刻表，经停站不足两个或缺少时间时返回 null
+     */
+    public static TrainTimetable of(TrainDO trainDO, List<TrainStationDO> trainStationList) {
+        if (trainDO == null || trainStationList == null || trainStationList.size() < 2) {
+            return null;
+        }
+        List<TrainStationDO> sortedList = trainStationList.stream()
+                .sorted(Comparator.comparingInt(TrainTimetable::sequence).thenComparing(TrainStationDO::getId, Comparator.nullsLast(Comparator.naturalOrder())))
+                .toList();
+        int size = sortedList.size();
+        Date baseTime = sortedList.get(0).getDepartureTime();
+        if (baseTime == null) {
+            return null;
+        }
+        LocalDateTime baseDateTime = baseTime.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime();
+        int baseMinute = baseDateTime.getHour() * 60 + baseDateTime.getMinute();
+        String[] stations = new String[size];
+        String[] regions = new String[size];
+        int[] arrivalMinutes = new int[size];
+        int[] departureMinutes = new int[size];
+        for (int i = 0; i < size; i++) {
+            TrainStationDO each = sortedList.get(i);
+            Date arrivalTime = each.getArrivalTime() != null ? each.getArrivalTime() : each.getDepartureTime();
+            Date departureTime = each.getDepartureTime() != null ? each.getDepartureTime() : each.getArrivalTime();
+            if (arrivalTime == null) {
+                return null;
+            }
+            stations[i] = each.getDeparture();
+            regions[i] = each.getStartRegion();
+            arrivalMinutes[i] = baseMinute + (int) ((arrivalTime.getTime() - baseTime.getTime()) / 60000L);
+            departureMinutes[i] = baseMinute + (int) ((departureTime.getTime() - baseTime.getTime()) / 60000L);
+        }
+        return new TrainTimetable(trainDO.getId(), trainDO.getTrainNumber(), stations, regions, arrivalMinutes, departureMinutes,
+                baseDateTime.toLocalDate().toEpochDay());
+    }
+
+    /**
+     * 经停站数量
+     */
+    public int size() {
+        return stations.length;
+    }
+
+    private static int sequence(TrainStationDO trainStationDO) {
+        try {
+            return Integer.parseInt(trainStationDO.getSequence());
+        } catch (NumberFormatException | NullPointerException ex) {
+            return Integer.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,504 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.transfer;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * 全路网不可变时刻表索引
+ * 车站统一编号，按车站记录经停该站的列车及其站序，换乘查询只在内存数组上完成；更新时基于旧索引复制生成新索引，读写互不阻塞。
+ * 增量更新只复制受影响车站的经停记录，未变更的列车与车站数组由新旧索引共享
+ */
+public final class TrainTimetableIndex {
+
+    /**
+     * 空索引
+     */
+    public static final TrainTimetableIndex EMPTY = build(Collections.emptyMap());
+
+    private static final int MINUTES_OF_DAY = 1440;
+
+    private final Map<Long, TrainTimetable> trainMap;
+    private final TrainTimetable[] trains;
+    private final Map<Long, Integer> trainIndexMap;
+    private final int[][] trainStops;
+    private final String[] stationNames;
+    private final String[] stationRegions;
+    private final Map<String, Integer> stationIndexMap;
+    private final Map<String, int[]> regionStationMap;
+
+    /**
+     * 车站经停记录，高 32 位为列车下标，低 32 位为站序
+     */
+    private final long[][] stationVisits;
+
+    private TrainTimetableIndex(Map<Long, TrainTimetable> trainMap, TrainTimetable[] trains, Map<Long, Integer> trainIndexMap, int[][] trainStops,
+                                String[] stationNames, String[] stationRegions, Map<String, Integer> stationIndexMap,
+                                Map<String, int[]> regionStationMap, long[][] stationVisits) {
+        this.trainMap = trainMap;
+        this.trains = trains;
+        this.trainIndexMap = trainIndexMap;
+        this.trainStops = trainStops;
+        this.stationNames = stationNames;
+        this.stationRegions = stationRegions;
+        this.stationIndexMap = stationIndexMap;
+        this.regionStationMap = regionStationMap;
+        this.stationVisits = stationVisits;
+    }
+
+    /**
+     * 根据全部列车时刻表构建索引
+     *
+     * @param trainMap 列车 ID 与时刻表映射
+     * @return 时刻表索引
+     */
+    public static TrainTimetableIndex build(Map<Long, TrainTimetable> trainMap) {
+        TrainTimetable[] trains = trainMap.values().toArray(new TrainTimetable[0]);
+        Map<Long, Integer> trainIndexMap = new HashMap<>(trains.length << 1);
+        for (int t = 0; t < trains.length; t++) {
+            trainIndexMap.put(trains[t].getTrainId(), t);
+        }
+        int[][] trainStops = new int[trains.length][];
+        Map<String, Integer> stationIndexMap = new HashMap<>();
+        List<String> stationNameList = new ArrayList<>();
+        List<String> stationRegionList = new ArrayList<>();
+        int[] visitCounts = new int[16];
+        for (int t = 0; t < trains.length; t++) {
+            String[] stations = trains[t].getStations();
+            int[] stops = new int[stations.length];
+            for (int i = 0; i < stations.length; i++) {
+                Integer stationIndex = stationIndexMap.get(stations[i]);
+                if (stationIndex == null) {
+                    stationIndex = stationNameList.size();
+                    stationIndexMap.put(stations[i], stationIndex);
+                    stationNameList.add(stations[i]);
+                    stationRegionList.add(trains[t].getRegions()[i]);
+                    if (stationIndex >= visitCounts.length) {
+                        visitCounts = Arrays.copyOf(visitCounts, visitCounts.length << 1);
+                    }
+                }
+                stops[i] = stationIndex;
+                visitCounts[stationIndex]++;
+            }
+            trainStops[t] = stops;
+        }
+        int stationSize = stationNameList.size();
+        long[][] stationVisits = new long[stationSize][];
+        for (int s = 0; s < stationSize; s++) {
+            stationVisits[s] = new long[visitCounts[s]];
+        }
+        int[] fillCounts = new int[stationSize];
+        for (int t = 0; t < trains.length; t++) {
+            int[] stops = trainStops[t];
+            for (int i = 0; i < stops.length; i++) {
+                stationVisits[stops[i]][fillCounts[stops[i]]++] = ((long) t << 32) | i;
+            }
+        }
+        Map<String, List<Integer>> regionStationListMap = new HashMap<>();
+        for (int s = 0; s < stationSize; s++) {
+            String region = stationRegionList.get(s);
+            if (region != null) {
+                regionStationListMap.computeIfAbsent(region, key -> new ArrayList<>()).add(s);
+            }
+        }
+        Map<String, int[]> regionStationMap = new HashMap<>(regionStationListMap.size() << 1);
+        regionStationListMap.forEach((region, stationList) -> regionStationMap.put(region, stationList.stream().mapToInt(Integer::intValue).toArray()));
+        return new TrainTimetableIndex(
+                Collections.unmodifiableMap(new HashMap<>(trainMap)),
+                trains,
+                trainIndexMap,
+                trainStops,
+                stationNameList.toArray(new String[0]),
+                stationRegionList.toArray(new String[0]),
+                stationIndexMap,
+                regionStationMap,
+                stationVisits
+        );
+    }
+
+    /**
+     * 基于当前索引替换或删除部分列车生成新索引
+     * <p>
+     * 变更列车沿用原下标，新增列车追加到末尾，删除列车的空位由末尾列车填补；
+     * 只重建被变更、删除、移动列车经停车站的经停记录，新车站追加编号，已无列车经停的车站保留至下次全量构建
+     *
+     * @param changedTrainMap 变更列车时刻表
+     * @param removedTrainIds 删除的列车 ID
+     * @return 新索引
+     */
+    public TrainTimetableIndex withTrains(Map<Long, TrainTimetable> changedTrainMap, Collection<Long> removedTrainIds) {
+        Map<Long, TrainTimetable> newTrainMap = new HashMap<>(trainMap);
+        Map<Long, Integer> newTrainIndexMap = new HashMap<>(trainIndexMap);
+        int oldTrainSize = trains.length;
+        TrainTimetable[] newTrains = Arrays.copyOf(trains, oldTrainSize + changedTrainMap.size());
+        // 原下标上的列车被替换、删除或移走，需要移除该下标原有的经停记录
+        boolean[] dirtySlots = new boolean[oldTrainSize];
+        int length = oldTrainSize;
+        for (Long each : removedTrainIds) {
+            if (changedTrainMap.containsKey(each) || newTrainMap.remove(each) == null) {
+                continue;
+            }
+            int slot = newTrainIndexMap.remove(each);
+            newTrains[slot] = null;
+            dirtySlots[slot] = true;
+        }
+        for (Map.Entry<Long, TrainTimetable> entry : changedTrainMap.entrySet()) {
+            newTrainMap.put(entry.getKey(), entry.getValue());
+            Integer slot = newTrainIndexMap.get(entry.getKey());
+            if (slot != null) {
+                newTrains[slot] = entry.getValue();
+                dirtySlots[slot] = true;
+            } else {
+                newTrains[length] = entry.getValue();
+                newTrainIndexMap.put(entry.getKey(), length++);
+            }
+        }
+        // 末尾列车填补删除留下的空位，保持列车数组连续
+        for (int hole = 0; ; hole++) {
+            while (length > 0 && newTrains[length - 1] == null) {
+                length--;
+            }
+            while (hole < length && newTrains[hole] != null) {
+                hole++;
+            }
+            if (hole >= length) {
+                break;
+            }
+            int last = --length;
+            newTrains[hole] = newTrains[last];
+            newTrains[last] = null;
+            newTrainIndexMap.put(newTrains[hole].getTrainId(), hole);
+            if (last < oldTrainSize) {
+                dirtySlots[last] = true;
+            }
+        }
+        newTrains = Arrays.copyOf(newTrains, length);
+
+        List<String> newStationNameList = new ArrayList<>(Arrays.asList(stationNames));
+        List<String> newStationRegionList = new ArrayList<>(Arrays.asList(stationRegions));
+        Map<String, Integer> newStationIndexMap = new HashMap<>(stationIndexMap);
+        Map<String, int[]> newRegionStationMap = new HashMap<>(regionStationMap);
+        int[][] newTrainStops = Arrays.copyOf(trainStops, length);
+        // 受影响车站新增的经停记录
+        Map<Integer, List<Long>> addedVisitMap = new HashMap<>();
+        for (int t = 0; t < oldTrainSize; t++) {
+            if (dirtySlots[t]) {
+                for (int station : trainStops[t]) {
+                    addedVisitMap.computeIfAbsent(station, key -> new ArrayList<>());
+                }
+            }
+        }
+        for (int t = 0; t < length; t++) {
+            if (t < oldTrainSize && !dirtySlots[t]) {
+                continue;
+            }
+            String[] stations = newTrains[t].getStations();
+            int[] stops = new int[stations.length];
+            for (int i = 0; i < stations.length; i++) {
+                Integer stationIndex = newStationIndexMap.get(stations[i]);
+                if (stationIndex == null) {
+                    stationIndex = newStationNameList.size();
+                    newStationIndexMap.put(stations[i], stationIndex);
+                    newStationNameList.add(stations[i]);
+                    String region = newTrains[t].getRegions()[i];
+                    newStationRegionList.add(region);
+                    if (region != null) {
+                        int[] regionStations = newRegionStationMap.getOrDefault(region, new int[0]);
+                        int[] newRegionStations = Arrays.copyOf(regionStations, regionStations.length + 1);
+                        newRegionStations[regionStations.length] = stationIndex;
+                        newRegionStationMap.put(region, newRegionStations);
+                    }
+                }
+                stops[i] = stationIndex;
+                addedVisitMap.computeIfAbsent(stationIndex, key -> new ArrayList<>()).add(((long) t << 32) | i);
+            }
+            newTrainStops[t] = stops;
+        }
+        long[][] newStationVisits = Arrays.copyOf(stationVisits, newStationNameList.size());
+        addedVisitMap.forEach((station, addedVisits) -> {
+            long[] oldVisits = station < stationVisits.length ? stationVisits[station] : new long[0];
+            long[] visits = new long[oldVisits.length + addedVisits.size()];
+            int size = 0;
+            for (long visit : oldVisits) {
+                if (!dirtySlots[(int) (visit >>> 32)]) {
+                    visits[size++] = visit;
+                }
+            }
+            for (Long visit : addedVisits) {
+                visits[size++] = visit;
+            }
+            visits = Arrays.copyOf(visits, size);
+            // 与全量构建一致按列车下标、站序排列
+            Arrays.sort(visits);
+            newStationVisits[station] = visits;
+        });
+        return new TrainTimetableIndex(
+                Collections.unmodifiableMap(newTrainMap),
+                newTrains,
+                newTrainIndexMap,
+                newTrainStops,
+                newStationNameList.toArray(new String[0]),
+                newStationRegionList.toArray(new String[0]),
+                newStationIndexMap,
+                newRegionStationMap,
+                newStationVisits
+        );
+    }
+
+    /**
+     * 列车数量
+     */
+    public int trainSize() {
+        return trains.length;
+    }
+
+    /**
+     * 查询两地区间一次换乘行程，按全程耗时升序返回
+     *
+     * @param fromRegion                    出发地区
+     * @param toRegion                      到达地区
+     * @param minConnectionMinutes          同站换乘最短间隔分钟数
+     * @param crossStationConnectionMinutes 同城异站换乘最短间隔分钟数，小于 0 时只允许同站换乘
+     * @param maxWaitMinutes                最长等待分钟数
+     * @param limit                         返回数量
+     * @param departureDate                 出发日期，第一程须在当日出发且第二程须在换乘当日经过换乘站，为空时不校验开行日期
+     * @return 换乘行程集合
+     */
+    public List<TransferItinerary> search(String fromRegion, String toRegion, int minConnectionMinutes,
+                                          int crossStationConnectionMinutes, int maxWaitMinutes, int limit, LocalDate departureDate) {
+        int[] originStations = regionStationMap.get(fromRegion);
+        int[] destinationStations = regionStationMap.get(toRegion);
+        if (originStations == null || destinationStations == null || limit <= 0 || Objects.equals(fromRegion, toRegion)) {
+            return Collections.emptyList();
+        }
+        int stationSize = stationNames.length;
+        boolean[] originFlags = new boolean[stationSize];
+        boolean[] destinationFlags = new boolean[stationSize];
+        for (int each : originStations) {
+            originFlags[each] = true;
+        }
+        for (int each : destinationStations) {
+            destinationFlags[each] = true;
+        }
+        // 同一列车经过出发地多个车站时取最晚上车站，经过目的地多个车站时取最早下车站
+        int[] boardStops = selectStops(originStations, true);
+        int[] alightStops = selectStops(destinationStations, false);
+        LegList firstLegs = new LegList(stationSize);
+        for (int origin : originStations) {
+            for (long visit : stationVisits[origin]) {
+                int t = (int) (visit >>> 32);
+                int i = (int) visit;
+                if (boardStops[t] != i) {
+                    continue;
+                }
+                int[] stops = trainStops[t];
+                for (int j = i + 1; j < stops.length; j++) {
+                    if (destinationFlags[stops[j]]) {
+                        break;
+                    }
+                    if (!originFlags[stops[j]]) {
+                        firstLegs.add(stops[j], t, i, j);
+                    }
+                }
+            }
+        }
+        LegList secondLegs = new LegList(stationSize);
+        for (int destination : destinationStations) {
+            for (long visit : stationVisits[destination]) {
+                int u = (int) (visit >>> 32);
+                int k = (int) visit;
+                if (alightStops[u] != k) {
+                    continue;
+                }
+                int[] stops = trainStops[u];
+                for (int m = k - 1; m >= 0; m--) {
+                    if (originFlags[stops[m]]) {
+                        break;
+                    }
+                    if (!destinationFlags[stops[m]]) {
+                        secondLegs.add(stops[m], u, m, k);
+                    }
+                }
+            }
+        }
+        PriorityQueue<TransferItinerary> topQueue = new PriorityQueue<>(limit + 1, Comparator.comparingInt(TransferItinerary::getTotalMinutes).reversed());
+        long departureEpochDay = departureDate == null ? Long.MIN_VALUE : departureDate.toEpochDay();
+        for (int s = 0; s < stationSize; s++) {
+            if (firstLegs.heads[s] < 0) {
+                continue;
+            }
+            join(firstLegs, s, secondLegs, s, minConnectionMinutes, maxWaitMinutes, limit, departureEpochDay, topQueue);
+            if (crossStationConnectionMinutes >= 0 && stationRegions[s] != null) {
+                for (int other : regionStationMap.get(stationRegions[s])) {
+                    if (other != s) {
+                        join(firstLegs, s, secondLegs, other, minConnectionMinutes + crossStationConnectionMinutes, maxWaitMinutes, limit,
+                                departureEpochDay, topQueue);
+                    }
+                }
+            }
+        }
+        List<TransferItinerary> result = new ArrayList<>(topQueue);
+        result.sort(Comparator.comparingInt(TransferItinerary::getTotalMinutes));
+        return result;
+    }
+
+    private int[] selectStops(int[] stationIndexes, boolean board) {
+        int[] selectedStops = new int[trains.length];
+        Arrays.fill(selectedStops, -1);
+        for (int station : stationIndexes) {
+            for (long visit : stationVisits[station]) {
+                int t = (int) (visit >>> 32);
+                int i = (int) visit;
+                if (board && i < trainStops[t].length - 1 && i > selectedStops[t]) {
+                    selectedStops[t] = i;
+                } else if (!board && i > 0 && (selectedStops[t] < 0 || i < selectedStops[t])) {
+                    selectedStops[t] = i;
+                }
+            }
+        }
+        return selectedStops;
+    }
+
+    private void join(LegList firstLegs, int firstStation, LegList secondLegs, int secondStation, int connectionMinutes,
+                      int maxWaitMinutes, int limit, long departureEpochDay, PriorityQueue<TransferItinerary> topQueue) {
+        for (int a = firstLegs.heads[firstStation]; a >= 0; a = firstLegs.nexts[a]) {
+            int t = firstLegs.trains[a];
+            int firstDepartureMinute = trains[t].getDepartureMinutes()[firstLegs.fromStops[a]];
+            int firstArrivalMinute = trains[t].getArrivalMinutes()[firstLegs.toStops[a]];
+            int firstDuration = firstArrivalMinute - firstDepartureMinute;
+            // 第一程须在出发日期当日从上车站出发
+            if (departureEpochDay != Long.MIN_VALUE
+                    && trains[t].getServiceEpochDay() + firstDepartureMinute / MINUTES_OF_DAY != departureEpochDay) {
+                continue;
+            }
+            if (topQueue.size() >= limit && firstDuration + connectionMinutes >= topQueue.peek().getTotalMinutes()) {
+                continue;
+            }
+            for (int b = secondLegs.heads[secondStation]; b >= 0; b = secondLegs.nexts[b]) {
+                int u = secondLegs.trains[b];
+                if (u == t) {
+                    continue;
+                }
+                int secondDepartureMinute = trains[u].getDepartureMinutes()[secondLegs.fromStops[b]];
+                int waitMinutes = Math.floorMod(secondDepartureMinute - firstArrivalMinute, MINUTES_OF_DAY);
+                if (waitMinutes < connectionMinutes) {
+                    waitMinutes += MINUTES_OF_DAY;
+                }
+                if (waitMinutes > maxWaitMinutes) {
+                    continue;
+                }
+                // 第二程须是换乘当日经过换乘站的那一趟
+                if (departureEpochDay != Long.MIN_VALUE
+                        && trains[u].getServiceEpochDay() + secondDepartureMinute / MINUTES_OF_DAY
+                        != trains[t].getServiceEpochDay() + (firstArrivalMinute + waitMinutes) / MINUTES_OF_DAY) {
+                    continue;
+                }
+                int secondDuration = trains[u].getArrivalMinutes()[secondLegs.toStops[b]] - secondDepartureMinute;
+                int totalMinutes = firstDuration + waitMinutes + secondDuration;
+                if (topQueue.size() >= limit && totalMinutes >= topQueue.peek().getTotalMinutes()) {
+                    continue;
+                }
+                if (replaceSameTrainPair(topQueue, trains[t].getTrainId(), trains[u].getTrainId(), totalMinutes)) {
+                    continue;
+                }
+                TransferItinerary itinerary = TransferItinerary.builder()
+                        .firstTrainId(trains[t].getTrainId())
+                        .firstTrainNumber(trains[t].getTrainNumber())
+                        .firstDeparture(trains[t].getStations()[firstLegs.fromStops[a]])
+                        .firstArrival(trains[t].getStations()[firstLegs.toStops[a]])
+                        .firstDepartureMinute(firstDepartureMinute)
+                        .firstArrivalMinute(firstArrivalMinute)
+                        .secondTrainId(trains[u].getTrainId())
+                        .secondTrainNumber(trains[u].getTrainNumber())
+                        .secondDeparture(trains[u].getStations()[secondLegs.fromStops[b]])
+                        .secondArrival(trains[u].getStations()[secondLegs.toStops[b]])
+                        .secondDepartureMinute(firstArrivalMinute + waitMinutes)
+                        .secondArrivalMinute(firstArrivalMinute + waitMinutes + secondDuration)
+                        .transferRegion(stationRegions[firstStation])
+                        .waitMinutes(waitMinutes)
+                        .totalMinutes(totalMinutes)
+                        .build();
+                topQueue.offer(itinerary);
+                if (topQueue.size() > limit) {
+                    topQueue.poll();
+                }
+            }
+        }
+    }
+
+    /**
+     * 同一组列车只保留耗时最短的换乘方案
+     *
+     * @return 已存在同组列车且无需再加入候选
+     */
+    private boolean replaceSameTrainPair(PriorityQueue<TransferItinerary> topQueue, Long firstTrainId, Long secondTrainId, int totalMinutes) {
+        for (TransferItinerary each : topQueue) {
+            if (each.getFirstTrainId().equals(firstTrainId) && each.getSecondTrainId().equals(secondTrainId)) {
+                if (each.getTotalMinutes() <= totalMinutes) {
+                    return true;
+                }
+                topQueue.remove(each);
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按车站分组的区段链表，避免查询时创建大量集合对象
+     */
+    private static final class LegList {
+
+        private final int[] heads;
+        private int[] nexts = new int[64];
+        private int[] trains = new int[64];
+        private int[] fromStops = new int[64];
+        private int[] toStops = new int[64];
+        private int size;
+
+        private LegList(int stationSize) {
+            heads = new int[stationSize];
+            Arrays.fill(heads, -1);
+        }
+
+        private void add(int station, int train, int fromStop, int toStop) {
+            if (size == trains.length) {
+                int newLength = size << 1;
+                nexts = Arrays.copyOf(nexts, newLength);
+                trains = Arrays.copyOf(trains, newLength);
+                fromStops = Arrays.copyOf(fromStops, newLength);
+                toStops = Arrays.copyOf(toStops, newLength);
+            }
+            nexts[size] = heads[station];
+            trains[size] = train;
+            fromStops[size] = fromStop;
+            toStops[size] = toStop;
+            heads[station] = size++;
+        }
+    }
+}
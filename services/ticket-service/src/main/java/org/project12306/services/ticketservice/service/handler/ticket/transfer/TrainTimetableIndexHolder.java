@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.transfer;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.google.common.collect.Lists;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.services.ticketservice.dao.entity.TrainDO;
+import org.project12306.services.ticketservice.dao.entity.TrainStationDO;
+import org.project12306.services.ticketservice.dao.mapper.TrainMapper;
+import org.project12306.services.ticketservice.dao.mapper.TrainStationMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 时刻表索引持有者
+ * 首次全量构建，之后按 t_train_station、t_train 更新时间增量加载变更列车，并定期全量重建以清理已删除列车；
+ * 增量查询包含上次最大更新时间本身，避免同一时间后提交的记录被跳过，已加载的同一时间记录按主键去重
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TrainTimetableIndexHolder {
+
+    private final TrainMapper trainMapper;
+    private final TrainStationMapper trainStationMapper;
+
+    @Value("${ticket.transfer.full-rebuild-interval-minutes:60}")
+    private long fullRebuildIntervalMinutes;
+
+    private volatile TrainTimetableIndex trainTimetableIndex = TrainTimetableIndex.EMPTY;
+    private Date lastUpdateTime;
+    private long lastFullRebuildTime;
+
+    /**
+     * 更新时间等于 lastUpdateTime 且已加载的记录
+     */
+    private Set<String> lastUpdateRowKeys = new HashSet<>();
+
+    /**
+     * 获取当前时刻表索引快照
+     */
+    public TrainTimetableIndex get() {
+        return trainTimetableIndex;
+    }
+
+    /**
+     * 刷新时刻表索引
+     */
+    @Scheduled(initialDelayString = "${ticket.transfer.refresh-initial-delay:10000}", fixedDelayString = "${ticket.transfer.refresh-interval:60000}")
+    public synchronized void refresh() {
+        try {
+            if (lastUpdateTime == null || System.currentTimeMillis() - lastFullRebuildTime >= TimeUnit.MINUTES.toMillis(fullRebuildIntervalMinutes)) {
+                rebuildAll();
+            } else {
+                rebuildIncrement();
+            }
+        } catch (Throwable ex) {
+            log.error("[时刻表索引] 刷新失败", ex);
+        }
+    }
+
+    private void rebuildAll() {
+        long startTime = System.currentTimeMillis();
+        List<TrainDO> trainList = trainMapper.selectList(Wrappers.lambdaQuery(TrainDO.class)
+                .select(TrainDO::getId, TrainDO::getTrainNumber, TrainDO::getUpdateTime));
+        List<TrainStationDO> trainStationList = trainStationMapper.selectList(buildTrainStationQueryWrapper());
+        Map<Long, TrainTimetable> trainTimetableMap = buildTrainTimetable(trainList, trainStationList);
+        trainTimetableIndex = TrainTimetableIndex.build(trainTimetableMap);
+        updateLastUpdateTime(trainList, trainStationList);
+        lastFullRebuildTime = startTime;
+        log.info("[时刻表索引] 全量构建完成，列车数：{}，耗时：{} ms", trainTimetableIndex.trainSize(), System.currentTimeMillis() - startTime);
+    }
+
+    private void rebuildIncrement() {
+        Set<Long> changedTrainIds = new HashSet<>();
+        List<TrainStationDO> changedTrainStationList = trainStationMapper.selectList(Wrappers.lambdaQuery(TrainStationDO.class)
+                        .ge(TrainStationDO::getUpdateTime, lastUpdateTime)
+                        .select(TrainStationDO::getId, TrainStationDO::getTrainId, TrainStationDO::getUpdateTime))
+                .stream()
+                .filter(each -> !isLoaded(trainStationRowKey(each.getId()), each.getUpdateTime()))
+                .toList();
+        List<TrainDO> changedTrainList = trainMapper.selectList(Wrappers.lambdaQuery(TrainDO.class)
+                        .ge(TrainDO::getUpdateTime, lastUpdateTime)
+                        .select(TrainDO::getId, TrainDO::getUpdateTime))
+                .stream()
+                .filter(each -> !isLoaded(trainRowKey(each.getId()), each.getUpdateTime()))
+                .toList();
+        changedTrainStationList.forEach(each -> changedTrainIds.add(each.getTrainId()));
+        changedTrainList.forEach(each -> changedTrainIds.add(each.getId()));
+        if (changedTrainIds.isEmpty()) {
+            return;
+        }
+        List<TrainDO> trainList = new ArrayList<>(changedTrainIds.size());
+        List<TrainStationDO> trainStationList = new ArrayList<>();
+        for (List<Long> trainIds : Lists.partition(new ArrayList<>(changedTrainIds), 500)) {
+            trainList.addAll(trainMapper.selectList(Wrappers.lambdaQuery(TrainDO.class)
+                    .in(TrainDO::getId, trainIds)
+                    .select(TrainDO::getId, TrainDO::getTrainNumber, TrainDO::getUpdateTime)));
+            trainStationList.addAll(trainStationMapper.selectList(buildTrainStationQueryWrapper().in(TrainStationDO::getTrainId, trainIds)));
+        }
+        Map<Long, TrainTimetable> trainTimetableMap = buildTrainTimetable(trainList, trainStationList);
+        Collection<Long> removedTrainIds = changedTrainIds.stream()
+                .filter(each -> !trainTimetableMap.containsKey(each))
+                .toList();
+        trainTimetableIndex = trainTimetableIndex.withTrains(trainTimetableMap, removedTrainIds);
+        updateLastUpdateTime(changedTrainList, changedTrainStationList);
+        log.info("[时刻表索引] 增量更新列车数：{}", changedTrainIds.size());
+    }
+
+    private LambdaQueryWrapper<TrainStationDO> buildTrainStationQueryWrapper() {
+        return Wrappers.lambdaQuery(TrainStationDO.class)
+                .select(TrainStationDO::getId, TrainStationDO::getTrainId, TrainStationDO::getSequence, TrainStationDO::getDeparture,
+                        TrainStationDO::getStartRegion, TrainStationDO::getArrivalTime, TrainStationDO::getDepartureTime, TrainStationDO::getUpdateTime);
+    }
+
+    private Map<Long, TrainTimetable> buildTrainTimetable(List<TrainDO> trainList, List<TrainStationDO> trainStationList) {
+        Map<Long, List<TrainStationDO>> trainStationMap = trainStationList.stream()
+                .collect(Collectors.groupingBy(TrainStationDO::getTrainId));
+        Map<Long, TrainTimetable> trainTimetableMap = new HashMap<>(trainList.size() << 1);
+        for (TrainDO each : trainList) {
+            TrainTimetable trainTimetable = TrainTimetable.of(each, trainStationMap.get(each.getId()));
+            if (trainTimetable != null) {
+                trainTimetableMap.put(each.getId(), trainTimetable);
+            }
+        }
+        return trainTimetableMap;
+    }
+
+    private boolean isLoaded(String rowKey, Date updateTime) {
+        return sameTime(updateTime, lastUpdateTime) && lastUpdateRowKeys.contains(rowKey);
+    }
+
+    /**
+     * 推进最大更新时间，并记录更新时间等于该时间的已加载记录
+     */
+    private void updateLastUpdateTime(List<TrainDO> trainList, List<TrainStationDO> trainStationList) {
+        Date maxUpdateTime = maxUpdateTime(trainList, trainStationList, lastUpdateTime);
+        Set<String> rowKeys = sameTime(maxUpdateTime, lastUpdateTime) ? new HashSet<>(lastUpdateRowKeys) : new HashSet<>();
+        trainList.stream()
+                .filter(each -> sameTime(each.getUpdateTime(), maxUpdateTime))
+                .forEach(each -> rowKeys.add(trainRowKey(each.getId())));
+        trainStationList.stream()
+                .filter(each -> sameTime(each.getUpdateTime(), maxUpdateTime))
+                .forEach(each -> rowKeys.add(trainStationRowKey(each.getId())));
+        lastUpdateTime = maxUpdateTime;
+        lastUpdateRowKeys = rowKeys;
+    }
+
+    private static String trainRowKey(Long id) {
+        return "t_train:" + id;
+    }
+
+    private static String trainStationRowKey(Long id) {
+        return "t_train_station:" + id;
+    }
+
+    private static boolean sameTime(Date time1, Date time2) {
+        return time1 != null && time2 != null && time1.getTime() == time2.getTime();
+    }
+
+    private Date maxUpdateTime(List<TrainDO> trainList, List<TrainStationDO> trainStationList, Date defaultTime) {
+        Date maxUpdateTime = defaultTime;
+        for (TrainDO each : trainList) {
+            maxUpdateTime = later(maxUpdateTime, each.getUpdateTime());
+        }
+        for (TrainStationDO each : trainStationList) {
+            maxUpdateTime = later(maxUpdateTime, each.getUpdateTime());
+        }
+        return Objects.requireNonNullElseGet(maxUpdateTime, () -> new Date(0L));
+    }
+
+    private Date later(Date time1, Date time2) {
+        if (time1 == null) {
+            return time2;
+        }
+        return time2 != null && time2.after(time1) ? time2 : time1;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.transfer;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * 一次换乘行程
+ */
+@Data
+@Builder
+public class TransferItinerary {
+
+    /**
+     * 第一程列车 ID
+     */
+    private Long firstTrainId;
+
+    /**
+     * 第一程车次
+     */
+    private String firstTrainNumber;
+
+    /**
+     * 第一程出发站
+     */
+    private String firstDeparture;
+
+    /**
+     * 第一程到达站
+     */
+    private String firstArrival;
+
+    /**
+     * 第一程出发分钟数，距始发日零点
+     */
+    private Integer firstDepartureMinute;
+
+    /**
+     * 第一程到达分钟数，距始发日零点
+     */
+    private Integer firstArrivalMinute;
+
+    /**
+     * 第二程列车 ID
+     */
+    private Long secondTrainId;
+
+    /**
+     * 第二程车次
+     */
+    private String secondTrainNumber;
+
+    /**
+     * 第二程出发站
+     */
+    private String secondDeparture;
+
+    /**
+     * 第二程到达站
+     */
+    private String secondArrival;
+
+    /**
+     * 第二程出发分钟数，距始发日零点
+     */
+    private Integer secondDepartureMinute;
+
+    /**
+     * 第二程到达分钟数，距始发日零点
+     */
+    private Integer secondArrivalMinute;
+
+    /**
+     * 换乘地区
+     */
+    private String transferRegion;
+
+    /**
+     * 换乘等待分钟数
+     */
+    private Integer waitMinutes;
+
+    /**
+     * 全程分钟数
+     */
+    private Integer totalMinutes;
+}
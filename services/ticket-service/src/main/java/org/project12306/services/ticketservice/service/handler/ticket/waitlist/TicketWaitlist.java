@@ -0,0 +1,504 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.waitlist;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.thread.ThreadUtil;
+import cn.hutool.core.util.IdUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSON;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.commons.base.ApplicationContextHolder;
+import org.project12306.commons.cache.DistributedCache;
+import org.project12306.commons.user.core.UserContext;
+import org.project12306.commons.user.core.UserInfoDTO;
+import org.project12306.convention.exception.ServiceException;
+import org.project12306.services.ticketservice.common.enums.PurchaseQueueStatusEnum;
+import org.project12306.services.ticketservice.dao.entity.TrainDO;
+import org.project12306.services.ticketservice.dao.mapper.TrainMapper;
+import org.project12306.services.ticketservice.dto.req.PurchaseTicketPassengerDetailDTO;
+import org.project12306.services.ticketservice.dto.req.PurchaseTicketReqDTO;
+import org.project12306.services.ticketservice.dto.resp.TicketPurchaseQueueRespDTO;
+import org.project12306.services.ticketservice.service.TicketService;
+import org.project12306.services.ticketservice.service.TrainStationService;
+import org.project12306.services.ticketservice.service.handler.ticket.pipeline.TicketPurchaseQueue;
+import org.project12306.services.ticketservice.service.handler.ticket.pipeline.TrainPurchasePipeline;
+import org.project12306.services.ticketservice.service.handler.ticket.pipeline.TrainPurchaseTask;
+import org.project12306.services.ticketservice.service.handler.ticket.tokenbucket.TicketAvailabilityTokenBucket;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.project12306.services.ticketservice.common.constant.Index12306Constant.ADVANCE_TICKET_DAY;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.TICKET_WAITLIST;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.TICKET_WAITLIST_DETAIL;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.TRAIN_INFO;
+
+/**
+ * 候补购票，用户按列车、乘车区间与座位类型登记候补，订单关闭或取消释放的座位优先分配给候补用户
+ * <p>
+ * 释放座位时对应令牌不回滚令牌桶，而是暂扣在本节点，由匹配线程按列车合并释放区间后一次性按登记先后匹配候补单，
+ * 匹配成功的候补单直接进入购票流水线出票，剩余及出票失败的令牌再回滚至令牌桶
+ * <p>
+ * 候补单按出发站所在区段建立索引，释放区间可分配给乘车区间被其包含的候补单，区间外未使用的令牌归还令牌桶；
+ * 暂扣的令牌与释放座位前的令牌桶纪元绑定，令牌桶按数据库重建后不再回滚，而是从新令牌桶重新暂扣
+ */
+@Slf4j
+@Component
+public class TicketWaitlist implements DisposableBean {
+
+    private final TicketAvailabilityTokenBucket ticketAvailabilityTokenBucket;
+    private final TrainStationService trainStationService;
+    private final TrainPurchasePipeline trainPurchasePipeline;
+    private final TicketPurchaseQueue ticketPurchaseQueue;
+    private final DistributedCache distributedCache;
+    private final TrainMapper trainMapper;
+    private final boolean waitlistEnable;
+    private final int maxQueueSize;
+    private final int matchBatchSize;
+    private final ConcurrentHashMap<String, ConcurrentLinkedQueue<WaitlistRelease>> pendingReleaseMap = new ConcurrentHashMap<>();
+
+    /**
+     * 候补匹配单线程执行，同一节点内释放座位的匹配不会并发
+     */
+    private final ExecutorService matchExecutor = Executors.newSingleThreadExecutor(ThreadUtil.newNamedThreadFactory("ticket-waitlist-match-", true));
+
+    public TicketWaitlist(TicketAvailabilityTokenBucket ticketAvailabilityTokenBucket,
+                          TrainStationService trainStationService,
+                          TrainPurchasePipeline trainPurchasePipeline,
+                          TicketPurchaseQueue ticketPurchaseQueue,
+                          DistributedCache distributedCache,
+                          TrainMapper trainMapper,
+                          @Value("${ticket.waitlist.enable:false}") boolean waitlistEnable,
+                          @Value("${ticket.waitlist.max-queue-size:1000}") int maxQueueSize,
+                          @Value("${ticket.waitlist.match-batch-size:100}") int matchBatchSize) {
+        this.ticketAvailabilityTokenBucket = ticketAvailabilityTokenBucket;
+        this.trainStationService = trainStationService;
+        this.trainPurchasePipeline = trainPurchasePipeline;
+        this.ticketPurchaseQueue = ticketPurchaseQueue;
+        this.distributedCache = distributedCache;
+        this.trainMapper = trainMapper;
+        this.waitlistEnable = waitlistEnable;
+        this.maxQueueSize = maxQueueSize;
+        this.matchBatchSize = matchBatchSize;
+    }
+
+    public boolean isEnable() {
+        return waitlistEnable;
+    }
+
+    /**
+     * 登记候补，候补单保留至列车发车
+     *
+     * @param requestParam 购票请求参数
+     * @return 候补单号及候补位置，可通过排队购票结果查询出票结果
+     */
+    public TicketPurchaseQueueRespDTO register(PurchaseTicketReqDTO requestParam) {
+        if (!waitlistEnable) {
+            throw new ServiceException("候补购票暂未开放");
+        }
+        List<Integer> seatTypes = requestParam.getPassengers().stream()
+                .map(PurchaseTicketPassengerDetailDTO::getSeatType)
+                .distinct()
+                .toList();
+        if (seatTypes.size() != 1) {
+            throw new ServiceException("候补购票乘车人须选择同一座位类型");
+        }
+        String trainId = requestParam.getTrainId();
+        TrainDO trainDO = distributedCache.safeGet(
+                TRAIN_INFO + trainId,
+                TrainDO.class,
+                () -> trainMapper.selectById(trainId),
+                ADVANCE_TICKET_DAY,
+                TimeUnit.DAYS);
+        long now = System.currentTimeMillis();
+        long ttlSeconds = TimeUnit.MILLISECONDS.toSeconds(trainDO.getDepartureTime().getTime() - now);
+        if (ttlSeconds <= 0) {
+            throw new ServiceException("列车已发车，无法候补");
+        }
+        List<String> stations = trainStationService.listTrainStationAll(trainId);
+        int departureIndex = stations.indexOf(requestParam.getDeparture());
+        int arrivalIndex = stations.indexOf(requestParam.getArrival());
+        if (departureIndex < 0 || arrivalIndex <= departureIndex) {
+            throw new ServiceException("列车站点不存在或出发站不在到达站之前");
+        }
+        Integer seatType = seatTypes.get(0);
+        String waitlistKey = String.format(TICKET_WAITLIST, trainId, seatType, departureIndex);
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        Long size = stringRedisTemplate.opsForZSet().zCard(waitlistKey);
+        if (size != null && size >= maxQueueSize) {
+            throw new ServiceException("当前出发站候补人数过多，请选择其他车次");
+        }
+        String username = UserContext.getUsername();
+        // 候补单号以列车 ID 开头，与排队号一致
+        String waitlistSn = trainId + "-" + IdUtil.fastSimpleUUID();
+        TicketWaitlistEntry entry = TicketWaitlistEntry.builder()
+                .waitlistSn(waitlistSn)
+                .userId(UserContext.getUserId())
+                .username(username)
+                .realName(UserContext.getRealName())
+                .seatType(seatType)
+                .count(requestParam.getPassengers().size())
+                .departureIndex(departureIndex)
+                .arrivalIndex(arrivalIndex)
+                .registerTime(now)
+                .requestParam(requestParam)
+                .build();
+        // 先写入排队状态与候补单详情，再加入候补队列，避免匹配出票后结果被覆盖
+        ticketPurchaseQueue.saveResult(username, TicketPurchaseQueueRespDTO.builder()
+                .queueSn(waitlistSn)
+                .status(PurchaseQueueStatusEnum.QUEUING.getCode())
+                .build(), ttlSeconds);
+        String waitlistDetailKey = String.format(TICKET_WAITLIST_DETAIL, trainId);
+        stringRedisTemplate.opsForHash().put(waitlistDetailKey, waitlistSn, JSON.toJSONString(entry));
+        stringRedisTemplate.expire(waitlistDetailKey, ttlSeconds, TimeUnit.SECONDS);
+        stringRedisTemplate.opsForZSet().add(waitlistKey, waitlistSn, now);
+        stringRedisTemplate.expire(waitlistKey, ttlSeconds, TimeUnit.SECONDS);
+        Long rank = stringRedisTemplate.opsForZSet().rank(waitlistKey, waitlistSn);
+        return TicketPurchaseQueueRespDTO.builder()
+                .queueSn(waitlistSn)
+                .status(PurchaseQueueStatusEnum.QUEUING.getCode())
+                .position(rank == null ? null : rank.intValue() + 1)
+                .build();
+    }
+
+    /**
+     * 释放座位前读取令牌桶纪元，暂扣的令牌与该纪元绑定
+     *
+     * @param trainId 列车 ID
+     * @return 令牌桶纪元
+     */
+    public long currentEpoch(String trainId) {
+        return ticketAvailabilityTokenBucket.getEpoch(trainId);
+    }
+
+    /**
+     * 按当前令牌桶纪元释放座位，一般为 Binlog 同步在座位解锁提交后触发
+     *
+     * @param trainId          列车 ID
+     * @param departure        出发站
+     * @param arrival          到达站
+     * @param seatTypeCountMap 座位类型与释放数量
+     */
+    public void release(String trainId, String departure, String arrival, Map<Integer, Long> seatTypeCountMap) {
+        release(trainId, departure, arrival, seatTypeCountMap, currentEpoch(trainId));
+    }
+
+    /**
+     * 释放座位，释放区间内存在候补需求的座位类型暂扣令牌等待匹配，其余座位类型回滚令牌桶
+     * 令牌桶在解锁座位后已按数据库重建（纪元变化）时，重建已计入这些座位，回滚被拒绝
+     *
+     * @param trainId          列车 ID
+     * @param departure        出发站
+     * @param arrival          到达站
+     * @param seatTypeCountMap 座位类型与释放数量
+     * @param epoch            解锁座位前读取的令牌桶纪元
+     */
+    public void release(String trainId, String departure, String arrival, Map<Integer, Long> seatTypeCountMap, long epoch) {
+        if (!waitlistEnable) {
+            rollback(trainId, departure, arrival, seatTypeCountMap, epoch);
+            return;
+        }
+        List<String> stations = trainStationService.listTrainStationAll(trainId);
+        int departureIndex = stations.indexOf(departure);
+        int arrivalIndex = stations.indexOf(arrival);
+        Map<Integer, Long> rollbackSeatTypeCountMap = new HashMap<>();
+        Map<Integer, Long> waitlistSeatTypeCountMap = new HashMap<>();
+        seatTypeCountMap.forEach((seatType, count) -> (hasWaiter(trainId, seatType, departureIndex, arrivalIndex)
+                ? waitlistSeatTypeCountMap
+                : rollbackSeatTypeCountMap).put(seatType, count));
+        if (!rollbackSeatTypeCountMap.isEmpty()) {
+            rollback(trainId, departure, arrival, rollbackSeatTypeCountMap, epoch);
+        }
+        if (!waitlistSeatTypeCountMap.isEmpty()) {
+            pendingReleaseMap.computeIfAbsent(trainId, key -> new ConcurrentLinkedQueue<>())
+                    .offer(new WaitlistRelease(departure, arrival, waitlistSeatTypeCountMap, epoch));
+            try {
+                matchExecutor.execute(() -> match(trainId));
+            } catch (RejectedExecutionException ex) {
+                // 节点停机中不再匹配，暂扣的令牌直接回滚
+                rollbackPending(trainId);
+            }
+        }
+    }
+
+    /**
+     * 释放区间内任一区段出发的候补队列不为空即存在候补需求，乘车区间是否被包含在匹配时判断
+     */
+    private boolean hasWaiter(String trainId, Integer seatType, int departureIndex, int arrivalIndex) {
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        for (int leg = departureIndex; leg >= 0 && leg < arrivalIndex; leg++) {
+            Long size = stringRedisTemplate.opsForZSet().zCard(String.format(TICKET_WAITLIST, trainId, seatType, leg));
+            if (size != null && size > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void rollback(String trainId, String departure, String arrival, Map<Integer, Long> seatTypeCountMap, long epoch) {
+        if (!ticketAvailabilityTokenBucket.rollbackInBucket(trainId, departure, arrival, seatTypeCountMap, epoch)) {
+            log.info("[候补匹配] 令牌桶已重建，不再回滚释放座位令牌，列车：{}，区间：{}-{}，座位类型数量：{}", trainId, departure, arrival, seatTypeCountMap);
+        }
+    }
+
+    /**
+     * 定时重试匹配失败后重新暂存的释放座位
+     */
+    @Scheduled(initialDelayString = "${ticket.waitlist.match-interval:5000}", fixedDelayString = "${ticket.waitlist.match-interval:5000}")
+    public void matchPendingRelease() {
+        if (matchExecutor.isShutdown()) {
+            return;
+        }
+        pendingReleaseMap.forEach((trainId, releases) -> {
+            if (!releases.isEmpty()) {
+                matchExecutor.execute(() -> match(trainId));
+            }
+        });
+    }
+
+    /**
+     * 合并列车所有待匹配的释放座位，按区间、座位类型与纪元一次性匹配候补单
+     * 暂扣令牌的纪元已过期时令牌桶已按数据库重建并计入这些座位，从新令牌桶重新暂扣以保持候补优先，已被购买时放弃
+     */
+    private void match(String trainId) {
+        ConcurrentLinkedQueue<WaitlistRelease> releases = pendingReleaseMap.get(trainId);
+        if (releases == null) {
+            return;
+        }
+        Map<String, WaitlistRelease> mergedReleaseMap = new LinkedHashMap<>();
+        WaitlistRelease release;
+        while ((release = releases.poll()) != null) {
+            WaitlistRelease each = release;
+            each.seatTypeCountMap.forEach((seatType, count) -> mergedReleaseMap.merge(
+                    StrUtil.join("_", each.departure, each.arrival, seatType, each.epoch),
+                    new WaitlistRelease(each.departure, each.arrival, new HashMap<>(Map.of(seatType, count)), each.epoch),
+                    (prev, next) -> {
+                        prev.seatTypeCountMap.merge(seatType, count, Long::sum);
+                        return prev;
+                    }));
+        }
+        if (mergedReleaseMap.isEmpty()) {
+            return;
+        }
+        List<String> stations = trainStationService.listTrainStationAll(trainId);
+        for (WaitlistRelease merged : mergedReleaseMap.values()) {
+            Map.Entry<Integer, Long> seatTypeCount = merged.seatTypeCountMap.entrySet().iterator().next();
+            Integer seatType = seatTypeCount.getKey();
+            AtomicLong remaining = new AtomicLong(seatTypeCount.getValue());
+            long epoch = merged.epoch;
+            try {
+                if (ticketAvailabilityTokenBucket.getEpoch(trainId) != epoch) {
+                    Long retakenEpoch = ticketAvailabilityTokenBucket.takeTokenInBucket(trainId, merged.departure, merged.arrival, Map.of(seatType, remaining.get()));
+                    if (retakenEpoch == null) {
+                        log.warn("[候补匹配] 列车：{} 令牌桶已重建且释放座位已被购买，区间：{}-{}，座位类型：{}，数量：{}",
+                                trainId, merged.departure, merged.arrival, seatType, remaining.get());
+                        continue;
+                    }
+                    epoch = retakenEpoch;
+                }
+                matchWaitlist(trainId, stations, merged.departure, merged.arrival, seatType, remaining, epoch);
+            } catch (Throwable ex) {
+                log.error("[候补匹配] 列车：{} 区间：{}-{} 座位类型：{} 匹配失败，稍后重试", trainId, merged.departure, merged.arrival, seatType, ex);
+                releases.offer(new WaitlistRelease(merged.departure, merged.arrival, Map.of(seatType, remaining.get()), epoch));
+                continue;
+            }
+            if (remaining.get() > 0) {
+                rollbackQuietly(trainId, merged.departure, merged.arrival, seatType, remaining.get(), epoch);
+            }
+        }
+    }
+
+    /**
+     * 合并释放区间内各区段出发的候补队列，按登记先后匹配乘车区间被释放区间包含的候补单
+     * 候补数量超出剩余座位的候补单跳过，由后续候补单使用剩余座位；候补单只使用释放区间的一部分时，归还区间外未使用的令牌
+     *
+     * @param remaining 剩余座位数量，每提交一个候补单即扣减，匹配中途异常时仅剩余部分需要重试
+     * @param epoch     暂扣令牌所属纪元
+     */
+    private void matchWaitlist(String trainId, List<String> stations, String departure, String arrival, Integer seatType, AtomicLong remaining, long epoch) {
+        int departureIndex = stations.indexOf(departure);
+        int arrivalIndex = stations.indexOf(arrival);
+        if (departureIndex < 0 || arrivalIndex <= departureIndex) {
+            return;
+        }
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        List<ZSetOperations.TypedTuple<String>> candidates = new ArrayList<>();
+        Map<String, String> waitlistKeyMap = new HashMap<>();
+        for (int leg = departureIndex; leg < arrivalIndex; leg++) {
+            String waitlistKey = String.format(TICKET_WAITLIST, trainId, seatType, leg);
+            Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet().rangeWithScores(waitlistKey, 0, matchBatchSize - 1);
+            if (CollUtil.isEmpty(tuples)) {
+                continue;
+            }
+            tuples.forEach(each -> {
+                candidates.add(each);
+                waitlistKeyMap.put(each.getValue(), waitlistKey);
+            });
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        candidates.sort(Comparator.comparingDouble(each -> each.getScore() == null ? Double.MAX_VALUE : each.getScore()));
+        List<Object> fields = candidates.stream()
+                .limit(matchBatchSize)
+                .map(ZSetOperations.TypedTuple::getValue)
+                .collect(Collectors.toList());
+        String waitlistDetailKey = String.format(TICKET_WAITLIST_DETAIL, trainId);
+        List<Object> details = stringRedisTemplate.opsForHash().multiGet(waitlistDetailKey, fields);
+        for (int i = 0; i < fields.size() && remaining.get() > 0; i++) {
+            String waitlistKey = waitlistKeyMap.get(fields.get(i).toString());
+            Object detail = details.get(i);
+            if (detail == null) {
+                // 候补单详情已过期
+                stringRedisTemplate.opsForZSet().remove(waitlistKey, fields.get(i));
+                continue;
+            }
+            TicketWaitlistEntry entry = JSON.parseObject(detail.toString(), TicketWaitlistEntry.class);
+            if (entry.getArrivalIndex() > arrivalIndex || entry.getCount() > remaining.get()) {
+                continue;
+            }
+            // 移除成功即认领候补单，避免多个节点重复分配
+            Long removed = stringRedisTemplate.opsForZSet().remove(waitlistKey, entry.getWaitlistSn());
+            if (removed == null || removed == 0) {
+                continue;
+            }
+            try {
+                submit(entry);
+            } catch (Throwable ex) {
+                log.error("[候补匹配] 候补单：{} 提交出票失败，重新加入候补队列", entry.getWaitlistSn(), ex);
+                stringRedisTemplate.opsForZSet().add(waitlistKey, entry.getWaitlistSn(), entry.getRegisterTime());
+                continue;
+            }
+            remaining.addAndGet(-entry.getCount());
+            if (entry.getDepartureIndex() != departureIndex || entry.getArrivalIndex() != arrivalIndex) {
+                returnUnusedQuietly(trainId, departure, arrival, entry, epoch);
+            }
+        }
+    }
+
+    private void returnUnusedQuietly(String trainId, String departure, String arrival, TicketWaitlistEntry entry, long epoch) {
+        PurchaseTicketReqDTO requestParam = entry.getRequestParam();
+        try {
+            if (!ticketAvailabilityTokenBucket.returnUnusedInBucket(trainId, departure, arrival, requestParam.getDeparture(), requestParam.getArrival(),
+                    Map.of(entry.getSeatType(), entry.getCount().longValue()), epoch)) {
+                log.info("[候补匹配] 令牌桶已重建，不再归还候补单：{} 区间外令牌", entry.getWaitlistSn());
+            }
+        } catch (Throwable ex) {
+            log.error("[候补匹配] 归还候补单：{} 区间外令牌失败，列车：{}，释放区间：{}-{}", entry.getWaitlistSn(), trainId, departure, arrival, ex);
+        }
+    }
+
+    /**
+     * 候补单进入购票流水线出票，令牌已在释放座位时暂扣无需重复获取，出票失败时由购票流水线回滚令牌
+     */
+    private void submit(TicketWaitlistEntry entry) {
+        PurchaseTicketReqDTO requestParam = entry.getRequestParam();
+        UserContext.setUser(UserInfoDTO.builder()
+                .userId(entry.getUserId())
+                .username(entry.getUsername())
+                .realName(entry.getRealName())
+                .build());
+        TrainPurchaseTask task;
+        try {
+            task = trainPurchasePipeline.submitAsync(requestParam, ApplicationContextHolder.getBean(TicketService.class)::executePurchaseTickets);
+        } finally {
+            UserContext.removeUser();
+        }
+        ticketPurchaseQueue.track(entry.getUsername(), entry.getWaitlistSn(), task);
+        task.getFuture().whenComplete((purchaseResult, ex) -> {
+            if (ex != null) {
+                log.error("[候补匹配] 候补单：{} 出票失败", entry.getWaitlistSn(), ex);
+            }
+            StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+            stringRedisTemplate.opsForHash().delete(String.format(TICKET_WAITLIST_DETAIL, requestParam.getTrainId()), entry.getWaitlistSn());
+        });
+    }
+
+    /**
+     * 回滚列车所有待匹配释放座位暂扣的令牌
+     */
+    private void rollbackPending(String trainId) {
+        ConcurrentLinkedQueue<WaitlistRelease> releases = pendingReleaseMap.get(trainId);
+        if (releases == null) {
+            return;
+        }
+        WaitlistRelease release;
+        while ((release = releases.poll()) != null) {
+            WaitlistRelease each = release;
+            each.seatTypeCountMap.forEach((seatType, count) -> rollbackQuietly(trainId, each.departure, each.arrival, seatType, count, each.epoch));
+        }
+    }
+
+    private void rollbackQuietly(String trainId, String departure, String arrival, Integer seatType, long count, long epoch) {
+        try {
+            rollback(trainId, departure, arrival, Map.of(seatType, count), epoch);
+        } catch (Throwable ex) {
+            log.error("[候补匹配] 回滚令牌失败，列车：{}，区间：{}-{}，座位类型：{}，数量：{}", trainId, departure, arrival, seatType, count, ex);
+        }
+    }
+
+    /**
+     * 暂扣的令牌只保存在本节点内存中，停机时等待进行中的匹配完成后将未匹配的令牌回滚至令牌桶
+     */
+    @Override
+    public void destroy() {
+        matchExecutor.shutdown();
+        try {
+            if (!matchExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                matchExecutor.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            matchExecutor.shutdownNow();
+        }
+        pendingReleaseMap.keySet().forEach(this::rollbackPending);
+    }
+
+    /**
+     * 待匹配的释放座位，暂扣的令牌属于 epoch 纪元的令牌桶
+     */
+    @AllArgsConstructor
+    private static final class WaitlistRelease {
+
+        private final String departure;
+        private final String arrival;
+        private final Map<Integer, Long> seatTypeCountMap;
+        private final long epoch;
+    }
+}
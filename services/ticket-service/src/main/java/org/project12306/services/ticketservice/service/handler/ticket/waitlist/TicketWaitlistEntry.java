@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.waitlist;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.project12306.services.ticketservice.dto.req.PurchaseTicketReqDTO;
+
+/**
+ * 候补单，登记用户对列车乘车区间与座位类型的购票需求
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TicketWaitlistEntry {
+
+    /**
+     * 候补单号，与排队购票共用排队号查询出票结果
+     */
+    private String waitlistSn;
+
+    /**
+     * 用户 ID
+     */
+    private String userId;
+
+    /**
+     * 用户名
+     */
+    private String username;
+
+    /**
+     * 真实姓名
+     */
+    private String realName;
+
+    /**
+     * 座位类型
+     */
+    private Integer seatType;
+
+    /**
+     * 候补座位数量
+     */
+    private Integer count;
+
+    /**
+     * 出发站下标
+     */
+    private Integer departureIndex;
+
+    /**
+     * 到达站下标
+     */
+    private Integer arrivalIndex;
+
+    /**
+     * 登记时间，同一座位类型按登记时间先后匹配
+     */
+    private Long registerTime;
+
+    /**
+     * 购票请求参数
+     */
+    private PurchaseTicketReqDTO requestParam;
+}
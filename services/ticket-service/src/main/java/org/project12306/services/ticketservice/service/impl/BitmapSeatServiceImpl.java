@@ -0,0 +1,211 @@
+package org.project12306.services.ticketservice.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.commons.cache.DistributedCache;
+import org.project12306.convention.exception.ServiceException;
+import org.project12306.services.ticketservice.dao.entity.SeatDO;
+import org.project12306.services.ticketservice.dao.entity.SeatInventoryDO;
+import org.project12306.services.ticketservice.dao.mapper.SeatInventoryMapper;
+import org.project12306.services.ticketservice.dao.mapper.SeatMapper;
+import org.project12306.services.ticketservice.dto.domain.SeatTypeCountDTO;
+import org.project12306.services.ticketservice.service.SeatService;
+import org.project12306.services.ticketservice.service.TrainStationService;
+import org.project12306.services.ticketservice.service.handler.ticket.dto.TrainPurchaseTicketRespDTO;
+import org.project12306.services.ticketservice.service.handler.ticket.inventory.SeatInventoryMigrator;
+import org.project12306.services.ticketservice.service.handler.ticket.layout.CarriageLayout;
+import org.project12306.services.ticketservice.toolkit.SeatLegMaskUtil;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.LOCK_SEAT_INVENTORY_MIGRATE;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.TRAIN_STATION_CARRIAGE_REMAINING_TICKET;
+
+/**
+ * 座位接口层实现，基于座位区段位图
+ * 每个座位仅一条记录，判断区段是否空闲只需一次按位与，锁定只需一次按位或
+ * 通过 ticket.seat.inventory-mode=bitmap 开启，首次访问列车时自动从 t_seat 迁移
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "ticket.seat.inventory-mode", havingValue = "bitmap")
+public class BitmapSeatServiceImpl extends ServiceImpl<SeatMapper, SeatDO> implements SeatService {
+
+    private final SeatInventoryMapper seatInventoryMapper;
+    private final SeatInventoryMigrator seatInventoryMigrator;
+    private final TrainStationService trainStationService;
+    private final DistributedCache distributedCache;
+    private final RedissonClient redissonClient;
+
+    /**
+     * 已完成座位库存迁移的列车
+     */
+    private final Cache<String, Boolean> migratedTrainCache = Caffeine.newBuilder()
+            .expireAfterWrite(1, TimeUnit.DAYS)
+            .build();
+
+    @Override
+    public List<SeatTypeCountDTO> listSeatTypeCount(Long trainId, String startStation, String endStation, List<Integer> seatTypes) {
+        ensureMigrated(String.valueOf(trainId));
+        long legMask = legMask(String.valueOf(trainId), startStation, endStation);
+        return seatInventoryMapper.listSeatTypeCount(trainId, legMask, seatTypes);
+    }
+
+    @Override
+    public Map<Integer, int[]> listLegSeatTypeCount(String trainId, List<String> stations, List<Integer> seatTypes) {
+        ensureMigrated(trainId);
+        int legSize = Math.max(stations.size() - 1, 0);
+        Map<Integer, int[]> legSeatTypeCountMap = new HashMap<>();
+        seatTypes.forEach(each -> legSeatTypeCountMap.put(each, new int[legSize]));
+        seatInventoryMapper.listLegMaskSeatTypeCount(Long.parseLong(trainId), seatTypes).forEach(each -> {
+            int[] legSeatCounts = legSeatTypeCountMap.get(each.getSeatType());
+            if (legSeatCounts == null) {
+                return;
+            }
+            long legMask = each.getLegMask();
+            for (int i = 0; i < legSize; i++) {
+                if ((legMask >>> i & 1L) == 0L) {
+                    legSeatCounts[i] += each.getSeatCount();
+                }
+            }
+        });
+        return legSeatTypeCountMap;
+    }
+
+    @Override
+    public Map<Integer, int[][]> listRouteSeatTypeCount(String trainId, List<String> stations, List<Integer> seatTypes) {
+        ensureMigrated(trainId);
+        int stationSize = stations.size();
+        Map<Integer, int[][]> routeSeatTypeCountMap = new HashMap<>();
+        seatTypes.forEach(each -> routeSeatTypeCountMap.put(each, new int[stationSize][stationSize]));
+        seatInventoryMapper.listLegMaskSeatTypeCount(Long.parseLong(trainId), seatTypes).forEach(each -> {
+            int[][] routeSeatCounts = routeSeatTypeCountMap.get(each.getSeatType());
+            if (routeSeatCounts == null) {
+                return;
+            }
+            long legMask = each.getLegMask();
+            for (int i = 0; i < stationSize - 1; i++) {
+                //出发站之后第一个被占用的区段截断后续全部到达站
+                for (int j = i + 1; j < stationSize && (legMask >>> (j - 1) & 1L) == 0L; j++) {
+                    routeSeatCounts[i][j] += each.getSeatCount();
+                }
+            }
+        });
+        return routeSeatTypeCountMap;
+    }
+
+    @Override
+    public void lockSeat(String trainId, String departure, String arrival, List<TrainPurchaseTicketRespDTO> trainPurchaseTicketRespList) {
+        ensureMigrated(trainId);
+        long legMask = legMask(trainId, departure, arrival);
+        trainPurchaseTicketRespList.forEach(each -> {
+            int updated = seatInventoryMapper.occupySeat(Long.parseLong(trainId), each.getCarriageNumber(), each.getSeatNumber(), legMask);
+            if (updated == 0) {
+                throw new ServiceException(String.format("车厢 [%s] 座位 [%s] 已被占用", each.getCarriageNumber(), each.getSeatNumber()));
+            }
+        });
+    }
+
+    @Override
+    public List<String> listUsableCarriageNumber(String trainId, Integer carriageType, String departure, String arrival) {
+        ensureMigrated(trainId);
+        long legMask = legMask(trainId, departure, arrival);
+        return seatInventoryMapper.listUsableCarriageNumber(Long.parseLong(trainId), carriageType, legMask);
+    }
+
+    @Override
+    public List<Integer> listSeatRemainingTicket(String trainId, String departure, String arrival, List<String> trainCarriageList) {
+        String keySuffix = StrUtil.join("_", trainId, departure, arrival);
+        if (distributedCache.hasKey(TRAIN_STATION_CARRIAGE_REMAINING_TICKET + keySuffix)) {
+            StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+            List<Object> trainStationCarriageRemainingTicket =
+                    stringRedisTemplate.opsForHash().multiGet(TRAIN_STATION_CARRIAGE_REMAINING_TICKET + keySuffix, Arrays.asList(trainCarriageList.toArray()));
+            if (CollUtil.isNotEmpty(trainStationCarriageRemainingTicket)) {
+                return trainStationCarriageRemainingTicket.stream().map(each -> Integer.parseInt(each.toString())).collect(Collectors.toList());
+            }
+        }
+        ensureMigrated(trainId);
+        long legMask = legMask(trainId, departure, arrival);
+        return seatInventoryMapper.listSeatRemainingTicket(Long.parseLong(trainId), legMask, trainCarriageList);
+    }
+
+    @Override
+    public List<String> listAvailableSeat(String trainId, String carriageNumber, Integer seatType, String departure, String arrival) {
+        ensureMigrated(trainId);
+        long legMask = legMask(trainId, departure, arrival);
+        return seatInventoryMapper.listAvailableSeat(Long.parseLong(trainId), carriageNumber, seatType, legMask);
+    }
+
+    @Override
+    public Map<String, int[]> listAvailableSeatMask(String trainId, Integer seatType, String departure, String arrival, CarriageLayout carriageLayout) {
+        ensureMigrated(trainId);
+        long legMask = legMask(trainId, departure, arrival);
+        Map<String, int[]> carriageSeatMaskMap = new LinkedHashMap<>();
+        seatInventoryMapper.listAvailableCarriageSeat(Long.parseLong(trainId), seatType, legMask).forEach(each -> {
+            int[] rowMasks = carriageSeatMaskMap.computeIfAbsent(each.getCarriageNumber(), key -> new int[carriageLayout.getRows()]);
+            if (!carriageLayout.markAvailable(rowMasks, each.getSeatNumber())) {
+                // 座位号与车厢布局不一致时该座位无法售出，需核对座位数据与车厢布局注册表
+                log.warn("座位号与车厢布局不匹配，列车ID：{}，座位类型：{}，车厢号：{}，座位号：{}", trainId, seatType, each.getCarriageNumber(), each.getSeatNumber());
+            }
+        });
+        return carriageSeatMaskMap;
+    }
+
+    @Override
+    public void unlock(String trainId, String departure, String arrival, List<TrainPurchaseTicketRespDTO> trainPurchaseTicketResults) {
+        ensureMigrated(trainId);
+        long legMask = legMask(trainId, departure, arrival);
+        trainPurchaseTicketResults.forEach(each ->
+                seatInventoryMapper.releaseSeat(Long.parseLong(trainId), each.getCarriageNumber(), each.getSeatNumber(), legMask));
+    }
+
+    private long legMask(String trainId, String departure, String arrival) {
+        long legMask = SeatLegMaskUtil.legMask(trainStationService.listTrainStationAll(trainId), departure, arrival);
+        if (legMask == 0L) {
+            throw new ServiceException(String.format("列车 [%s] 站点 [%s - %s] 区段不合法", trainId, departure, arrival));
+        }
+        return legMask;
+    }
+
+    /**
+     * 列车首次访问时将 t_seat 座位记录迁移为区段位图，多节点通过分布式锁保证只迁移一次
+     */
+    private void ensureMigrated(String trainId) {
+        if (migratedTrainCache.getIfPresent(trainId) != null) {
+            return;
+        }
+        LambdaQueryWrapper<SeatInventoryDO> queryWrapper = Wrappers.lambdaQuery(SeatInventoryDO.class)
+                .eq(SeatInventoryDO::getTrainId, trainId);
+        if (seatInventoryMapper.selectCount(queryWrapper) == 0) {
+            RLock lock = redissonClient.getLock(String.format(LOCK_SEAT_INVENTORY_MIGRATE, trainId));
+            lock.lock();
+            try {
+                if (seatInventoryMapper.selectCount(queryWrapper) == 0) {
+                    seatInventoryMigrator.migrate(trainId);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        migratedTrainCache.put(trainId, Boolean.TRUE);
+    }
+}
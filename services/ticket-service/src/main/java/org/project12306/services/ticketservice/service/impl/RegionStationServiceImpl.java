@@ -21,6 +21,7 @@ import org.project12306.services.ticketservice.dto.req.RegionStationQueryReqDTO;
 import org.project12306.services.ticketservice.dto.resp.RegionStationQueryRespDTO;
 import org.project12306.services.ticketservice.dto.resp.StationQueryRespDTO;
 import org.project12306.services.ticketservice.service.RegionStationService;
+import org.project12306.services.ticketservice.service.cache.RegionStationIndex;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 import org.springframework.stereotype.Service;
@@ -39,6 +40,7 @@ public class RegionStationServiceImpl implements RegionStationService {
     private final RegionMapper regionMapper;
     private final DistributedCache distributedCache;
     private final RedissonClient redissonClient;
+    private final RegionStationIndex regionStationIndex;
 
     @Override
     public List<StationQueryRespDTO> listAllStation() {
@@ -53,6 +55,16 @@ public class RegionStationServiceImpl implements RegionStationService {
 
     @Override
     public List<RegionStationQueryRespDTO> listRegionStation(RegionStationQueryReqDTO requestParam) {
+        // 优先使用内存索引，索引未加载时回退到缓存及数据库查询
+        if (regionStationIndex.isLoaded()) {
+            List<RegionStationQueryRespDTO> result = StrUtil.isNotBlank(requestParam.getName())
+                    ? regionStationIndex.listStationByPrefix(requestParam.getName())
+                    : regionStationIndex.listRegionByQueryType(requestParam.getQueryType() == null ? -1 : requestParam.getQueryType());
+            if (result == null) {
+                throw new ClientException("查询失败，请检查查询参数是否正确");
+            }
+            return result;
+        }
         String key;
         if (StrUtil.isNotBlank(requestParam.getName())) {
             key  = REGION_STATION  + requestParam.getName();
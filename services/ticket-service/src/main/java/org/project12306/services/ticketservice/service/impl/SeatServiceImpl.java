@@ -7,6 +7,7 @@ import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.project12306.commons.cache.DistributedCache;
 import org.project12306.services.ticketservice.common.enums.SeatStatusEnum;
 import org.project12306.services.ticketservice.dao.entity.SeatDO;
@@ -16,17 +17,27 @@ import org.project12306.services.ticketservice.dto.domain.SeatTypeCountDTO;
 import org.project12306.services.ticketservice.service.SeatService;
 import org.project12306.services.ticketservice.service.TrainStationService;
 import org.project12306.services.ticketservice.service.handler.ticket.dto.TrainPurchaseTicketRespDTO;
+import org.project12306.services.ticketservice.service.handler.ticket.layout.CarriageLayout;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.TRAIN_STATION_CARRIAGE_REMAINING_TICKET;
 
+/**
+ * 座位接口层实现，基于按区段拆分的 t_seat 座位记录
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "ticket.seat.inventory-mode", havingValue = "row", matchIfMissing = true)
 public class SeatServiceImpl extends ServiceImpl<SeatMapper, SeatDO> implements SeatService {
     public final SeatMapper seatMapper;
     public final TrainStationService trainStationService;
@@ -37,6 +48,46 @@ public class SeatServiceImpl extends ServiceImpl<SeatMapper, SeatDO> implements
         return seatMapper.listSeatTypeCount(trainId, startStation, endStation, seatTypes);
     }
 
+    @Override
+    public Map<Integer, int[]> listLegSeatTypeCount(String trainId, List<String> stations, List<Integer> seatTypes) {
+        Map<Integer, int[]> legSeatTypeCountMap = new HashMap<>();
+        seatTypes.forEach(each -> legSeatTypeCountMap.put(each, new int[Math.max(stations.size() - 1, 0)]));
+        Map<String, Integer> stationIndexMap = new HashMap<>();
+        for (int i = 0; i < stations.size(); i++) {
+            stationIndexMap.put(stations.get(i), i);
+        }
+        seatMapper.listLegSeatTypeCount(Long.parseLong(trainId), seatTypes).forEach(each -> {
+            Integer startIndex = stationIndexMap.get(each.getStartStation());
+            Integer endIndex = stationIndexMap.get(each.getEndStation());
+            int[] legSeatCounts = legSeatTypeCountMap.get(each.getSeatType());
+            //只统计相邻站点之间的区段记录
+            if (startIndex != null && endIndex != null && endIndex == startIndex + 1 && legSeatCounts != null) {
+                legSeatCounts[startIndex] = each.getSeatCount();
+            }
+        });
+        return legSeatTypeCountMap;
+    }
+
+    @Override
+    public Map<Integer, int[][]> listRouteSeatTypeCount(String trainId, List<String> stations, List<Integer> seatTypes) {
+        Map<Integer, int[][]> routeSeatTypeCountMap = new HashMap<>();
+        seatTypes.forEach(each -> routeSeatTypeCountMap.put(each, new int[stations.size()][stations.size()]));
+        Map<String, Integer> stationIndexMap = new HashMap<>();
+        for (int i = 0; i < stations.size(); i++) {
+            stationIndexMap.put(stations.get(i), i);
+        }
+        //t_seat 按站间拆分记录，同一次分组查询已包含全部站间组合
+        seatMapper.listLegSeatTypeCount(Long.parseLong(trainId), seatTypes).forEach(each -> {
+            Integer startIndex = stationIndexMap.get(each.getStartStation());
+            Integer endIndex = stationIndexMap.get(each.getEndStation());
+            int[][] routeSeatCounts = routeSeatTypeCountMap.get(each.getSeatType());
+            if (startIndex != null && endIndex != null && startIndex < endIndex && routeSeatCounts != null) {
+                routeSeatCounts[startIndex][endIndex] = each.getSeatCount();
+            }
+        });
+        return routeSeatTypeCountMap;
+    }
+
     @Override
     public void lockSeat(String trainId, String departure, String arrival, List<TrainPurchaseTicketRespDTO> trainPurchaseTicketRespList) {
         List<RouteDTO> routeList = trainStationService.listTakeoutTrainStationRoute(trainId, departure, arrival);
@@ -107,20 +158,43 @@ public class SeatServiceImpl extends ServiceImpl<SeatMapper, SeatDO> implements
         return seatDOList.stream().map(SeatDO::getSeatNumber).collect(Collectors.toList());
     }
 
+    @Override
+    public Map<String, int[]> listAvailableSeatMask(String trainId, Integer seatType, String departure, String arrival, CarriageLayout carriageLayout) {
+        LambdaQueryWrapper<SeatDO> queryWrapper = Wrappers.lambdaQuery(SeatDO.class)
+                .eq(SeatDO::getTrainId, trainId)
+                .eq(SeatDO::getSeatType, seatType)
+                .eq(SeatDO::getStartStation, departure)
+                .eq(SeatDO::getEndStation, arrival)
+                .eq(SeatDO::getSeatStatus, SeatStatusEnum.AVAILABLE.getCode())
+                .orderByAsc(SeatDO::getCarriageNumber)
+                .select(SeatDO::getCarriageNumber, SeatDO::getSeatNumber);
+        Map<String, int[]> carriageSeatMaskMap = new LinkedHashMap<>();
+        seatMapper.selectList(queryWrapper).forEach(each -> {
+            int[] rowMasks = carriageSeatMaskMap.computeIfAbsent(each.getCarriageNumber(), key -> new int[carriageLayout.getRows()]);
+            if (!carriageLayout.markAvailable(rowMasks, each.getSeatNumber())) {
+                // 座位号与车厢布局不一致时该座位无法售出，需核对座位数据与车厢布局注册表
+                log.warn("座位号与车厢布局不匹配，列车ID：{}，座位类型：{}，车厢号：{}，座位号：{}", trainId, seatType, each.getCarriageNumber(), each.getSeatNumber());
+            }
+        });
+        return carriageSeatMaskMap;
+    }
+
     @Override
     public void unlock(String trainId, String departure, String arrival, List<TrainPurchaseTicketRespDTO> trainPurchaseTicketResults) {
         List<RouteDTO> routeList = trainStationService.listTakeoutTrainStationRoute(trainId, departure, arrival);
-        trainPurchaseTicketResults.forEach(each -> routeList.forEach(item -> {
+        //一张车票的所有区段记录在一条语句内解锁，Binlog 同步按语句还原车票的乘车区间
+        trainPurchaseTicketResults.forEach(each -> {
             LambdaUpdateWrapper<SeatDO> updateWrapper = Wrappers.lambdaUpdate(SeatDO.class)
                     .eq(SeatDO::getTrainId, trainId)
                     .eq(SeatDO::getCarriageNumber, each.getCarriageNumber())
-                    .eq(SeatDO::getStartStation, item.getStartStation())
-                    .eq(SeatDO::getEndStation, item.getEndStation())
-                    .eq(SeatDO::getSeatNumber, each.getSeatNumber());
+                    .eq(SeatDO::getSeatNumber, each.getSeatNumber())
+                    .and(wrapper -> routeList.forEach(item -> wrapper.or(route -> route
+                            .eq(SeatDO::getStartStation, item.getStartStation())
+                            .eq(SeatDO::getEndStation, item.getEndStation()))));
             SeatDO updateSeatDO = SeatDO.builder()
                     .seatStatus(SeatStatusEnum.AVAILABLE.getCode())
                     .build();
             seatMapper.update(updateSeatDO, updateWrapper);
-        }));
+        });
     }
 }
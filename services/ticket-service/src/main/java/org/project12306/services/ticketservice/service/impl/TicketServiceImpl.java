@@ -1,11 +1,10 @@
 package org.project12306.services.ticketservice.service.impl;
 
 import cn.hutool.core.annotation.scanner.FieldAnnotationScanner;
-import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.collection.CollectionUtil;
-import cn.hutool.core.map.MapUtil;
 import cn.hutool.core.util.StrUtil;
 import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
@@ -15,10 +14,14 @@ import com.google.common.collect.Lists;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.project12306.commons.base.ApplicationContextHolder;
+import org.project12306.commons.base.Singleton;
+import org.project12306.commons.base.profiler.LockProfiler;
+import org.project12306.commons.base.profiler.LockSample;
 import org.project12306.commons.cache.DistributedCache;
-import org.project12306.commons.cache.toolkit.CacheUtil;
+import org.project12306.commons.common.toolkit.Assert;
 import org.project12306.commons.common.toolkit.BeanUtil;
 import org.project12306.commons.desingnpattern.chain.AbstractChainContext;
+import org.project12306.commons.distributedid.toolkit.SnowflakeIdUtil;
 import org.project12306.commons.idempotent.annotation.Idempotent;
 import org.project12306.commons.idempotent.enums.IdempotentSceneEnum;
 import org.project12306.commons.idempotent.enums.IdempotentTypeEnum;
@@ -29,7 +32,6 @@ import org.project12306.convention.result.Result;
 import org.project12306.services.ticketservice.common.enums.*;
 import org.project12306.services.ticketservice.dao.entity.*;
 import org.project12306.services.ticketservice.dao.mapper.*;
-import org.project12306.services.ticketservice.dto.domain.RouteDTO;
 import org.project12306.services.ticketservice.dto.domain.SeatClassDTO;
 import org.project12306.services.ticketservice.dto.domain.SeatTypeCountDTO;
 import org.project12306.services.ticketservice.dto.domain.TicketListDTO;
@@ -37,6 +39,7 @@ import org.project12306.services.ticketservice.dto.req.*;
 import org.project12306.services.ticketservice.dto.resp.RefundTicketRespDTO;
 import org.project12306.services.ticketservice.dto.resp.TicketOrderDetailRespDTO;
 import org.project12306.services.ticketservice.dto.resp.TicketPageQueryRespDTO;
+import org.project12306.services.ticketservice.dto.resp.TicketPurchaseQueueRespDTO;
 import org.project12306.services.ticketservice.dto.resp.TicketPurchaseRespDTO;
 import org.project12306.services.ticketservice.remote.PayRemoteService;
 import org.project12306.services.ticketservice.remote.TicketOrderRemoteService;
@@ -44,26 +47,37 @@ import org.project12306.services.ticketservice.remote.dto.*;
 import org.project12306.services.ticketservice.service.SeatService;
 import org.project12306.services.ticketservice.service.TicketService;
 import org.project12306.services.ticketservice.service.TrainStationService;
+import org.project12306.services.ticketservice.service.cache.RegionTrainStationCacheLoader;
+import org.project12306.services.ticketservice.service.cache.RegionTrainStationNearCache;
 import org.project12306.services.ticketservice.service.cache.SeatMarginCacheLoader;
+import org.project12306.services.ticketservice.service.cache.TrainLegRemainingTicketCache;
+import org.project12306.services.ticketservice.service.handler.ticket.fare.TrainFareIndex;
 import org.project12306.services.ticketservice.service.handler.ticket.dto.TokenResultDTO;
 import org.project12306.services.ticketservice.service.handler.ticket.dto.TrainPurchaseTicketRespDTO;
+import org.project12306.services.ticketservice.service.handler.ticket.outbox.OrderOutboxRelay;
+import org.project12306.services.ticketservice.service.handler.ticket.pipeline.TicketPurchaseQueue;
+import org.project12306.services.ticketservice.service.handler.ticket.pipeline.TrainPurchasePipeline;
+import org.project12306.services.ticketservice.service.handler.ticket.waitlist.TicketWaitlist;
 import org.project12306.services.ticketservice.service.handler.ticket.select.TrainSeatTypeSelector;
 import org.project12306.services.ticketservice.service.handler.ticket.tokenbucket.TicketAvailabilityTokenBucket;
 import org.project12306.services.ticketservice.toolkit.DateUtil;
-import org.project12306.services.ticketservice.toolkit.TimeStringComparator;
 import org.redisson.api.RLock;
 import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -71,6 +85,7 @@ import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 import static org.project12306.services.ticketservice.common.constant.Index12306Constant.ADVANCE_TICKET_DAY;
+import static org.project12306.services.ticketservice.common.constant.LockNameConstant.*;
 import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.*;
 import static org.project12306.services.ticketservice.service.impl.DateUtil.convertDateToLocalTime;
 
@@ -86,11 +101,14 @@ public class TicketServiceImpl extends ServiceImpl<TicketMapper, TicketDO> imple
     private final StationMapper stationMapper;
     private final TrainMapper trainMapper;
     private final TrainStationRelationMapper trainStationRelationMapper;
-    private final TrainStationPriceMapper trainStationPriceMapper;
     private final DistributedCache distributedCache;
     private final RedissonClient redissonClient;
     private final AbstractChainContext<TicketPageQueryReqDTO> ticketPageQueryAbstractChainContext;
     private final SeatMarginCacheLoader seatMarginCacheLoader;
+    private final TrainLegRemainingTicketCache trainLegRemainingTicketCache;
+    private final TrainFareIndex trainFareIndex;
+    private final RegionTrainStationNearCache regionTrainStationNearCache;
+    private final RegionTrainStationCacheLoader regionTrainStationCacheLoader;
     private final AbstractChainContext<PurchaseTicketReqDTO> purchaseTicketAbstractChainContext;
     private final AbstractChainContext<RefundTicketReqDTO> refundReqDTOAbstractChainContext;
     private final ConfigurableEnvironment environment;
@@ -100,13 +118,33 @@ public class TicketServiceImpl extends ServiceImpl<TicketMapper, TicketDO> imple
     private final TrainSeatTypeSelector trainSeatTypeSelector;
     private final TicketOrderRemoteService ticketOrderRemoteService;
     private final PayRemoteService payRemoteService;;
+    private final TrainPurchasePipeline trainPurchasePipeline;
+    private final TicketPurchaseQueue ticketPurchaseQueue;
+    private final TicketWaitlist ticketWaitlist;
+    private final OrderOutboxRelay orderOutboxRelay;
+    private final LockProfiler lockProfiler;
     private TicketService ticketService;
 
     @Value("${framework.cache.redis.prefix:}")
     private String cacheRedisPrefix;
 
+    @Value("${ticket.purchase.pipeline.enable:false}")
+    private boolean purchasePipelineEnable;
+
+    @Value("${ticket.order.outbox.enable:false}")
+    private boolean orderOutboxEnable;
+
+    private static final String LUA_TICKET_PAGE_QUERY_V3_PATH = "lua/ticket_page_query_v3.lua";
+
+    private static final String ORDER_CREATE_FAILED_MESSAGE = "订单创建失败，座位已释放，请重新购票";
+
     public PayInfoRespDTO getPayInfo(String orderSn) {
-        return payRemoteService.getPayInfo(orderSn).getData();
+        PayInfoRespDTO payInfo = payRemoteService.getPayInfo(orderSn).getData();
+        //发件箱创建订单失败时订单不存在，返回失败原因而不是空结果
+        if (payInfo == null && (orderOutboxEnable || purchasePipelineEnable) && orderOutboxRelay.isFailed(orderSn)) {
+            throw new ServiceException(ORDER_CREATE_FAILED_MESSAGE);
+        }
+        return payInfo;
     }
 
     @Override
@@ -145,120 +183,29 @@ public class TicketServiceImpl extends ServiceImpl<TicketMapper, TicketDO> imple
             }
         }
 
-
-        List<TicketListDTO> seatResults = new ArrayList<>();
-        //将起终点的地区名字构建成字符串
-        String buildRegionTrainStationHashKey = String.format(REGION_TRAIN_STATION, stationDetails.get(0), stationDetails.get(1));
-        //缓存中获取这个字符串，也就是起终点是跟这个字符串的哈希表对应的所有键值对
-        //键为CacheUtil.buildKey(String.valueOf(each.getTrainId()), each.getDeparture(), each.getArrival())
-        //值为JSON.toJSONString(result）
-        Map<Object, Object> regionTrainStationAllMap = stringRedisTemplate.opsForHash().entries(buildRegionTrainStationHashKey);
-        if (MapUtil.isEmpty(regionTrainStationAllMap)) {
-            RLock lock = redissonClient.getLock(LOCK_REGION_TRAIN_STATION);
-            lock.lock();
-            try {
-                regionTrainStationAllMap = stringRedisTemplate.opsForHash().entries(buildRegionTrainStationHashKey);
-                //依然是创建锁之后再次判断是否有其他线程已经做完了
-                if (MapUtil.isEmpty(regionTrainStationAllMap)) {
-                    LambdaQueryWrapper<TrainStationRelationDO> queryWrapper = Wrappers.lambdaQuery(TrainStationRelationDO.class)
-                            .eq(TrainStationRelationDO::getStartRegion, stationDetails.get(0))
-                            .eq(TrainStationRelationDO::getEndRegion, stationDetails.get(1));
-                    //查询起始点和终点都和目标地区相同的列车
-                    List<TrainStationRelationDO> trainStationRelationList = trainStationRelationMapper.selectList(queryWrapper);
-                    for (TrainStationRelationDO each : trainStationRelationList) {
-                        //将所有列车根据id创建未命中时的缓存
-                        TrainDO trainDO = distributedCache.safeGet(
-                                TRAIN_INFO + each.getTrainId(),
-                                TrainDO.class,
-                                () -> trainMapper.selectById(each.getTrainId()),
-                                ADVANCE_TICKET_DAY,
-                                TimeUnit.DAYS);
-                        //当前列车的信息构建
-                        TicketListDTO result = new TicketListDTO();
-                        //列车id
-                        result.setTrainId(String.valueOf(trainDO.getId()));
-                        //车次
-                        result.setTrainNumber(trainDO.getTrainNumber());
-                        //出发时间
-                        result.setDepartureTime(convertDateToLocalTime(each.getDepartureTime(), "HH:mm"));
-                        //到达时间
-                        result.setArrivalTime(convertDateToLocalTime(each.getArrivalTime(), "HH:mm"));
-                        //路程耗时
-                        result.setDuration(DateUtil.calculateHourDifference(each.getDepartureTime(), each.getArrivalTime()));
-                        //出发站点
-                        result.setDeparture(each.getDeparture());
-                        //到达站点
-                        result.setArrival(each.getArrival());
-                        //是否已经发车
-                        result.setDepartureFlag(each.getDepartureFlag());
-                        //是否到达
-                        result.setArrivalFlag(each.getArrivalFlag());
-                        //列车类型
-                        result.setTrainType(trainDO.getTrainType());
-                        //列车型号
-                        result.setTrainBrand(trainDO.getTrainBrand());
-                        if (StrUtil.isNotBlank(trainDO.getTrainTag())) {
-                            //列车标签
-                            result.setTrainTags(StrUtil.split(trainDO.getTrainTag(), ","));
-                        }
-                        long betweenDay = cn.hutool.core.date.DateUtil.betweenDay(each.getDepartureTime(), each.getArrivalTime(), false);
-                        result.setDaysArrived((int) betweenDay);
-                        result.setSaleStatus(new Date().after(trainDO.getSaleTime()) ? 0 : 1);
-                        result.setSaleTime(convertDateToLocalTime(trainDO.getSaleTime(), "MM-dd HH:mm"));
-                        seatResults.add(result);
-                        regionTrainStationAllMap.put(CacheUtil.buildKey(String.valueOf(each.getTrainId()), each.getDeparture(), each.getArrival()), JSON.toJSONString(result));
-                    }
-                    //将站点对应的所有列车存入缓存
-                    stringRedisTemplate.opsForHash().putAll(buildRegionTrainStationHashKey, regionTrainStationAllMap);
-                }
-            } finally {
-                lock.unlock();
-            }
-        }
-
-        //起终点的所有票按时间排序放在list中
-        seatResults = CollUtil.isEmpty(seatResults)
-                ? regionTrainStationAllMap.values().stream().map(each -> JSON.parseObject(each.toString(), TicketListDTO.class)).toList()
-                : seatResults;
-        seatResults = seatResults.stream().sorted(new TimeStringComparator()).toList();
+        //获取起终点地区间的所有车次，缓存不存在时查询数据库重建并广播本地缓存失效
+        //本地缓存加载时已按出发时间排好序，查询时不再反序列化与排序
+        List<TicketListDTO> seatResults = listRegionTicket(stationDetails.get(0), stationDetails.get(1));
         for (TicketListDTO each : seatResults) {
             //each：该车次
-            //从缓存中获取这列车有哪些票，没获取到就查询数据库后存入
-            String trainStationPriceStr = distributedCache.safeGet(
-                    String.format(TRAIN_STATION_PRICE, each.getTrainId(), each.getDeparture(), each.getArrival()),
-                    String.class,
-                    () -> {
-                        LambdaQueryWrapper<TrainStationPriceDO> trainStationPriceQueryWrapper = Wrappers.lambdaQuery(TrainStationPriceDO.class)
-                                .eq(TrainStationPriceDO::getDeparture, each.getDeparture())
-                                .eq(TrainStationPriceDO::getArrival, each.getArrival())
-                                .eq(TrainStationPriceDO::getTrainId, each.getTrainId());
-                        return JSON.toJSONString(trainStationPriceMapper.selectList(trainStationPriceQueryWrapper));
-                    },
-                    ADVANCE_TICKET_DAY,
-                    TimeUnit.DAYS
-            );
-
-            //把从缓存中获取到的数据进行解析
-            List<TrainStationPriceDO> trainStationPriceDOList = JSON.parseArray(trainStationPriceStr, TrainStationPriceDO.class);
+            //从内存票价索引中获取这列车区间各席别票价
+            List<TrainStationPriceDO> trainStationPriceDOList = trainFareIndex.listTrainStationPrice(each.getTrainId(), each.getDeparture(), each.getArrival());
             List<SeatClassDTO> seatClassList = new ArrayList<>();
-
+            List<Integer> seatTypes = trainStationPriceDOList.stream().map(TrainStationPriceDO::getSeatType).toList();
+            //读取站间余票快照，得到该车次区间各座位类型的精确余票
+            Map<Integer, Integer> remainingTicketMap = trainLegRemainingTicketCache.listRemainingTicket(each.getTrainId(), each.getDeparture(), each.getArrival(), seatTypes);
+            if (remainingTicketMap == null) {
+                Map<String, String> seatMarginMap = seatMarginCacheLoader.load(each.getTrainId(), each.getDeparture(), each.getArrival());
+                remainingTicketMap = new HashMap<>();
+                for (Map.Entry<String, String> entry : seatMarginMap.entrySet()) {
+                    remainingTicketMap.put(Integer.parseInt(entry.getKey()), Integer.parseInt(entry.getValue()));
+                }
+            }
             //遍历所有的票
-            trainStationPriceDOList.forEach(item -> {
-                String seatType = String.valueOf(item.getSeatType());
-                //将数据转为字符串
-                String keySuffix = StrUtil.join("_", each.getTrainId(), item.getDeparture(), item.getArrival());
-                //根据key查询原有余票量
-                Object quantityObj = stringRedisTemplate.opsForHash().get(TRAIN_STATION_REMAINING_TICKET + keySuffix, seatType);
-                int quantity = Optional.ofNullable(quantityObj)
-                        .map(Object::toString)//将余票对象转为字符串
-                        .map(Integer::parseInt)//将字符串转为整型
-                        .orElseGet(() -> {
-                            Map<String, String> seatMarginMap = seatMarginCacheLoader.load(String.valueOf(each.getTrainId()), seatType, item.getDeparture(), item.getArrival());
-                            //从map中获取对应类型的余票
-                            return Optional.ofNullable(seatMarginMap.get(String.valueOf(item.getSeatType()))).map(Integer::parseInt).orElse(0);
-                        });
+            for (TrainStationPriceDO item : trainStationPriceDOList) {
+                int quantity = remainingTicketMap.getOrDefault(item.getSeatType(), 0);
                 seatClassList.add(new SeatClassDTO(item.getSeatType(), quantity, new BigDecimal(item.getPrice()).divide(new BigDecimal("100"), 1, RoundingMode.HALF_UP), false));
-            });
+            }
             //将该车次的座位类列表中填入座位类列表
             //包含着每种座位剩余多少的信息
             each.setSeatClassList(seatClassList);
@@ -280,51 +227,122 @@ public class TicketServiceImpl extends ServiceImpl<TicketMapper, TicketDO> imple
         // 列车查询逻辑较为复杂，详细解析文章查看 https://nageoffer.com/12306/question
         // v2 版本更符合企业级高并发真实场景解决方案，完美解决了 v1 版本性能深渊问题。通过 Jmeter 压测聚合报告得知，性能提升在 300% - 500%+
         // 其实还能有 v3 版本，性能估计在原基础上还能进一步提升一倍。不过 v3 版本太过于复杂，不易读且不易扩展，就不写具体的代码了。面试中 v2 版本已经够和面试官吹的了
-        List<Object> stationDetails = stringRedisTemplate.opsForHash()
-                .multiGet(REGION_TRAIN_STATION_MAPPING, Lists.newArrayList(requestParam.getFromStation(), requestParam.getToStation()));
-        String buildRegionTrainStationHashKey = String.format(REGION_TRAIN_STATION, stationDetails.get(0), stationDetails.get(1));
-        Map<Object, Object> regionTrainStationAllMap = stringRedisTemplate.opsForHash().entries(buildRegionTrainStationHashKey);
-        List<TicketListDTO> seatResults = regionTrainStationAllMap.values().stream()
-                .map(each -> JSON.parseObject(each.toString(), TicketListDTO.class))
-                .sorted(new TimeStringComparator())
-                .toList();
-        List<String> trainStationPriceKeys = seatResults.stream()
-                .map(each -> String.format(cacheRedisPrefix + TRAIN_STATION_PRICE, each.getTrainId(), each.getDeparture(), each.getArrival()))
+        // 地区映射及地区间车次优先读取本地缓存，车次集合已反序列化并排好序，变更时通过广播失效
+        List<Object> stationDetails = regionTrainStationNearCache.listRegion(requestParam.getFromStation(), requestParam.getToStation());
+        List<TicketListDTO> seatResults = listRegionTicket(stationDetails.get(0), stationDetails.get(1));
+        // 票价直接读取内存票价索引，无需再通过管道批量获取价格缓存
+        List<List<TrainStationPriceDO>> trainStationPriceLists = seatResults.stream()
+                .map(each -> trainFareIndex.listTrainStationPrice(each.getTrainId(), each.getDeparture(), each.getArrival()))
                 .toList();
-        List<Object> trainStationPriceObjs = stringRedisTemplate.executePipelined((RedisCallback<String>) connection -> {
-            trainStationPriceKeys.forEach(each -> connection.stringCommands().get(each.getBytes()));
-            return null;
-        });
-        List<TrainStationPriceDO> trainStationPriceDOList = new ArrayList<>();
-        List<String> trainStationRemainingKeyList = new ArrayList<>();
-        for (Object each : trainStationPriceObjs) {
-            List<TrainStationPriceDO> trainStationPriceList = JSON.parseArray(each.toString(), TrainStationPriceDO.class);
-            trainStationPriceDOList.addAll(trainStationPriceList);
-            for (TrainStationPriceDO item : trainStationPriceList) {
-                String trainStationRemainingKey = cacheRedisPrefix + TRAIN_STATION_REMAINING_TICKET + StrUtil.join("_", item.getTrainId(), item.getDeparture(), item.getArrival());
-                trainStationRemainingKeyList.add(trainStationRemainingKey);
-            }
+        // 每列车一次 HMGET 获取区间各座位类型站间余票，快照由数据库按站间精确统计重建
+        List<List<String>> trainRouteFieldsList = new ArrayList<>(seatResults.size());
+        for (int i = 0; i < seatResults.size(); i++) {
+            TicketListDTO each = seatResults.get(i);
+            List<Integer> seatTypes = trainStationPriceLists.get(i).stream().map(TrainStationPriceDO::getSeatType).toList();
+            trainRouteFieldsList.add(trainLegRemainingTicketCache.buildRouteFields(each.getTrainId(), each.getDeparture(), each.getArrival(), seatTypes));
         }
-        List<Object> trainStationRemainingObjs = stringRedisTemplate.executePipelined((RedisCallback<String>) connection -> {
-            for (int i = 0; i < trainStationRemainingKeyList.size(); i++) {
-                connection.hashCommands().hGet(trainStationRemainingKeyList.get(i).getBytes(), trainStationPriceDOList.get(i).getSeatType().toString().getBytes());
+        List<Object> trainRouteRemainingObjs = stringRedisTemplate.executePipelined((RedisCallback<String>) connection -> {
+            for (int i = 0; i < seatResults.size(); i++) {
+                byte[] trainRouteRemainingKey = (cacheRedisPrefix + TRAIN_ROUTE_REMAINING_TICKET + seatResults.get(i).getTrainId()).getBytes();
+                List<String> trainRouteFields = trainRouteFieldsList.get(i);
+                // 站点不合法时占位查询，保证管道返回结果与列车一一对应
+                byte[][] routeFields = trainRouteFields.isEmpty()
+                        ? new byte[][]{"-".getBytes()}
+                        : trainRouteFields.stream().map(String::getBytes).toArray(byte[][]::new);
+                connection.hashCommands().hMGet(trainRouteRemainingKey, routeFields);
             }
             return null;
         });
-        for (TicketListDTO each : seatResults) {
-            List<Integer> seatTypesByCode = VehicleTypeEnum.findSeatTypesByCode(each.getTrainType());
-            List<Object> remainingTicket = new ArrayList<>(trainStationRemainingObjs.subList(0, seatTypesByCode.size()));
-            List<TrainStationPriceDO> trainStationPriceDOSub = new ArrayList<>(trainStationPriceDOList.subList(0, seatTypesByCode.size()));
-            trainStationRemainingObjs.subList(0, seatTypesByCode.size()).clear();
-            trainStationPriceDOList.subList(0, seatTypesByCode.size()).clear();
+        for (int i = 0; i < seatResults.size(); i++) {
+            TicketListDTO each = seatResults.get(i);
+            List<TrainStationPriceDO> trainStationPriceDOSub = trainStationPriceLists.get(i);
+            List<Integer> remainingTicket = TrainLegRemainingTicketCache.parseRemaining((List<?>) trainRouteRemainingObjs.get(i));
+            if (remainingTicket == null) {
+                Map<String, String> seatMarginMap = seatMarginCacheLoader.load(each.getTrainId(), each.getDeparture(), each.getArrival());
+                remainingTicket = trainStationPriceDOSub.stream()
+                        .map(item -> Integer.parseInt(seatMarginMap.getOrDefault(String.valueOf(item.getSeatType()), "0")))
+                        .toList();
+            }
+            List<SeatClassDTO> seatClassList = new ArrayList<>();
+            for (int j = 0; j < trainStationPriceDOSub.size(); j++) {
+                TrainStationPriceDO trainStationPriceDO = trainStationPriceDOSub.get(j);
+                SeatClassDTO seatClassDTO = SeatClassDTO.builder()
+                        .type(trainStationPriceDO.getSeatType())
+                        .quantity(remainingTicket.get(j))
+                        .price(new BigDecimal(trainStationPriceDO.getPrice()).divide(new BigDecimal("100"), 1, RoundingMode.HALF_UP))
+                        .candidate(ticketWaitlist.isEnable() && remainingTicket.get(j) <= 0)
+                        .build();
+                seatClassList.add(seatClassDTO);
+            }
+            each.setSeatClassList(seatClassList);
+        }
+        return TicketPageQueryRespDTO.builder()
+                .trainList(seatResults)
+                .departureStationList(buildDepartureStationList(seatResults))
+                .arrivalStationList(buildArrivalStationList(seatResults))
+                .trainBrandList(buildTrainBrandList(seatResults))
+                .seatClassTypeList(buildSeatClassList(seatResults))
+                .build();
+    }
+
+
+    @Override
+    public TicketPageQueryRespDTO pageListTicketQueryV3(TicketPageQueryReqDTO requestParam) {
+        // 责任链模式 验证城市名称是否存在、不存在加载缓存以及出发日期不能小于当前日期等等
+        ticketPageQueryAbstractChainContext.handler(TicketChainMarkEnum.TRAIN_QUERY_FILTER.name(), requestParam);
+        StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
+        // v3 版本地区映射、地区间车次以及票价读取本地缓存，全部列车的站间余票合并为一次 Lua 脚本调用，只需要一次网络往返
+        // 脚本访问的 Key 全部通过 KEYS 传入；Redis Cluster 下各列车 Key 分布在不同槽位，需改用 v2 版本管道查询
+        // 本地缓存的车次集合已按出发时间排序，无需再排序
+        List<Object> stationDetails = regionTrainStationNearCache.listRegion(requestParam.getFromStation(), requestParam.getToStation());
+        List<TicketListDTO> seatResults = listRegionTicket(stationDetails.get(0), stationDetails.get(1));
+        List<List<TrainStationPriceDO>> trainStationPriceLists = seatResults.stream()
+                .map(each -> trainFareIndex.listTrainStationPrice(each.getTrainId(), each.getDeparture(), each.getArrival()))
+                .toList();
+        List<String> keys = new ArrayList<>(seatResults.size());
+        List<String> args = new ArrayList<>();
+        for (int i = 0; i < seatResults.size(); i++) {
+            TicketListDTO each = seatResults.get(i);
+            List<Integer> seatTypes = trainStationPriceLists.get(i).stream().map(TrainStationPriceDO::getSeatType).toList();
+            List<String> routeFields = trainLegRemainingTicketCache.buildRouteFields(each.getTrainId(), each.getDeparture(), each.getArrival(), seatTypes);
+            keys.add(TRAIN_ROUTE_REMAINING_TICKET + each.getTrainId());
+            args.add(String.valueOf(routeFields.size()));
+            args.addAll(routeFields);
+        }
+        JSONArray resultArray = null;
+        if (!keys.isEmpty()) {
+            DefaultRedisScript<String> actual = Singleton.get(LUA_TICKET_PAGE_QUERY_V3_PATH, () -> {
+                DefaultRedisScript<String> redisScript = new DefaultRedisScript<>();
+                redisScript.setScriptSource(new ResourceScriptSource(new ClassPathResource(LUA_TICKET_PAGE_QUERY_V3_PATH)));
+                redisScript.setResultType(String.class);
+                return redisScript;
+            });
+            Assert.notNull(actual);
+            resultArray = JSON.parseArray(stringRedisTemplate.execute(actual, keys, args.toArray()));
+        }
+        for (int i = 0; i < seatResults.size(); i++) {
+            TicketListDTO each = seatResults.get(i);
+            List<TrainStationPriceDO> trainStationPriceDOList = trainStationPriceLists.get(i);
+            // 站间余票快照未加载时值为 -1，空集合会被脚本编码为 JSON 对象
+            JSONArray remainingArray = resultArray != null && i < resultArray.size() && resultArray.get(i) instanceof JSONArray array
+                    ? array
+                    : new JSONArray();
+            Map<String, String> seatMarginMap = null;
             List<SeatClassDTO> seatClassList = new ArrayList<>();
-            for (int i = 0; i < trainStationPriceDOSub.size(); i++) {
-                TrainStationPriceDO trainStationPriceDO = trainStationPriceDOSub.get(i);
+            for (int j = 0; j < trainStationPriceDOList.size(); j++) {
+                TrainStationPriceDO trainStationPriceDO = trainStationPriceDOList.get(j);
+                int quantity = j < remainingArray.size() ? remainingArray.getIntValue(j) : -1;
+                if (quantity < 0) {
+                    if (seatMarginMap == null) {
+                        seatMarginMap = seatMarginCacheLoader.load(each.getTrainId(), each.getDeparture(), each.getArrival());
+                    }
+                    quantity = Integer.parseInt(seatMarginMap.getOrDefault(String.valueOf(trainStationPriceDO.getSeatType()), "0"));
+                }
                 SeatClassDTO seatClassDTO = SeatClassDTO.builder()
                         .type(trainStationPriceDO.getSeatType())
-                        .quantity(Integer.parseInt(remainingTicket.get(i).toString()))
+                        .quantity(quantity)
                         .price(new BigDecimal(trainStationPriceDO.getPrice()).divide(new BigDecimal("100"), 1, RoundingMode.HALF_UP))
-                        .candidate(false)
+                        .candidate(ticketWaitlist.isEnable() && quantity <= 0)
                         .build();
                 seatClassList.add(seatClassDTO);
             }
@@ -339,6 +357,18 @@ public class TicketServiceImpl extends ServiceImpl<TicketMapper, TicketDO> imple
                 .build();
     }
 
+    /**
+     * 读取本地缓存的地区间车次，Redis 中车次缓存不存在时先重建
+     * 本地缓存不保存空结果，重建后通过失效广播保证各节点读到最新车次
+     */
+    private List<TicketListDTO> listRegionTicket(Object startRegion, Object endRegion) {
+        List<TicketListDTO> seatResults = regionTrainStationNearCache.listTicket(startRegion, endRegion);
+        if (seatResults.isEmpty()) {
+            regionTrainStationCacheLoader.load(startRegion, endRegion);
+            seatResults = regionTrainStationNearCache.listTicket(startRegion, endRegion);
+        }
+        return seatResults;
+    }
 
     /**
      * 用幂等性防止重复购买
@@ -365,12 +395,13 @@ public class TicketServiceImpl extends ServiceImpl<TicketMapper, TicketDO> imple
         //这么暴力啊，一列车直接用分布式锁锁住让乘客一个个买
         String lockKey = environment.resolvePlaceholders(String.format(LOCK_PURCHASE_TICKETS, requestParam.getTrainId()));
         RLock lock = redissonClient.getLock(lockKey);
-        lock.lock();
+        LockSample lockSample = lockProfiler.lock(PURCHASE_TICKETS, requestParam.getTrainId(), lock);
         try {
             //直接调用将会绕开事务，所以这里采用服务进行调用，能够正常应用事务
             return ticketService.executePurchaseTickets(requestParam);
         } finally {
             lock.unlock();
+            lockSample.released();
         }
     }
 
@@ -394,48 +425,23 @@ public class TicketServiceImpl extends ServiceImpl<TicketMapper, TicketDO> imple
     )
     @Override
     public TicketPurchaseRespDTO purchaseTicketsV2(PurchaseTicketReqDTO requestParam) {
-        // 责任链模式，验证 1：参数必填 2：参数正确性 3：乘客是否已买当前车次等...
-        purchaseTicketAbstractChainContext.handler(TicketChainMarkEnum.TRAIN_PURCHASE_TICKET_FILTER.name(), requestParam);
-        //使用令牌限流
-        TokenResultDTO tokenResult = ticketAvailabilityTokenBucket.takeTokenFromBucket(requestParam);
-        if (tokenResult.getTokenIsNull()) {
-            //令牌桶为空即余票不足
-            Object ifPresentObj = tokenTicketsRefreshMap.getIfPresent(requestParam.getTrainId());
-            if (ifPresentObj == null) {
-                //为null说明正在刷新，存在于刷新set中，未被标记为刷新完成
-                //类对象锁保证全局唯一
-                synchronized (TicketService.class) {
-                    if (tokenTicketsRefreshMap.getIfPresent(requestParam.getTrainId()) == null) {
-                        //双重判断
-                        ifPresentObj = new Object();
-                        tokenTicketsRefreshMap.put(requestParam.getTrainId(), ifPresentObj);
-                        tokenIsNullRefreshToken(requestParam, tokenResult);
-                    }
-                }
-            }
-            //无余票
-            throw new ServiceException("列车站点已无余票");
+        verifyAndTakeToken(requestParam);
+        if (purchasePipelineEnable) {
+            //同一列车请求进入流水线批量出票，一批请求共用一次加锁与一个事务
+            return trainPurchasePipeline.submit(requestParam, ticketService::executePurchaseTickets);
         }
 
         List<ReentrantLock> localLockList = new ArrayList<>();
         List<RLock> distributedLockList = new ArrayList<>();
+        List<LockSample> lockSampleList = new ArrayList<>();
         Map<Integer, List<PurchaseTicketPassengerDetailDTO>> seatTypeMap = requestParam.getPassengers().stream()
                 .collect(Collectors.groupingBy(PurchaseTicketPassengerDetailDTO::getSeatType));
         seatTypeMap.forEach((searType, count) -> {
             //根据座位类型生成锁
             String lockKey = environment.resolvePlaceholders(String.format(LOCK_PURCHASE_TICKETS_V2, requestParam.getTrainId(), searType));
             //可重入锁
-            ReentrantLock localLock = localLockMap.getIfPresent(lockKey);
-            if (localLock == null) {
-                //分组后加锁执行
-                synchronized (TicketService.class) {
-                    if ((localLock = localLockMap.getIfPresent(lockKey)) == null) {
-                        //生成锁
-                        localLock = new ReentrantLock(true);
-                        localLockMap.put(lockKey, localLock);
-                    }
-                }
-            }
+            //Caffeine 原子创建本地锁，不使用 synchronized 避免虚拟线程固定载体线程
+            ReentrantLock localLock = localLockMap.get(lockKey, key -> new ReentrantLock(true));
             //放入锁列表，单机线程同步
             localLockList.add(localLock);
             RLock distributedLock = redissonClient.getFairLock(lockKey);
@@ -446,8 +452,8 @@ public class TicketServiceImpl extends ServiceImpl<TicketMapper, TicketDO> imple
 
         try {
             //把所有类型的锁都上锁
-            localLockList.forEach(ReentrantLock::lock);
-            distributedLockList.forEach(RLock::lock);
+            localLockList.forEach(each -> lockSampleList.add(lockProfiler.lock(PURCHASE_TICKETS_LOCAL, requestParam.getTrainId(), each)));
+            distributedLockList.forEach(each -> lockSampleList.add(lockProfiler.lock(PURCHASE_TICKETS_DISTRIBUTED, requestParam.getTrainId(), each)));
             //实现核心购票逻辑
             return ticketService.executePurchaseTickets(requestParam);
         } finally {
@@ -464,6 +470,80 @@ public class TicketServiceImpl extends ServiceImpl<TicketMapper, TicketDO> imple
                 } catch (Throwable ignored) {
                 }
             });
+            lockSampleList.forEach(LockSample::released);
+        }
+    }
+
+    @ILog
+    @Idempotent(
+            uniqueKeyPrefix = "project12306-ticket:lock_purchase-tickets:",
+            key = "T(org.project12306.commons.base.ApplicationContextHolder).getBean('environment').getProperty('unique-name', '')"
+                    + "+'_'+"
+                    + "T(org.project12306.commons.user.core.UserContext).getUsername()",
+            message = "正在执行下单流程，请稍后...",
+            scene = IdempotentSceneEnum.RESTAPI,
+            type = IdempotentTypeEnum.SPEL
+    )
+    @Override
+    public TicketPurchaseQueueRespDTO purchaseTicketsQueued(PurchaseTicketReqDTO requestParam) {
+        verifyAndTakeToken(requestParam);
+        //获取令牌后进入列车购票流水线排队，立即返回排队号
+        return ticketPurchaseQueue.enqueue(requestParam, ticketService::executePurchaseTickets);
+    }
+
+    @ILog
+    @Idempotent(
+            uniqueKeyPrefix = "project12306-ticket:lock_purchase-tickets:",
+            key = "T(org.project12306.commons.base.ApplicationContextHolder).getBean('environment').getProperty('unique-name', '')"
+                    + "+'_'+"
+                    + "T(org.project12306.commons.user.core.UserContext).getUsername()",
+            message = "正在执行下单流程，请稍后...",
+            scene = IdempotentSceneEnum.RESTAPI,
+            type = IdempotentTypeEnum.SPEL
+    )
+    @Override
+    public TicketPurchaseQueueRespDTO purchaseTicketsWaitlist(PurchaseTicketReqDTO requestParam) {
+        purchaseTicketAbstractChainContext.handler(TicketChainMarkEnum.TRAIN_PURCHASE_TICKET_FILTER.name(), requestParam);
+        TokenResultDTO tokenResult = ticketAvailabilityTokenBucket.takeTokenFromBucket(requestParam);
+        if (!tokenResult.getTokenIsNull()) {
+            //仍有余量直接进入购票流水线排队
+            return ticketPurchaseQueue.enqueue(requestParam, ticketService::executePurchaseTickets);
+        }
+        //无余量登记候补，释放座位时按登记先后自动出票
+        return ticketWaitlist.register(requestParam);
+    }
+
+    @Override
+    public CompletableFuture<TicketPurchaseQueueRespDTO> queryPurchaseQueueResult(String queueSn, Long waitMillis) {
+        return ticketPurchaseQueue.poll(queueSn, waitMillis == null ? 0L : waitMillis).thenApply(result -> {
+            //出票成功但发件箱创建订单最终失败，座位已释放，排队结果改为出票失败
+            if (result != null
+                    && Objects.equals(result.getStatus(), PurchaseQueueStatusEnum.SUCCESS.getCode())
+                    && (orderOutboxEnable || purchasePipelineEnable)
+                    && orderOutboxRelay.isFailed(result.getOrderSn())) {
+                result.setStatus(PurchaseQueueStatusEnum.FAILED.getCode());
+                result.setMessage(ORDER_CREATE_FAILED_MESSAGE);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * 购票参数校验并获取列车余量令牌，令牌不足时异步校准令牌桶并抛出无余票异常
+     */
+    private void verifyAndTakeToken(PurchaseTicketReqDTO requestParam) {
+        // 责任链模式，验证 1：参数必填 2：参数正确性 3：乘客是否已买当前车次等...
+        purchaseTicketAbstractChainContext.handler(TicketChainMarkEnum.TRAIN_PURCHASE_TICKET_FILTER.name(), requestParam);
+        //使用令牌限流
+        TokenResultDTO tokenResult = ticketAvailabilityTokenBucket.takeTokenFromBucket(requestParam);
+        if (tokenResult.getTokenIsNull()) {
+            //令牌桶为空即余票不足
+            //putIfAbsent 原子标记刷新中，同一列车只触发一次刷新
+            if (tokenTicketsRefreshMap.asMap().putIfAbsent(requestParam.getTrainId(), new Object()) == null) {
+                tokenIsNullRefreshToken(requestParam, tokenResult);
+            }
+            //无余票
+            throw new ServiceException("列车站点已无余票");
         }
     }
 
@@ -479,12 +559,7 @@ public class TicketServiceImpl extends ServiceImpl<TicketMapper, TicketDO> imple
     @Override
     public void cancelTicketOrder(CancelTicketOrderReqDTO requestParam) {
         Result<Void> cancelOrderResult = ticketOrderRemoteService.cancelTicketOrder(requestParam);
-        if (cancelOrderResult.isSuccess() && !StrUtil.equals(ticketAvailabilityCacheUpdateType, "binlog")) {
-            /*
-             配置项 ticketAvailabilityCacheUpdateType若值为 binlog，
-             表示通过MySQL Binlog监听自动同步库存，无需手动回滚。
-             其他值（如空或manual），需手动执行后续回滚逻辑。
-             */
+        if (cancelOrderResult.isSuccess()) {
 
             //从远程中获取订单信息
             Result<org.project12306.services.ticketservice.remote.dto.TicketOrderDetailRespDTO > ticketOrderDetailResult = ticketOrderRemoteService.queryTicketOrderByOrderSn(requestParam.getOrderSn());
@@ -493,6 +568,8 @@ public class TicketServiceImpl extends ServiceImpl<TicketMapper, TicketDO> imple
             String departure = ticketOrderDetail.getDeparture();
             String arrival = ticketOrderDetail.getArrival();
             List<TicketOrderPassengerDetailRespDTO> trainPurchaseTicketResults = ticketOrderDetail.getPassengerDetails();
+            //解锁座位前读取令牌桶纪元，解锁后令牌桶按数据库重建时已计入这些座位，不再回滚令牌
+            long tokenEpoch = ticketWaitlist.currentEpoch(trainId);
 
             try {
                 //座位解锁
@@ -501,22 +578,24 @@ public class TicketServiceImpl extends ServiceImpl<TicketMapper, TicketDO> imple
                 log.error("[取消订单] 订单号：{} 回滚列车DB座位状态失败", requestParam.getOrderSn(), ex);
                 throw ex;
             }
-            //令牌桶回滚
-            ticketAvailabilityTokenBucket.rollbackInBucket(ticketOrderDetail);
+            /*
+             配置项 ticketAvailabilityCacheUpdateType若值为 binlog，
+             表示通过MySQL Binlog监听座位变更自动同步余票与令牌，无需手动回滚。
+             其他值（如空或manual），需手动执行后续回滚逻辑。
+             */
+            if (StrUtil.equals(ticketAvailabilityCacheUpdateType, "binlog")) {
+                return;
+            }
+            //令牌回滚，存在候补需求时暂扣令牌优先分配给候补用户
+            Map<Integer, Long> releaseSeatTypeCountMap = trainPurchaseTicketResults.stream()
+                    .collect(Collectors.groupingBy(TicketOrderPassengerDetailRespDTO::getSeatType, Collectors.counting()));
+            ticketWaitlist.release(trainId, departure, arrival, releaseSeatTypeCountMap, tokenEpoch);
 
             try {
-                //票缓存数量回滚
-                StringRedisTemplate stringRedisTemplate = (StringRedisTemplate) distributedCache.getInstance();
-                Map<Integer, List<TicketOrderPassengerDetailRespDTO>> seatTypeMap = trainPurchaseTicketResults.stream()
-                        .collect(Collectors.groupingBy(TicketOrderPassengerDetailRespDTO::getSeatType));
-                List<RouteDTO> routeDTOList = trainStationService.listTakeoutTrainStationRoute(trainId, departure, arrival);
-                routeDTOList.forEach(each -> {
-                    String keySuffix = StrUtil.join("_", trainId, each.getStartStation(), each.getEndStation());
-                    seatTypeMap.forEach((seatType, ticketOrderPassengerDetailRespDTOList) -> {
-                        stringRedisTemplate.opsForHash()
-                                .increment(TRAIN_STATION_REMAINING_TICKET + keySuffix, String.valueOf(seatType), ticketOrderPassengerDetailRespDTOList.size());
-                    });
-                });
+                //票缓存数量回滚，按区段区间一次性回滚
+                Map<Integer, Integer> seatTypeCountMap = trainPurchaseTicketResults.stream()
+                        .collect(Collectors.groupingBy(TicketOrderPassengerDetailRespDTO::getSeatType, Collectors.summingInt(each -> 1)));
+                trainLegRemainingTicketCache.update(trainId, departure, arrival, seatTypeCountMap);
             } catch (Throwable ex) {
                 log.error("[取消关闭订单] 订单号：{} 回滚列车Cache余票失败", requestParam.getOrderSn(), ex);
                 throw ex;
@@ -685,6 +764,17 @@ public class TicketServiceImpl extends ServiceImpl<TicketMapper, TicketDO> imple
                     .ticketOrderItems(orderItemCreateRemoteReqDTOList)
                     .build();
 
+            //开启订单发件箱时在本事务内生成订单号并写入发件箱，事务提交后异步创建订单，远程调用移出锁内临界区
+            //流水线批量出票时整批共用一个事务，批次回滚会留下已创建的订单，同样改为提交后经发件箱创建
+            if (orderOutboxEnable || TrainPurchasePipeline.isBatching()) {
+                //订单号与订单服务生成的订单号同样以用户 ID 后六位为分片基因，前缀使用框架雪花算法（19 位），
+                //与订单服务自有生成器的前缀（5 位节点、7 位序列、2021 纪元，约 15 位）长度不同，两者不会重复
+                String orderSn = SnowflakeIdUtil.nextIdStr() + Long.parseLong(UserContext.getUserId()) % 1000000;
+                orderCreateRemoteReqDTO.setOrderSn(orderSn);
+                orderOutboxRelay.save(orderCreateRemoteReqDTO);
+                return new TicketPurchaseRespDTO(orderSn, ticketOrderDetailResults);
+            }
+
             //创建订单后的返回值
             ticketOrderResult = ticketOrderRemoteService.createTicketOrder(orderCreateRemoteReqDTO);
             if (!ticketOrderResult.isSuccess() || StrUtil.isBlank(ticketOrderResult.getData())) {
@@ -1,8 +1,14 @@
 package org.project12306.services.ticketservice.service.impl;
 
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
+import com.alibaba.fastjson2.JSON;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.RequiredArgsConstructor;
+import org.project12306.commons.cache.DistributedCache;
 import org.project12306.commons.common.toolkit.BeanUtil;
 import org.project12306.services.ticketservice.dao.entity.TrainStationDO;
 import org.project12306.services.ticketservice.dao.mapper.TrainStationMapper;
@@ -12,31 +18,38 @@ import org.project12306.services.ticketservice.service.TrainStationService;
 import org.project12306.services.ticketservice.toolkit.StationCalculateUtil;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+
+import static org.project12306.services.ticketservice.common.constant.Index12306Constant.ADVANCE_TICKET_DAY;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.TRAIN_STATION_STOPOVER_DETAIL;
 
 @Service
 @RequiredArgsConstructor
 public class TrainStationServiceImpl implements TrainStationService {
     private final TrainStationMapper trainStationMapper;
+    private final DistributedCache distributedCache;
+
+    /**
+     * 列车经停站本地缓存，列车时刻表极少变化，避免购票与查询链路反复查询
+     */
+    private final Cache<String, List<String>> trainStationAllCache = Caffeine.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
     @Override
     public List<RouteDTO> listTrainStationRoute(String trainId, String departure, String arrival) {
-        LambdaQueryWrapper<TrainStationDO> queryWrapper = Wrappers.lambdaQuery(TrainStationDO.class)
-                .eq(TrainStationDO::getTrainId, trainId)
-                .select(TrainStationDO::getDeparture);
         //查询该列车途径的所有站点
-        List<TrainStationDO> trainStationDOList = trainStationMapper.selectList(queryWrapper);
-        //转为字符串
-        List<String> trainStationAllList = trainStationDOList.stream().map(TrainStationDO::getDeparture).collect(Collectors.toList());
+        List<String> trainStationAllList = listTrainStationAll(trainId);
         return StationCalculateUtil.throughStation(trainStationAllList, departure, arrival);
     }
     @Override
     public List<RouteDTO> listTakeoutTrainStationRoute(String trainId, String departure, String arrival) {
-        LambdaQueryWrapper<TrainStationDO> queryWrapper = Wrappers.lambdaQuery(TrainStationDO.class)
-                .eq(TrainStationDO::getTrainId, trainId)
-                .select(TrainStationDO::getDeparture);
-        List<TrainStationDO> trainStationDOList = trainStationMapper.selectList(queryWrapper);
-        List<String> trainStationAllList = trainStationDOList.stream().map(TrainStationDO::getDeparture).collect(Collectors.toList());
+        List<String> trainStationAllList = listTrainStationAll(trainId);
         return StationCalculateUtil.takeoutStation(trainStationAllList, departure, arrival);
     }
 
@@ -47,4 +60,34 @@ public class TrainStationServiceImpl implements TrainStationService {
         List<TrainStationDO> trainStationDOList = trainStationMapper.selectList(queryWrapper);
         return BeanUtil.convert(trainStationDOList, TrainStationQueryRespDTO.class);
     }
+
+    @Override
+    public List<String> listTrainStationAll(String trainId) {
+        List<String> trainStationAllList = trainStationAllCache.get(trainId, key -> {
+            // 与购票参数校验共用列车路线缓存
+            String trainStationStopoverDetailStr = distributedCache.safeGet(
+                    TRAIN_STATION_STOPOVER_DETAIL + trainId,
+                    String.class,
+                    () -> {
+                        LambdaQueryWrapper<TrainStationDO> queryWrapper = Wrappers.lambdaQuery(TrainStationDO.class)
+                                .eq(TrainStationDO::getTrainId, trainId)
+                                .orderByAsc(TrainStationDO::getSequence)
+                                .select(TrainStationDO::getSequence, TrainStationDO::getDeparture);
+                        List<TrainStationDO> trainStationDOList = new ArrayList<>(trainStationMapper.selectList(queryWrapper));
+                        // 站点下标即区段下标，会持久化到区段位图与缓存 Field 中，按站序数值排序
+                        trainStationDOList.sort(Comparator.comparingInt(each -> Integer.parseInt(each.getSequence())));
+                        return CollUtil.isNotEmpty(trainStationDOList) ? JSON.toJSONString(trainStationDOList) : null;
+                    },
+                    ADVANCE_TICKET_DAY,
+                    TimeUnit.DAYS
+            );
+            if (StrUtil.isBlank(trainStationStopoverDetailStr)) {
+                return null;
+            }
+            return JSON.parseArray(trainStationStopoverDetailStr, TrainStationDO.class).stream()
+                    .map(TrainStationDO::getDeparture)
+                    .toList();
+        });
+        return trainStationAllList == null ? Collections.emptyList() : trainStationAllList;
+    }
 }
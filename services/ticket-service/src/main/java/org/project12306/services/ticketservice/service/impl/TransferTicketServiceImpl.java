@@ -0,0 +1,172 @@
+package org.project12306.services.ticketservice.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import lombok.RequiredArgsConstructor;
+import org.project12306.commons.cache.DistributedCache;
+import org.project12306.convention.exception.ClientException;
+import org.project12306.services.ticketservice.dao.entity.TrainDO;
+import org.project12306.services.ticketservice.dao.entity.TrainStationPriceDO;
+import org.project12306.services.ticketservice.dao.mapper.TrainMapper;
+import org.project12306.services.ticketservice.dto.domain.SeatClassDTO;
+import org.project12306.services.ticketservice.dto.domain.TicketListDTO;
+import org.project12306.services.ticketservice.dto.domain.TransferTicketDTO;
+import org.project12306.services.ticketservice.dto.req.TransferTicketQueryReqDTO;
+import org.project12306.services.ticketservice.dto.resp.TransferTicketQueryRespDTO;
+import org.project12306.services.ticketservice.service.TransferTicketService;
+import org.project12306.services.ticketservice.service.cache.RegionTrainStationNearCache;
+import org.project12306.services.ticketservice.service.cache.SeatMarginCacheLoader;
+import org.project12306.services.ticketservice.service.cache.TrainLegRemainingTicketCache;
+import org.project12306.services.ticketservice.service.handler.ticket.fare.TrainFareIndex;
+import org.project12306.services.ticketservice.service.handler.ticket.transfer.TrainTimetableIndexHolder;
+import org.project12306.services.ticketservice.service.handler.ticket.transfer.TransferItinerary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import static org.project12306.services.ticketservice.common.constant.Index12306Constant.ADVANCE_TICKET_DAY;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.TRAIN_INFO;
+import static org.project12306.services.ticketservice.service.impl.DateUtil.convertDateToLocalTime;
+
+/**
+ * 中转车票接口实现
+ * 换乘方案由内存时刻表索引计算，只保留出发日期当日开行的车次，各程余票取自区段余票缓存
+ */
+@Service
+@RequiredArgsConstructor
+public class TransferTicketServiceImpl implements TransferTicketService {
+
+    private static final int MINUTES_OF_DAY = 1440;
+
+    private final TrainTimetableIndexHolder trainTimetableIndexHolder;
+    private final RegionTrainStationNearCache regionTrainStationNearCache;
+    private final TrainLegRemainingTicketCache trainLegRemainingTicketCache;
+    private final SeatMarginCacheLoader seatMarginCacheLoader;
+    private final DistributedCache distributedCache;
+    private final TrainMapper trainMapper;
+    private final TrainFareIndex trainFareIndex;
+
+    @Value("${ticket.transfer.min-connection-minutes:20}")
+    private int minConnectionMinutes;
+
+    @Value("${ticket.transfer.cross-station-connection-minutes:60}")
+    private int crossStationConnectionMinutes;
+
+    @Value("${ticket.transfer.max-wait-minutes:360}")
+    private int maxWaitMinutes;
+
+    @Value("${ticket.transfer.limit:20}")
+    private int limit;
+
+    @Override
+    public TransferTicketQueryRespDTO listTransferTicketQuery(TransferTicketQueryReqDTO requestParam) {
+        if (StrUtil.isBlank(requestParam.getFromStation()) || StrUtil.isBlank(requestParam.getToStation())) {
+            throw new ClientException("出发地或目的地不能为空");
+        }
+        if (requestParam.getDepartureDate() == null) {
+            throw new ClientException("出发日期不能为空");
+        }
+        LocalDate departureDate = requestParam.getDepartureDate().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+        if (departureDate.isBefore(LocalDate.now())) {
+            throw new ClientException("出发日期不能小于当前日期");
+        }
+        List<Object> stationDetails = regionTrainStationNearCache.listRegion(requestParam.getFromStation(), requestParam.getToStation());
+        if (stationDetails.stream().anyMatch(Objects::isNull)) {
+            throw new ClientException("出发地或目的地不存在");
+        }
+        List<TransferItinerary> itineraries = trainTimetableIndexHolder.get().search(
+                stationDetails.get(0).toString(),
+                stationDetails.get(1).toString(),
+                minConnectionMinutes,
+                Boolean.TRUE.equals(requestParam.getSameStation()) ? -1 : crossStationConnectionMinutes,
+                maxWaitMinutes,
+                limit,
+                departureDate
+        );
+        List<TransferTicketDTO> transferList = new ArrayList<>(itineraries.size());
+        for (TransferItinerary each : itineraries) {
+            TicketListDTO firstTrain = buildTicketList(each.getFirstTrainId(), each.getFirstDeparture(), each.getFirstArrival(),
+                    each.getFirstDepartureMinute(), each.getFirstArrivalMinute());
+            TicketListDTO secondTrain = buildTicketList(each.getSecondTrainId(), each.getSecondDeparture(), each.getSecondArrival(),
+                    each.getSecondDepartureMinute(), each.getSecondArrivalMinute());
+            TransferTicketDTO transferTicket = TransferTicketDTO.builder()
+                    .firstTrain(firstTrain)
+                    .secondTrain(secondTrain)
+                    .transferRegion(each.getTransferRegion())
+                    .sameStation(Objects.equals(each.getFirstArrival(), each.getSecondDeparture()))
+                    .waitDuration(formatDuration(each.getWaitMinutes()))
+                    .totalDuration(formatDuration(each.getTotalMinutes()))
+                    .daysArrived(each.getSecondArrivalMinute() / MINUTES_OF_DAY - each.getFirstDepartureMinute() / MINUTES_OF_DAY)
+                    .build();
+            transferList.add(transferTicket);
+        }
+        return new TransferTicketQueryRespDTO(transferList);
+    }
+
+    private TicketListDTO buildTicketList(Long trainId, String departure, String arrival, int departureMinute, int arrivalMinute) {
+        TrainDO trainDO = distributedCache.safeGet(
+                TRAIN_INFO + trainId,
+                TrainDO.class,
+                () -> trainMapper.selectById(trainId),
+                ADVANCE_TICKET_DAY,
+                TimeUnit.DAYS);
+        TicketListDTO result = TicketListDTO.builder()
+                .trainId(String.valueOf(trainId))
+                .trainNumber(trainDO.getTrainNumber())
+                .departureTime(formatMinute(departureMinute))
+                .departureMinute(departureMinute % MINUTES_OF_DAY)
+                .arrivalTime(formatMinute(arrivalMinute))
+                .duration(formatDuration(arrivalMinute - departureMinute))
+                .daysArrived(arrivalMinute / MINUTES_OF_DAY - departureMinute / MINUTES_OF_DAY)
+                .departure(departure)
+                .arrival(arrival)
+                .trainType(trainDO.getTrainType())
+                .trainBrand(trainDO.getTrainBrand())
+                .saleStatus(new Date().after(trainDO.getSaleTime()) ? 0 : 1)
+                .saleTime(convertDateToLocalTime(trainDO.getSaleTime(), "MM-dd HH:mm"))
+                .build();
+        if (StrUtil.isNotBlank(trainDO.getTrainTag())) {
+            result.setTrainTags(StrUtil.split(trainDO.getTrainTag(), ","));
+        }
+        result.setSeatClassList(buildSeatClassList(result.getTrainId(), departure, arrival));
+        return result;
+    }
+
+    private List<SeatClassDTO> buildSeatClassList(String trainId, String departure, String arrival) {
+        List<TrainStationPriceDO> trainStationPriceDOList = trainFareIndex.listTrainStationPrice(trainId, departure, arrival);
+        List<Integer> seatTypes = trainStationPriceDOList.stream().map(TrainStationPriceDO::getSeatType).toList();
+        Map<Integer, Integer> remainingTicketMap = trainLegRemainingTicketCache.listRemainingTicket(trainId, departure, arrival, seatTypes);
+        if (remainingTicketMap == null) {
+            Map<String, String> seatMarginMap = seatMarginCacheLoader.load(trainId, departure, arrival);
+            remainingTicketMap = new HashMap<>();
+            for (Map.Entry<String, String> entry : seatMarginMap.entrySet()) {
+                remainingTicketMap.put(Integer.parseInt(entry.getKey()), Integer.parseInt(entry.getValue()));
+            }
+        }
+        List<SeatClassDTO> seatClassList = new ArrayList<>(trainStationPriceDOList.size());
+        for (TrainStationPriceDO item : trainStationPriceDOList) {
+            int quantity = remainingTicketMap.getOrDefault(item.getSeatType(), 0);
+            seatClassList.add(new SeatClassDTO(item.getSeatType(), quantity, new BigDecimal(item.getPrice()).divide(new BigDecimal("100"), 1, RoundingMode.HALF_UP), false));
+        }
+        return seatClassList;
+    }
+
+    private String formatMinute(int minute) {
+        int minuteOfDay = minute % MINUTES_OF_DAY;
+        return String.format("%02d:%02d", minuteOfDay / 60, minuteOfDay % 60);
+    }
+
+    private String formatDuration(int minutes) {
+        return String.format("%02d:%02d", minutes / 60, minutes % 60);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.profiler;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.project12306.commons.base.profiler.LockProfiler;
+import org.project12306.commons.base.profiler.LockSample;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * 基于 Micrometer 的锁竞争分析器
+ * <p>
+ * 按逻辑锁名称与列车统计加锁等待时间（ticket.lock.acquire）、持有时间（ticket.lock.hold）以及等待线程数量（ticket.lock.waiting）；
+ * 按采样率记录持锁调用方，定时输出持有时间最长的锁及其调用方
+ */
+@Slf4j
+public class MicrometerLockProfiler implements LockProfiler {
+
+    private static final String NONE_TRAIN_TAG = "none";
+    private static final String OTHER_TRAIN_TAG = "other";
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance();
+
+    private final MeterRegistry meterRegistry;
+    private final double sampleRate;
+    private final int callerDepth;
+    private final int maxTrainTags;
+    private final int maxCallers;
+    private final int reportSize;
+    private final Set<String> trainTags = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, LockMeters> lockMetersMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, HolderStat>> holderStatMap = new ConcurrentHashMap<>();
+
+    public MicrometerLockProfiler(MeterRegistry meterRegistry, double sampleRate, int callerDepth, int maxTrainTags, int maxCallers, int reportSize) {
+        this.meterRegistry = meterRegistry;
+        this.sampleRate = sampleRate;
+        this.callerDepth = callerDepth;
+        this.maxTrainTags = maxTrainTags;
+        this.maxCallers = maxCallers;
+        this.reportSize = reportSize;
+    }
+
+    @Override
+    public LockSample start(String lockName, String trainId) {
+        String trainTag = trainTag(trainId);
+        LockMeters lockMeters = lockMetersMap.computeIfAbsent(lockName + ':' + trainTag, key -> new LockMeters(lockName, trainTag));
+        lockMeters.waiting.incrementAndGet();
+        // 仅采样请求遍历调用栈，未命中采样只记录指标
+        String caller = sampleRate > 0D && ThreadLocalRandom.current().nextDouble() < sampleRate ? caller() : null;
+        return new MicrometerLockSample(lockName, lockMeters, caller, System.nanoTime());
+    }
+
+    /**
+     * 输出采样窗口内持有时间最长的锁及调用方，输出后清空采样数据
+     */
+    @Scheduled(initialDelayString = "${ticket.lock-profiler.report-interval:60000}", fixedDelayString = "${ticket.lock-profiler.report-interval:60000}")
+    public void report() {
+        if (holderStatMap.isEmpty()) {
+            return;
+        }
+        Map<String, ConcurrentHashMap<String, HolderStat>> snapshot = new ConcurrentHashMap<>(holderStatMap);
+        holderStatMap.clear();
+        // 按采样持有总时间排序，持有总时间越长的锁竞争越激烈
+        snapshot.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, ConcurrentHashMap<String, HolderStat>> each) -> totalHoldNanos(each.getValue())).reversed())
+                .limit(reportSize)
+                .forEach(each -> {
+                    List<Map.Entry<String, HolderStat>> callers = new ArrayList<>(each.getValue().entrySet());
+                    callers.sort(Comparator.comparingLong((Map.Entry<String, HolderStat> entry) -> entry.getValue().maxHoldNanos.get()).reversed());
+                    String callerReport = callers.stream()
+                            .limit(reportSize)
+                            .map(entry -> String.format("%n  [max=%dms, avg=%dms, count=%d] %s",
+                                    TimeUnit.NANOSECONDS.toMillis(entry.getValue().maxHoldNanos.get()),
+                                    TimeUnit.NANOSECONDS.toMillis(entry.getValue().totalHoldNanos.sum() / Math.max(entry.getValue().count.sum(), 1L)),
+                                    entry.getValue().count.sum(),
+                                    entry.getKey()))
+                            .collect(Collectors.joining());
+                    log.info("[锁竞争分析] 锁 {} 采样持有总时间 {}ms，持锁调用方：{}", each.getKey(), TimeUnit.NANOSECONDS.toMillis(totalHoldNanos(each.getValue())), callerReport);
+                });
+    }
+
+    private long totalHoldNanos(Map<String, HolderStat> callerStatMap) {
+        return callerStatMap.values().stream().mapToLong(each -> each.totalHoldNanos.sum()).sum();
+    }
+
+    /**
+     * 列车标签数量超过上限后归入 other，避免指标基数无限增长
+     */
+    private String trainTag(String trainId) {
+        if (trainId == null) {
+            return NONE_TRAIN_TAG;
+        }
+        if (trainTags.contains(trainId) || (trainTags.size() < maxTrainTags && trainTags.add(trainId))) {
+            return trainId;
+        }
+        return OTHER_TRAIN_TAG;
+    }
+
+    private String caller() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(each -> each.getClassName().startsWith("org.project12306")
+                        && !each.getClassName().startsWith(LockProfiler.class.getPackageName())
+                        && !each.getClassName().equals(MicrometerLockProfiler.class.getName())
+                        && !each.getClassName().startsWith(MicrometerLockProfiler.class.getName() + "$")
+                        && !each.getClassName().contains("$$"))
+                .limit(callerDepth)
+                .map(each -> each.getClassName().substring(each.getClassName().lastIndexOf('.') + 1) + "#" + each.getMethodName() + ":" + each.getLineNumber())
+                .collect(Collectors.joining(" <- ")));
+    }
+
+    private void recordHolder(String lockName, String caller, long holdNanos) {
+        ConcurrentHashMap<String, HolderStat> callerStatMap = holderStatMap.computeIfAbsent(lockName, key -> new ConcurrentHashMap<>());
+        HolderStat holderStat = callerStatMap.get(caller);
+        if (holderStat == null) {
+            if (callerStatMap.size() >= maxCallers) {
+                return;
+            }
+            holderStat = callerStatMap.computeIfAbsent(caller, key -> new HolderStat());
+        }
+        holderStat.count.increment();
+        holderStat.totalHoldNanos.add(holdNanos);
+        holderStat.maxHoldNanos.accumulate(holdNanos);
+    }
+
+    private final class LockMeters {
+
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final Timer acquireTimer;
+        private final Timer holdTimer;
+
+        private LockMeters(String lockName, String trainTag) {
+            this.acquireTimer = Timer.builder("ticket.lock.acquire")
+                    .description("加锁等待时间")
+                    .tags("lock", lockName, "train", trainTag)
+                    .register(meterRegistry);
+            this.holdTimer = Timer.builder("ticket.lock.hold")
+                    .description("锁持有时间")
+                    .tags("lock", lockName, "train", trainTag)
+                    .register(meterRegistry);
+            Gauge.builder("ticket.lock.waiting", waiting, AtomicInteger::get)
+                    .description("等待加锁线程数量")
+                    .tags("lock", lockName, "train", trainTag)
+                    .register(meterRegistry);
+        }
+    }
+
+    private static final class HolderStat {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalHoldNanos = new LongAdder();
+        private final LongAccumulator maxHoldNanos = new LongAccumulator(Math::max, 0L);
+    }
+
+    private final class MicrometerLockSample implements LockSample {
+
+        private final String lockName;
+        private final LockMeters lockMeters;
+        private final String caller;
+        private final long startNanos;
+        private long acquiredNanos;
+
+        private MicrometerLockSample(String lockName, LockMeters lockMeters, String caller, long startNanos) {
+            this.lockName = lockName;
+            this.lockMeters = lockMeters;
+            this.caller = caller;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void acquired() {
+            acquiredNanos = System.nanoTime();
+            lockMeters.waiting.decrementAndGet();
+            lockMeters.acquireTimer.record(acquiredNanos - startNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void abandon() {
+            lockMeters.waiting.decrementAndGet();
+        }
+
+        @Override
+        public void released() {
+            if (acquiredNanos == 0L) {
+                return;
+            }
+            long holdNanos = System.nanoTime() - acquiredNanos;
+            acquiredNanos = 0L;
+            lockMeters.holdTimer.record(holdNanos, TimeUnit.NANOSECONDS);
+            if (caller != null) {
+                recordHolder(lockName, caller, holdNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.toolkit;
+
+import java.util.List;
+
+/**
+ * 座位区段位图计算工具
+ * 列车第 i 站到第 i + 1 站为第 i 个区段，出发站到到达站占用 [startIndex, endIndex) 区段
+ */
+public final class SeatLegMaskUtil {
+
+    /**
+     * 位图可表示的最大区段数量，保留符号位
+     */
+    public static final int MAX_LEG_SIZE = 63;
+
+    /**
+     * 计算出发站到到达站的区段位图
+     *
+     * @param stations     所有站点数据
+     * @param startStation 出发站
+     * @param endStation   到达站
+     * @return 区段位图，站点不合法时返回 0
+     */
+    public static long legMask(List<String> stations, String startStation, String endStation) {
+        return legMask(stations.indexOf(startStation), stations.indexOf(endStation));
+    }
+
+    /**
+     * 计算 [startIndex, endIndex) 区段位图
+     *
+     * @param startIndex 出发站下标
+     * @param endIndex   到达站下标
+     * @return 区段位图，下标不合法时返回 0
+     */
+    public static long legMask(int startIndex, int endIndex) {
+        if (startIndex < 0 || endIndex <= startIndex || endIndex > MAX_LEG_SIZE) {
+            return 0L;
+        }
+        return ((1L << endIndex) - 1) & ~((1L << startIndex) - 1);
+    }
+
+    /**
+     * 判断座位在区段内是否空闲
+     */
+    public static boolean isAvailable(long seatMask, long legMask) {
+        return (seatMask & legMask) == 0;
+    }
+
+    /**
+     * 占用座位区段
+     */
+    public static long occupy(long seatMask, long legMask) {
+        return seatMask | legMask;
+    }
+
+    /**
+     * 释放座位区段
+     */
+    public static long release(long seatMask, long legMask) {
+        return seatMask & ~legMask;
+    }
+}
@@ -17,7 +17,9 @@
 
 package org.project12306.services.ticketservice.toolkit;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -72,4 +74,18 @@ public final class SeatNumberUtil {
         }
         return serialNumber;
     }
+
+    /**
+     * 获取座位类型每排的座位字母，按座位顺序排列
+     *
+     * @param type 列车座位类型
+     * @return 每排座位字母，未适配的座位类型返回空数组
+     */
+    public static String[] listColumn(int type) {
+        List<String> columns = new ArrayList<>();
+        for (int num = 1; convert(type, num) != null; num++) {
+            columns.add(convert(type, num));
+        }
+        return columns.toArray(new String[0]);
+    }
 }
@@ -20,21 +20,53 @@ package org.project12306.services.ticketservice.toolkit;
 
 import org.project12306.services.ticketservice.dto.domain.TicketListDTO;
 
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.util.Comparator;
 
 /**
  * 自定义时间比较器
+ * 优先使用车次预计算的出发分钟数，未计算时按 HH:mm 字符直接换算，比较过程不产生对象分配
  */
 public class TimeStringComparator implements Comparator<TicketListDTO> {
 
-    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
-
     @Override
     public int compare(TicketListDTO ticketList1, TicketListDTO ticketList2) {
-        LocalTime localTime1 = LocalTime.parse(ticketList1.getDepartureTime(), FORMATTER);
-        LocalTime localTime2 = LocalTime.parse(ticketList2.getDepartureTime(), FORMATTER);
-        return localTime1.compareTo(localTime2);
+        return Integer.compare(departureMinute(ticketList1), departureMinute(ticketList2));
+    }
+
+    /**
+     * 获取车次出发时间距零点分钟数
+     *
+     * @param ticketList 车次
+     * @return 出发分钟数
+     */
+    public static int departureMinute(TicketListDTO ticketList) {
+        Integer departureMinute = ticketList.getDepartureMinute();
+        return departureMinute != null ? departureMinute : toMinute(ticketList.getDepartureTime());
+    }
+
+    /**
+     * 将 HH:mm 格式时间换算为距零点分钟数
+     *
+     * @param time HH:mm 格式时间
+     * @return 分钟数
+     */
+    public static int toMinute(String time) {
+        if (time == null || time.length() != 5 || time.charAt(2) != ':') {
+            throw new IllegalArgumentException("Invalid time: " + time);
+        }
+        int hour = digit(time, 0) * 10 + digit(time, 1);
+        int minute = digit(time, 3) * 10 + digit(time, 4);
+        if (hour > 23 || minute > 59) {
+            throw new IllegalArgumentException("Invalid time: " + time);
+        }
+        return hour * 60 + minute;
+    }
+
+    private static int digit(String time, int index) {
+        int digit = time.charAt(index) - '0';
+        if (digit < 0 || digit > 9) {
+            throw new IllegalArgumentException("Invalid time: " + time);
+        }
+        return digit;
     }
 }
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.toolkit;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 虚拟线程工具类
+ * <p>
+ * 项目以 JDK 17 编译，通过反射创建虚拟线程执行器，运行在 JDK 21 及以上时可用，否则调用方回退平台线程池
+ */
+@Slf4j
+public final class VirtualThreadUtil {
+
+    private static final ExecutorService VIRTUAL_THREAD_EXECUTOR = newVirtualThreadPerTaskExecutor("ticket-virtual-");
+
+    /**
+     * 当前 JDK 是否支持虚拟线程
+     */
+    public static boolean isSupported() {
+        return VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * 获取共享的虚拟线程执行器，每个任务一个虚拟线程，无需池化与关闭
+     *
+     * @return 不支持虚拟线程时返回 null
+     */
+    public static ExecutorService executor() {
+        return VIRTUAL_THREAD_EXECUTOR;
+    }
+
+    /**
+     * 反射调用 Thread.ofVirtual().name(prefix, 0).factory() 与 Executors.newThreadPerTaskExecutor(factory)
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, threadFactory);
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError ex) {
+            // JDK 21 以下不存在相关方法，JDK 19/20 未开启预览特性时抛出 UnsupportedOperationException
+            log.info("当前 JDK 不支持虚拟线程：{}", ex.toString());
+            return null;
+        }
+    }
+}
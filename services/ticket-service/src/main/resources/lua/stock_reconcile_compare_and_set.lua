@@ -0,0 +1,16 @@
+-- KEYS[1] 列车库存 Hash（余量令牌桶或区段余票）
+-- ARGV 按 Field、对账时观测值、修复值 三个一组
+-- 仅当前值仍等于观测值时写入修复值，对账期间被购票或回滚修改过的 Field 保持不变，返回修复的 Field 数量
+if redis.call('exists', KEYS[1]) == 0 then
+    return 0
+end
+
+local repaired = 0
+for i = 1, #ARGV, 3 do
+    if redis.call('hget', KEYS[1], ARGV[i]) == ARGV[i + 1] then
+        redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 2])
+        repaired = repaired + 1
+    end
+end
+
+return repaired
@@ -1,25 +1,31 @@
-local inputString = KEYS[2]
-local actualKey = inputString
-local colonIndex = string.find(actualKey, ":")
-if colonIndex ~= nil then
-    actualKey = string.sub(actualKey, colonIndex + 1)
+-- KEYS[1] 列车余量令牌桶 Hash，Field 为 "出发站下标_到达站下标_座位类型"，KEYS[2] 令牌桶纪元
+-- ARGV[1] 令牌所属纪元，为空时不校验；ARGV[2] 排除区间出发站下标，ARGV[3] 排除区间到达站下标，-1 表示不排除
+-- ARGV[4] 列车站点数量，ARGV[5] 出发站下标，ARGV[6] 到达站下标
+-- ARGV[7...] 座位类型与回滚数量成对出现
+-- 令牌桶在令牌取出后已重建（纪元不一致）时拒绝回滚并返回 1，重建时已按数据库余量计入这些座位
+-- 与排除区间重叠的站间令牌已被使用，不回滚
+if ARGV[1] ~= '' and (redis.call('get', KEYS[2]) or '0') ~= ARGV[1] then
+    return 1
 end
 
-local jsonArrayStr = ARGV[1]
-local jsonArray = cjson.decode(jsonArrayStr)
-local alongJsonArrayStr = ARGV[2]
-local alongJsonArray = cjson.decode(alongJsonArrayStr)
+local excludeDeparture = tonumber(ARGV[2])
+local excludeArrival = tonumber(ARGV[3])
+local stationSize = tonumber(ARGV[4])
+local departure = tonumber(ARGV[5])
+local arrival = tonumber(ARGV[6])
 
-for index, jsonObj in ipairs(jsonArray) do
-    local seatType = tonumber(jsonObj.seatType)
-    local count = tonumber(jsonObj.count)
-    for indexTwo, alongJsonObj in ipairs(alongJsonArray) do
-        local startStation = tostring(alongJsonObj.startStation)
-        local endStation = tostring(alongJsonObj.endStation)
-        local actualInnerHashKey = startStation .. "_" .. endStation .. "_" .. seatType
-        local ticketSeatAvailabilityTokenValue = tonumber(redis.call('hget', KEYS[1], tostring(actualInnerHashKey)))
-        if ticketSeatAvailabilityTokenValue >= 0 then
-            redis.call('hincrby', KEYS[1], tostring(actualInnerHashKey), count)
+for i = 7, #ARGV, 2 do
+    local seatType = ARGV[i]
+    local count = tonumber(ARGV[i + 1])
+    for startIndex = 0, arrival - 1 do
+        for endIndex = math.max(startIndex, departure) + 1, stationSize - 1 do
+            if excludeDeparture < 0 or startIndex >= excludeArrival or endIndex <= excludeDeparture then
+                local field = startIndex .. "_" .. endIndex .. "_" .. seatType
+                local tokenValue = tonumber(redis.call('hget', KEYS[1], field))
+                if tokenValue ~= nil and tokenValue >= 0 then
+                    redis.call('hincrby', KEYS[1], field, count)
+                end
+            end
         end
     end
 end
@@ -1,46 +1,35 @@
-local inputString = KEYS[2]
-local actualKey = inputString
-local colonIndex = string.find(actualKey, ":")
-if colonIndex ~= nil then
-    actualKey = string.sub(actualKey, colonIndex + 1)
-end
-
-local jsonArrayStr = ARGV[1]
-local jsonArray = cjson.decode(jsonArrayStr)
+-- KEYS[1] 列车余量令牌桶 Hash，Field 为 "出发站下标_到达站下标_座位类型"，KEYS[2] 令牌桶纪元
+-- ARGV[1] 列车站点数量，ARGV[2] 出发站下标，ARGV[3] 到达站下标
+-- ARGV[4...] 座位类型与购票数量成对出现
+-- 返回集合首个元素为令牌桶当前纪元，之后为空表示扣减成功，否则为余量不足的 "座位类型_购票数量" 集合
+local stationSize = tonumber(ARGV[1])
+local departure = tonumber(ARGV[2])
+local arrival = tonumber(ARGV[3])
+local routeKey = departure .. "_" .. arrival .. "_"
+local epoch = redis.call('get', KEYS[2]) or '0'
 
-local result = {}
-local tokenIsNull = false
-local tokenIsNullSeatTypeCounts = {}
-
-for index, jsonObj in ipairs(jsonArray) do
-    local seatType = tonumber(jsonObj.seatType)
-    local count = tonumber(jsonObj.count)
-    local actualInnerHashKey = actualKey .. "_" .. seatType
-    local ticketSeatAvailabilityTokenValue = tonumber(redis.call('hget', KEYS[1], tostring(actualInnerHashKey)))
-    if ticketSeatAvailabilityTokenValue < count then
-        tokenIsNull = true
-        table.insert(tokenIsNullSeatTypeCounts, seatType .. "_" .. count)
+local tokenIsNullSeatTypeCounts = {epoch}
+for i = 4, #ARGV, 2 do
+    local count = tonumber(ARGV[i + 1])
+    local tokenValue = tonumber(redis.call('hget', KEYS[1], routeKey .. ARGV[i]))
+    if tokenValue == nil or tokenValue < count then
+        table.insert(tokenIsNullSeatTypeCounts, ARGV[i] .. "_" .. ARGV[i + 1])
     end
 end
 
-result['tokenIsNull'] = tokenIsNull
-if tokenIsNull then
-    result['tokenIsNullSeatTypeCounts'] = tokenIsNullSeatTypeCounts
-    return cjson.encode(result)
+if #tokenIsNullSeatTypeCounts > 1 then
+    return tokenIsNullSeatTypeCounts
 end
 
-local alongJsonArrayStr = ARGV[2]
-local alongJsonArray = cjson.decode(alongJsonArrayStr)
-
-for index, jsonObj in ipairs(jsonArray) do
-    local seatType = tonumber(jsonObj.seatType)
-    local count = tonumber(jsonObj.count)
-    for indexTwo, alongJsonObj in ipairs(alongJsonArray) do
-        local startStation = tostring(alongJsonObj.startStation)
-        local endStation = tostring(alongJsonObj.endStation)
-        local actualInnerHashKey = startStation .. "_" .. endStation .. "_" .. seatType
-        redis.call('hincrby', KEYS[1], tostring(actualInnerHashKey), -count)
+-- 与乘车区间 [departure, arrival) 有重叠的站间均需扣减
+for i = 4, #ARGV, 2 do
+    local seatType = ARGV[i]
+    local count = -tonumber(ARGV[i + 1])
+    for startIndex = 0, arrival - 1 do
+        for endIndex = math.max(startIndex, departure) + 1, stationSize - 1 do
+            redis.call('hincrby', KEYS[1], startIndex .. "_" .. endIndex .. "_" .. seatType, count)
+        end
     end
 end
 
-return cjson.encode(result)
+return tokenIsNullSeatTypeCounts
@@ -0,0 +1,43 @@
+-- KEYS[1] 列车区段余票 Hash，KEYS[2] 列车余量令牌桶 Hash，KEYS[3] 本批次已同步标记
+-- KEYS[4] 列车站间余票快照 Hash，KEYS[5] 站间余票快照版本，区段余票发生变化时递增版本并删除快照
+-- ARGV[1] 已同步标记过期时间（秒），ARGV[2] 列车站点数量，ARGV[3] 区段余票变化数量 N
+-- ARGV[4 ... 3 + 2N] 区段余票 Field 与净变化量成对出现
+-- 其余参数按 出发站下标、到达站下标、座位类型、释放数量 四个一组，回滚与区间有重叠的站间令牌
+-- 同一批次重复投递时直接返回 0，未加载的区段余票或令牌桶不做处理
+if not redis.call('set', KEYS[3], '1', 'NX', 'EX', ARGV[1]) then
+    return 0
+end
+
+local stationSize = tonumber(ARGV[2])
+local legEnd = 3 + tonumber(ARGV[3]) * 2
+
+if legEnd >= 4 then
+    redis.call('incr', KEYS[5])
+    redis.call('del', KEYS[4])
+end
+
+if redis.call('exists', KEYS[1]) == 1 then
+    for i = 4, legEnd, 2 do
+        redis.call('hincrby', KEYS[1], ARGV[i], tonumber(ARGV[i + 1]))
+    end
+end
+
+if redis.call('exists', KEYS[2]) == 1 then
+    for i = legEnd + 1, #ARGV, 4 do
+        local departure = tonumber(ARGV[i])
+        local arrival = tonumber(ARGV[i + 1])
+        local seatType = ARGV[i + 2]
+        local count = tonumber(ARGV[i + 3])
+        for startIndex = 0, arrival - 1 do
+            for endIndex = math.max(startIndex, departure) + 1, stationSize - 1 do
+                local field = startIndex .. "_" .. endIndex .. "_" .. seatType
+                local tokenValue = tonumber(redis.call('hget', KEYS[2], field))
+                if tokenValue ~= nil and tokenValue >= 0 then
+                    redis.call('hincrby', KEYS[2], field, count)
+                end
+            end
+        end
+    end
+end
+
+return 1
@@ -0,0 +1,27 @@
+-- KEYS[i] 第 i 列车站间余票快照 Hash，脚本访问的 Key 全部通过 KEYS 传入
+-- ARGV 按列车依次排列：Field 数量、站间余票 Field...，站点不合法时 Field 数量为 0
+-- 返回 [[站间余票，快照未加载为 -1]]，与 KEYS 一一对应
+local result = {}
+local argIndex = 1
+
+for keyIndex, routeKey in ipairs(KEYS) do
+    local fieldSize = tonumber(ARGV[argIndex])
+    local remaining = {}
+    if fieldSize > 0 then
+        local routeValues = redis.call('hmget', routeKey, unpack(ARGV, argIndex + 1, argIndex + fieldSize))
+        for fieldIndex, routeValue in ipairs(routeValues) do
+            if routeValue then
+                remaining[fieldIndex] = math.max(tonumber(routeValue), 0)
+            else
+                remaining[fieldIndex] = -1
+            end
+        end
+    end
+    result[keyIndex] = remaining
+    argIndex = argIndex + 1 + fieldSize
+end
+
+if #result == 0 then
+    return '[]'
+end
+return cjson.encode(result)
@@ -0,0 +1,23 @@
+-- KEYS[1] 列车区段余票 Hash，KEYS[2] 列车站间余票快照 Hash，KEYS[3] 站间余票快照版本
+-- ARGV[1] 起始区段下标（包含），ARGV[2] 结束区段下标（不包含）
+-- ARGV[3...] 座位类型与余票变化量成对出现
+-- 站间余票快照无论区段余票是否加载都失效，版本递增使正在重建的快照放弃写入
+redis.call('incr', KEYS[3])
+redis.call('del', KEYS[2])
+
+if redis.call('exists', KEYS[1]) == 0 then
+    return 0
+end
+
+local startLeg = tonumber(ARGV[1])
+local endLeg = tonumber(ARGV[2])
+
+for i = 3, #ARGV, 2 do
+    local seatType = ARGV[i]
+    local delta = tonumber(ARGV[i + 1])
+    for leg = startLeg, endLeg - 1 do
+        redis.call('hincrby', KEYS[1], seatType .. "_" .. leg, delta)
+    end
+end
+
+return 1
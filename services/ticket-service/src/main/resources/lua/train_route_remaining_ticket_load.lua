@@ -0,0 +1,16 @@
+-- KEYS[1] 列车站间余票快照 Hash，KEYS[2] 站间余票快照版本
+-- ARGV[1] 快照过期时间（秒），ARGV[2] 查询数据库前读取的快照版本
+-- ARGV[3...] 快照 Field 与站间余票成对出现
+-- 查询数据库期间区段余票发生变化（版本已递增）时放弃写入，返回 0
+local version = redis.call('get', KEYS[2]) or '0'
+if version ~= ARGV[2] then
+    return 0
+end
+
+redis.call('del', KEYS[1])
+for i = 3, #ARGV, 2 do
+    redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1])
+end
+redis.call('expire', KEYS[1], tonumber(ARGV[1]))
+
+return 1
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.cache;
+
+import com.alibaba.fastjson2.JSON;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.project12306.commons.cache.DistributedCache;
+import org.project12306.services.ticketservice.dto.domain.TicketListDTO;
+import org.project12306.services.ticketservice.toolkit.TimeStringComparator;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.REGION_TRAIN_STATION;
+
+/**
+ * 地区间车次集合单次查询的耗时与内存分配基准测试，需配合 -prof gc 查看 gc.alloc.rate.norm，main 方法已添加
+ * <p>
+ * localTimeSort 为优化前的查询路径：反序列化 HGETALL 结果后按 LocalTime.parse 比较排序；
+ * departureMinuteSort 为反序列化后按预计算出发分钟数排序；nearCache 为当前查询路径，复制本地缓存中已排序的车次集合
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegionTrainStationNearCacheBenchmark {
+
+    private static final String START_REGION = "北京";
+    private static final String END_REGION = "上海";
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+
+    /**
+     * 优化前的比较器，每次比较解析两次出发时间
+     */
+    private static final Comparator<TicketListDTO> LOCAL_TIME_COMPARATOR = (ticketList1, ticketList2) ->
+            LocalTime.parse(ticketList1.getDepartureTime(), FORMATTER).compareTo(LocalTime.parse(ticketList2.getDepartureTime(), FORMATTER));
+
+    @Param({"20", "100"})
+    private int trainSize;
+
+    private Map<Object, Object> regionTrainStationAllMap;
+    private RegionTrainStationNearCache regionTrainStationNearCache;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        regionTrainStationAllMap = new HashMap<>();
+        for (int i = 0; i < trainSize; i++) {
+            int departureMinute = (i * 37) % 1440;
+            String departureTime = String.format("%02d:%02d", departureMinute / 60, departureMinute % 60);
+            TicketListDTO ticketListDTO = TicketListDTO.builder()
+                    .trainId(String.valueOf(i))
+                    .trainNumber("G" + i)
+                    .departureTime(departureTime)
+                    .departureMinute(departureMinute)
+                    .arrivalTime("23:59")
+                    .departure("北京南")
+                    .arrival("上海虹桥")
+                    .trainType(0)
+                    .trainBrand("0,6")
+                    .build();
+            regionTrainStationAllMap.put(i + "_北京南_上海虹桥", JSON.toJSONString(ticketListDTO));
+        }
+        HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+        when(hashOperations.entries(String.format(REGION_TRAIN_STATION, START_REGION, END_REGION))).thenReturn(regionTrainStationAllMap);
+        StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+        when(stringRedisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        DistributedCache distributedCache = mock(DistributedCache.class);
+        when(distributedCache.getInstance()).thenReturn(stringRedisTemplate);
+        regionTrainStationNearCache = new RegionTrainStationNearCache(distributedCache, new SimpleMeterRegistry(), 2000L, 600L);
+        regionTrainStationNearCache.listTicket(START_REGION, END_REGION);
+    }
+
+    @Benchmark
+    public List<TicketListDTO> localTimeSort() {
+        return regionTrainStationAllMap.values().stream()
+                .map(each -> JSON.parseObject(each.toString(), TicketListDTO.class))
+                .sorted(LOCAL_TIME_COMPARATOR)
+                .toList();
+    }
+
+    @Benchmark
+    public List<TicketListDTO> departureMinuteSort() {
+        return regionTrainStationAllMap.values().stream()
+                .map(each -> JSON.parseObject(each.toString(), TicketListDTO.class))
+                .sorted(new TimeStringComparator())
+                .toList();
+    }
+
+    @Benchmark
+    public List<TicketListDTO> nearCache() {
+        return regionTrainStationNearCache.listTicket(START_REGION, END_REGION);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(RegionTrainStationNearCacheBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
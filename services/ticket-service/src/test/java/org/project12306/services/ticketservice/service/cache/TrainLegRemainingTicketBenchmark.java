@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.cache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.project12306.services.ticketservice.dto.domain.RouteDTO;
+import org.project12306.services.ticketservice.toolkit.StationCalculateUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 区段余票与按路线余票的内存基准测试
+ * 按路线存储时一次购票需要更新所有与区间重叠的路线，按区段存储时只更新区间内的区段；
+ * 这里只比较两种布局的计算量，线上差异主要来自 Redis 写命令数量（路线数 vs 一次脚本调用）
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrainLegRemainingTicketBenchmark {
+
+    @Param({"5", "20", "40"})
+    private int stationSize;
+
+    private List<String> stations;
+    private Map<String, Integer> routeRemainingMap;
+    private List<Object> legValues;
+    private int[] legRemaining;
+    private int departureIndex;
+    private int arrivalIndex;
+
+    @Setup
+    public void setUp() {
+        stations = new ArrayList<>(stationSize);
+        for (int i = 0; i < stationSize; i++) {
+            stations.add("station" + i);
+        }
+        routeRemainingMap = new HashMap<>();
+        for (int i = 0; i < stationSize; i++) {
+            for (int j = i + 1; j < stationSize; j++) {
+                routeRemainingMap.put(stations.get(i) + "_" + stations.get(j), 1000);
+            }
+        }
+        legRemaining = new int[stationSize - 1];
+        legValues = new ArrayList<>(stationSize - 1);
+        for (int i = 0; i < stationSize - 1; i++) {
+            legRemaining[i] = 1000;
+            legValues.add("1000");
+        }
+        departureIndex = ThreadLocalRandom.current().nextInt(stationSize - 1);
+        arrivalIndex = departureIndex + 1 + ThreadLocalRandom.current().nextInt(stationSize - 1 - departureIndex);
+    }
+
+    @Benchmark
+    public int routePurchase() {
+        List<RouteDTO> takeoutRoutes = StationCalculateUtil.takeoutStation(stations, stations.get(departureIndex), stations.get(arrivalIndex));
+        for (RouteDTO each : takeoutRoutes) {
+            routeRemainingMap.merge(each.getStartStation() + "_" + each.getEndStation(), -1, Integer::sum);
+            routeRemainingMap.merge(each.getStartStation() + "_" + each.getEndStation(), 1, Integer::sum);
+        }
+        return takeoutRoutes.size();
+    }
+
+    @Benchmark
+    public int legPurchase() {
+        for (int i = departureIndex; i < arrivalIndex; i++) {
+            legRemaining[i]--;
+            legRemaining[i]++;
+        }
+        return arrivalIndex - departureIndex;
+    }
+
+    @Benchmark
+    public Integer routeQuery() {
+        return routeRemainingMap.get(stations.get(departureIndex) + "_" + stations.get(arrivalIndex));
+    }
+
+    @Benchmark
+    public int legQuery() {
+        // 区段最小值只是区间余票上界，展示与校验读取站间余票快照，这里仅比较计算量
+        int min = Integer.MAX_VALUE;
+        for (Object each : legValues.subList(departureIndex, arrivalIndex)) {
+            min = Math.min(min, Integer.parseInt(each.toString()));
+        }
+        return min;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TrainLegRemainingTicketBenchmark.class.getSimpleName()).build()).run();
+    }
+}
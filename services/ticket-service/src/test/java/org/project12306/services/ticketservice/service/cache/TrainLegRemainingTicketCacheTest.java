@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 列车区段余票缓存测试
+ */
+class TrainLegRemainingTicketCacheTest {
+
+    @Test
+    void parseRemainingKeepsSeatTypeOrder() {
+        List<Object> routeValues = Arrays.asList("5", "0", "-1");
+        assertEquals(List.of(5, 0, 0), TrainLegRemainingTicketCache.parseRemaining(routeValues));
+    }
+
+    @Test
+    void parseRemainingReturnsNullWhenNotLoaded() {
+        assertNull(TrainLegRemainingTicketCache.parseRemaining(Arrays.asList("1", null)));
+        assertNull(TrainLegRemainingTicketCache.parseRemaining(List.of()));
+        assertNull(TrainLegRemainingTicketCache.parseRemaining(null));
+    }
+
+    @Test
+    void routeFieldDistinguishesRoutesWithSameLegs() {
+        // 座位 A 只在区段 0 空闲、座位 B 只在区段 1 空闲，[0, 2) 实际可售为 0，与 [0, 1)、[1, 2) 分别记录
+        assertEquals("1_0_2", TrainLegRemainingTicketCache.buildRouteField(1, 0, 2));
+        assertEquals("1_0_1", TrainLegRemainingTicketCache.buildRouteField(1, 0, 1));
+        assertEquals("1_0", TrainLegRemainingTicketCache.buildField(1, 0));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.binlog;
+
+import com.alibaba.fastjson2.JSON;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.project12306.commons.cache.DistributedCache;
+import org.project12306.services.ticketservice.mq.event.CanalBinlogEvent;
+import org.project12306.services.ticketservice.service.cache.RegionTrainStationNearCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 列车站点关系 Binlog 同步测试，校验变更前后地区间车次缓存的删除与本地缓存失效广播
+ */
+class RegionTrainStationBinlogSyncHandlerTest {
+
+    private StringRedisTemplate redisTemplate;
+    private RegionTrainStationNearCache regionTrainStationNearCache;
+    private RegionTrainStationBinlogSyncHandler regionTrainStationBinlogSyncHandler;
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        DistributedCache distributedCache = mock(DistributedCache.class);
+        when(distributedCache.getInstance()).thenReturn(redisTemplate);
+        regionTrainStationNearCache = mock(RegionTrainStationNearCache.class);
+        regionTrainStationBinlogSyncHandler = new RegionTrainStationBinlogSyncHandler(distributedCache, regionTrainStationNearCache);
+    }
+
+    private static CanalBinlogEvent event(String line) {
+        return JSON.parseObject(line, CanalBinlogEvent.class);
+    }
+
+    @Test
+    void supportsOnlyTrainStationRelation() {
+        assertTrue(regionTrainStationBinlogSyncHandler.supports(event("{\"table\":\"t_train_station_relation\"}")));
+        assertFalse(regionTrainStationBinlogSyncHandler.supports(event("{\"table\":\"t_seat_inventory\"}")));
+    }
+
+    @Test
+    void updateRegionInvalidatesBeforeAndAfter() {
+        regionTrainStationBinlogSyncHandler.handle(event("{\"id\":1,\"table\":\"t_train_station_relation\",\"type\":\"UPDATE\",\"isDdl\":false,"
+                + "\"data\":[{\"train_id\":\"1\",\"start_region\":\"北京\",\"end_region\":\"上海\"}],"
+                + "\"old\":[{\"end_region\":\"南京\"}]}"));
+        verify(redisTemplate).delete("index12306-ticket-service:region_train_station:北京_上海");
+        verify(redisTemplate).delete("index12306-ticket-service:region_train_station:北京_南京");
+        verify(regionTrainStationNearCache).publishInvalidate("北京", "上海");
+        verify(regionTrainStationNearCache).publishInvalidate("北京", "南京");
+        verifyNoMoreInteractions(regionTrainStationNearCache);
+    }
+
+    @Test
+    void missingRegionInvalidatesAll() {
+        regionTrainStationBinlogSyncHandler.handle(event("{\"id\":2,\"table\":\"t_train_station_relation\",\"type\":\"UPDATE\",\"isDdl\":false,"
+                + "\"data\":[{\"train_id\":\"1\"}],\"old\":[{\"departure_flag\":\"0\"}]}"));
+        verify(regionTrainStationNearCache).publishInvalidate(null, null);
+        verify(redisTemplate, never()).delete(anyString());
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.binlog;
+
+import com.alibaba.fastjson2.JSON;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.project12306.commons.cache.DistributedCache;
+import org.project12306.services.ticketservice.mq.event.CanalBinlogEvent;
+import org.project12306.services.ticketservice.service.TrainStationService;
+import org.project12306.services.ticketservice.service.cache.TrainLegRemainingTicketCache;
+import org.project12306.services.ticketservice.service.handler.ticket.waitlist.TicketWaitlist;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 座位库存 Binlog 同步测试，按本地 Binlog 事件源的 JSON 行格式输入事件，校验写入脚本的区段余票与令牌变化量
+ */
+class SeatBinlogSyncHandlerTest {
+
+    private static final String TRAIN_ID = "1";
+
+    private static final int SEAT_TYPE = 2;
+
+    private static final List<String> STATIONS = List.of("北京南", "济南西", "南京南", "上海虹桥");
+
+    private RecordingRedisTemplate redisTemplate;
+    private SeatBinlogSyncHandler seatBinlogSyncHandler;
+
+    @BeforeEach
+    void setUp() {
+        TrainStationService trainStationService = mock(TrainStationService.class);
+        when(trainStationService.listTrainStationAll(TRAIN_ID)).thenReturn(STATIONS);
+        redisTemplate = new RecordingRedisTemplate();
+        DistributedCache distributedCache = mock(DistributedCache.class);
+        when(distributedCache.getInstance()).thenReturn(redisTemplate);
+        seatBinlogSyncHandler = new SeatBinlogSyncHandler(trainStationService, distributedCache, mock(TicketWaitlist.class));
+    }
+
+    private void handle(String line) {
+        seatBinlogSyncHandler.handle(JSON.parseObject(line, CanalBinlogEvent.class));
+    }
+
+    private static String inventoryRow(String seatNumber, long legMask) {
+        return String.format("{\"train_id\":\"%s\",\"carriage_number\":\"01\",\"seat_number\":\"%s\",\"seat_type\":\"%d\",\"leg_mask\":\"%d\"}",
+                TRAIN_ID, seatNumber, SEAT_TYPE, legMask);
+    }
+
+    private static String inventoryEvent(String[] rows, long[] oldLegMasks) {
+        List<String> oldRows = new ArrayList<>();
+        for (long each : oldLegMasks) {
+            oldRows.add("{\"leg_mask\":\"" + each + "\"}");
+        }
+        return "{\"table\":\"t_seat_inventory\",\"type\":\"UPDATE\",\"isDdl\":false,\"data\":[" + String.join(",", rows)
+                + "],\"old\":[" + String.join(",", oldRows) + "]}";
+    }
+
+    /**
+     * t_seat 一张车票各区段在同一条语句内由锁定变为可售
+     */
+    private static String seatReleaseEvent(int... legs) {
+        List<String> rows = new ArrayList<>();
+        List<String> oldRows = new ArrayList<>();
+        for (int leg : legs) {
+            rows.add(String.format("{\"train_id\":\"%s\",\"carriage_number\":\"01\",\"seat_number\":\"01A\",\"seat_type\":\"%d\",\"start_station\":\"%s\",\"end_station\":\"%s\",\"seat_status\":\"0\"}",
+                    TRAIN_ID, SEAT_TYPE, STATIONS.get(leg), STATIONS.get(leg + 1)));
+            oldRows.add("{\"seat_status\":\"1\"}");
+        }
+        return "{\"table\":\"t_seat\",\"type\":\"UPDATE\",\"isDdl\":false,\"data\":[" + String.join(",", rows)
+                + "],\"old\":[" + String.join(",", oldRows) + "]}";
+    }
+
+    private static Map<String, Integer> legDeltas(int... legDeltaPairs) {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (int i = 0; i < legDeltaPairs.length; i += 2) {
+            result.put(TrainLegRemainingTicketCache.buildField(SEAT_TYPE, legDeltaPairs[i]), legDeltaPairs[i + 1]);
+        }
+        return result;
+    }
+
+    @Test
+    void lockThenUnlockSameSeat() {
+        handle(inventoryEvent(new String[]{inventoryRow("01A", 0b110L)}, new long[]{0L}));
+        handle(inventoryEvent(new String[]{inventoryRow("01A", 0L)}, new long[]{0b110L}));
+        assertEquals(2, redisTemplate.calls.size());
+        // 占用只扣减区段余票，令牌已在购票入口扣减
+        assertEquals(legDeltas(1, -1, 2, -1), redisTemplate.calls.get(0).legDeltaMap);
+        assertTrue(redisTemplate.calls.get(0).tokenReleases.isEmpty());
+        // 释放回滚区段余票与对应乘车区间的令牌
+        assertEquals(legDeltas(1, 1, 2, 1), redisTemplate.calls.get(1).legDeltaMap);
+        assertEquals(List.of("1_3_2_1"), redisTemplate.calls.get(1).tokenReleases);
+    }
+
+    @Test
+    void lockThenUnlockSameSeatInOneEvent() {
+        handle(inventoryEvent(new String[]{inventoryRow("01A", 0b110L), inventoryRow("01A", 0L)}, new long[]{0L, 0b110L}));
+        assertEquals(1, redisTemplate.calls.size());
+        // 区段余票净变化为 0，释放的车票仍回滚令牌
+        assertTrue(redisTemplate.calls.get(0).legDeltaMap.isEmpty());
+        assertEquals(List.of("1_3_2_1"), redisTemplate.calls.get(0).tokenReleases);
+    }
+
+    @Test
+    void multiLegRunIsOneTicket() {
+        handle(seatReleaseEvent(0, 1, 2));
+        assertEquals(1, redisTemplate.calls.size());
+        assertEquals(legDeltas(0, 1, 1, 1, 2, 1), redisTemplate.calls.get(0).legDeltaMap);
+        assertEquals(List.of("0_3_2_1"), redisTemplate.calls.get(0).tokenReleases);
+    }
+
+    @Test
+    void nonContiguousLegsAreSeparateTickets() {
+        handle(seatReleaseEvent(0, 2));
+        assertEquals(legDeltas(0, 1, 2, 1), redisTemplate.calls.get(0).legDeltaMap);
+        assertEquals(List.of("0_1_2_1", "2_3_2_1"), redisTemplate.calls.get(0).tokenReleases);
+    }
+
+    @Test
+    void nonContiguousLegMaskReleaseAreSeparateTickets() {
+        handle(inventoryEvent(new String[]{inventoryRow("01A", 0L)}, new long[]{0b101L}));
+        assertEquals(legDeltas(0, 1, 2, 1), redisTemplate.calls.get(0).legDeltaMap);
+        assertEquals(List.of("0_1_2_1", "2_3_2_1"), redisTemplate.calls.get(0).tokenReleases);
+    }
+
+    /**
+     * 记录 Binlog 同步脚本参数，按脚本参数格式解析区段余票变化量与令牌回滚
+     */
+    private static final class RecordingRedisTemplate extends StringRedisTemplate {
+
+        private final List<SyncCall> calls = new ArrayList<>();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            Map<String, Integer> legDeltaMap = new LinkedHashMap<>();
+            int legSize = Integer.parseInt(args[2].toString());
+            int index = 3;
+            for (int i = 0; i < legSize; i++, index += 2) {
+                legDeltaMap.put(args[index].toString(), Integer.parseInt(args[index + 1].toString()));
+            }
+            List<String> tokenReleases = new ArrayList<>();
+            for (; index + 3 < args.length; index += 4) {
+                tokenReleases.add(args[index] + "_" + args[index + 1] + "_" + args[index + 2] + "_" + args[index + 3]);
+            }
+            calls.add(new SyncCall(legDeltaMap, tokenReleases));
+            return (T) Long.valueOf(1L);
+        }
+    }
+
+    private record SyncCall(Map<String, Integer> legDeltaMap, List<String> tokenReleases) {
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.layout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.project12306.services.ticketservice.service.handler.ticket.select.SeatBitmapSelection;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各车厢布局随机占座后的位图选座基准测试，参数为 交通工具类型_座位类型
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CarriageLayoutBenchmark {
+
+    private static final int SAMPLE_SIZE = 1024;
+
+    @Param({"0_0", "0_1", "0_2", "1_3", "1_4", "1_5", "1_13", "2_6", "2_7", "2_8", "2_13"})
+    private String layout;
+
+    private CarriageLayout carriageLayout;
+    private int[][] rowMasksSamples;
+    private int count;
+    private int sampleIndex;
+    private final int[] out = new int[32];
+
+    @Setup
+    public void setUp() {
+        String[] codes = layout.split("_");
+        carriageLayout = CarriageLayoutRegistry.find(Integer.parseInt(codes[0]), Integer.parseInt(codes[1]));
+        Random random = new Random(12306L);
+        rowMasksSamples = new int[SAMPLE_SIZE][];
+        for (int s = 0; s < SAMPLE_SIZE; s++) {
+            int[] rowMasks = new int[carriageLayout.getRows()];
+            for (int i = 0; i < carriageLayout.getRows(); i++) {
+                for (int j = 0; j < carriageLayout.getColumns(); j++) {
+                    // 约四分之一座位空闲
+                    rowMasks[i] |= random.nextInt(4) == 0 ? 1 << j : 0;
+                }
+            }
+            rowMasksSamples[s] = rowMasks;
+        }
+        count = Math.min(2, carriageLayout.getColumns());
+    }
+
+    @Benchmark
+    public int select() {
+        int[] rowMasks = rowMasksSamples[sampleIndex++ & (SAMPLE_SIZE - 1)];
+        int selected = carriageLayout.isCompartment()
+                ? SeatBitmapSelection.sameRow(rowMasks, count, out, 0) ? 1 : 0
+                : SeatBitmapSelection.adjacent(rowMasks, count);
+        return selected + SeatBitmapSelection.nonAdjacent(rowMasks, count, out);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CarriageLayoutBenchmark.class.getSimpleName()).build()).run();
+    }
+}
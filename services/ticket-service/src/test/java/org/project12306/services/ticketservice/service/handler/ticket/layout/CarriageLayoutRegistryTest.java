@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.layout;
+
+import org.junit.jupiter.api.Test;
+import org.project12306.services.ticketservice.common.enums.VehicleSeatTypeEnum;
+import org.project12306.services.ticketservice.common.enums.VehicleTypeEnum;
+import org.project12306.services.ticketservice.service.handler.ticket.select.SeatBitmapSelection;
+import org.project12306.services.ticketservice.toolkit.SeatNumberUtil;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 车厢布局注册表测试
+ */
+class CarriageLayoutRegistryTest {
+
+    @Test
+    void everyTrainSeatTypeHasLayout() {
+        for (VehicleTypeEnum vehicleType : new VehicleTypeEnum[]{VehicleTypeEnum.HIGH_SPEED_RAIN, VehicleTypeEnum.BULLET, VehicleTypeEnum.REGULAR_TRAIN}) {
+            for (Integer seatType : vehicleType.getSeatTypes()) {
+                CarriageLayout carriageLayout = CarriageLayoutRegistry.find(vehicleType.getCode(), seatType);
+                assertNotNull(carriageLayout, vehicleType.getName() + " 座位类型 " + seatType + " 未注册车厢布局");
+                assertEquals(seatType, carriageLayout.getSeatType());
+            }
+        }
+        assertNull(CarriageLayoutRegistry.find(null, 0));
+    }
+
+    @Test
+    void columnsFitInRowBitmap() {
+        // 每排座位用一个 int 位图表示
+        CarriageLayoutRegistry.listCarriageLayout().forEach(each -> assertTrue(each.getColumns() <= Integer.SIZE));
+    }
+
+    @Test
+    void highSpeedSeatNumbersMatchSeatData() {
+        // 座位数据按原复兴号选座策略的座位矩阵生成：两位排号 + SeatNumberUtil 列字母
+        assertSeatData(VehicleSeatTypeEnum.BUSINESS_CLASS.getCode(), 2);
+        assertSeatData(VehicleSeatTypeEnum.FIRST_CLASS.getCode(), 7);
+        assertSeatData(VehicleSeatTypeEnum.SECOND_CLASS.getCode(), 18);
+    }
+
+    @Test
+    void seatNumbersRoundTrip() {
+        for (CarriageLayout each : CarriageLayoutRegistry.listCarriageLayout()) {
+            List<String> seatNumbers = listSeatNumber(each);
+            assertEquals(each.getRows() * each.getColumns(), new HashSet<>(seatNumbers).size(), "车厢布局生成的座位号重复");
+            for (String seatNumber : seatNumbers) {
+                assertEquals(seatNumber, each.toSeatNumber(each.parseSeatNumber(seatNumber)));
+            }
+            int[] rowMasks = new int[each.getRows()];
+            seatNumbers.forEach(seatNumber -> assertTrue(each.markAvailable(rowMasks, seatNumber), seatNumber));
+            assertEquals(seatNumbers.size(), SeatBitmapSelection.countFree(rowMasks));
+            // 超出车厢范围的座位号不能被静默映射到其它座位
+            assertFalse(each.markAvailable(rowMasks, each.toSeatNumber(SeatBitmapSelection.encode(each.getRows(), 0))));
+        }
+    }
+
+    private static void assertSeatData(Integer seatType, int rows) {
+        String[] columns = SeatNumberUtil.listColumn(seatType);
+        Set<String> seatData = new HashSet<>();
+        for (int j = 1; j <= rows; j++) {
+            for (int k = 1; k <= columns.length; k++) {
+                seatData.add((j <= 9 ? "0" + j : "" + j) + SeatNumberUtil.convert(seatType, k));
+            }
+        }
+        CarriageLayout carriageLayout = CarriageLayoutRegistry.find(VehicleTypeEnum.HIGH_SPEED_RAIN.getCode(), seatType);
+        assertEquals(seatData, new HashSet<>(listSeatNumber(carriageLayout)));
+    }
+
+    private static List<String> listSeatNumber(CarriageLayout carriageLayout) {
+        List<String> seatNumbers = new ArrayList<>(carriageLayout.getRows() * carriageLayout.getColumns());
+        for (int row = 0; row < carriageLayout.getRows(); row++) {
+            for (int column = 0; column < carriageLayout.getColumns(); column++) {
+                seatNumbers.add(carriageLayout.toSeatNumber(SeatBitmapSelection.encode(row, column)));
+            }
+        }
+        return seatNumbers;
+    }
+}
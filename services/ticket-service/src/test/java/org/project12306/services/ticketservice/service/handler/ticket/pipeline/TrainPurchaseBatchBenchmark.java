@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.pipeline;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.project12306.services.ticketservice.service.handler.ticket.dto.TrainPurchaseTicketRespDTO;
+import org.project12306.services.ticketservice.service.handler.ticket.layout.CarriageLayout;
+import org.project12306.services.ticketservice.service.handler.ticket.layout.CarriageLayoutRegistry;
+import org.project12306.services.ticketservice.service.handler.ticket.select.SeatBitmapSelection;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 购票流水线单批次选座基准测试
+ * <p>
+ * reload 为每个请求各自将可用座位查询结果构建为位图（流水线改造前的方式，不含数据库往返），
+ * batch 为批次内只构建一次位图快照，后续请求复制快照选座并在保存点提交后扣除已锁定座位
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrainPurchaseBatchBenchmark {
+
+    private static final List<String> STATIONS = List.of("北京南", "济南西", "南京南", "上海虹桥");
+
+    private static final int CARRIAGES = 16;
+
+    private static final int PASSENGERS = 2;
+
+    @Param({"1", "32"})
+    private int batchSize;
+
+    private CarriageLayout layout;
+    private Map<String, List<String>> availableSeatMap;
+
+    @Setup
+    public void setUp() {
+        layout = CarriageLayoutRegistry.find(0, 2);
+        Random random = new Random(12306L);
+        availableSeatMap = new LinkedHashMap<>();
+        for (int c = 1; c <= CARRIAGES; c++) {
+            List<String> seats = new ArrayList<>();
+            for (int i = 0; i < layout.getRows(); i++) {
+                for (int j = 0; j < layout.getColumns(); j++) {
+                    // 约一半座位空闲
+                    if (random.nextBoolean()) {
+                        seats.add(layout.toSeatNumber(SeatBitmapSelection.encode(i, j)));
+                    }
+                }
+            }
+            availableSeatMap.put(c < 10 ? "0" + c : String.valueOf(c), seats);
+        }
+    }
+
+    private Map<String, int[]> load() {
+        Map<String, int[]> carriageSeatMaskMap = new LinkedHashMap<>();
+        availableSeatMap.forEach((carriageNumber, seats) -> carriageSeatMaskMap.put(carriageNumber, layout.buildRowMasks(seats)));
+        return carriageSeatMaskMap;
+    }
+
+    @Benchmark
+    public int reload() {
+        int selected = 0;
+        // 每个请求重新构建位图，已锁定座位通过数据库读取，此处以逐请求累积占用模拟
+        List<String> lockedCarriages = new ArrayList<>();
+        List<Integer> lockedSeats = new ArrayList<>();
+        for (int r = 0; r < batchSize; r++) {
+            Map<String, int[]> carriageSeatMaskMap = load();
+            for (int i = 0; i < lockedSeats.size(); i++) {
+                SeatBitmapSelection.occupy(carriageSeatMaskMap.get(lockedCarriages.get(i)), lockedSeats.get(i));
+            }
+            int[] out = new int[PASSENGERS];
+            for (Map.Entry<String, int[]> entry : carriageSeatMaskMap.entrySet()) {
+                if (SeatBitmapSelection.adjacent(entry.getValue(), PASSENGERS, out, 0)) {
+                    for (int each : out) {
+                        lockedCarriages.add(entry.getKey());
+                        lockedSeats.add(each);
+                    }
+                    selected += PASSENGERS;
+                    break;
+                }
+            }
+        }
+        return selected;
+    }
+
+    @Benchmark
+    public int batch() {
+        int selected = 0;
+        TrainPurchaseBatch purchaseBatch = new TrainPurchaseBatch(STATIONS);
+        for (int r = 0; r < batchSize; r++) {
+            Map<String, int[]> carriageSeatMaskMap = purchaseBatch.listAvailableSeatMask(2, "北京南", "上海虹桥", layout, this::load);
+            int[] out = new int[PASSENGERS];
+            for (Map.Entry<String, int[]> entry : carriageSeatMaskMap.entrySet()) {
+                if (SeatBitmapSelection.adjacent(entry.getValue(), PASSENGERS, out, 0)) {
+                    List<TrainPurchaseTicketRespDTO> seats = new ArrayList<>(PASSENGERS);
+                    for (int each : out) {
+                        TrainPurchaseTicketRespDTO seat = new TrainPurchaseTicketRespDTO();
+                        seat.setSeatType(2);
+                        seat.setCarriageNumber(entry.getKey());
+                        seat.setSeatNumber(layout.toSeatNumber(each));
+                        seats.add(seat);
+                    }
+                    purchaseBatch.occupy("北京南", "上海虹桥", seats);
+                    selected += PASSENGERS;
+                    break;
+                }
+            }
+            purchaseBatch.commitRequest();
+        }
+        return selected;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TrainPurchaseBatchBenchmark.class.getSimpleName()).build()).run();
+    }
+}
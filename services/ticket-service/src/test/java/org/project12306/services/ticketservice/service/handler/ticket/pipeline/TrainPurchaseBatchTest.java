@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.pipeline;
+
+import org.junit.jupiter.api.Test;
+import org.project12306.services.ticketservice.service.handler.ticket.dto.TrainPurchaseTicketRespDTO;
+import org.project12306.services.ticketservice.service.handler.ticket.layout.CarriageLayout;
+import org.project12306.services.ticketservice.service.handler.ticket.layout.CarriageLayoutRegistry;
+import org.project12306.services.ticketservice.service.handler.ticket.select.SeatBitmapSelection;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 购票流水线批次内存座位分配测试
+ */
+class TrainPurchaseBatchTest {
+
+    private static final List<String> STATIONS = List.of("北京南", "济南西", "南京南", "上海虹桥");
+
+    private static final CarriageLayout LAYOUT = CarriageLayoutRegistry.find(0, 2);
+
+    private final AtomicInteger loadCount = new AtomicInteger();
+
+    private Map<String, int[]> load() {
+        loadCount.incrementAndGet();
+        Map<String, int[]> carriageSeatMaskMap = new LinkedHashMap<>();
+        carriageSeatMaskMap.put("01", LAYOUT.buildRowMasks(List.of("01A", "01B", "02A")));
+        return carriageSeatMaskMap;
+    }
+
+    private static List<TrainPurchaseTicketRespDTO> seats(String... seatNumbers) {
+        List<TrainPurchaseTicketRespDTO> result = new ArrayList<>();
+        for (String each : seatNumbers) {
+            TrainPurchaseTicketRespDTO seat = new TrainPurchaseTicketRespDTO();
+            seat.setSeatType(2);
+            seat.setCarriageNumber("01");
+            seat.setSeatNumber(each);
+            result.add(seat);
+        }
+        return result;
+    }
+
+    private static boolean isFree(Map<String, int[]> carriageSeatMaskMap, String seatNumber) {
+        int seat = LAYOUT.parseSeatNumber(seatNumber);
+        return SeatBitmapSelection.isFree(carriageSeatMaskMap.get("01"), SeatBitmapSelection.row(seat), SeatBitmapSelection.column(seat));
+    }
+
+    @Test
+    void snapshotIsLoadedOnceAndCopied() {
+        TrainPurchaseBatch batch = new TrainPurchaseBatch(STATIONS);
+        Map<String, int[]> first = batch.listAvailableSeatMask(2, "北京南", "南京南", LAYOUT, this::load);
+        SeatBitmapSelection.occupy(first.get("01"), LAYOUT.parseSeatNumber("01A"));
+        Map<String, int[]> second = batch.listAvailableSeatMask(2, "北京南", "南京南", LAYOUT, this::load);
+        assertEquals(1, loadCount.get());
+        assertTrue(isFree(second, "01A"));
+    }
+
+    @Test
+    void committedSeatsLeaveOverlappingRoutesOnly() {
+        TrainPurchaseBatch batch = new TrainPurchaseBatch(STATIONS);
+        batch.listAvailableSeatMask(2, "北京南", "济南西", LAYOUT, this::load);
+        batch.listAvailableSeatMask(2, "济南西", "上海虹桥", LAYOUT, this::load);
+        batch.listAvailableSeatMask(2, "南京南", "上海虹桥", LAYOUT, this::load);
+        batch.occupy("济南西", "南京南", seats("01A"));
+        batch.commitRequest();
+        assertTrue(isFree(batch.listAvailableSeatMask(2, "北京南", "济南西", LAYOUT, this::load), "01A"));
+        assertFalse(isFree(batch.listAvailableSeatMask(2, "济南西", "上海虹桥", LAYOUT, this::load), "01A"));
+        assertTrue(isFree(batch.listAvailableSeatMask(2, "南京南", "上海虹桥", LAYOUT, this::load), "01A"));
+    }
+
+    @Test
+    void rolledBackRequestKeepsSeatsAndDropsActions() {
+        TrainPurchaseBatch batch = new TrainPurchaseBatch(STATIONS);
+        AtomicInteger legUpdates = new AtomicInteger();
+        batch.listAvailableSeatMask(2, "北京南", "上海虹桥", LAYOUT, this::load);
+        batch.occupy("北京南", "上海虹桥", seats("01A", "01B"));
+        batch.afterCommit(legUpdates::incrementAndGet);
+        batch.rollbackRequest();
+        batch.occupy("北京南", "上海虹桥", seats("02A"));
+        batch.afterCommit(legUpdates::incrementAndGet);
+        batch.commitRequest();
+        Map<String, int[]> carriageSeatMaskMap = batch.listAvailableSeatMask(2, "北京南", "上海虹桥", LAYOUT, this::load);
+        assertTrue(isFree(carriageSeatMaskMap, "01A"));
+        assertTrue(isFree(carriageSeatMaskMap, "01B"));
+        assertFalse(isFree(carriageSeatMaskMap, "02A"));
+        assertEquals(0, legUpdates.get());
+        batch.runAfterCommit();
+        assertEquals(1, legUpdates.get());
+    }
+}
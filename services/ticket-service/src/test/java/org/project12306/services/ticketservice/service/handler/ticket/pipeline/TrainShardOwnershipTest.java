@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.pipeline;
+
+import org.junit.jupiter.api.Test;
+import org.project12306.commons.base.toolkit.ConsistentHashRing;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * 列车分片归属测试，服务计算的归属实例须与网关一致性哈希路由结果一致
+ */
+class TrainShardOwnershipTest {
+
+    private static final String SERVICE_ID = "index12306-ticket-service";
+
+    private static final List<ServiceInstance> INSTANCES = List.of(
+            new DefaultServiceInstance("ticket-1", SERVICE_ID, "10.0.0.11", 9000, false),
+            new DefaultServiceInstance("ticket-2", SERVICE_ID, "10.0.0.12", 9000, false),
+            new DefaultServiceInstance("ticket-3", SERVICE_ID, "10.0.0.12", 9001, false));
+
+    /**
+     * 与网关 TrainConsistentHashLoadBalancer 相同方式构建的哈希环
+     */
+    private static ConsistentHashRing<ServiceInstance> gatewayRing(List<ServiceInstance> instances) {
+        return new ConsistentHashRing<>(instances, each -> ConsistentHashRing.nodeKey(each.getHost(), each.getPort()));
+    }
+
+    private static TrainShardOwnership ownership(ServiceInstance local, List<ServiceInstance> discovered) {
+        DiscoveryClient discoveryClient = new DiscoveryClient() {
+
+            @Override
+            public String description() {
+                return "test";
+            }
+
+            @Override
+            public List<ServiceInstance> getInstances(String serviceId) {
+                return discovered;
+            }
+
+            @Override
+            public List<String> getServices() {
+                return List.of(SERVICE_ID);
+            }
+        };
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("registration", new LocalRegistration(local));
+        TrainShardOwnership trainShardOwnership = new TrainShardOwnership(discoveryClient, beanFactory.getBeanProvider(Registration.class), null);
+        ReflectionTestUtils.setField(trainShardOwnership, "shardEnable", true);
+        trainShardOwnership.refresh();
+        return trainShardOwnership;
+    }
+
+    @Test
+    void ownerMatchesGatewayRoute() {
+        // 网关与各实例从注册中心获取的实例顺序可能不同
+        List<ServiceInstance> discovered = new ArrayList<>(INSTANCES);
+        Collections.reverse(discovered);
+        ConsistentHashRing<ServiceInstance> gatewayRing = gatewayRing(INSTANCES);
+        List<TrainShardOwnership> ownerships = INSTANCES.stream().map(each -> ownership(each, discovered)).toList();
+        for (int trainId = 1; trainId <= 2000; trainId++) {
+            String key = String.valueOf(trainId);
+            ServiceInstance routed = gatewayRing.route(key);
+            int owners = 0;
+            for (int i = 0; i < INSTANCES.size(); i++) {
+                boolean owner = ownerships.get(i).isOwner(key);
+                assertEquals(INSTANCES.get(i) == routed, owner, "列车 " + key);
+                owners += owner ? 1 : 0;
+            }
+            assertEquals(1, owners, "列车 " + key);
+        }
+    }
+
+    @Test
+    void unregisteredNodeOwnsNothing() {
+        ServiceInstance local = new DefaultServiceInstance("ticket-4", SERVICE_ID, "10.0.0.13", 9000, false);
+        TrainShardOwnership trainShardOwnership = ownership(local, INSTANCES);
+        for (int trainId = 1; trainId <= 200; trainId++) {
+            assertFalse(trainShardOwnership.isOwner(String.valueOf(trainId)));
+        }
+    }
+
+    private static final class LocalRegistration extends DefaultServiceInstance implements Registration {
+
+        private LocalRegistration(ServiceInstance instance) {
+            super(instance.getInstanceId(), instance.getServiceId(), instance.getHost(), instance.getPort(), instance.isSecure());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.select;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.project12306.services.ticketservice.toolkit.VirtualThreadUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 平台线程与虚拟线程执行模式下同时在途购票请求的基准测试
+ * <p>
+ * 一次调用同时提交 inFlight 个购票请求并等待全部完成，吞吐量为 inFlight / 单次耗时。
+ * 每个请求按购票路径的阻塞形态模拟：两种座位类型并行选座（各自阻塞 selectMillis 模拟数据库与 Redis），
+ * 随后依次调用用户服务与订单服务（各阻塞 remoteMillis 模拟 Feign）。
+ * platform 模式请求线程为 Tomcat 默认的 200 个平台线程，选座线程池与 selectSeatThreadPoolExecutor 配置一致；
+ * virtual 模式请求与选座均为每任务一个虚拟线程，需运行在 JDK 21 及以上
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PurchaseConcurrencyBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+    private static final int SEAT_TYPE_SIZE = 2;
+
+    @Param({"platform", "virtual"})
+    private String mode;
+
+    @Param({"10000"})
+    private int inFlight;
+
+    @Param({"5"})
+    private long selectMillis;
+
+    @Param({"10"})
+    private long remoteMillis;
+
+    private ExecutorService requestExecutor;
+    private ExecutorService selectSeatExecutor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("virtual".equals(mode)) {
+            if (!VirtualThreadUtil.isSupported()) {
+                throw new IllegalStateException("当前 JDK 不支持虚拟线程，virtual 模式需运行在 JDK 21 及以上");
+            }
+            requestExecutor = VirtualThreadUtil.executor();
+            selectSeatExecutor = VirtualThreadUtil.executor();
+        } else {
+            requestExecutor = Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+            selectSeatExecutor = new ThreadPoolExecutor(24, 36, 60, TimeUnit.MINUTES,
+                    new SynchronousQueue<>(), new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        // 共享的虚拟线程执行器无需关闭
+        if ("platform".equals(mode)) {
+            requestExecutor.shutdownNow();
+            selectSeatExecutor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public int purchase() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(inFlight);
+        AtomicInteger completed = new AtomicInteger();
+        for (int i = 0; i < inFlight; i++) {
+            requestExecutor.execute(() -> {
+                try {
+                    purchaseTicket();
+                    completed.incrementAndGet();
+                } catch (Exception ignored) {
+                    // 失败的请求不计入完成数
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+        return completed.get();
+    }
+
+    /**
+     * 模拟一次购票：并行选座后依次远程查询乘车人与创建订单
+     */
+    private void purchaseTicket() throws Exception {
+        List<Future<Integer>> futureResults = new ArrayList<>(SEAT_TYPE_SIZE);
+        for (int i = 0; i < SEAT_TYPE_SIZE; i++) {
+            int seatType = i;
+            futureResults.add(selectSeatExecutor.submit(() -> {
+                Thread.sleep(selectMillis);
+                return seatType;
+            }));
+        }
+        for (Future<Integer> each : futureResults) {
+            each.get();
+        }
+        Thread.sleep(remoteMillis);
+        Thread.sleep(remoteMillis);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PurchaseConcurrencyBenchmark.class.getSimpleName()).build()).run();
+    }
+}
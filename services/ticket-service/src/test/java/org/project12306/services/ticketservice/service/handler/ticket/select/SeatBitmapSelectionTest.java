@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.select;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 位图座位选择器测试
+ */
+class SeatBitmapSelectionTest {
+
+    @Test
+    void buildRowMasksAndSeatNumber() {
+        int[] rowMasks = SeatBitmapSelection.buildRowMasks(List.of("01A", "01C", "02F"), 2, "ABCDF");
+        assertArrayEquals(new int[]{0b00101, 0b10000}, rowMasks);
+        assertEquals(3, SeatBitmapSelection.countFree(rowMasks));
+        assertEquals("02F", SeatBitmapSelection.toSeatNumber(SeatBitmapSelection.encode(1, 4), "ABCDF"));
+    }
+
+    @Test
+    void matchesSeatSelectionOnRandomLayouts() {
+        // 随机座位图与原二维数组算法 SeatSelection 对比，验证选座结果一致
+        Random random = new Random(12306L);
+        int[] out = new int[32];
+        for (int round = 0; round < 100000; round++) {
+            int rows = 1 + random.nextInt(18);
+            int columns = 1 + random.nextInt(5);
+            int[][] seatLayout = new int[rows][columns];
+            int[] rowMasks = new int[rows];
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    seatLayout[i][j] = random.nextInt(3) == 0 ? 0 : 1;
+                    if (seatLayout[i][j] == 0) {
+                        rowMasks[i] |= 1 << j;
+                    }
+                }
+            }
+            int count = 1 + random.nextInt(columns + 1);
+            int[][] expected = SeatSelection.adjacent(count, seatLayout);
+            int first = SeatBitmapSelection.adjacent(rowMasks, count);
+            assertEquals(expected == null ? -1 : SeatBitmapSelection.encode(expected[0][0] - 1, expected[0][1] - 1), first,
+                    "相邻选座结果不一致，第 " + round + " 轮");
+            expected = SeatSelection.nonAdjacent(count, seatLayout);
+            int selected = SeatBitmapSelection.nonAdjacent(rowMasks, count, out);
+            assertEquals(expected.length, selected, "不相邻选座数量不一致，第 " + round + " 轮");
+            for (int k = 0; k < selected; k++) {
+                assertEquals(SeatBitmapSelection.encode(expected[k][0] - 1, expected[k][1] - 1), out[k],
+                        "不相邻选座结果不一致，第 " + round + " 轮");
+            }
+        }
+    }
+
+    @Test
+    void parseChooseSeatRejectsInvalidInput() {
+        assertEquals(SeatBitmapSelection.encode(2, 4), SeatBitmapSelection.parseChooseSeat("F2", "ABCDF"));
+        assertEquals(SeatBitmapSelection.encode(12, 0), SeatBitmapSelection.parseChooseSeat("A12", "ABCDF"));
+        for (String each : new String[]{null, "", "A", "E1", "a1", "1A", "A0", "A-1", "A1B", "A99999999999"}) {
+            assertEquals(-1, SeatBitmapSelection.parseChooseSeat(each, "ABCDF"), "选座 " + each + " 应无法解析");
+        }
+        assertEquals(0, SeatBitmapSelection.chooseSeats(new int[]{0b11111}, new int[]{-1}, new int[1]));
+    }
+
+    @Test
+    void chooseSeatsMatchesRowBasedSelectionOnRandomLayouts() {
+        // 随机座位图与随机选座，与原二维数组选座算法对比，验证选座结果一致
+        Random random = new Random(12306L);
+        String columnLetters = "ABCDF";
+        int[] out = new int[8];
+        for (int round = 0; round < 100000; round++) {
+            int rows = 1 + random.nextInt(18);
+            int columns = 1 + random.nextInt(5);
+            int[][] seatLayout = new int[rows][columns];
+            int[] rowMasks = new int[rows];
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    seatLayout[i][j] = random.nextInt(3) == 0 ? 1 : 0;
+                    if (seatLayout[i][j] == 0) {
+                        rowMasks[i] |= 1 << j;
+                    }
+                }
+            }
+            List<String> chooseSeatList = new ArrayList<>();
+            int size = 1 + random.nextInt(4);
+            for (int k = 0; k < size; k++) {
+                chooseSeatList.add(String.valueOf(columnLetters.charAt(random.nextInt(columns))) + (1 + random.nextInt(2)));
+            }
+            int[] chooseSeats = chooseSeatList.stream()
+                    .mapToInt(each -> SeatBitmapSelection.parseChooseSeat(each, columnLetters))
+                    .toArray();
+            List<int[]> expected = chooseSeatsByRow(seatLayout, chooseSeatList, columnLetters);
+            int selected = SeatBitmapSelection.chooseSeats(rowMasks, chooseSeats, out);
+            assertEquals(expected.size(), selected, "选座数量不一致，第 " + round + " 轮，选座 " + chooseSeatList);
+            for (int k = 0; k < selected; k++) {
+                assertEquals(SeatBitmapSelection.encode(expected.get(k)[0], expected.get(k)[1]), out[k],
+                        "选座结果不一致，第 " + round + " 轮，选座 " + chooseSeatList);
+            }
+        }
+    }
+
+    /**
+     * 原二维数组选座算法，座位值为 0 代表空闲，返回 0 开始的排、列
+     */
+    private static List<int[]> chooseSeatsByRow(int[][] actualSeats, List<String> chooseSeatList, String columnLetters) {
+        String firstChooseSeat = chooseSeatList.get(0);
+        int firstSeatX = Integer.parseInt(firstChooseSeat.substring(1));
+        int firstSeatY = columnLetters.indexOf(firstChooseSeat.charAt(0));
+        List<int[]> chooseSeatLevelPairList = new ArrayList<>();
+        chooseSeatLevelPairList.add(new int[]{firstSeatX, firstSeatY});
+        int minLevelX = 0;
+        for (int i = 1; i < chooseSeatList.size(); i++) {
+            String chooseSeat = chooseSeatList.get(i);
+            int chooseSeatX = Integer.parseInt(chooseSeat.substring(1));
+            int chooseSeatY = columnLetters.indexOf(chooseSeat.charAt(0));
+            minLevelX = Math.min(minLevelX, chooseSeatX - firstSeatX);
+            chooseSeatLevelPairList.add(new int[]{chooseSeatX - firstSeatX, chooseSeatY - firstSeatY});
+        }
+        for (int i = Math.abs(minLevelX); i < actualSeats.length; i++) {
+            List<int[]> sureSeatList = new ArrayList<>();
+            if (actualSeats[i][firstSeatY] == 0) {
+                sureSeatList.add(new int[]{i, firstSeatY});
+                for (int j = 1; j < chooseSeatList.size(); j++) {
+                    int[] pair = chooseSeatLevelPairList.get(j);
+                    int x = i + pair[0];
+                    if (x >= actualSeats.length) {
+                        return List.of();
+                    }
+                    if (actualSeats[x][firstSeatY + pair[1]] == 0) {
+                        sureSeatList.add(new int[]{x, firstSeatY + pair[1]});
+                    } else {
+                        break;
+                    }
+                }
+            }
+            if (sureSeatList.size() == chooseSeatList.size()) {
+                return sureSeatList;
+            }
+        }
+        return List.of();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.select;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 二维数组选座与位图选座基准测试，座位图为 18 排 5 列的二等座车厢
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeatSelectionBenchmark {
+
+    private static final int ROWS = 18;
+    private static final int COLUMNS = 5;
+
+    /**
+     * 座位空闲比例，百分比
+     */
+    @Param({"10", "50", "90"})
+    private int freePercent;
+
+    @Param({"1", "3"})
+    private int count;
+
+    private int[][] seatLayout;
+    private int[] rowMasks;
+    private final int[] out = new int[32];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(12306L);
+        seatLayout = new int[ROWS][COLUMNS];
+        rowMasks = new int[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            for (int j = 0; j < COLUMNS; j++) {
+                boolean free = random.nextInt(100) < freePercent;
+                seatLayout[i][j] = free ? 0 : 1;
+                if (free) {
+                    rowMasks[i] |= 1 << j;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public int[][] arrayAdjacent() {
+        return SeatSelection.adjacent(count, seatLayout);
+    }
+
+    @Benchmark
+    public int bitmapAdjacent() {
+        return SeatBitmapSelection.adjacent(rowMasks, count);
+    }
+
+    @Benchmark
+    public int[][] arrayNonAdjacent() {
+        return SeatSelection.nonAdjacent(count, seatLayout);
+    }
+
+    @Benchmark
+    public int bitmapNonAdjacent() {
+        return SeatBitmapSelection.nonAdjacent(rowMasks, count, out);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SeatSelectionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.tokenbucket;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 本地令牌租约测试
+ */
+class TokenLeaseTest {
+
+    private static final long TTL = 60_000L;
+
+    @Test
+    void refillWithNewerEpochDropsStaleTokens() {
+        TokenLease tokenLease = new TokenLease("1", "北京南", "上海虹桥", 0, 1);
+        long now = System.currentTimeMillis();
+        assertTrue(tokenLease.refill(5, now, TTL, 1L));
+        assertTrue(tokenLease.refill(3, now, TTL, 2L));
+        assertEquals(3, tokenLease.getRemaining().get());
+        assertEquals(2L, tokenLease.getEpoch());
+    }
+
+    @Test
+    void refillWithOlderEpochIsRefused() {
+        TokenLease tokenLease = new TokenLease("1", "北京南", "上海虹桥", 0, 1);
+        long now = System.currentTimeMillis();
+        assertTrue(tokenLease.refill(2, now, TTL, 3L));
+        assertFalse(tokenLease.refill(4, now, TTL, 2L));
+        assertEquals(2, tokenLease.getRemaining().get());
+    }
+
+    @Test
+    void discardOnlyAppliesToOlderEpoch() {
+        TokenLease tokenLease = new TokenLease("1", "北京南", "上海虹桥", 0, 1);
+        tokenLease.refill(4, System.currentTimeMillis(), TTL, 2L);
+        assertEquals(0, tokenLease.discard(2L));
+        assertEquals(4, tokenLease.discard(3L));
+        assertFalse(tokenLease.tryAcquire(1));
+    }
+
+    @Test
+    void expiredLeaseDoesNotDispense() {
+        TokenLease tokenLease = new TokenLease("1", "北京南", "上海虹桥", 0, 1);
+        tokenLease.refill(4, System.currentTimeMillis() - TTL * 2, TTL, 1L);
+        assertFalse(tokenLease.tryAcquire(1));
+        assertEquals(4, tokenLease.drain(1));
+    }
+}
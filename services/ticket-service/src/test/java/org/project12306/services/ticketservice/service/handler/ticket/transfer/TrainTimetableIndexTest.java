@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.handler.ticket.transfer;
+
+import org.junit.jupiter.api.Test;
+import org.project12306.services.ticketservice.dao.entity.TrainDO;
+import org.project12306.services.ticketservice.dao.entity.TrainStationDO;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 时刻表索引测试，覆盖换乘间隔、同城异站换乘、跨天列车以及增量更新与全量构建结果一致
+ */
+class TrainTimetableIndexTest {
+
+    private static final LocalDate SERVICE_DATE = LocalDate.of(2026, 10, 18);
+
+    /**
+     * 构建列车时刻表，经停站格式为 车站,地区,到站时间,出站时间，时间格式为 天偏移/HH:mm，始发站到站时间与终到站出站时间可为空
+     */
+    private static TrainTimetable train(long trainId, String... stops) {
+        return train(trainId, SERVICE_DATE, stops);
+    }
+
+    private static TrainTimetable train(long trainId, LocalDate serviceDate, String... stops) {
+        TrainDO trainDO = new TrainDO();
+        trainDO.setId(trainId);
+        trainDO.setTrainNumber("G" + trainId);
+        List<TrainStationDO> trainStationList = new ArrayList<>();
+        for (int i = 0; i < stops.length; i++) {
+            String[] fields = stops[i].split(",", -1);
+            TrainStationDO trainStationDO = new TrainStationDO();
+            trainStationDO.setId(trainId * 100 + i);
+            trainStationDO.setTrainId(trainId);
+            trainStationDO.setSequence(String.valueOf(i + 1));
+            trainStationDO.setDeparture(fields[0]);
+            trainStationDO.setStartRegion(fields[1]);
+            trainStationDO.setArrivalTime(time(serviceDate, fields[2]));
+            trainStationDO.setDepartureTime(time(serviceDate, fields[3]));
+            trainStationList.add(trainStationDO);
+        }
+        return TrainTimetable.of(trainDO, trainStationList);
+    }
+
+    private static Date time(LocalDate serviceDate, String dayTime) {
+        if (dayTime.isEmpty()) {
+            return null;
+        }
+        String[] dayAndTime = dayTime.split("/");
+        String[] hourAndMinute = dayAndTime[1].split(":");
+        LocalDateTime dateTime = serviceDate.plusDays(Integer.parseInt(dayAndTime[0]))
+                .atTime(Integer.parseInt(hourAndMinute[0]), Integer.parseInt(hourAndMinute[1]));
+        return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static TrainTimetableIndex index(TrainTimetable... trains) {
+        Map<Long, TrainTimetable> trainMap = new HashMap<>();
+        for (TrainTimetable each : trains) {
+            trainMap.put(each.getTrainId(), each);
+        }
+        return TrainTimetableIndex.build(trainMap);
+    }
+
+    private static List<String> trainPairs(List<TransferItinerary> itineraries) {
+        return itineraries.stream()
+                .map(each -> each.getFirstTrainId() + "->" + each.getSecondTrainId() + ":" + each.getTotalMinutes())
+                .toList();
+    }
+
+    @Test
+    void searchRespectsConnectionWindow() {
+        TrainTimetableIndex index = index(
+                train(1L, "北京南,北京,,0/08:00", "济南西,济南,0/10:00,"),
+                // 间隔 10 分钟，小于最短换乘间隔
+                train(2L, "济南西,济南,,0/10:10", "上海虹桥,上海,0/13:00,"),
+                // 间隔 30 分钟
+                train(3L, "济南西,济南,,0/10:30", "上海虹桥,上海,0/13:30,"),
+                // 间隔 390 分钟，超过最长等待时间
+                train(4L, "济南西,济南,,0/16:30", "上海虹桥,上海,0/19:00,"));
+        List<TransferItinerary> result = index.search("北京", "上海", 15, -1, 240, 10, SERVICE_DATE);
+        assertEquals(List.of("1->3:330"), trainPairs(result));
+        TransferItinerary itinerary = result.get(0);
+        assertEquals(30, itinerary.getWaitMinutes());
+        assertEquals("济南", itinerary.getTransferRegion());
+        assertEquals(10 * 60 + 30, itinerary.getSecondDepartureMinute());
+        // 放宽最短换乘间隔后间隔 10 分钟的列车耗时最短，排在最前
+        assertEquals(List.of("1->2:300", "1->3:330"), trainPairs(index.search("北京", "上海", 10, -1, 240, 10, SERVICE_DATE)));
+        assertEquals(List.of("1->2:300"), trainPairs(index.search("北京", "上海", 10, -1, 240, 1, SERVICE_DATE)));
+    }
+
+    @Test
+    void searchCrossStationConnection() {
+        TrainTimetableIndex index = index(
+                train(1L, "北京南,北京,,0/08:00", "济南西,济南,0/10:00,"),
+                // 异站间隔 20 分钟，小于同站间隔与异站附加间隔之和
+                train(5L, "济南东,济南,,0/10:20", "上海虹桥,上海,0/13:00,"),
+                train(6L, "济南东,济南,,0/11:00", "上海虹桥,上海,0/14:00,"));
+        assertTrue(index.search("北京", "上海", 15, -1, 240, 10, SERVICE_DATE).isEmpty());
+        List<TransferItinerary> result = index.search("北京", "上海", 15, 30, 240, 10, SERVICE_DATE);
+        assertEquals(List.of("1->6:360"), trainPairs(result));
+        assertEquals("济南西", result.get(0).getFirstArrival());
+        assertEquals("济南东", result.get(0).getSecondDeparture());
+        assertEquals("济南", result.get(0).getTransferRegion());
+    }
+
+    @Test
+    void searchOvernightTrain() {
+        TrainTimetableIndex index = index(
+                // 当日 22:00 出发，次日 01:00 到达换乘站
+                train(7L, "北京南,北京,,0/22:00", "济南西,济南,1/01:00,"),
+                // 次日始发的第二程
+                train(8L, SERVICE_DATE.plusDays(1), "济南西,济南,,0/02:00", "上海虹桥,上海,0/05:00,"),
+                // 当日始发的同一时刻列车，换乘时已经开出
+                train(9L, "济南西,济南,,0/02:00", "上海虹桥,上海,0/05:00,"));
+        List<TransferItinerary> result = index.search("北京", "上海", 15, -1, 240, 10, SERVICE_DATE);
+        assertEquals(List.of("7->8:420"), trainPairs(result));
+        assertEquals(60, result.get(0).getWaitMinutes());
+        assertEquals(1500, result.get(0).getFirstArrivalMinute());
+        assertEquals(1560, result.get(0).getSecondDepartureMinute());
+        // 第一程不在当日出发
+        assertTrue(index.search("北京", "上海", 15, -1, 240, 10, SERVICE_DATE.plusDays(1)).isEmpty());
+        // 不校验开行日期时按时刻匹配，两趟第二程均可换乘
+        assertEquals(Set.of("7->8:420", "7->9:420"), new HashSet<>(trainPairs(index.search("北京", "上海", 15, -1, 240, 10, null))));
+    }
+
+    @Test
+    void withTrainsMatchesFullBuild() {
+        Random random = new Random(12306L);
+        List<String> regions = List.of("北京", "天津", "济南", "南京", "上海", "杭州");
+        Map<Long, TrainTimetable> trainMap = new HashMap<>();
+        for (long trainId = 1; trainId <= 60; trainId++) {
+            trainMap.put(trainId, randomTrain(random, trainId, regions, 2));
+        }
+        TrainTimetableIndex index = TrainTimetableIndex.build(trainMap);
+        long nextTrainId = 61;
+        for (int round = 0; round < 50; round++) {
+            Map<Long, TrainTimetable> changedTrainMap = new HashMap<>();
+            List<Long> removedTrainIds = new ArrayList<>();
+            List<Long> trainIds = new ArrayList<>(trainMap.keySet());
+            for (int i = 0; i < 1 + random.nextInt(5) && !trainIds.isEmpty(); i++) {
+                Long trainId = trainIds.remove(random.nextInt(trainIds.size()));
+                if (random.nextBoolean()) {
+                    removedTrainIds.add(trainId);
+                } else {
+                    changedTrainMap.put(trainId, randomTrain(random, trainId, regions, 2));
+                }
+            }
+            for (int i = 0; i < random.nextInt(4); i++) {
+                // 第三个车站只出现在新增列车上，验证增量新增车站
+                changedTrainMap.put(nextTrainId, randomTrain(random, nextTrainId, regions, 3));
+                nextTrainId++;
+            }
+            removedTrainIds.add(-1L);
+            index = index.withTrains(changedTrainMap, removedTrainIds);
+            removedTrainIds.forEach(trainMap::remove);
+            trainMap.putAll(changedTrainMap);
+            TrainTimetableIndex expectedIndex = TrainTimetableIndex.build(trainMap);
+            assertEquals(expectedIndex.trainSize(), index.trainSize(), "列车数量不一致，第 " + round + " 轮");
+            for (String fromRegion : regions) {
+                for (String toRegion : regions) {
+                    Set<String> expected = new HashSet<>(trainPairs(expectedIndex.search(fromRegion, toRegion, 15, 30, 600, 1000, null)));
+                    Set<String> actual = new HashSet<>(trainPairs(index.search(fromRegion, toRegion, 15, 30, 600, 1000, null)));
+                    assertEquals(expected, actual, "换乘结果不一致，第 " + round + " 轮 " + fromRegion + " -> " + toRegion);
+                }
+            }
+        }
+    }
+
+    /**
+     * 随机生成经过 3 ~ 5 个地区的列车，每个地区从 stationsPerRegion 个车站中随机选择
+     */
+    private static TrainTimetable randomTrain(Random random, long trainId, List<String> regions, int stationsPerRegion) {
+        List<String> candidates = new ArrayList<>(regions);
+        int size = 3 + random.nextInt(3);
+        String[] stops = new String[size];
+        int minute = 6 * 60 + random.nextInt(16 * 60);
+        for (int i = 0; i < size; i++) {
+            String region = candidates.remove(random.nextInt(candidates.size()));
+            String station = region + (char) ('A' + random.nextInt(stationsPerRegion));
+            String arrival = i == 0 ? "" : dayTime(minute);
+            minute += i == 0 ? 0 : 2 + random.nextInt(5);
+            String departure = i == size - 1 ? "" : dayTime(minute);
+            stops[i] = station + "," + region + "," + arrival + "," + departure;
+            minute += 30 + random.nextInt(180);
+        }
+        return train(trainId, stops);
+    }
+
+    private static String dayTime(int minute) {
+        return minute / 1440 + "/" + String.format("%02d:%02d", minute % 1440 / 60, minute % 60);
+    }
+}
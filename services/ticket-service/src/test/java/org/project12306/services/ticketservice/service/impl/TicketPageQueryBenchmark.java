@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.service.impl;
+
+import com.alibaba.fastjson2.JSON;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.project12306.commons.cache.DistributedCache;
+import org.project12306.commons.desingnpattern.chain.AbstractChainContext;
+import org.project12306.services.ticketservice.dao.entity.TrainStationDO;
+import org.project12306.services.ticketservice.dao.entity.TrainStationPriceDO;
+import org.project12306.services.ticketservice.dao.mapper.TrainStationMapper;
+import org.project12306.services.ticketservice.dao.mapper.TrainStationPriceMapper;
+import org.project12306.services.ticketservice.dto.domain.TicketListDTO;
+import org.project12306.services.ticketservice.dto.req.TicketPageQueryReqDTO;
+import org.project12306.services.ticketservice.dto.resp.TicketPageQueryRespDTO;
+import org.project12306.services.ticketservice.service.TrainStationService;
+import org.project12306.services.ticketservice.service.cache.RegionTrainStationCacheLoader;
+import org.project12306.services.ticketservice.service.cache.RegionTrainStationNearCache;
+import org.project12306.services.ticketservice.service.cache.SeatMarginCacheLoader;
+import org.project12306.services.ticketservice.service.cache.TrainLegRemainingTicketCache;
+import org.project12306.services.ticketservice.service.handler.ticket.fare.TrainFareIndex;
+import org.project12306.services.ticketservice.service.handler.ticket.waitlist.TicketWaitlist;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+import org.redisson.spring.data.connection.RedissonConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.REGION_TRAIN_STATION;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.REGION_TRAIN_STATION_MAPPING;
+import static org.project12306.services.ticketservice.common.constant.RedisKeyConstant.TRAIN_ROUTE_REMAINING_TICKET;
+
+/**
+ * 车票分页查询 v1、v2 与 v3 端到端基准测试，三个版本读取同一份地区间车次、票价与站间余票数据
+ * <p>
+ * 除 Redis 外的依赖（责任链、数据库）以 Mock 替代，票价索引由 Mock 数据构建，计时覆盖地区映射、车次集合、票价、余票读取与结果组装；
+ * 需要本地 Redis，地址通过 -Dredis.address 指定，默认 redis://127.0.0.1:6379，会写入并在结束时删除查询用到的 Key
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TicketPageQueryBenchmark {
+
+    private static final String FROM_STATION = "BJP";
+    private static final String TO_STATION = "SHH";
+    private static final String START_REGION = "基准北京";
+    private static final String END_REGION = "基准上海";
+    private static final List<Integer> SEAT_TYPES = List.of(0, 1, 2);
+    private static final long TRAIN_ID_BASE = 900000L;
+
+    @Param({"10", "50"})
+    private int trainSize;
+
+    @Param({"20"})
+    private int stationSize;
+
+    private RedissonClient redissonClient;
+    private StringRedisTemplate stringRedisTemplate;
+    private TicketServiceImpl ticketService;
+    private TicketPageQueryReqDTO requestParam;
+    private List<String> keys;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Config config = new Config();
+        config.useSingleServer().setAddress(System.getProperty("redis.address", "redis://127.0.0.1:6379"));
+        redissonClient = Redisson.create(config);
+        stringRedisTemplate = new StringRedisTemplate(new RedissonConnectionFactory(redissonClient));
+        DistributedCache distributedCache = mock(DistributedCache.class);
+        when(distributedCache.getInstance()).thenReturn(stringRedisTemplate);
+
+        List<String> stations = new ArrayList<>(stationSize);
+        for (int i = 0; i < stationSize; i++) {
+            stations.add("基准站" + i);
+        }
+        String departure = stations.get(0);
+        String arrival = stations.get(stationSize - 1);
+        TrainStationService trainStationService = mock(TrainStationService.class);
+        when(trainStationService.listTrainStationAll(anyString())).thenReturn(stations);
+
+        keys = new ArrayList<>();
+        List<TrainStationPriceDO> trainPriceList = new ArrayList<>();
+        List<TrainStationDO> trainStationList = new ArrayList<>();
+        Map<String, String> regionTrainStationMap = new HashMap<>();
+        for (int i = 0; i < trainSize; i++) {
+            long trainId = TRAIN_ID_BASE + i;
+            // 写入顺序与出发时间无关，验证查询结果仍按出发时间排序
+            int departureMinute = (i * 37) % 1440;
+            TicketListDTO ticketListDTO = TicketListDTO.builder()
+                    .trainId(String.valueOf(trainId))
+                    .trainNumber("G" + i)
+                    .departureTime(String.format("%02d:%02d", departureMinute / 60, departureMinute % 60))
+                    .departureMinute(departureMinute)
+                    .arrivalTime("23:59")
+                    .departure(departure)
+                    .arrival(arrival)
+                    .trainType(0)
+                    .trainBrand("0,6")
+                    .build();
+            regionTrainStationMap.put(trainId + "_" + departure + "_" + arrival, JSON.toJSONString(ticketListDTO));
+            Map<String, String> routeRemainingMap = new HashMap<>();
+            for (Integer seatType : SEAT_TYPES) {
+                TrainStationPriceDO trainStationPriceDO = new TrainStationPriceDO();
+                trainStationPriceDO.setId(trainId * 10 + seatType);
+                trainStationPriceDO.setTrainId(trainId);
+                trainStationPriceDO.setSeatType(seatType);
+                trainStationPriceDO.setDeparture(departure);
+                trainStationPriceDO.setArrival(arrival);
+                trainStationPriceDO.setPrice(10000 + seatType * 5000);
+                trainPriceList.add(trainStationPriceDO);
+                for (int start = 0; start < stationSize - 1; start++) {
+                    for (int end = start + 1; end < stationSize; end++) {
+                        routeRemainingMap.put(TrainLegRemainingTicketCache.buildRouteField(seatType, start, end), String.valueOf(100 + end - start));
+                    }
+                }
+            }
+            for (int j = 0; j < stationSize; j++) {
+                TrainStationDO trainStationDO = new TrainStationDO();
+                trainStationDO.setId(trainId * 100 + j);
+                trainStationDO.setTrainId(trainId);
+                trainStationDO.setSequence(String.valueOf(j));
+                trainStationDO.setDeparture(stations.get(j));
+                trainStationList.add(trainStationDO);
+            }
+            String routeKey = TRAIN_ROUTE_REMAINING_TICKET + trainId;
+            stringRedisTemplate.opsForHash().putAll(routeKey, routeRemainingMap);
+            keys.add(routeKey);
+        }
+        String regionTrainStationKey = String.format(REGION_TRAIN_STATION, START_REGION, END_REGION);
+        stringRedisTemplate.opsForHash().putAll(regionTrainStationKey, regionTrainStationMap);
+        keys.add(regionTrainStationKey);
+        stringRedisTemplate.opsForHash().put(REGION_TRAIN_STATION_MAPPING, FROM_STATION, START_REGION);
+        stringRedisTemplate.opsForHash().put(REGION_TRAIN_STATION_MAPPING, TO_STATION, END_REGION);
+
+        TrainStationPriceMapper trainStationPriceMapper = mock(TrainStationPriceMapper.class);
+        when(trainStationPriceMapper.selectList(any())).thenReturn(trainPriceList);
+        TrainStationMapper trainStationMapper = mock(TrainStationMapper.class);
+        when(trainStationMapper.selectList(any())).thenReturn(trainStationList);
+        TrainFareIndex trainFareIndex = new TrainFareIndex(trainStationPriceMapper, trainStationMapper);
+        trainFareIndex.refresh();
+
+        RegionTrainStationNearCache regionTrainStationNearCache = new RegionTrainStationNearCache(distributedCache, new SimpleMeterRegistry(), 2000L, 600L);
+        RegionTrainStationCacheLoader regionTrainStationCacheLoader = new RegionTrainStationCacheLoader(
+                null, null, distributedCache, redissonClient, regionTrainStationNearCache);
+        // 查询路径不使用的依赖传 null
+        ticketService = new TicketServiceImpl(
+                null,
+                null,
+                null,
+                distributedCache,
+                redissonClient,
+                mock(AbstractChainContext.class),
+                mock(SeatMarginCacheLoader.class),
+                new TrainLegRemainingTicketCache(distributedCache, trainStationService),
+                trainFareIndex,
+                regionTrainStationNearCache,
+                regionTrainStationCacheLoader,
+                null,
+                null,
+                null,
+                null,
+                trainStationService,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                mock(TicketWaitlist.class),
+                null,
+                null);
+        ReflectionTestUtils.setField(ticketService, "cacheRedisPrefix", "");
+        requestParam = new TicketPageQueryReqDTO();
+        requestParam.setFromStation(FROM_STATION);
+        requestParam.setToStation(TO_STATION);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stringRedisTemplate.delete(keys);
+        stringRedisTemplate.opsForHash().delete(REGION_TRAIN_STATION_MAPPING, FROM_STATION, TO_STATION);
+        redissonClient.shutdown();
+    }
+
+    @Benchmark
+    public TicketPageQueryRespDTO v1() {
+        return ticketService.pageListTicketQueryV1(requestParam);
+    }
+
+    @Benchmark
+    public TicketPageQueryRespDTO v2() {
+        return ticketService.pageListTicketQueryV2(requestParam);
+    }
+
+    @Benchmark
+    public TicketPageQueryRespDTO v3() {
+        return ticketService.pageListTicketQueryV3(requestParam);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TicketPageQueryBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.project12306.services.ticketservice.toolkit;
+
+import org.junit.jupiter.api.Test;
+import org.project12306.services.ticketservice.dto.domain.RouteDTO;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 座位区段位图计算工具测试
+ */
+class SeatLegMaskUtilTest {
+
+    private static final List<String> STATIONS = Arrays.asList("北京南", "济南西", "南京南", "杭州东", "宁波");
+
+    @Test
+    void legMaskCoversHalfOpenRange() {
+        assertEquals(0b0110L, SeatLegMaskUtil.legMask(1, 3));
+        assertEquals(0b0110L, SeatLegMaskUtil.legMask(STATIONS, "济南西", "杭州东"));
+    }
+
+    @Test
+    void legMaskRejectsIllegalRange() {
+        assertEquals(0L, SeatLegMaskUtil.legMask(-1, 2));
+        assertEquals(0L, SeatLegMaskUtil.legMask(2, 2));
+        assertEquals(0L, SeatLegMaskUtil.legMask(0, SeatLegMaskUtil.MAX_LEG_SIZE + 1));
+        assertEquals(0L, SeatLegMaskUtil.legMask(STATIONS, "上海虹桥", "宁波"));
+    }
+
+    @Test
+    void occupyAndRelease() {
+        long legMask = SeatLegMaskUtil.legMask(1, 3);
+        long seatMask = SeatLegMaskUtil.occupy(0L, legMask);
+        assertFalse(SeatLegMaskUtil.isAvailable(seatMask, SeatLegMaskUtil.legMask(2, 4)));
+        assertTrue(SeatLegMaskUtil.isAvailable(seatMask, SeatLegMaskUtil.legMask(3, 4)));
+        assertEquals(0L, SeatLegMaskUtil.release(seatMask, legMask));
+    }
+
+    @Test
+    void overlapMatchesTakeoutStation() {
+        // 区段位图有交集的路线应与 StationCalculateUtil#takeoutStation 需扣减的路线一致
+        for (int i = 0; i < STATIONS.size(); i++) {
+            for (int j = i + 1; j < STATIONS.size(); j++) {
+                List<RouteDTO> takeoutRoutes = StationCalculateUtil.takeoutStation(STATIONS, STATIONS.get(i), STATIONS.get(j));
+                long purchaseMask = SeatLegMaskUtil.legMask(i, j);
+                for (int m = 0; m < STATIONS.size(); m++) {
+                    for (int n = m + 1; n < STATIONS.size(); n++) {
+                        boolean overlap = !SeatLegMaskUtil.isAvailable(SeatLegMaskUtil.legMask(m, n), purchaseMask);
+                        boolean takeout = takeoutRoutes.contains(new RouteDTO(STATIONS.get(m), STATIONS.get(n)));
+                        assertEquals(takeout, overlap, String.format("区段位图不一致：%s-%s 与 %s-%s",
+                                STATIONS.get(i), STATIONS.get(j), STATIONS.get(m), STATIONS.get(n)));
+                    }
+                }
+            }
+        }
+    }
+}